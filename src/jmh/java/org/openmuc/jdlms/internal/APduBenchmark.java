@@ -0,0 +1,116 @@
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jdlms.SecuritySuite;
+import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Object_Instance_Id;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Data_Result;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer8;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.internal.security.GcmModule;
+
+/**
+ * Encoding and decoding of complete xDLMS APDUs, plain and ciphered with AES-GCM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class APduBenchmark {
+
+    public enum Payload {
+        GET_REQUEST,
+        OBJECT_LIST_RESPONSE,
+        LOAD_PROFILE_RESPONSE
+    }
+
+    private static final int FRAME_COUNTER = 42;
+
+    @Param
+    private Payload payload;
+
+    @Param({ "false", "true" })
+    private boolean ciphered;
+
+    private SecuritySuite securitySuite;
+    private APdu aPdu;
+    private byte[] buffer;
+    private byte[] encodedAPdu;
+    private int frameCounter = FRAME_COUNTER;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.securitySuite = BenchmarkPayloads.cipheringSecuritySuite();
+
+        Invoke_Id_And_Priority id = new Invoke_Id_And_Priority(new byte[] { (byte) 0xC1 });
+        COSEMpdu cosemPdu = new COSEMpdu();
+        if (this.payload == Payload.GET_REQUEST) {
+            Cosem_Attribute_Descriptor descriptor = new Cosem_Attribute_Descriptor(new Unsigned16(3),
+                    new Cosem_Object_Instance_Id(new byte[] { 1, 0, 1, 8, 0, (byte) 255 }), new Integer8(2));
+            GET_Request request = new GET_Request();
+            request.setget_request_normal(new Get_Request_Normal(id, descriptor, null));
+            cosemPdu.setget_request(request);
+        }
+        else {
+            Get_Data_Result result = new Get_Data_Result();
+            if (this.payload == Payload.OBJECT_LIST_RESPONSE) {
+                result.setdata(DataConverter
+                        .convertDataObjectToData(BenchmarkPayloads.objectList(BenchmarkPayloads.OBJECT_LIST_SIZE)));
+            }
+            else {
+                result.setdata(DataConverter
+                        .convertDataObjectToData(BenchmarkPayloads.loadProfile(BenchmarkPayloads.LOAD_PROFILE_ROWS)));
+            }
+            GET_Response response = new GET_Response();
+            response.setget_response_normal(new Get_Response_Normal(id, result));
+            cosemPdu.setget_response(response);
+        }
+        this.aPdu = new APdu(null, cosemPdu);
+
+        this.buffer = new byte[cosemPdu.encode(new NullOutputStream()) + GcmModule.MAX_CIPHERING_OVERHEAD + 1];
+        int length = encode();
+        this.encodedAPdu = Arrays.copyOfRange(this.buffer, this.buffer.length - length, this.buffer.length);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        if (this.ciphered) {
+            return this.aPdu.encode(this.buffer, this.frameCounter++, BenchmarkPayloads.SYSTEM_TITLE,
+                    this.securitySuite, null);
+        }
+        return this.aPdu.encode(this.buffer, null);
+    }
+
+    @Benchmark
+    public APdu decode() throws IOException {
+        if (this.ciphered) {
+            // without a tracker, decoding the same APDU again is not rejected as a replay
+            return APdu.decode(this.encodedAPdu, BenchmarkPayloads.SYSTEM_TITLE, null, this.securitySuite, null);
+        }
+        return APdu.decode(this.encodedAPdu, null);
+    }
+
+}
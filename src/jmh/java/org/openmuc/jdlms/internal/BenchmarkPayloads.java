@@ -0,0 +1,94 @@
+package org.openmuc.jdlms.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.jdlms.AuthenticationMechanism;
+import org.openmuc.jdlms.SecuritySuite;
+import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+
+/**
+ * Realistic payloads shared by the benchmarks.
+ */
+public final class BenchmarkPayloads {
+
+    public static final int OBJECT_LIST_SIZE = 2000;
+    public static final int LOAD_PROFILE_ROWS = 10000;
+
+    public static final byte[] SYSTEM_TITLE = { 0x4d, 0x4d, 0x4d, 0x00, 0x00, 0x00, 0x00, 0x01 };
+
+    private static final int[] CLASS_IDS = { 1, 3, 4, 5, 7, 8, 15, 20, 22, 70 };
+    private static final int[] NUM_ATTRIBUTES = { 2, 3, 5, 9, 8, 9, 11, 10, 4, 4 };
+    private static final int[] NUM_METHODS = { 0, 1, 1, 1, 6, 6, 6, 1, 4, 2 };
+
+    /**
+     * The object_list attribute of an association LN object with the given number of entries, each with attribute and
+     * method access rights.
+     */
+    public static DataObject objectList(int numberOfObjects) {
+        List<DataObject> objects = new ArrayList<>(numberOfObjects);
+        for (int i = 0; i < numberOfObjects; i++) {
+            int type = i % CLASS_IDS.length;
+
+            List<DataObject> attributeAccess = new ArrayList<>(NUM_ATTRIBUTES[type]);
+            for (int attributeId = 1; attributeId <= NUM_ATTRIBUTES[type]; attributeId++) {
+                attributeAccess.add(DataObject.newStructureData(DataObject.newInteger8Data((byte) attributeId),
+                        DataObject.newEnumerateData(attributeId == 1 ? 1 : 3), DataObject.newNullData()));
+            }
+            List<DataObject> methodAccess = new ArrayList<>(NUM_METHODS[type]);
+            for (int methodId = 1; methodId <= NUM_METHODS[type]; methodId++) {
+                methodAccess.add(DataObject.newStructureData(DataObject.newInteger8Data((byte) methodId),
+                        DataObject.newEnumerateData(1)));
+            }
+
+            byte[] logicalName = { 1, 0, (byte) (i / 256), (byte) (i % 256), 0, (byte) 255 };
+            objects.add(DataObject.newStructureData(DataObject.newUInteger16Data(CLASS_IDS[type]),
+                    DataObject.newUInteger8Data((short) 0), DataObject.newOctetStringData(logicalName),
+                    DataObject.newStructureData(DataObject.newArrayData(attributeAccess),
+                            DataObject.newArrayData(methodAccess))));
+        }
+        return DataObject.newArrayData(objects);
+    }
+
+    /**
+     * The buffer of a 15 minute load profile with the given number of entries. Each entry holds the clock, a status and
+     * two energy registers.
+     */
+    public static DataObject loadProfile(int numberOfRows) {
+        List<DataObject> rows = new ArrayList<>(numberOfRows);
+        for (int i = 0; i < numberOfRows; i++) {
+            int day = i / 96;
+            byte[] clock = new CosemDateTime(2017, 1 + day / 28 % 12, 1 + day % 28, i % 96 / 4, i % 4 * 15, 0, 0)
+                    .encode();
+            rows.add(DataObject.newStructureData(DataObject.newOctetStringData(clock),
+                    DataObject.newUInteger8Data((short) 0), DataObject.newUInteger32Data(1000L + i * 25L),
+                    DataObject.newUInteger32Data(i * 3L)));
+        }
+        return DataObject.newArrayData(rows);
+    }
+
+    /**
+     * A security suite with authenticated and encrypted APDUs.
+     */
+    public static SecuritySuite cipheringSecuritySuite() {
+        byte[] key = new byte[16];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) i;
+        }
+        return SecuritySuite.builder()
+                .setAuthenticationMechanism(AuthenticationMechanism.HLS5_GMAC)
+                .setEncryptionMechanism(EncryptionMechanism.AES_GMC_128)
+                .setGlobalUnicastEncryptionKey(key)
+                .setAuthenticationKey(key)
+                .build();
+    }
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private BenchmarkPayloads() {
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.openmuc.jdlms.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Conversion between the public {@link DataObject} and the A-XDR {@link Data} of an object list and of a load
+ * profile buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataConverterBenchmark {
+
+    public enum Payload {
+        OBJECT_LIST,
+        LOAD_PROFILE
+    }
+
+    @Param
+    private Payload payload;
+
+    private DataObject dataObject;
+    private Data data;
+
+    @Setup
+    public void setUp() {
+        if (this.payload == Payload.OBJECT_LIST) {
+            this.dataObject = BenchmarkPayloads.objectList(BenchmarkPayloads.OBJECT_LIST_SIZE);
+        }
+        else {
+            this.dataObject = BenchmarkPayloads.loadProfile(BenchmarkPayloads.LOAD_PROFILE_ROWS);
+        }
+        this.data = DataConverter.convertDataObjectToData(this.dataObject);
+    }
+
+    @Benchmark
+    public Data convertDataObjectToData() {
+        return DataConverter.convertDataObjectToData(this.dataObject);
+    }
+
+    @Benchmark
+    public DataObject convertDataToDataObject() {
+        return DataConverter.convertDataToDataObject(this.data);
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.openmuc.jdlms.internal.asn1.axdr.types;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer16;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
+
+/**
+ * Encoding and decoding of single A-XDR integers and octet strings, the leaves of every COSEM data structure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AxdrPrimitivesBenchmark {
+
+    private final BerByteArrayOutputStream os = new BerByteArrayOutputStream(64);
+    private final AxdrWriter writer = new AxdrWriter(new byte[64]);
+    private final AxdrReader reader = new AxdrReader(new byte[0]);
+    private final Unsigned32 decodedUnsigned32 = new Unsigned32();
+
+    private Unsigned32 unsigned32;
+    private Integer16 integer16;
+    private AxdrInteger unboundedInteger;
+    private AxdrOctetString logicalName;
+    private AxdrOctetString dateTime;
+
+    private byte[] encodedUnsigned32;
+    private byte[] encodedUnboundedInteger;
+    private byte[] encodedDateTime;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.unsigned32 = new Unsigned32(3000000000L);
+        this.integer16 = new Integer16(-1234);
+        this.unboundedInteger = new AxdrInteger(123456789L);
+        this.logicalName = new AxdrOctetString(6, new byte[] { 1, 0, 99, 1, 0, (byte) 255 });
+        this.dateTime = new AxdrOctetString(new CosemDateTime(2017, 3, 1, 12, 15, 0, 0).encode());
+
+        this.encodedUnsigned32 = encoded(this.unsigned32);
+        this.encodedUnboundedInteger = encoded(this.unboundedInteger);
+        this.encodedDateTime = encoded(this.dateTime);
+    }
+
+    @Benchmark
+    public int encodeUnsigned32() throws IOException {
+        this.os.reset();
+        return this.unsigned32.encode(this.os);
+    }
+
+    @Benchmark
+    public int encodeInteger16() throws IOException {
+        this.os.reset();
+        return this.integer16.encode(this.os);
+    }
+
+    @Benchmark
+    public int encodeUnboundedInteger() throws IOException {
+        this.os.reset();
+        return this.unboundedInteger.encode(this.os);
+    }
+
+    @Benchmark
+    public int encodeLogicalName() throws IOException {
+        this.os.reset();
+        return this.logicalName.encode(this.os);
+    }
+
+    @Benchmark
+    public int encodeDateTime() throws IOException {
+        this.os.reset();
+        return this.dateTime.encode(this.os);
+    }
+
+    @Benchmark
+    public long decodeUnsigned32() throws IOException {
+        Unsigned32 value = new Unsigned32();
+        value.decode(new ByteArrayInputStream(this.encodedUnsigned32));
+        return value.getValue();
+    }
+
+    @Benchmark
+    public long decodeUnboundedInteger() throws IOException {
+        AxdrInteger value = new AxdrInteger();
+        value.decode(new ByteArrayInputStream(this.encodedUnboundedInteger));
+        return value.getValue();
+    }
+
+    @Benchmark
+    public byte[] decodeDateTime() throws IOException {
+        AxdrOctetString value = new AxdrOctetString();
+        value.decode(new ByteArrayInputStream(this.encodedDateTime));
+        return value.getValue();
+    }
+
+    @Benchmark
+    public int writeUnsigned32() throws IOException {
+        this.writer.buffer().clear();
+        this.unsigned32.encode(this.writer);
+        return this.writer.buffer().position();
+    }
+
+    @Benchmark
+    public int writeUnboundedInteger() throws IOException {
+        this.writer.buffer().clear();
+        this.unboundedInteger.encode(this.writer);
+        return this.writer.buffer().position();
+    }
+
+    @Benchmark
+    public int writeDateTime() throws IOException {
+        this.writer.buffer().clear();
+        this.dateTime.encode(this.writer);
+        return this.writer.buffer().position();
+    }
+
+    @Benchmark
+    public long readUnsigned32() throws IOException {
+        this.reader.reset(ByteBuffer.wrap(this.encodedUnsigned32));
+        this.decodedUnsigned32.decode(this.reader);
+        return this.decodedUnsigned32.getValue();
+    }
+
+    @Benchmark
+    public long readUnboundedInteger() throws IOException {
+        this.reader.reset(ByteBuffer.wrap(this.encodedUnboundedInteger));
+        return this.reader.readInteger();
+    }
+
+    private static byte[] encoded(AxdrType value) throws IOException {
+        BerByteArrayOutputStream os = new BerByteArrayOutputStream(64, true);
+        value.encode(os);
+        return os.getArray();
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.openmuc.jdlms.internal.asn1.axdr.types;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.BenchmarkPayloads;
+import org.openmuc.jdlms.internal.DataConverter;
+import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Encoding, decoding and conversion of large A-XDR arrays, as the buffer of a load profile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AxdrSequenceOfBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int numberOfRows;
+
+    private Data array;
+    private byte[] encodedArray;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.array = DataConverter.convertDataObjectToData(BenchmarkPayloads.loadProfile(this.numberOfRows));
+        this.encodedArray = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        int length = this.array.encode(new NullOutputStream());
+        BerByteArrayOutputStream os = new BerByteArrayOutputStream(length);
+        this.array.encode(os);
+        return os.buffer;
+    }
+
+    @Benchmark
+    public Data decode() throws IOException {
+        Data data = new Data();
+        data.decode(new ByteArrayInputStream(this.encodedArray));
+        return data;
+    }
+
+    @Benchmark
+    public DataObject convertDataToDataObject() {
+        return DataConverter.convertDataToDataObject(this.array);
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.openmuc.jdlms.internal.asn1.cosem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrEnum;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
+
+/**
+ * Round trips of GET, SET and ACTION services as seen on the wire: the client encodes the request, the server
+ * decodes it, the server encodes the response and the client decodes it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CosemPduBenchmark {
+
+    private final BerByteArrayOutputStream os = new BerByteArrayOutputStream(256);
+
+    private COSEMpdu getRequest;
+    private COSEMpdu getResponse;
+    private COSEMpdu setRequest;
+    private COSEMpdu setResponse;
+    private COSEMpdu actionRequest;
+    private COSEMpdu actionResponse;
+
+    @Setup
+    public void setUp() {
+        Invoke_Id_And_Priority id = new Invoke_Id_And_Priority(new byte[] { (byte) 0xC1 });
+
+        Cosem_Attribute_Descriptor register = new Cosem_Attribute_Descriptor(new Unsigned16(3),
+                new Cosem_Object_Instance_Id(new byte[] { 1, 0, 1, 8, 0, (byte) 255 }), new Integer8(2));
+        this.getRequest = new COSEMpdu();
+        GET_Request getRequest = new GET_Request();
+        getRequest.setget_request_normal(new Get_Request_Normal(id, register, null));
+        this.getRequest.setget_request(getRequest);
+
+        Data value = new Data();
+        value.setdouble_long_unsigned(new Unsigned32(12345678L));
+        Get_Data_Result result = new Get_Data_Result();
+        result.setdata(value);
+        this.getResponse = new COSEMpdu();
+        GET_Response getResponse = new GET_Response();
+        getResponse.setget_response_normal(new Get_Response_Normal(id, result));
+        this.getResponse.setget_response(getResponse);
+
+        Cosem_Attribute_Descriptor clockTime = new Cosem_Attribute_Descriptor(new Unsigned16(8),
+                new Cosem_Object_Instance_Id(new byte[] { 0, 0, 1, 0, 0, (byte) 255 }), new Integer8(2));
+        Data time = new Data();
+        time.setoctet_string(new AxdrOctetString(new CosemDateTime(2017, 3, 1, 12, 15, 0, 0).encode()));
+        this.setRequest = new COSEMpdu();
+        SET_Request setRequest = new SET_Request();
+        setRequest.setset_request_normal(new Set_Request_Normal(id, clockTime, null, time));
+        this.setRequest.setset_request(setRequest);
+
+        this.setResponse = new COSEMpdu();
+        SET_Response setResponse = new SET_Response();
+        setResponse.setset_response_normal(new Set_Response_Normal(id, new AxdrEnum(0)));
+        this.setResponse.setset_response(setResponse);
+
+        Cosem_Method_Descriptor disconnect = new Cosem_Method_Descriptor(new Unsigned16(70),
+                new Cosem_Object_Instance_Id(new byte[] { 0, 0, 96, 3, 10, (byte) 255 }), new Integer8(1));
+        Data parameter = new Data();
+        parameter.setinteger(new Integer8(0));
+        this.actionRequest = new COSEMpdu();
+        ACTION_Request actionRequest = new ACTION_Request();
+        actionRequest.setaction_request_normal(new Action_Request_Normal(id, disconnect, parameter));
+        this.actionRequest.setaction_request(actionRequest);
+
+        this.actionResponse = new COSEMpdu();
+        ACTION_Response actionResponse = new ACTION_Response();
+        actionResponse.setaction_response_normal(
+                new Action_Response_Normal(id, new Action_Response_With_Optional_Data(new AxdrEnum(0), null)));
+        this.actionResponse.setaction_response(actionResponse);
+    }
+
+    @Benchmark
+    public COSEMpdu getRoundTrip() throws IOException {
+        return roundTrip(this.getRequest, this.getResponse);
+    }
+
+    @Benchmark
+    public COSEMpdu setRoundTrip() throws IOException {
+        return roundTrip(this.setRequest, this.setResponse);
+    }
+
+    @Benchmark
+    public COSEMpdu actionRoundTrip() throws IOException {
+        return roundTrip(this.actionRequest, this.actionResponse);
+    }
+
+    private COSEMpdu roundTrip(COSEMpdu request, COSEMpdu response) throws IOException {
+        transfer(request);
+        return transfer(response);
+    }
+
+    private COSEMpdu transfer(COSEMpdu pdu) throws IOException {
+        this.os.reset();
+        int length = pdu.encode(this.os);
+
+        COSEMpdu decodedPdu = new COSEMpdu();
+        decodedPdu.decode(new ByteArrayInputStream(this.os.buffer, this.os.index + 1, length));
+        return decodedPdu;
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.openmuc.jdlms.internal.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmuc.jdlms.SecuritySuite;
+import org.openmuc.jdlms.internal.BenchmarkPayloads;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
+
+/**
+ * Authenticated encryption and decryption of xDLMS APDUs, from a short request up to a full block of a load
+ * profile.
+ * <p>
+ * Append <code>-jvmArgsAppend -Dorg.openmuc.jdlms.gcm.jce=true</code> to measure the JCE implementation.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GcmModuleBenchmark {
+
+    private static final byte GLO_GET_RESPONSE = (byte) 204;
+
+    @Param({ "16", "1024", "65536" })
+    private int plaintextLength;
+
+    private SecuritySuite securitySuite;
+    private byte[] plaintext;
+    private byte[] cipheredApdu;
+    private int frameCounter;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.securitySuite = BenchmarkPayloads.cipheringSecuritySuite();
+
+        this.plaintext = new byte[this.plaintextLength];
+        for (int i = 0; i < this.plaintext.length; i++) {
+            this.plaintext[i] = (byte) i;
+        }
+
+        // decrypt expects the APDU without the tag and the length
+        byte[] apdu = processPlain();
+        int headerLength = 1 + new AxdrLength().decode(new ByteArrayInputStream(apdu, 1, apdu.length - 1));
+        this.cipheredApdu = Arrays.copyOfRange(apdu, headerLength, apdu.length);
+    }
+
+    @Benchmark
+    public byte[] processPlain() throws IOException {
+        return GcmModule.processPlain(this.plaintext, 0, this.plaintext.length, BenchmarkPayloads.SYSTEM_TITLE,
+                ++this.frameCounter, this.securitySuite, GLO_GET_RESPONSE);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws IOException {
+        return GcmModule.decrypt(this.cipheredApdu, BenchmarkPayloads.SYSTEM_TITLE, this.securitySuite);
+    }
+
+}
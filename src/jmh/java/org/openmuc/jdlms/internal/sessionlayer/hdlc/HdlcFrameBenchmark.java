@@ -0,0 +1,63 @@
+package org.openmuc.jdlms.internal.sessionlayer.hdlc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of HDLC information frames including the FCS, with the default and a large negotiated
+ * information field length.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HdlcFrameBenchmark {
+
+    @Param({ "128", "1024" })
+    private int informationFieldLength;
+
+    private HdlcFrame frame;
+    private byte[] encodedFrame;
+
+    @Setup
+    public void setUp() {
+        HdlcAddressPair addressPair = new HdlcAddressPair(new HdlcAddress(0x10), new HdlcAddress(1, 0x11));
+        byte[] information = new byte[this.informationFieldLength];
+        for (int i = 0; i < information.length; i++) {
+            information[i] = (byte) (i * 31);
+        }
+        this.frame = HdlcFrame.newInformationFrame(addressPair, 3, 5, information, true, false);
+        this.encodedFrame = this.frame.encodeWithoutFlags();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return this.frame.encodeWithoutFlags();
+    }
+
+    @Benchmark
+    public HdlcFrame decode() throws FrameInvalidException {
+        return HdlcFrame.decode(this.encodedFrame);
+    }
+
+    @Benchmark
+    public byte[] fcs() {
+        FcsCalc fcsCalc = new FcsCalc();
+        fcsCalc.update(this.encodedFrame);
+        return fcsCalc.fcsValueInBytes();
+    }
+
+}
@@ -8,10 +8,17 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
 
 public class Cosem_Method_Descriptor implements AxdrType {
 
+    /**
+     * The descriptor consists of fixed length fields only: class_id, instance_id and method_id.
+     */
+    private static final int CODE_LENGTH = 2 + Cosem_Object_Instance_Id.length + 1;
+
     public byte[] code = null;
     public Unsigned16 class_id = null;
 
@@ -44,13 +51,10 @@ public class Cosem_Method_Descriptor implements AxdrType {
             }
         }
         else {
-            codeLength = 0;
-            codeLength += method_id.encode(axdrOStream);
-
-            codeLength += instance_id.encode(axdrOStream);
-
-            codeLength += class_id.encode(axdrOStream);
-
+            byte[] encoded = new byte[CODE_LENGTH];
+            encode(new AxdrWriter(encoded));
+            axdrOStream.write(encoded);
+            codeLength = CODE_LENGTH;
         }
 
         return codeLength;
@@ -59,18 +63,48 @@ public class Cosem_Method_Descriptor implements AxdrType {
 
     @Override
     public int decode(InputStream iStream) throws IOException {
-        int codeLength = 0;
+        byte[] encoded = new byte[CODE_LENGTH];
+        if (iStream.read(encoded, 0, CODE_LENGTH) < CODE_LENGTH) {
+            throw new IOException("Error Decoding Cosem_Method_Descriptor");
+        }
 
-        class_id = new Unsigned16();
-        codeLength += class_id.decode(iStream);
+        class_id = null;
+        instance_id = null;
+        method_id = null;
+        decode(new AxdrReader(encoded));
 
-        instance_id = new Cosem_Object_Instance_Id();
-        codeLength += instance_id.decode(iStream);
+        return CODE_LENGTH;
+    }
 
-        method_id = new Integer8();
-        codeLength += method_id.decode(iStream);
+    /**
+     * Decodes the descriptor from the reader, reusing the field objects of a previous decode.
+     */
+    public void decode(AxdrReader reader) throws IOException {
+        if (class_id == null) {
+            class_id = new Unsigned16();
+        }
+        class_id.decode(reader);
 
-        return codeLength;
+        if (instance_id == null) {
+            instance_id = new Cosem_Object_Instance_Id();
+        }
+        instance_id.decode(reader);
+
+        if (method_id == null) {
+            method_id = new Integer8();
+        }
+        method_id.decode(reader);
+    }
+
+    public void encode(AxdrWriter writer) throws IOException {
+        if (code != null) {
+            writer.writeBytes(code, 0, code.length);
+        }
+        else {
+            class_id.encode(writer);
+            instance_id.encode(writer);
+            method_id.encode(writer);
+        }
     }
 
     public void encodeAndSave(int encodingSizeGuess) throws IOException {
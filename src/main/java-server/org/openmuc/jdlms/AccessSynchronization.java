@@ -0,0 +1,23 @@
+package org.openmuc.jdlms;
+
+/**
+ * Defines how concurrent xDLMS GET/SET/ACTION services of different associations are synchronized when accessing a
+ * {@link CosemInterfaceObject}.
+ * 
+ * @see CosemInterfaceObject#getAccessSynchronization()
+ */
+public enum AccessSynchronization {
+    /**
+     * The attributes and methods are accessed concurrently, the COSEM object has to be thread safe.
+     */
+    NONE,
+    /**
+     * Only one attribute or method of the COSEM object is accessed at a time.
+     */
+    PER_OBJECT,
+    /**
+     * Every attribute and every method is accessed by only one association at a time, but different attributes and
+     * methods are accessed concurrently.
+     */
+    PER_MEMBER
+}
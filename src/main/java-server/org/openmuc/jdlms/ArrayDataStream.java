@@ -0,0 +1,35 @@
+package org.openmuc.jdlms;
+
+import java.io.Closeable;
+
+import org.openmuc.jdlms.datatypes.DataObject;
+
+/**
+ * The value of an array attribute, which is provided element by element while it is transferred to the client.
+ * 
+ * <p>
+ * The elements are requested on demand, as the client requests the next data block. The stream is closed when the
+ * transfer is completed or aborted.
+ * </p>
+ * 
+ * @see StreamingAttributeProvider
+ */
+public interface ArrayDataStream extends Closeable {
+
+    /**
+     * Get the number of elements of the array.
+     * 
+     * @return the number of elements.
+     */
+    int size();
+
+    /**
+     * Get the next element of the array. This is called exactly {@link #size()} times.
+     * 
+     * @return the next element.
+     * @throws IllegalAttributeAccessException
+     *             if the element is not available. The transfer is aborted with the access result code of the
+     *             exception.
+     */
+    DataObject nextElement() throws IllegalAttributeAccessException;
+}
@@ -75,4 +75,21 @@ public abstract class CosemInterfaceObject {
         return instanceId;
     }
 
+    /**
+     * Get the synchronization of concurrent accesses to this COSEM object. The server evaluates this once, when it is
+     * built.
+     * 
+     * <p>
+     * The default is {@link AccessSynchronization#PER_OBJECT}, the attributes and methods of the object are accessed
+     * by one association at a time. Override this method to return {@link AccessSynchronization#NONE} if the COSEM
+     * object is thread safe, or {@link AccessSynchronization#PER_MEMBER} if only its members are independent of each
+     * other.
+     * </p>
+     * 
+     * @return the access synchronization.
+     */
+    public AccessSynchronization getAccessSynchronization() {
+        return AccessSynchronization.PER_OBJECT;
+    }
+
 }
@@ -6,6 +6,7 @@ import org.openmuc.jdlms.internal.DataDirectory;
 import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayerFactories;
 import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayerFactory;
 import org.openmuc.jdlms.internal.settings.TcpServerSettings;
+import org.openmuc.jdlms.internal.transportlayer.ServerNioTcpLayer;
 import org.openmuc.jdlms.internal.transportlayer.ServerTcpLayer;
 import org.openmuc.jdlms.internal.transportlayer.ServerTransportLayer;
 
@@ -67,10 +68,18 @@ public class DlmsServer implements AutoCloseable {
 
         private int port;
         private ServerSessionLayerFactory sessionLayerFactory;
+        private boolean nonBlocking;
+        private int eventLoops;
+        private int workerThreads;
 
         private TcpServerBuilder(int port) {
             this.port = port;
             this.sessionLayerFactory = ServerSessionLayerFactories.newWrapperSessionLayerFactory();
+
+            int processors = Runtime.getRuntime().availableProcessors();
+            this.nonBlocking = false;
+            this.eventLoops = Math.min(processors, 4);
+            this.workerThreads = 4 * processors;
         }
 
         /**
@@ -101,14 +110,93 @@ public class DlmsServer implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Serve all clients from a few selector threads instead of dedicating a thread to every connected client.
+         * 
+         * <p>
+         * Requests are processed by a fixed number of worker threads, see {@link #setWorkerThreads(int)}. A connected
+         * client only occupies a worker while one of its requests is processed.
+         * </p>
+         * 
+         * <p>
+         * Segmented messages and block transfers are continued with the next PDU of the client, the worker is released
+         * in between. A worker waits at most the response timeout for a slow client, 30 seconds if no response timeout
+         * is set.
+         * </p>
+         * 
+         * <p>
+         * The default value is false.
+         * </p>
+         * 
+         * @param nonBlocking
+         *            <code>true</code> to use non-blocking I/O.
+         * @return the current builder instance.
+         */
+        public TcpServerBuilder setNonBlocking(boolean nonBlocking) {
+            this.nonBlocking = nonBlocking;
+            return this;
+        }
+
+        /**
+         * Set the number of selector threads reading from the connected clients. Only applies to a non-blocking
+         * server.
+         * 
+         * <p>
+         * The default value is the number of available processors, but at most 4.
+         * </p>
+         * 
+         * @param eventLoops
+         *            the number of selector threads.
+         * @return the current builder instance.
+         * @throws IllegalArgumentException
+         *             if the <code>eventLoops &lt; 1</code>.
+         */
+        public TcpServerBuilder setEventLoops(int eventLoops) {
+            if (eventLoops < 1) {
+                throw new IllegalArgumentException("at least one event loop is required");
+            }
+            this.eventLoops = eventLoops;
+            return this;
+        }
+
+        /**
+         * Set the number of threads processing client requests concurrently. Only applies to a non-blocking server.
+         * 
+         * <p>
+         * The default value is four times the number of available processors.
+         * </p>
+         * 
+         * @param workerThreads
+         *            the number of worker threads.
+         * @return the current builder instance.
+         * @throws IllegalArgumentException
+         *             if the <code>workerThreads &lt; 1</code>.
+         */
+        public TcpServerBuilder setWorkerThreads(int workerThreads) {
+            if (workerThreads < 1) {
+                throw new IllegalArgumentException("at least one worker thread is required");
+            }
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
         @Override
         public DlmsServer build() throws IOException {
             final DataDirectory dataDirectory = parseLogicalDevices();
 
             final TcpServerSettings settings = new TcpServerSettings(this.port);
             setPropertiesTo(settings);
-
-            ServerTcpLayer serverLayer = new ServerTcpLayer(settings, dataDirectory, sessionLayerFactory);
+            settings.nonBlocking = this.nonBlocking;
+            settings.eventLoops = this.eventLoops;
+            settings.workerThreads = this.workerThreads;
+
+            ServerTransportLayer serverLayer;
+            if (settings.nonBlocking) {
+                serverLayer = new ServerNioTcpLayer(settings, dataDirectory, sessionLayerFactory);
+            }
+            else {
+                serverLayer = new ServerTcpLayer(settings, dataDirectory, sessionLayerFactory);
+            }
             return newServer(serverLayer);
         }
 
@@ -19,6 +19,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ThreadFactory;
 
 import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
 import org.openmuc.jdlms.datatypes.DataObject;
@@ -32,6 +33,7 @@ import org.openmuc.jdlms.internal.DataDirectory.Attribute;
 import org.openmuc.jdlms.internal.DataDirectory.CosemClassInstance;
 import org.openmuc.jdlms.internal.DataDirectory.CosemLogicalDevice;
 import org.openmuc.jdlms.internal.MethodAccessor;
+import org.openmuc.jdlms.internal.ThreadFactories;
 import org.openmuc.jdlms.internal.settings.ServerSettings;
 import org.openmuc.jdlms.internal.systemclasses.AssociationLnClass;
 import org.openmuc.jdlms.internal.systemclasses.AssociationSnClass;
@@ -63,6 +65,10 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
 
     private ReferencingMethod referencingMethod;
 
+    private ThreadFactory threadFactory;
+
+    private FrameCounterTracker frameCounterTracker;
+
     public ServerBuilder() {
         this.logicalDevices = new LinkedList<>();
 
@@ -72,6 +78,7 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
         this.connectionListener = null;
 
         this.referencingMethod = ReferencingMethod.LOGICAL;
+        this.threadFactory = null;
     }
 
     /**
@@ -217,12 +224,68 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
         return self();
     }
 
+    /**
+     * Set the factory creating the threads, which serve the connected clients.
+     * 
+     * <p>
+     * By default the clients are served by platform threads.
+     * </p>
+     * 
+     * @param threadFactory
+     *            the thread factory or <code>null</code> to use the default.
+     * @return the self reference of the connection builder.
+     * 
+     * @see #useVirtualThreads()
+     */
+    public T setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        return self();
+    }
+
+    /**
+     * Serve the connected clients from virtual threads. A virtual thread waiting for the next request of its client
+     * doesn't occupy a platform thread.
+     * 
+     * <p>
+     * Virtual threads require Java 21. On older runtimes the default platform threads are used.
+     * </p>
+     * 
+     * @return the self reference of the connection builder.
+     * 
+     * @see #setThreadFactory(ThreadFactory)
+     */
+    public T useVirtualThreads() {
+        this.threadFactory = ThreadFactories.newVirtualThreadFactory();
+        return self();
+    }
+
+    /**
+     * Set the tracker of the invocation counters of ciphered APDUs.
+     * 
+     * <p>
+     * By default every association tracks the counters on its own: the counters of the sent APDUs start at {@code 1}
+     * and replayed APDUs of the client are only detected within the association. Set a tracker with a
+     * {@link FrameCounterStore} to never reuse a counter and to detect replays across associations and restarts. The
+     * counters are tracked per system title and encryption key, they start over once a key has been changed.
+     * </p>
+     * 
+     * @param frameCounterTracker
+     *            the tracker or <code>null</code> to use the default.
+     * @return the self reference of the connection builder.
+     */
+    public T setFrameCounterTracker(FrameCounterTracker frameCounterTracker) {
+        this.frameCounterTracker = frameCounterTracker;
+        return self();
+    }
+
     protected void setPropertiesTo(ServerSettings settings) {
         settings.inactivityTimeout = this.inactivityTimeout;
         settings.responseTimeout = this.responseTimeout;
         settings.maxClients = this.maxClients;
         settings.connectionListener = this.connectionListener;
         settings.referencingMethod = this.referencingMethod;
+        settings.threadFactory = this.threadFactory;
+        settings.frameCounterTracker = this.frameCounterTracker;
     }
 
     protected DataDirectory parseLogicalDevices() {
@@ -0,0 +1,36 @@
+package org.openmuc.jdlms;
+
+/**
+ * Implemented by a {@link CosemInterfaceObject} which provides large array attributes, e.g. the buffer of a profile
+ * generic, as stream.
+ * 
+ * <p>
+ * A streamed attribute is encoded block by block, when the client requests the next data block. This way the server
+ * needs to hold only one data block of the attribute per client. The attribute still needs to be declared with
+ * {@link CosemAttribute}, the access restrictions are checked before the stream is requested.
+ * </p>
+ * 
+ * <p>
+ * Note: the {@link DlmsInterceptor} of the object is not invoked for streamed attributes and the elements of the
+ * stream are requested without synchronization.
+ * </p>
+ */
+public interface StreamingAttributeProvider {
+
+    /**
+     * Get the value of an attribute as stream.
+     * 
+     * @param attributeId
+     *            the ID of the requested attribute.
+     * @param selectiveAccessDescription
+     *            the selective access description or <code>null</code> if not used.
+     * @param connectionId
+     *            the ID of the connection of the requesting client.
+     * @return the value of the attribute or <code>null</code> if the attribute is not streamed. In this case the
+     *         attribute is accessed as usual.
+     * @throws IllegalAttributeAccessException
+     *             if the attribute can't be accessed.
+     */
+    ArrayDataStream streamAttribute(int attributeId, SelectiveAccessDescription selectiveAccessDescription,
+            Long connectionId) throws IllegalAttributeAccessException;
+}
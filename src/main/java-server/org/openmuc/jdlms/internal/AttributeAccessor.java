@@ -3,8 +3,8 @@ package org.openmuc.jdlms.internal;
 import static org.openmuc.jdlms.internal.AttributeInvokationCtx.saveIntercept;
 import static org.openmuc.jdlms.internal.AttributeInvokationCtx.toAttributeDesctiptor;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Set;
 
@@ -58,10 +58,14 @@ public interface AttributeAccessor {
     static class FieldAccessor implements AttributeAccessor {
 
         private final Field field;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
         private final CosemAttribute cosemAttribute;
 
         public FieldAccessor(Field field, CosemAttribute cosemAttribute) {
             this.field = field;
+            this.getter = MemberHandles.getterFor(field);
+            this.setter = MemberHandles.setterFor(field);
             this.cosemAttribute = cosemAttribute;
         }
 
@@ -99,8 +103,8 @@ public interface AttributeAccessor {
 
         private DataObject saveGet(CosemInterfaceObject instance) throws IllegalAttributeAccessException {
             try {
-                return (DataObject) this.field.get(instance);
-            } catch (IllegalAccessException e) {
+                return (DataObject) this.getter.invokeExact(instance);
+            } catch (Throwable e) {
                 throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
             }
         }
@@ -136,8 +140,8 @@ public interface AttributeAccessor {
 
         private void saveSet(DataObject newVal, CosemInterfaceObject instance) throws IllegalAttributeAccessException {
             try {
-                this.field.set(instance, newVal);
-            } catch (IllegalAccessException e) {
+                this.setter.invokeExact(instance, newVal);
+            } catch (Throwable e) {
                 throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
             }
         }
@@ -201,13 +205,36 @@ public interface AttributeAccessor {
 
     public static class MethodAttributeAccessor implements AttributeAccessor {
 
+        private static final Class<?>[] GET_SIGNATURE = { SelectiveAccessDescription.class, Long.class };
+        private static final Class<?>[] SET_SIGNATURE = { DataObject.class, SelectiveAccessDescription.class,
+                Long.class };
+
         private final Method getMethod;
         private final Method setMethod;
         private final Set<Integer> accessSelectors;
         private final boolean containsGetId;
         private final boolean containsSetId;
+        private final int numOfGetParams;
+        private final int numOfSetParams;
         private final CosemAttribute cosemAttribute;
 
+        /**
+         * (CosemInterfaceObject, SelectiveAccessDescription, Long)DataObject
+         */
+        private final MethodHandle getHandle;
+        /**
+         * (CosemInterfaceObject, DataObject, SelectiveAccessDescription, Long)void
+         */
+        private final MethodHandle setHandle;
+        /**
+         * (CosemInterfaceObject, Object[])DataObject
+         */
+        private final MethodHandle getSpreader;
+        /**
+         * (CosemInterfaceObject, Object[])void
+         */
+        private final MethodHandle setSpreader;
+
         public MethodAttributeAccessor(Method getMethod, Method setMethod, CosemAttribute cosemAttribute,
                 Set<Integer> accessSelectors) {
             this.getMethod = getMethod;
@@ -219,6 +246,46 @@ public interface AttributeAccessor {
 
             this.containsGetId = methodHasConnectionIdParam(getMethod);
             this.containsSetId = methodHasConnectionIdParam(setMethod);
+
+            if (getMethod != null) {
+                this.numOfGetParams = getMethod.getParameterTypes().length;
+                int[] positions = parameterPositions(0, this.numOfGetParams, this.containsGetId);
+                this.getHandle = MemberHandles.normalizedHandleFor(getMethod, DataObject.class, GET_SIGNATURE,
+                        positions);
+                this.getSpreader = MemberHandles.spreaderFor(getMethod, DataObject.class);
+            }
+            else {
+                this.numOfGetParams = 0;
+                this.getHandle = null;
+                this.getSpreader = null;
+            }
+
+            if (setMethod != null) {
+                this.numOfSetParams = setMethod.getParameterTypes().length;
+                int[] positions = parameterPositions(1, this.numOfSetParams, this.containsSetId);
+                this.setHandle = MemberHandles.normalizedHandleFor(setMethod, void.class, SET_SIGNATURE, positions);
+                this.setSpreader = MemberHandles.spreaderFor(setMethod, void.class);
+            }
+            else {
+                this.numOfSetParams = 0;
+                this.setHandle = null;
+                this.setSpreader = null;
+            }
+        }
+
+        /*
+         * The leading parameters are mapped in order, starting at the selective access description. A trailing
+         * connection ID parameter is mapped to the last position.
+         */
+        private static int[] parameterPositions(int numOfFixedParams, int numOfParams, boolean containsId) {
+            int[] positions = new int[numOfParams];
+            for (int i = 0; i < numOfParams; i++) {
+                positions[i] = i;
+            }
+            if (containsId) {
+                positions[numOfParams - 1] = numOfFixedParams + 1;
+            }
+            return positions;
         }
 
         private boolean methodHasConnectionIdParam(Method method) {
@@ -240,12 +307,12 @@ public interface AttributeAccessor {
         @Override
         public DataObject get(CosemClassInstance classInstance, SelectiveAccessDescription selectiveAccessDescription,
                 Long connectionId, SecurityPolicy securityPolicy) throws IllegalAttributeAccessException {
-            Object[] parameter = buildGetParameter(selectiveAccessDescription, connectionId);
             CosemInterfaceObject instance = classInstance.getInstance();
             DataObject result;
 
             DlmsInterceptor interceptor = instance.getInterceptor();
             if (interceptor != null) {
+                Object[] parameter = buildGetParameter(selectiveAccessDescription, connectionId);
                 CosemResourceDescriptor address = toAttributeDesctiptor(classInstance, this.cosemAttribute, instance);
                 DlmsInvocationContext ctx = new AttributeInvokationCtx(securityPolicy, XDlmsServiceType.GET, address,
                         instance, this.getMethod, this.cosemAttribute.type(), parameter) {
@@ -257,7 +324,8 @@ public interface AttributeAccessor {
                 result = saveIntercept(interceptor, ctx);
             }
             else {
-                result = saveGet(parameter, instance);
+                checkSelectiveAccess(selectiveAccessDescription);
+                result = saveGet(instance, selectiveAccessDescription, connectionId);
             }
 
             if (result == null) {
@@ -270,18 +338,25 @@ public interface AttributeAccessor {
         private DataObject saveGet(Object[] parameter, CosemInterfaceObject instance)
                 throws IllegalAttributeAccessException {
             try {
-                return (DataObject) this.getMethod.invoke(instance, parameter);
+                return (DataObject) this.getSpreader.invokeExact(instance, parameter);
+            } catch (Throwable e) {
+                throw convert(e);
+            }
+        }
 
-            } catch (IllegalAccessException e) {
-                throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
-            } catch (InvocationTargetException e) {
+        private DataObject saveGet(CosemInterfaceObject instance,
+                SelectiveAccessDescription selectiveAccessDescription, Long connectionId)
+                throws IllegalAttributeAccessException {
+            try {
+                return (DataObject) this.getHandle.invokeExact(instance, selectiveAccessDescription, connectionId);
+            } catch (Throwable e) {
                 throw convert(e);
             }
         }
 
         private Object[] buildGetParameter(SelectiveAccessDescription selectiveAccessDescription, Long connectionId)
                 throws IllegalAttributeAccessException {
-            Object[] parameter = new Object[this.getMethod.getParameterTypes().length];
+            Object[] parameter = new Object[this.numOfGetParams];
             setSelectiveAcccessDescription(selectiveAccessDescription, parameter, 0);
 
             if (this.containsGetId) {
@@ -299,12 +374,11 @@ public interface AttributeAccessor {
         public void set(DataObject newVal, CosemClassInstance classInstance,
                 SelectiveAccessDescription selectiveAccessDescription, Long connectionId, SecurityPolicy securityPolicy)
                 throws IllegalAttributeAccessException {
-            Object[] parameter = buildSetParameter(newVal, selectiveAccessDescription, connectionId);
-
             CosemInterfaceObject instance = classInstance.getInstance();
 
             DlmsInterceptor interceptor = instance.getInterceptor();
             if (interceptor != null) {
+                Object[] parameter = buildSetParameter(newVal, selectiveAccessDescription, connectionId);
                 DlmsInvocationContext ctx = new AttributeInvokationCtx(securityPolicy, XDlmsServiceType.SET, null,
                         instance, this.setMethod, this.cosemAttribute.type(), parameter) {
 
@@ -317,24 +391,33 @@ public interface AttributeAccessor {
                 saveIntercept(interceptor, ctx);
             }
             else {
-                saveSet(instance, parameter);
+                checkSelectiveAccess(selectiveAccessDescription);
+                saveSet(instance, newVal, selectiveAccessDescription, connectionId);
             }
 
         }
 
         private void saveSet(CosemInterfaceObject instance, Object[] parameter) throws IllegalAttributeAccessException {
             try {
-                this.setMethod.invoke(instance, parameter);
-            } catch (IllegalAccessException e) {
-                throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
-            } catch (InvocationTargetException e) {
+                this.setSpreader.invokeExact(instance, parameter);
+            } catch (Throwable e) {
+                throw convert(e);
+            }
+        }
+
+        private void saveSet(CosemInterfaceObject instance, DataObject newVal,
+                SelectiveAccessDescription selectiveAccessDescription, Long connectionId)
+                throws IllegalAttributeAccessException {
+            try {
+                this.setHandle.invokeExact(instance, newVal, selectiveAccessDescription, connectionId);
+            } catch (Throwable e) {
                 throw convert(e);
             }
         }
 
         private Object[] buildSetParameter(DataObject newVal, SelectiveAccessDescription selectiveAccessDescription,
                 Long connectionId) throws IllegalAttributeAccessException {
-            Object[] parameter = new Object[this.setMethod.getParameterTypes().length];
+            Object[] parameter = new Object[this.numOfSetParams];
 
             parameter[0] = newVal;
             setSelectiveAcccessDescription(selectiveAccessDescription, parameter, 1);
@@ -348,18 +431,21 @@ public interface AttributeAccessor {
                 Object[] parameter, int indexOfAccess) throws IllegalAttributeAccessException {
 
             if (selectiveAccessDescription != null) {
-                if (this.accessSelectors.isEmpty()) {
-                    // TODO set correct reason.
-                    throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
-                }
+                checkSelectiveAccess(selectiveAccessDescription);
 
                 parameter[indexOfAccess] = selectiveAccessDescription;
             }
         }
 
-        private IllegalAttributeAccessException convert(InvocationTargetException e)
+        private void checkSelectiveAccess(SelectiveAccessDescription selectiveAccessDescription)
                 throws IllegalAttributeAccessException {
-            Throwable targetException = e.getTargetException();
+            if (selectiveAccessDescription != null && this.accessSelectors.isEmpty()) {
+                // TODO set correct reason.
+                throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
+            }
+        }
+
+        private IllegalAttributeAccessException convert(Throwable targetException) {
             if (!(targetException instanceof IllegalAttributeAccessException)) {
                 return new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
             }
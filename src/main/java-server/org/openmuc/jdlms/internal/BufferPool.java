@@ -0,0 +1,98 @@
+package org.openmuc.jdlms.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of byte arrays shared by all associations of the server.
+ *
+ * <p>
+ * The arrays are grouped in size classes of powers of two. Every size class retains at most
+ * {@link #MAX_RETAINED_BYTES_PER_CLASS} bytes, arrays beyond that limit are left to the garbage collector.
+ * </p>
+ */
+public class BufferPool {
+
+    private static final int MIN_SIZE_CLASS = 8;
+    private static final int MAX_SIZE_CLASS = 24;
+    private static final int MAX_RETAINED_BYTES_PER_CLASS = 1 << 24;
+
+    private static final BufferPool SHARED = new BufferPool();
+
+    private final List<Queue<byte[]>> buffers;
+    private final AtomicInteger[] numBuffers;
+
+    public BufferPool() {
+        int numClasses = MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1;
+        this.buffers = new ArrayList<>(numClasses);
+        this.numBuffers = new AtomicInteger[numClasses];
+
+        for (int i = 0; i < numClasses; i++) {
+            this.buffers.add(new ConcurrentLinkedQueue<byte[]>());
+            this.numBuffers[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @return the pool shared by all associations.
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Takes an array from the pool.
+     *
+     * @param minLength
+     *            the minimum length of the array.
+     * @return an array with a length of at least <code>minLength</code>, with arbitrary content.
+     */
+    public byte[] acquire(int minLength) {
+        int sizeClass = sizeClassOf(minLength);
+        if (sizeClass > MAX_SIZE_CLASS) {
+            return new byte[minLength];
+        }
+
+        int index = sizeClass - MIN_SIZE_CLASS;
+        byte[] buffer = this.buffers.get(index).poll();
+        if (buffer == null) {
+            return new byte[1 << sizeClass];
+        }
+
+        this.numBuffers[index].decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns an array to the pool. The array must not be used afterwards.
+     *
+     * @param buffer
+     *            an array taken by {@link #acquire(int)}.
+     */
+    public void release(byte[] buffer) {
+        int sizeClass = sizeClassOf(buffer.length);
+        if (sizeClass > MAX_SIZE_CLASS || buffer.length != 1 << sizeClass) {
+            return;
+        }
+
+        int index = sizeClass - MIN_SIZE_CLASS;
+        int maxBuffers = MAX_RETAINED_BYTES_PER_CLASS >> sizeClass;
+        if (this.numBuffers[index].incrementAndGet() > maxBuffers) {
+            this.numBuffers[index].decrementAndGet();
+            return;
+        }
+
+        this.buffers.get(index).add(buffer);
+    }
+
+    private static int sizeClassOf(int length) {
+        if (length <= 1 << MIN_SIZE_CLASS) {
+            return MIN_SIZE_CLASS;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+}
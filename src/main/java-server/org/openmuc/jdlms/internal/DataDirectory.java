@@ -11,8 +11,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openmuc.jdlms.AccessResultCode;
+import org.openmuc.jdlms.AccessSynchronization;
+import org.openmuc.jdlms.ArrayDataStream;
 import org.openmuc.jdlms.AttributeAddress;
 import org.openmuc.jdlms.AuthenticationMechanism;
 import org.openmuc.jdlms.CosemAttribute;
@@ -29,9 +32,19 @@ import org.openmuc.jdlms.ObisCode;
 import org.openmuc.jdlms.SecuritySuite;
 import org.openmuc.jdlms.SecuritySuite.SecurityPolicy;
 import org.openmuc.jdlms.SetParameter;
+import org.openmuc.jdlms.StreamingAttributeProvider;
 import org.openmuc.jdlms.datatypes.DataObject;
 import org.openmuc.jdlms.datatypes.DataObject.Type;
 
+/**
+ * Directory of the logical devices and COSEM objects of a server.
+ * 
+ * <p>
+ * The logical devices and class instances are registered while the server is built and are not modified afterwards,
+ * so they are looked up without locking. Accesses to the COSEM objects are synchronized as declared by
+ * {@link CosemInterfaceObject#getAccessSynchronization()}.
+ * </p>
+ */
 public class DataDirectory {
 
     private final Map<Integer, CosemLogicalDevice> logicalDeviceMap;
@@ -40,10 +53,10 @@ public class DataDirectory {
 
     public DataDirectory() {
         this.logicalDeviceMap = new HashMap<>();
-        this.connectionsData = new HashMap<>();
+        this.connectionsData = new ConcurrentHashMap<>();
     }
 
-    public synchronized DataObject invokeMethod(int logicalDeviceId, MethodParameter params, Long connectionId)
+    public DataObject invokeMethod(int logicalDeviceId, MethodParameter params, Long connectionId)
             throws IllegalMethodAccessException {
         CosemClassInstance dlmsClassInstance = retrieveDlmsClassInstance(logicalDeviceId, params);
 
@@ -65,7 +78,14 @@ public class DataDirectory {
             throw new IllegalMethodAccessException(MethodResultCode.READ_WRITE_DENIED);
         }
 
-        return method.invoke(dlmsClassInstance, params.getParameter(), connectionId, securityPolicy);
+        Object lock = dlmsClassInstance.lockFor(method);
+        if (lock == null) {
+            return method.invoke(dlmsClassInstance, params.getParameter(), connectionId, securityPolicy);
+        }
+
+        synchronized (lock) {
+            return method.invoke(dlmsClassInstance, params.getParameter(), connectionId, securityPolicy);
+        }
     }
 
     private MethodAccessor findMethod(long methodId, CosemClassInstance dlmsClassInstance)
@@ -88,7 +108,7 @@ public class DataDirectory {
         return this.logicalDeviceMap.put(logicalDeviceId, logicalDevice);
     }
 
-    public synchronized AccessResultCode set(int logicalDeviceId, SetParameter setParameter, Long connectionId) {
+    public AccessResultCode set(int logicalDeviceId, SetParameter setParameter, Long connectionId) {
         Attribute entry;
         CosemClassInstance dlmsClassInstance;
         AttributeAddress attributeAddress = setParameter.getAttributeAddress();
@@ -113,9 +133,19 @@ public class DataDirectory {
         }
 
         ServerConnectionData connectionData = getConnectionData(connectionId);
+        SecurityPolicy securityPolicy = connectionData.securitySuite.getSecurityPolicy();
+        Object lock = dlmsClassInstance.lockFor(entry);
         try {
-            entry.accessor.set(data, dlmsClassInstance, attributeAddress.getAccessSelection(), connectionId,
-                    connectionData.securitySuite.getSecurityPolicy());
+            if (lock == null) {
+                entry.accessor.set(data, dlmsClassInstance, attributeAddress.getAccessSelection(), connectionId,
+                        securityPolicy);
+            }
+            else {
+                synchronized (lock) {
+                    entry.accessor.set(data, dlmsClassInstance, attributeAddress.getAccessSelection(), connectionId,
+                            securityPolicy);
+                }
+            }
         } catch (IllegalAttributeAccessException e) {
             return e.getAccessResultCode();
         }
@@ -163,7 +193,7 @@ public class DataDirectory {
         }
     }
 
-    public synchronized DataObject get(int logicalDeviceId, AttributeAddress attributeAddress, Long connectionId)
+    public DataObject get(int logicalDeviceId, AttributeAddress attributeAddress, Long connectionId)
             throws IllegalAttributeAccessException {
         CosemClassInstance dlmsClassInstance = retrieveDlmsClassInstance(logicalDeviceId, attributeAddress);
 
@@ -177,8 +207,47 @@ public class DataDirectory {
         CosemAttribute attributeProperties = entry.attributeProperties;
         checkGetAccess(attributeProperties, connectionData);
 
-        return entry.accessor.get(dlmsClassInstance, attributeAddress.getAccessSelection(), connectionId,
-                connectionData.securitySuite.getSecurityPolicy());
+        SecurityPolicy securityPolicy = connectionData.securitySuite.getSecurityPolicy();
+        Object lock = dlmsClassInstance.lockFor(entry);
+        if (lock == null) {
+            return entry.accessor.get(dlmsClassInstance, attributeAddress.getAccessSelection(), connectionId,
+                    securityPolicy);
+        }
+
+        synchronized (lock) {
+            return entry.accessor.get(dlmsClassInstance, attributeAddress.getAccessSelection(), connectionId,
+                    securityPolicy);
+        }
+    }
+
+    /**
+     * Requests the value of an attribute as stream, if the COSEM object is a {@link StreamingAttributeProvider}.
+     * 
+     * @return the stream or <code>null</code> if the attribute is not streamed, it has to be accessed using
+     *         {@link #get(int, AttributeAddress, Long)} then.
+     */
+    public ArrayDataStream stream(int logicalDeviceId, AttributeAddress attributeAddress, Long connectionId)
+            throws IllegalAttributeAccessException {
+        CosemClassInstance dlmsClassInstance = retrieveDlmsClassInstance(logicalDeviceId, attributeAddress);
+
+        if (dlmsClassInstance == null || !(dlmsClassInstance.getInstance() instanceof StreamingAttributeProvider)) {
+            return null;
+        }
+
+        Attribute entry = retrieveAttribute(dlmsClassInstance, attributeAddress.getId());
+        checkGetAccess(entry.attributeProperties, this.connectionsData.get(connectionId));
+
+        StreamingAttributeProvider provider = (StreamingAttributeProvider) dlmsClassInstance.getInstance();
+        Object lock = dlmsClassInstance.lockFor(entry);
+        if (lock == null) {
+            return provider.streamAttribute(attributeAddress.getId(), attributeAddress.getAccessSelection(),
+                    connectionId);
+        }
+
+        synchronized (lock) {
+            return provider.streamAttribute(attributeAddress.getId(), attributeAddress.getAccessSelection(),
+                    connectionId);
+        }
     }
 
     private void checkGetAccess(CosemAttribute attributeProperties, ServerConnectionData connectionData)
@@ -242,6 +311,7 @@ public class DataDirectory {
 
         private final CosemInterfaceObject instance;
         private final CosemClass cosemClass;
+        private final AccessSynchronization accessSynchronization;
 
         public CosemClassInstance(CosemClass cosemClass, CosemInterfaceObject instance) {
             this.attributesMap = new HashMap<>();
@@ -249,6 +319,21 @@ public class DataDirectory {
 
             this.instance = instance;
             this.cosemClass = cosemClass;
+
+            AccessSynchronization synchronization = instance.getAccessSynchronization();
+            this.accessSynchronization = synchronization == null ? AccessSynchronization.PER_OBJECT : synchronization;
+        }
+
+        private Object lockFor(Object member) {
+            switch (this.accessSynchronization) {
+            case PER_OBJECT:
+                return this.instance;
+            case PER_MEMBER:
+                return member;
+            case NONE:
+            default:
+                return null;
+            }
         }
 
         public CosemClass getCosemClass() {
@@ -0,0 +1,107 @@
+package org.openmuc.jdlms.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+
+import org.openmuc.jdlms.CosemInterfaceObject;
+import org.openmuc.jdlms.IllegalPametrizationError;
+import org.openmuc.jdlms.datatypes.DataObject;
+
+/**
+ * Creates the method handles used by the attribute and method accessors. The handles are created once while the server
+ * is built, so that a xDLMS service is a direct call of the COSEM object member.
+ */
+class MemberHandles {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * @return a handle of type <code>(CosemInterfaceObject)DataObject</code>.
+     */
+    public static MethodHandle getterFor(Field field) {
+        try {
+            field.setAccessible(true);
+            return LOOKUP.unreflectGetter(field)
+                    .asType(MethodType.methodType(DataObject.class, CosemInterfaceObject.class));
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalPametrizationError(inaccessibleMessage(field.getName(), field.getDeclaringClass()));
+        }
+    }
+
+    /**
+     * @return a handle of type <code>(CosemInterfaceObject, DataObject)void</code>.
+     */
+    public static MethodHandle setterFor(Field field) {
+        try {
+            field.setAccessible(true);
+            return LOOKUP.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, CosemInterfaceObject.class, DataObject.class));
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalPametrizationError(inaccessibleMessage(field.getName(), field.getDeclaringClass()));
+        }
+    }
+
+    /**
+     * Creates a handle with the normalized signature <code>(CosemInterfaceObject, signature...)returnType</code>.
+     * Arguments of the normalized signature which are not taken by the method are dropped.
+     * 
+     * @param method
+     *            the method to invoke.
+     * @param returnType
+     *            the return type of the handle.
+     * @param signature
+     *            the normalized parameter types.
+     * @param positions
+     *            the index in the normalized signature of each parameter of the method.
+     * @return the normalized method handle.
+     */
+    public static MethodHandle normalizedHandleFor(Method method, Class<?> returnType, Class<?>[] signature,
+            int... positions) {
+        Class<?>[] methodSignature = new Class<?>[positions.length];
+        int[] reorder = new int[positions.length + 1];
+        for (int i = 0; i < positions.length; i++) {
+            methodSignature[i] = signature[positions[i]];
+            reorder[i + 1] = positions[i] + 1;
+        }
+
+        MethodHandle handle = unreflect(method)
+                .asType(MethodType.methodType(returnType, CosemInterfaceObject.class, methodSignature));
+
+        MethodType normalizedType = MethodType.methodType(returnType, CosemInterfaceObject.class, signature);
+        return MethodHandles.permuteArguments(handle, normalizedType, reorder);
+    }
+
+    /**
+     * @return a handle of type <code>(CosemInterfaceObject, Object[])returnType</code>, spreading the array over the
+     *         parameters of the method.
+     */
+    public static MethodHandle spreaderFor(Method method, Class<?> returnType) {
+        int numOfParams = method.getParameterTypes().length;
+        return unreflect(method)
+                .asType(MethodType.genericMethodType(numOfParams + 1)
+                        .changeParameterType(0, CosemInterfaceObject.class)
+                        .changeReturnType(returnType))
+                .asSpreader(Object[].class, numOfParams);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalPametrizationError(inaccessibleMessage(method.getName(), method.getDeclaringClass()));
+        }
+    }
+
+    private static String inaccessibleMessage(String memberName, Class<?> klass) {
+        return MessageFormat.format("{0} in class {1} is not accessible.", memberName, klass.getName());
+    }
+
+    private MemberHandles() {
+    }
+
+}
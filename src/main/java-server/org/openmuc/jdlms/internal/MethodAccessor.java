@@ -1,6 +1,6 @@
 package org.openmuc.jdlms.internal;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 
@@ -20,18 +20,40 @@ import org.openmuc.jdlms.internal.DataDirectory.CosemClassInstance;
 
 public class MethodAccessor {
 
+    private static final Class<?>[] SIGNATURE = { DataObject.class, Long.class };
+
     private final Method method;
     private final CosemMethod cosemMethod;
     private final Type parameterType;
     private final Type returnType;
     private final int numOfParams;
 
+    /**
+     * (CosemInterfaceObject, DataObject, Long)DataObject
+     */
+    private final MethodHandle handle;
+    /**
+     * (CosemInterfaceObject, Object[])DataObject
+     */
+    private final MethodHandle spreader;
+
     public MethodAccessor(Method method, CosemMethod cosemMethod, Type parameterType, Type returnType) {
         this.method = method;
         this.cosemMethod = cosemMethod;
         this.parameterType = parameterType;
         this.returnType = returnType;
         this.numOfParams = this.method.getParameterTypes().length;
+
+        this.handle = MemberHandles.normalizedHandleFor(method, DataObject.class, SIGNATURE, parameterPositions());
+        this.spreader = MemberHandles.spreaderFor(method, DataObject.class);
+    }
+
+    private int[] parameterPositions() {
+        if (this.parameterType == null) {
+            // the method takes no argument, but maybe the connection ID
+            return this.numOfParams == 1 ? new int[] { 1 } : new int[0];
+        }
+        return this.numOfParams == 2 ? new int[] { 0, 1 } : new int[] { 0 };
     }
 
     public CosemMethod getCosemMethod() {
@@ -41,17 +63,17 @@ public class MethodAccessor {
     public DataObject invoke(final CosemClassInstance dlmsClassInstance, DataObject argument, Long connectionId,
             final SecurityPolicy securityPolicy) throws IllegalMethodAccessException {
 
-        final Object[] parameters = buildMethodArguments(argument, connectionId);
-
         CosemInterfaceObject instance = dlmsClassInstance.getInstance();
         DlmsInterceptor interceptor = instance.getInterceptor();
 
         DataObject result;
         if (interceptor != null) {
+            final Object[] parameters = buildMethodArguments(argument, connectionId);
             result = invokeInterceptor(dlmsClassInstance, securityPolicy, parameters, instance, interceptor);
         }
         else {
-            result = saveInvoke(instance, parameters);
+            checkArgument(argument);
+            result = saveInvoke(instance, argument, connectionId);
         }
 
         if (result == null && this.returnType != null) {
@@ -95,37 +117,57 @@ public class MethodAccessor {
     private DataObject saveInvoke(final CosemInterfaceObject instance, final Object[] methodArguments)
             throws IllegalMethodAccessException {
         try {
-            return (DataObject) this.method.invoke(instance, methodArguments);
-        } catch (IllegalAccessException | IllegalArgumentException e) {
-            throw new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
-        } catch (InvocationTargetException e) {
-            if (!(e.getTargetException() instanceof IllegalMethodAccessException)) {
-                throw new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
-            }
-            throw (IllegalMethodAccessException) e.getTargetException();
+            return (DataObject) this.spreader.invokeExact(instance, methodArguments);
+        } catch (Throwable e) {
+            throw convert(e);
+        }
+    }
+
+    private DataObject saveInvoke(CosemInterfaceObject instance, DataObject argument, Long connectionId)
+            throws IllegalMethodAccessException {
+        try {
+            return (DataObject) this.handle.invokeExact(instance, argument, connectionId);
+        } catch (Throwable e) {
+            throw convert(e);
         }
     }
 
+    private static IllegalMethodAccessException convert(Throwable e) {
+        if (!(e instanceof IllegalMethodAccessException)) {
+            return new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
+        }
+        return (IllegalMethodAccessException) e;
+    }
+
     private Object[] buildMethodArguments(DataObject argument, Long connectionId) throws IllegalMethodAccessException {
+        checkArgument(argument);
+
         Object[] methodArguments = new Object[numOfParams];
 
-        if ((argument == null || argument.isNull()) && this.parameterType == null) {
+        if (this.parameterType == null) {
             if (this.numOfParams == 1) {
                 methodArguments[0] = connectionId;
             }
         }
-        else if (argument != null
-                && (argument.getType() == this.parameterType || this.parameterType == Type.DONT_CARE)) {
+        else {
             methodArguments[0] = argument;
 
             if (this.numOfParams == 2) {
                 methodArguments[1] = connectionId;
             }
         }
-        else {
+        return methodArguments;
+    }
+
+    private void checkArgument(DataObject argument) throws IllegalMethodAccessException {
+        if ((argument == null || argument.isNull()) && this.parameterType == null) {
+            return;
+        }
+
+        if (argument == null
+                || argument.getType() != this.parameterType && this.parameterType != Type.DONT_CARE) {
             throw new IllegalMethodAccessException(MethodResultCode.TYPE_UNMATCHED);
         }
-        return methodArguments;
     }
 
     private abstract class MethodInvocationCtx extends AbstarctInvocationCtx {
@@ -1,5 +1,6 @@
 package org.openmuc.jdlms.internal;
 
+import org.openmuc.jdlms.FrameCounterTracker;
 import org.openmuc.jdlms.SecuritySuite;
 import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayer;
 
@@ -7,7 +8,7 @@ import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayer;
  * DTO -- Data Transfer Object
  */
 public class ServerConnectionData {
-    public byte[] processedServerToClientChallenge;
+    public byte[] serverToClientChallenge;
 
     public byte[] clientToServerChallenge;
 
@@ -15,7 +16,7 @@ public class ServerConnectionData {
 
     public byte[] clientSystemTitle;
 
-    public int frameCounter;
+    public final FrameCounterTracker frameCounterTracker;
 
     public boolean authenticated;
 
@@ -27,11 +28,12 @@ public class ServerConnectionData {
 
     public final Long connectionId;
 
-    public ServerConnectionData(ServerSessionLayer sessionLayer, Long connectionId) {
+    public ServerConnectionData(ServerSessionLayer sessionLayer, Long connectionId,
+            FrameCounterTracker frameCounterTracker) {
         this.sessionLayer = sessionLayer;
         this.connectionId = connectionId;
         this.authenticated = false;
-        this.frameCounter = 1;
+        this.frameCounterTracker = frameCounterTracker != null ? frameCounterTracker : new FrameCounterTracker();
         this.securitySuite = SecuritySuite.builder().build();
     }
 
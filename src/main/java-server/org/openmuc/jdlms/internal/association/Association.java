@@ -42,13 +42,16 @@ public class Association implements Runnable {
     protected final ServerConnectionData connectionData;
     protected final AssociationMessenger associationMessenger;
 
+    private Map<COSEMpdu.Choices, RequestProcessor> requestProcessors;
+    private boolean sessionInitialized;
+
     public Association(DataDirectory directory, ServerSessionLayer sessionLayer, Long connectionId,
             ServerSettings settings, ServerConnectionInformationImpl serverConnectionInformation) {
         this.settings = settings;
         this.directory = directory;
         this.serverConnectionInformation = serverConnectionInformation;
 
-        this.connectionData = new ServerConnectionData(sessionLayer, connectionId);
+        this.connectionData = new ServerConnectionData(sessionLayer, connectionId, settings.frameCounterTracker);
 
         this.directory.addConnection(connectionId, this.connectionData);
 
@@ -57,8 +60,29 @@ public class Association implements Runnable {
 
     @Override
     public final void run() {
+        while (processNextMessage()) {
+            // serve the client until the association is closed
+        }
+    }
+
+    /**
+     * Processes the next message of the client. The first calls establish the session and the association, every
+     * further call serves one request. Only waits for data the client has started to send. If a message has not been
+     * received completely, the call returns and the message is processed by the next call. Requests served in
+     * several exchanges, like block transfers, keep their state in the request processors between the calls.
+     * 
+     * @return <code>false</code> if the association has been closed.
+     */
+    public final boolean processNextMessage() {
+        boolean open = false;
         try {
-            startAssociation();
+            if (this.requestProcessors == null) {
+                startAssociation();
+                open = true;
+            }
+            else {
+                open = processNextRequest();
+            }
         } catch (GenericAssociationException e) {
             try {
                 associationMessenger.encodeAndSend(e.getErrorMessageApdu());
@@ -72,22 +96,42 @@ public class Association implements Runnable {
         } catch (IOException e) {
             // ignore??
         } finally {
-            this.directory.removeConnection(this.connectionData.connectionId);
-            try {
-                sessionLayer().close();
-            } catch (IOException e1) {
-                // ignore
+            if (!open) {
+                closeAssociation();
+            }
+        }
+
+        return open;
+    }
+
+    private void closeAssociation() {
+        if (this.requestProcessors != null) {
+            for (RequestProcessor requestProcessor : this.requestProcessors.values()) {
+                requestProcessor.close();
             }
+        }
 
-            notifyListener(Status.CLOSED);
+        this.directory.removeConnection(this.connectionData.connectionId);
+        try {
+            sessionLayer().close();
+        } catch (IOException e1) {
+            // ignore
         }
 
+        notifyListener(Status.CLOSED);
     }
 
     private void startAssociation() throws IOException {
-        connectionData.sessionLayer.initialize();
+        if (!this.sessionInitialized) {
+            connectionData.sessionLayer.initialize();
+            this.sessionInitialized = true;
+            return;
+        }
 
         byte[] payload = connectionData.sessionLayer.readNextMessage();
+        if (payload == null) {
+            return;
+        }
 
         notifyListener(Status.OPEN);
 
@@ -105,35 +149,39 @@ public class Association implements Runnable {
 
         this.associationMessenger.encodeAndSend(aarqAPdu);
 
-        Map<COSEMpdu.Choices, RequestProcessor> requestProcessors = setUpRequestProcessors(requestProcessorData,
+        this.requestProcessors = setUpRequestProcessors(requestProcessorData,
                 initialmessageProcessor.getContextId().getReferencingMethod());
+    }
 
-        while (true) {
-            APdu apdu = associationMessenger.readNextApdu();
-            ACSEApdu acseApdu = apdu.getAcseAPdu();
-            COSEMpdu cosemPdu = apdu.getCosemPdu();
-            if (acseApdu != null && acseApdu.getRlrq() != null) {
-                sendDisconnectMessage(acseApdu.getRlrq());
-                return;
-            }
+    private boolean processNextRequest() throws IOException {
+        APdu apdu = associationMessenger.readNextApdu();
+        if (apdu == null) {
+            return true;
+        }
+        ACSEApdu acseApdu = apdu.getAcseAPdu();
+        COSEMpdu cosemPdu = apdu.getCosemPdu();
+        if (acseApdu != null && acseApdu.getRlrq() != null) {
+            sendDisconnectMessage(acseApdu.getRlrq());
+            return false;
+        }
 
-            if (!connectionData.authenticated && cosemPdu.getChoiceIndex() != COSEMpdu.Choices.ACTION_REQUEST) {
-                throw new AssociationException(StateError.SERVICE_NOT_ALLOWED, ServiceError.OPERATION_NOT_POSSIBLE);
-            }
+        if (!connectionData.authenticated && cosemPdu.getChoiceIndex() != COSEMpdu.Choices.ACTION_REQUEST) {
+            throw new AssociationException(StateError.SERVICE_NOT_ALLOWED, ServiceError.OPERATION_NOT_POSSIBLE);
+        }
 
-            RequestProcessor requestProcessor = requestProcessors.get(cosemPdu.getChoiceIndex());
-            if (requestProcessor != null) {
-                requestProcessor.processRequest(cosemPdu);
-            }
-            else {
-                // TODO handle other requests..
-            }
+        RequestProcessor requestProcessor = this.requestProcessors.get(cosemPdu.getChoiceIndex());
+        if (requestProcessor != null) {
+            requestProcessor.processRequest(cosemPdu);
+        }
+        else {
+            // TODO handle other requests..
+        }
 
-            if (!connectionData.authenticated) {
-                // TODO
+        if (!connectionData.authenticated) {
+            // TODO
 
-            }
         }
+        return true;
     }
 
     protected Map<COSEMpdu.Choices, RequestProcessor> setUpRequestProcessors(RequestProcessorData requestProcessorData,
@@ -8,71 +8,268 @@ import java.util.Arrays;
 import org.openmuc.jdlms.SecuritySuite;
 import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
 import org.openmuc.jdlms.internal.APdu;
+import org.openmuc.jdlms.internal.BufferPool;
 import org.openmuc.jdlms.internal.DataDirectory;
 import org.openmuc.jdlms.internal.ServerConnectionData;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
 import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.security.GcmModule;
+import org.openmuc.jdlms.internal.security.ReplayedApduException;
+import org.openmuc.jdlms.sessionlayer.WrapperHeader;
 
 public class AssociationMessenger {
 
     private final ServerConnectionData connectionData;
     private final DataDirectory directory;
 
+    /**
+     * Free bytes in front of the encoded APDU, so the session layer can add its header without copying.
+     */
+    private static final int HEADER_SPACE = WrapperHeader.HEADER_LENGTH;
+
+    /**
+     * Tags and length fields of the user information, which embeds the xDLMS APDU into the ACSE APDU.
+     */
+    private static final int MAX_USER_INFORMATION_OVERHEAD = 10;
+
+    private final BufferPool bufferPool;
+
+    /**
+     * Copy of the security suite of the client, taken when a request is received. A key changed while serving the
+     * request only applies to the following requests.
+     */
     private SecuritySuite securitySuite;
+    private SecuritySuite copiedSecuritySuite;
+    private byte[] copiedEncryptionKey;
+    private byte[] copiedAuthenticationKey;
 
-    private final byte[] buffer = new byte[0xFFFFF * 5];
+    private byte[] buffer;
+    private int length;
 
     public AssociationMessenger(ServerConnectionData connectionData, DataDirectory directory) {
         this.connectionData = connectionData;
         this.directory = directory;
+        this.bufferPool = BufferPool.shared();
     }
 
-    public void encodeAndSend(APdu aPdu) throws IOException {
-        send(encode(aPdu));
+    public synchronized void encodeAndSend(APdu aPdu) throws IOException {
+        encodeIntoBuffer(aPdu);
+        try {
+            sendBuffer();
+        } finally {
+            releaseBuffer();
+        }
+    }
+
+    /**
+     * Encodes the APDU and sends it, unless it exceeds the max receive PDU size of the client.
+     * 
+     * @param aPdu
+     *            the APDU to send.
+     * @return <code>false</code> if the APDU is too large and has not been sent.
+     * @throws IOException
+     *             if the APDU could not be encoded or sent.
+     */
+    public synchronized boolean encodeAndSendIfFits(APdu aPdu) throws IOException {
+        int maxMessageLength = getMaxMessageLength();
+        if (aPdu.getAcseAPdu() != null) {
+            if (aPduSizeOf(aPdu) > maxMessageLength) {
+                return false;
+            }
+            encodeAndSend(aPdu);
+            return true;
+        }
+
+        int plainLength = encodePlainIntoBuffer(aPdu, maxMessageLength);
+        if (plainLength < 0) {
+            // too large even without ciphering, neither measured nor a frame counter spent
+            return false;
+        }
+
+        try {
+            if (cipheredLengthOf(plainLength) > maxMessageLength) {
+                return false;
+            }
+            this.length = encodeCiphered(aPdu, plainLength);
+            sendBuffer();
+            return true;
+        } finally {
+            releaseBuffer();
+        }
     }
 
     public void send(byte[] data) throws IOException {
         connectionData.sessionLayer.send(data);
     }
 
+    /**
+     * Reads the next APDU of the client.
+     * 
+     * @return the APDU or <code>null</code> if the received data doesn't complete an APDU yet.
+     * @throws IOException
+     *             if the APDU could not be read or decoded.
+     */
     public APdu readNextApdu() throws IOException {
+        while (true) {
+            try {
+                return decodeNextApdu();
+            } catch (ReplayedApduException e) {
+                // discard the replayed APDU and wait for the next message of the client
+            }
+        }
+    }
+
+    private APdu decodeNextApdu() throws IOException {
         byte[] bytes = connectionData.sessionLayer.readNextMessage();
-        APdu apdu = APdu.decode(bytes, null);
+        if (bytes == null) {
+            return null;
+        }
 
         SecuritySuite sec = connectionData.securitySuite;
         if (sec.getEncryptionMechanism() == EncryptionMechanism.NONE) {
-            return apdu;
+            return APdu.decode(bytes, null);
         }
 
-        if (apdu.getCosemPdu() != null && !apdu.isEncrypted()) {
-            // TODO erro
+        // the tag tells if the APDU has to be deciphered, so it is only decoded once
+        if (!APdu.isCipheredApdu(bytes) && !APdu.isAcseApdu(bytes)) {
+            throw new IOException("Received an unciphered xDLMS APDU, but the security suite requires ciphering.");
         }
         if (connectionData.clientSystemTitle == null) {
             connectionData.clientSystemTitle = systemTitle();
         }
 
-        this.securitySuite = newSecuritySuiteFrom(sec);
+        copySecuritySuite(sec);
 
-        return APdu.decode(bytes, connectionData.clientSystemTitle, connectionData.frameCounter, sec, null);
+        return APdu.decode(bytes, connectionData.clientSystemTitle, connectionData.frameCounterTracker,
+                this.securitySuite, null);
     }
 
-    public synchronized byte[] encode(APdu aPdu) throws IOException {
-        int length;
+    private void copySecuritySuite(SecuritySuite sec) {
+        // changed keys are replaced, not overwritten
+        if (this.copiedSecuritySuite == sec && this.copiedEncryptionKey == sec.getGlobalUnicastEncryptionKey()
+                && this.copiedAuthenticationKey == sec.getAuthenticationKey()) {
+            return;
+        }
 
-        SecuritySuite sec = connectionData.securitySuite;
-        if (sec.getEncryptionMechanism() != EncryptionMechanism.NONE) {
+        this.copiedSecuritySuite = sec;
+        this.copiedEncryptionKey = sec.getGlobalUnicastEncryptionKey();
+        this.copiedAuthenticationKey = sec.getAuthenticationKey();
+        this.securitySuite = newSecuritySuiteFrom(sec);
+    }
+
+    public synchronized byte[] encode(APdu aPdu) throws IOException {
+        encodeIntoBuffer(aPdu);
+        try {
+            return Arrays.copyOfRange(this.buffer, this.buffer.length - this.length, this.buffer.length);
+        } finally {
+            releaseBuffer();
+        }
+    }
 
-            if (this.securitySuite == null) {
-                this.securitySuite = newSecuritySuiteFrom(sec);
+    /**
+     * Encodes the APDU into a buffer of the pool, which is large enough for the plain APDU and the ciphering, so it is
+     * encoded and ciphered exactly once. The buffer is sized for the max receive PDU size of the client, only an APDU
+     * exceeding it is measured and encoded again.
+     */
+    private void encodeIntoBuffer(APdu aPdu) throws IOException {
+        int plainLength = -1;
+        if (aPdu.getAcseAPdu() == null) {
+            plainLength = encodePlainIntoBuffer(aPdu, getMaxMessageLength());
+        }
+        if (plainLength < 0) {
+            // the ACSE APDUs of the association establishment and release are always measured
+            plainLength = encodePlainIntoBuffer(aPdu, aPduSizeOf(aPdu));
+            if (plainLength < 0) {
+                throw new IOException("The encoded APDU exceeds its measured size.");
             }
+        }
 
-            length = aPdu.encode(buffer, connectionData.frameCounter++, systemTitle(), this.securitySuite, null);
+        try {
+            this.length = encodeCiphered(aPdu, plainLength);
+        } catch (IOException e) {
+            releaseBuffer();
+            throw e;
         }
-        else {
-            length = aPdu.encode(buffer, null);
+    }
+
+    /**
+     * Acquires a buffer for an APDU of up to maxApduLength bytes and encodes the APDU into it without ciphering.
+     * 
+     * @return the length of the plain APDU, or <code>-1</code> if it exceeds maxApduLength. The buffer has been
+     *         released in this case.
+     */
+    private int encodePlainIntoBuffer(APdu aPdu, int maxApduLength) throws IOException {
+        this.buffer = this.bufferPool.acquire(bufferLengthFor(maxApduLength));
+
+        int plainLength;
+        try {
+            plainLength = isCiphered() ? aPdu.encodePlainCosemPdu(this.buffer) : aPdu.encode(this.buffer, null);
+        } catch (IndexOutOfBoundsException e) {
+            // the encoding stream has reached the start of the buffer
+            plainLength = -1;
+        } catch (IOException e) {
+            releaseBuffer();
+            throw e;
+        }
+
+        if (plainLength < 0 || plainLength > maxApduLength) {
+            releaseBuffer();
+            return -1;
+        }
+        return plainLength;
+    }
+
+    /**
+     * Ciphers the plain xDLMS APDU encoded by {@link #encodePlainIntoBuffer(APdu, int)}. The frame counter is only
+     * reserved now, that the APDU has been encoded successfully.
+     */
+    private int encodeCiphered(APdu aPdu, int plainLength) throws IOException {
+        if (!isCiphered()) {
+            return plainLength;
+        }
+
+        if (this.securitySuite == null) {
+            copySecuritySuite(connectionData.securitySuite);
+        }
+
+        int frameCounter = connectionData.frameCounterTracker.nextFrameCounter(systemTitle(), this.securitySuite);
+        return aPdu.encodeCiphered(this.buffer, plainLength, frameCounter, systemTitle(), this.securitySuite, null);
+    }
+
+    private int cipheredLengthOf(int plainLength) throws IOException {
+        if (!isCiphered()) {
+            return plainLength;
         }
+        return GcmModule.cipheredLength(plainLength, connectionData.securitySuite);
+    }
+
+    private boolean isCiphered() {
+        return connectionData.securitySuite.getEncryptionMechanism() != EncryptionMechanism.NONE;
+    }
+
+    private void sendBuffer() throws IOException {
+        connectionData.sessionLayer.send(this.buffer, this.buffer.length - this.length, this.length);
+    }
+
+    private void releaseBuffer() {
+        this.bufferPool.release(this.buffer);
+        this.buffer = null;
+    }
 
-        return Arrays.copyOfRange(buffer, buffer.length - length, buffer.length);
+    private static int bufferLengthFor(int apduLength) {
+        return HEADER_SPACE + apduLength + GcmModule.MAX_CIPHERING_OVERHEAD;
+    }
+
+    private static int aPduSizeOf(APdu aPdu) throws IOException {
+        int size = 0;
+        if (aPdu.getCosemPdu() != null) {
+            size += pduSizeOf(aPdu.getCosemPdu());
+        }
+        if (aPdu.getAcseAPdu() != null) {
+            // the ACSE APDU embeds the xDLMS APDU
+            size += aPdu.getAcseAPdu().encode(new NullOutputStream()) + MAX_USER_INFORMATION_OVERHEAD;
+        }
+        return size;
     }
 
     public byte[] systemTitle() {
@@ -20,8 +20,6 @@ import org.openmuc.jdlms.internal.asn1.cosem.InitiateRequest;
 import org.openmuc.jdlms.internal.asn1.iso.acse.AARQApdu;
 import org.openmuc.jdlms.internal.asn1.iso.acse.ACSEApdu;
 import org.openmuc.jdlms.internal.asn1.iso.acse.MechanismName;
-import org.openmuc.jdlms.internal.security.HlsProcessorGmac;
-import org.openmuc.jdlms.internal.security.HlsSecretProcessor;
 import org.openmuc.jdlms.internal.security.RandomSequenceGenerator;
 
 class InitiateMessageProcessor {
@@ -107,8 +105,8 @@ class InitiateMessageProcessor {
         if (sec.getEncryptionMechanism() != EncryptionMechanism.NONE) {
             this.connectionData.clientSystemTitle = systemTitle();
 
-            aPdu = APdu.decode(messageData, this.connectionData.clientSystemTitle, connectionData.frameCounter, sec,
-                    null);
+            aPdu = APdu.decode(messageData, this.connectionData.clientSystemTitle,
+                    this.connectionData.frameCounterTracker, sec, null);
         }
         else {
             aPdu = APdu.decode(messageData, null);
@@ -166,21 +164,15 @@ class InitiateMessageProcessor {
         byte[] clientToServerChallenge = this.connectionData.clientToServerChallenge;
 
         this.connectionData.clientSystemTitle = aarq.getCallingAPTitle().getApTitleForm2().value;
-        byte[] clientSystemTitle = this.connectionData.clientSystemTitle;
 
         int challengeLength = clientToServerChallenge.length;
 
         checkChallangeLength(challengeLength);
 
-        this.connectionData.frameCounter = 1;
-
         byte[] serverToClientChallenge = RandomSequenceGenerator.generate(challengeLength);
 
-        HlsSecretProcessor hlSecretProcessor = new HlsProcessorGmac();
-
-        this.connectionData.processedServerToClientChallenge = hlSecretProcessor.process(serverToClientChallenge,
-                sec.getAuthenticationKey(), sec.getGlobalUnicastEncryptionKey(), clientSystemTitle,
-                ++this.connectionData.frameCounter);
+        // the response of the client is validated with the invocation counter it carries
+        this.connectionData.serverToClientChallenge = serverToClientChallenge;
 
         return new InitiateResponseBuilder(lnConformance()).setContextId(contextId)
                 .setAuthenticationValue(serverToClientChallenge)
@@ -8,6 +8,11 @@ public interface RequestProcessor {
 
     void processRequest(COSEMpdu request) throws IOException;
 
+    /**
+     * Releases the resources held by the processor, when the association is closed.
+     */
+    void close();
+
     static abstract class RequestProcessorBase implements RequestProcessor {
 
         protected final AssociationMessenger associationMessenger;
@@ -23,6 +28,11 @@ public interface RequestProcessor {
             return this.requestProcessorData.connectionData.connectionId;
         }
 
+        @Override
+        public void close() {
+            // nothing to release by default
+        }
+
     }
 
 }
@@ -19,4 +19,9 @@ public abstract class RequestProcessorBase implements RequestProcessor {
         return this.requestProcessorData.connectionData.connectionId;
     }
 
+    @Override
+    public void close() {
+        // nothing to release by default
+    }
+
 }
@@ -48,6 +48,13 @@ public class ActionRequestProcessor extends RequestProcessorBase {
 
     private static final ObisCode ASSOCIATION_LN_INSTANCE_ID = new ObisCode(CURRENT_ASSOCIATION_ID);
 
+    /**
+     * The remaining blocks of the response in transfer, <code>null</code> if there is none.
+     */
+    private MessageFragment messageFragment;
+    private Invoke_Id_And_Priority fragmentsInvokeIdAndPriority;
+    private long blockNumber;
+
     public ActionRequestProcessor(AssociationMessenger associationMessenger,
             RequestProcessorData requestProcessorData) {
         super(associationMessenger, requestProcessorData);
@@ -59,18 +66,30 @@ public class ActionRequestProcessor extends RequestProcessorBase {
 
         switch (actionRequest.getChoiceIndex()) {
         case ACTION_REQUEST_NORMAL:
+            // a new request aborts the block transfer in progress
+            closeBlockTransfer();
             processActionRequestNormal(actionRequest.action_request_normal);
             break;
 
         case ACTION_REQUEST_WITH_LIST:
+            closeBlockTransfer();
             processActionRequestWithList(actionRequest.action_request_with_list);
             break;
 
+        case ACTION_REQUEST_NEXT_PBLOCK:
+            processActionRequestNextPblock(actionRequest.action_request_next_pblock);
+            break;
+
         default:
             throw new IOException("Not yet implemented");
         }
     }
 
+    @Override
+    public void close() {
+        closeBlockTransfer();
+    }
+
     private Action_Response_With_Optional_Data invokeMethod(Cosem_Method_Descriptor methodDescriptor, DataObject param)
             throws AssociationException {
 
@@ -135,52 +154,68 @@ public class ActionRequestProcessor extends RequestProcessorBase {
         sendActionResponseAsFragments(invokeIdAndPriority, rawData);
     }
 
+    /**
+     * Sends the first block of the response. The further blocks are sent, when the client requests them with
+     * {@link ACTION_Request.Choices#ACTION_REQUEST_NEXT_PBLOCK}.
+     */
     private void sendActionResponseAsFragments(Invoke_Id_And_Priority invokeIdAndPriority, byte[] rawData)
             throws IOException {
-        ACTION_Response actionResponse = new ACTION_Response();
-
         final int fragmentSize = (int) this.requestProcessorData.connectionData.clientMaxReceivePduSize - 10;
         MessageFragment messageFragment = new MessageFragment(rawData, fragmentSize);
 
-        long blockNumber = 1;
         boolean lastBlock = false;
-        byte[] octetString = messageFragment.next();
+        sendPblock(invokeIdAndPriority, 1L, lastBlock, messageFragment.next());
 
-        DataBlock_SA pblock = pBlockFrom(blockNumber, lastBlock, octetString);
-        Action_Response_With_Pblock responseWithPblock = new Action_Response_With_Pblock(invokeIdAndPriority, pblock);
-        actionResponse.setaction_response_with_pblock(responseWithPblock);
-        sendActionResponse(actionResponse);
-
-        while (messageFragment.hasNext()) {
-            COSEMpdu cosemPdu = associationMessenger.readNextApdu().getCosemPdu();
-            if (cosemPdu.getChoiceIndex() != COSEMpdu.Choices.ACTION_REQUEST) {
-                // TODO error
-                throw new IOException("wrong request type.");
-            }
-            ACTION_Request actionRequest = cosemPdu.action_request;
+        this.messageFragment = messageFragment;
+        this.fragmentsInvokeIdAndPriority = invokeIdAndPriority;
+        this.blockNumber = 1L;
+    }
 
-            if (actionRequest.getChoiceIndex() != ACTION_Request.Choices.ACTION_REQUEST_NEXT_PBLOCK) {
-                // TODO error
-                throw new IOException("Wrong action type.");
-            }
+    private void processActionRequestNextPblock(Action_Request_Next_Pblock requestNextPblock) throws IOException {
+        if (this.messageFragment == null) {
+            throw new IOException("No block transfer in progress.");
+        }
 
-            Action_Request_Next_Pblock requestNextPblock = actionRequest.action_request_next_pblock;
+        try {
             Invoke_Id_And_Priority invokeIdAndPriorityRpl = requestNextPblock.invoke_id_and_priority;
-            if (PduHelper.invokeIdFrom(invokeIdAndPriorityRpl) != PduHelper.invokeIdFrom(invokeIdAndPriority)) {
+            if (PduHelper.invokeIdFrom(invokeIdAndPriorityRpl) != PduHelper
+                    .invokeIdFrom(this.fragmentsInvokeIdAndPriority)) {
                 throw new IOException("Wrong invoke id");
             }
 
-            if (blockNumber++ != requestNextPblock.block_number.getValue()) {
+            if (this.blockNumber++ != requestNextPblock.block_number.getValue()) {
                 // TODO: error
                 throw new IOException("Wrong pblock confimation.");
             }
+        } catch (IOException e) {
+            closeBlockTransfer();
+            throw e;
+        }
 
-            pblock = pBlockFrom(blockNumber, !messageFragment.hasNext(), messageFragment.next());
-            responseWithPblock = new Action_Response_With_Pblock(invokeIdAndPriority, pblock);
-
-            actionResponse.setaction_response_with_pblock(responseWithPblock);
-            sendActionResponse(actionResponse);
+        Invoke_Id_And_Priority invokeIdAndPriority = this.fragmentsInvokeIdAndPriority;
+        long sentBlockNumber = this.blockNumber;
+        byte[] octetString = this.messageFragment.next();
+        boolean lastBlock = !this.messageFragment.hasNext();
+        if (lastBlock) {
+            closeBlockTransfer();
         }
+
+        sendPblock(invokeIdAndPriority, sentBlockNumber, lastBlock, octetString);
+    }
+
+    private void sendPblock(Invoke_Id_And_Priority invokeIdAndPriority, long blockNumber, boolean lastBlock,
+            byte[] octetString) throws IOException {
+        DataBlock_SA pblock = pBlockFrom(blockNumber, lastBlock, octetString);
+        Action_Response_With_Pblock responseWithPblock = new Action_Response_With_Pblock(invokeIdAndPriority, pblock);
+
+        ACTION_Response actionResponse = new ACTION_Response();
+        actionResponse.setaction_response_with_pblock(responseWithPblock);
+        sendActionResponse(actionResponse);
+    }
+
+    private void closeBlockTransfer() {
+        this.messageFragment = null;
+        this.fragmentsInvokeIdAndPriority = null;
     }
 
     private void processActionRequestWithList(Action_Request_With_List requestWithList) throws IOException {
@@ -0,0 +1,143 @@
+package org.openmuc.jdlms.internal.association.ln;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.openmuc.jdlms.AccessResultCode;
+import org.openmuc.jdlms.ArrayDataStream;
+import org.openmuc.jdlms.IllegalAttributeAccessException;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.EncodedDataList;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Source of the raw data of a GET response, which is transferred in data blocks.
+ */
+interface DataBlockSource extends Closeable {
+
+    /**
+     * Get the next block of raw data.
+     * 
+     * @param maxLength
+     *            the maximum length of the block.
+     * @return the next block.
+     * @throws IllegalAttributeAccessException
+     *             if the data is not available.
+     */
+    byte[] nextBlock(int maxLength) throws IllegalAttributeAccessException;
+
+    /**
+     * @return <code>true</code> if there is data left, after the last block.
+     */
+    boolean hasNext();
+
+    @Override
+    void close();
+
+    /**
+     * Raw data, which has been encoded completely.
+     */
+    static class EncodedDataBlockSource implements DataBlockSource {
+
+        private final byte[] data;
+        private int offset;
+
+        public EncodedDataBlockSource(byte[] data) {
+            this.data = data;
+            this.offset = 0;
+        }
+
+        @Override
+        public byte[] nextBlock(int maxLength) {
+            int length = Math.min(maxLength, this.data.length - this.offset);
+            byte[] block = Arrays.copyOfRange(this.data, this.offset, this.offset + length);
+            this.offset += length;
+            return block;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.offset < this.data.length;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+
+    }
+
+    /**
+     * An array, which is encoded element by element as the blocks are requested.
+     */
+    static class ArrayStreamBlockSource implements DataBlockSource {
+
+        private final ArrayDataStream stream;
+        private int remainingElements;
+
+        private byte[] pending;
+        private int pendingOffset;
+
+        public ArrayStreamBlockSource(ArrayDataStream stream) throws IOException {
+            this.stream = stream;
+            this.remainingElements = stream.size();
+
+            byte[] length = AxdrLength.encodeLength(this.remainingElements);
+            this.pending = new byte[1 + length.length];
+            this.pending[0] = (byte) Data.Choices.ARRAY.getValue();
+            System.arraycopy(length, 0, this.pending, 1, length.length);
+            this.pendingOffset = 0;
+        }
+
+        @Override
+        public byte[] nextBlock(int maxLength) throws IllegalAttributeAccessException {
+            byte[] block = new byte[maxLength];
+            int length = 0;
+
+            while (length < maxLength) {
+                if (this.pendingOffset == this.pending.length) {
+                    if (this.remainingElements == 0) {
+                        break;
+                    }
+                    encodeNextElement();
+                }
+
+                int numBytes = Math.min(maxLength - length, this.pending.length - this.pendingOffset);
+                System.arraycopy(this.pending, this.pendingOffset, block, length, numBytes);
+                this.pendingOffset += numBytes;
+                length += numBytes;
+            }
+
+            return length == maxLength ? block : Arrays.copyOf(block, length);
+        }
+
+        private void encodeNextElement() throws IllegalAttributeAccessException {
+            DataObject element = this.stream.nextElement();
+            if (element == null) {
+                throw new IllegalAttributeAccessException(AccessResultCode.OTHER_REASON);
+            }
+
+            this.pending = EncodedDataList.encode(element);
+            this.pendingOffset = 0;
+            this.remainingElements--;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.pendingOffset < this.pending.length || this.remainingElements > 0;
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.stream.close();
+            } catch (IOException e) {
+                // ignore, the transfer is over anyway
+            }
+        }
+
+    }
+
+}
@@ -2,12 +2,12 @@ package org.openmuc.jdlms.internal.association.ln;
 
 import static org.openmuc.jdlms.internal.DataConverter.convertDataObjectToData;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.List;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.AccessResultCode;
+import org.openmuc.jdlms.ArrayDataStream;
 import org.openmuc.jdlms.AttributeAddress;
 import org.openmuc.jdlms.IllegalAttributeAccessException;
 import org.openmuc.jdlms.ObisCode;
@@ -39,10 +39,11 @@ import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_With_List.SubSeqOf_res
 import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
 import org.openmuc.jdlms.internal.asn1.cosem.Selective_Access_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
-import org.openmuc.jdlms.internal.asn1.iso.acse.ACSEApdu;
 import org.openmuc.jdlms.internal.association.AssociationMessenger;
 import org.openmuc.jdlms.internal.association.RequestProcessorBase;
 import org.openmuc.jdlms.internal.association.RequestProcessorData;
+import org.openmuc.jdlms.internal.association.ln.DataBlockSource.ArrayStreamBlockSource;
+import org.openmuc.jdlms.internal.association.ln.DataBlockSource.EncodedDataBlockSource;
 
 public class GetRequestProcessor extends RequestProcessorBase {
 
@@ -51,43 +52,52 @@ public class GetRequestProcessor extends RequestProcessorBase {
      */
     private static final int OVERHEAD = 35;
 
+    /**
+     * The source of the long get in progress, <code>null</code> if there is none.
+     */
+    private DataBlockSource blockSource;
+    private long blockNumber;
+
     public GetRequestProcessor(AssociationMessenger associationMessenger, RequestProcessorData requestProcessorData) {
         super(associationMessenger, requestProcessorData);
     }
 
     @Override
     public void processRequest(COSEMpdu request) throws IOException {
-        final int clientMaxReceivePduSize = this.associationMessenger.getMaxMessageLength();
-
         GET_Request getRequest = request.get_request;
         GET_Response getResponse;
 
         Invoke_Id_And_Priority invokeIdPrio = null;
 
-        byte[] bytesToSend = null;
         switch (getRequest.getChoiceIndex()) {
         case GET_REQUEST_NORMAL:
+            // a new request aborts the long get in progress
+            closeBlockTransfer();
+
             invokeIdPrio = getRequest.get_request_normal.invoke_id_and_priority;
-            getResponse = processGetRequestNormal(getRequest.get_request_normal, invokeIdPrio);
+            if (streamGetRequestNormal(getRequest.get_request_normal, invokeIdPrio)) {
+                break;
+            }
 
-            bytesToSend = encodeData(getResponse);
+            getResponse = processGetRequestNormal(getRequest.get_request_normal, invokeIdPrio);
 
-            encodeAndSend(clientMaxReceivePduSize, getResponse, invokeIdPrio, bytesToSend,
-                    getResponse.get_response_normal.result.data);
+            encodeAndSend(getResponse, invokeIdPrio, getResponse.get_response_normal.result.data);
             break;
 
         case GET_REQUEST_WITH_LIST:
+            closeBlockTransfer();
+
             invokeIdPrio = getRequest.get_request_with_list.invoke_id_and_priority;
             getResponse = processGetRequestWithList(getRequest.get_request_with_list, invokeIdPrio);
 
-            bytesToSend = encodeData(getResponse);
+            encodeAndSend(getResponse, invokeIdPrio, getResponse.get_response_with_list.result);
+            break;
 
-            encodeAndSend(clientMaxReceivePduSize, getResponse, invokeIdPrio, bytesToSend,
-                    getResponse.get_response_with_list.result);
+        case GET_REQUEST_NEXT:
+            processGetRequestNext(getRequest.get_request_next);
             break;
 
         default:
-        case GET_REQUEST_NEXT:
         case _ERR_NONE_SELECTED:
             // should not occur
             // TODO answer with illegal request response
@@ -96,81 +106,157 @@ public class GetRequestProcessor extends RequestProcessorBase {
 
     }
 
-    private void encodeAndSend(final long clientMaxReceivePduSize, GET_Response getResponse,
-            Invoke_Id_And_Priority invokeIdPrio, byte[] bytesToSend, AxdrType axdrData) throws IOException {
-        if (clientMaxReceivePduSize != 0 && bytesToSend.length > clientMaxReceivePduSize) {
-            sendAsDataBlocks(clientMaxReceivePduSize, getResponse, invokeIdPrio, axdrData, bytesToSend.length);
-        }
-        else {
-            this.associationMessenger.send(bytesToSend);
+    @Override
+    public void close() {
+        closeBlockTransfer();
+    }
+
+    private void encodeAndSend(GET_Response getResponse, Invoke_Id_And_Priority invokeIdPrio, AxdrType axdrData)
+            throws IOException {
+        COSEMpdu coseMpdu = new COSEMpdu();
+        coseMpdu.setget_response(getResponse);
+
+        if (!this.associationMessenger.encodeAndSendIfFits(new APdu(null, coseMpdu))) {
+            int dataSize = AssociationMessenger.pduSizeOf(axdrData);
+            BerByteArrayOutputStream axdrOStream = new BerByteArrayOutputStream(dataSize);
+            axdrData.encode(axdrOStream);
+
+            sendAsDataBlocks(invokeIdPrio, new EncodedDataBlockSource(axdrOStream.getArray()));
         }
     }
 
-    private void sendAsDataBlocks(final long clientMaxReceivePduSize, GET_Response getResponse,
-            Invoke_Id_And_Priority invokeIdPrio, AxdrType data, int size) throws IOException {
-        BerByteArrayOutputStream axdrOStream = new BerByteArrayOutputStream(size);
-        data.encode(axdrOStream);
-        byte[] completeBlock = axdrOStream.getArray();
-        DataInputStream ds = new DataInputStream(new ByteArrayInputStream(completeBlock));
+    /**
+     * Sends the attribute as stream, if it's provided as stream.
+     * 
+     * @return <code>false</code> if the attribute is not streamed.
+     */
+    private boolean streamGetRequestNormal(Get_Request_Normal normalRequest, Invoke_Id_And_Priority invokeIdPrio)
+            throws IOException {
+        DataBlockSource source;
+        byte[] firstBlock;
+        try {
+            AttributeAddress attributeAddress = attributeAddressFor(normalRequest.cosem_attribute_descriptor,
+                    normalRequest.access_selection);
+            ArrayDataStream stream = this.requestProcessorData.directory.stream(logicalDeviceId(), attributeAddress,
+                    connectionId());
 
-        final int blockSize = (int) clientMaxReceivePduSize - OVERHEAD;
-        byte[] block = new byte[blockSize];
-        long blockNumber = 1L;
-        while (true) {
-            if (blockSize > ds.available()) {
-                block = new byte[ds.available()];
+            if (stream == null) {
+                return false;
             }
-            ds.readFully(block);
 
-            boolean lastBlock = ds.available() == 0;
+            source = new ArrayStreamBlockSource(stream);
+            try {
+                firstBlock = source.nextBlock(blockSize());
+            } catch (IllegalAttributeAccessException e) {
+                source.close();
+                throw e;
+            }
+        } catch (IllegalAttributeAccessException e) {
+            Get_Data_Result result = new Get_Data_Result();
+            result.setdata_access_result(new AxdrEnum(e.getAccessResultCode().getCode()));
+            sendGetResponseNormal(invokeIdPrio, result);
+            return true;
+        }
 
-            SubChoice_result result = new SubChoice_result();
-            result.setraw_data(new AxdrOctetString(block));
-            DataBlock_G dataBlockG = new DataBlock_G(new AxdrBoolean(lastBlock), new Unsigned32(blockNumber++), result);
-            Get_Response_With_Datablock gdata = new Get_Response_With_Datablock(invokeIdPrio, dataBlockG);
-            getResponse.setget_response_with_datablock(gdata);
+        if (!source.hasNext()) {
+            // small enough for a single response
+            source.close();
 
-            ACSEApdu acseAPdu = null;
-            COSEMpdu coseMpdu = new COSEMpdu();
-            coseMpdu.setget_response(getResponse);
-            APdu blockApdu = new APdu(acseAPdu, coseMpdu);
+            Get_Data_Result result = new Get_Data_Result();
+            result.setdata(new Data(firstBlock));
+            sendGetResponseNormal(invokeIdPrio, result);
+            return true;
+        }
 
-            this.associationMessenger.encodeAndSend(blockApdu);
+        this.blockSource = source;
+        this.blockNumber = 1L;
 
-            if (lastBlock) {
-                break;
-            }
+        SubChoice_result result = new SubChoice_result();
+        result.setraw_data(new AxdrOctetString(firstBlock));
+        sendBlock(invokeIdPrio, false, this.blockNumber, result);
+        return true;
+    }
 
-            APdu nextApdu = this.associationMessenger.readNextApdu();
+    private void sendGetResponseNormal(Invoke_Id_And_Priority invokeIdPrio, Get_Data_Result result)
+            throws IOException {
+        GET_Response getResponse = new GET_Response();
+        getResponse.setget_response_normal(new Get_Response_Normal(invokeIdPrio, result));
 
-            if (!isGetNext(nextApdu)) {
-                // error
-                System.err.println("Err");
-            }
+        COSEMpdu coseMpdu = new COSEMpdu();
+        coseMpdu.setget_response(getResponse);
+        this.associationMessenger.encodeAndSend(new APdu(null, coseMpdu));
+    }
 
-            Get_Request_Next nextGetRequest = nextApdu.getCosemPdu().get_request.get_request_next;
-            boolean resposneNumEquals = nextGetRequest.block_number.getValue() == blockNumber - 1;
-            if (!resposneNumEquals) {
-                // handle this case
-                System.err.println("Err");
-            }
+    private void sendAsDataBlocks(Invoke_Id_And_Priority invokeIdPrio, DataBlockSource source) throws IOException {
+        this.blockSource = source;
+        this.blockNumber = 1L;
+
+        sendNextBlock(invokeIdPrio);
+    }
+
+    private void processGetRequestNext(Get_Request_Next nextRequest) throws IOException {
+        Invoke_Id_And_Priority invokeIdPrio = nextRequest.invoke_id_and_priority;
+        long receivedBlockNumber = nextRequest.block_number.getValue();
 
-            invokeIdPrio = nextGetRequest.invoke_id_and_priority;
+        if (this.blockSource == null) {
+            sendBlockError(invokeIdPrio, receivedBlockNumber, AccessResultCode.NO_LONG_GET_IN_PROGRESS);
         }
+        else if (receivedBlockNumber != this.blockNumber) {
+            closeBlockTransfer();
+            sendBlockError(invokeIdPrio, receivedBlockNumber, AccessResultCode.DATA_BLOCK_NUMBER_INVALID);
+        }
+        else {
+            this.blockNumber++;
+            sendNextBlock(invokeIdPrio);
+        }
+    }
+
+    private void sendNextBlock(Invoke_Id_And_Priority invokeIdPrio) throws IOException {
+        SubChoice_result result = new SubChoice_result();
+        boolean lastBlock;
+        try {
+            result.setraw_data(new AxdrOctetString(this.blockSource.nextBlock(blockSize())));
+            lastBlock = !this.blockSource.hasNext();
+        } catch (IllegalAttributeAccessException e) {
+            result.setdata_access_result(new AxdrEnum(e.getAccessResultCode().getCode()));
+            lastBlock = true;
+        }
+
+        long sentBlockNumber = this.blockNumber;
+        if (lastBlock) {
+            closeBlockTransfer();
+        }
+
+        sendBlock(invokeIdPrio, lastBlock, sentBlockNumber, result);
+    }
+
+    private void sendBlockError(Invoke_Id_And_Priority invokeIdPrio, long blockNumber, AccessResultCode resultCode)
+            throws IOException {
+        SubChoice_result result = new SubChoice_result();
+        result.setdata_access_result(new AxdrEnum(resultCode.getCode()));
+        sendBlock(invokeIdPrio, true, blockNumber, result);
     }
 
-    private byte[] encodeData(GET_Response getResponse) throws IOException {
+    private void sendBlock(Invoke_Id_And_Priority invokeIdPrio, boolean lastBlock, long blockNumber,
+            SubChoice_result result) throws IOException {
+        DataBlock_G dataBlockG = new DataBlock_G(new AxdrBoolean(lastBlock), new Unsigned32(blockNumber), result);
+        GET_Response getResponse = new GET_Response();
+        getResponse.setget_response_with_datablock(new Get_Response_With_Datablock(invokeIdPrio, dataBlockG));
+
         COSEMpdu coseMpdu = new COSEMpdu();
         coseMpdu.setget_response(getResponse);
+        this.associationMessenger.encodeAndSend(new APdu(null, coseMpdu));
+    }
 
-        APdu aPdu = new APdu(null, coseMpdu);
-
-        return this.associationMessenger.encode(aPdu);
+    private void closeBlockTransfer() {
+        if (this.blockSource != null) {
+            this.blockSource.close();
+            this.blockSource = null;
+        }
     }
 
-    private static boolean isGetNext(APdu nextApdu) {
-        return nextApdu.getCosemPdu().getChoiceIndex() == COSEMpdu.Choices.GET_REQUEST
-                && nextApdu.getCosemPdu().get_request.getChoiceIndex() == GET_Request.Choices.GET_REQUEST_NEXT;
+    private int blockSize() {
+        return this.associationMessenger.getMaxMessageLength() - OVERHEAD;
     }
 
     private GET_Response processGetRequestWithList(Get_Request_With_List requestWithList,
@@ -206,26 +292,9 @@ public class GetRequestProcessor extends RequestProcessorBase {
             AxdrOptional<Selective_Access_Descriptor> accessSelection) {
         Get_Data_Result result = new Get_Data_Result();
         try {
-            ObisCode instanceId = new ObisCode(cosemAttributeDescriptor.instance_id.getValue());
-
-            SelectiveAccessDescription selectiveAccessDescription = null;
-            if (accessSelection.isUsed()) {
-                Selective_Access_Descriptor accessDescriptor = accessSelection.getValue();
-
-                int accessSelector = (int) accessDescriptor.access_selector.getValue();
-                DataObject accessParameter = DataConverter.convertDataToDataObject(accessDescriptor.access_parameters);
-                selectiveAccessDescription = new SelectiveAccessDescription(accessSelector, accessParameter);
-            }
-
-            int logicalDeviceId = requestProcessorData.logicalDeviceId;
-
-            long classId = cosemAttributeDescriptor.class_id.getValue();
-            long attributeId = cosemAttributeDescriptor.attribute_id.getValue();
+            AttributeAddress attributeAddress = attributeAddressFor(cosemAttributeDescriptor, accessSelection);
 
-            AttributeAddress attributeAddress = new AttributeAddress((int) classId, instanceId, (int) attributeId,
-                    selectiveAccessDescription);
-
-            DataObject attributeData = this.requestProcessorData.directory.get(logicalDeviceId, attributeAddress,
+            DataObject attributeData = this.requestProcessorData.directory.get(logicalDeviceId(), attributeAddress,
                     connectionId());
 
             Data convertedData = convertDataObjectToData(attributeData);
@@ -236,4 +305,23 @@ public class GetRequestProcessor extends RequestProcessorBase {
         return result;
     }
 
+    private static AttributeAddress attributeAddressFor(Cosem_Attribute_Descriptor cosemAttributeDescriptor,
+            AxdrOptional<Selective_Access_Descriptor> accessSelection) {
+        ObisCode instanceId = new ObisCode(cosemAttributeDescriptor.instance_id.getValue());
+
+        SelectiveAccessDescription selectiveAccessDescription = null;
+        if (accessSelection.isUsed()) {
+            Selective_Access_Descriptor accessDescriptor = accessSelection.getValue();
+
+            int accessSelector = (int) accessDescriptor.access_selector.getValue();
+            DataObject accessParameter = DataConverter.convertDataToDataObject(accessDescriptor.access_parameters);
+            selectiveAccessDescription = new SelectiveAccessDescription(accessSelector, accessParameter);
+        }
+
+        long classId = cosemAttributeDescriptor.class_id.getValue();
+        long attributeId = cosemAttributeDescriptor.attribute_id.getValue();
+
+        return new AttributeAddress((int) classId, instanceId, (int) attributeId, selectiveAccessDescription);
+    }
+
 }
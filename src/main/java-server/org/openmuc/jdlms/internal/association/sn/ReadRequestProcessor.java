@@ -34,6 +34,13 @@ import org.openmuc.jdlms.internal.association.RequestProcessorData;
 
 public class ReadRequestProcessor extends SnRequestProcessorBase {
 
+    /**
+     * The remaining data of the response sent in blocks, <code>null</code> if there is none.
+     */
+    private ByteBuffer rawDataBuffer;
+    private int blockSize;
+    private long blockNumber;
+
     public ReadRequestProcessor(AssociationMessenger associationMessenger, RequestProcessorData requestProcessorData) {
         super(associationMessenger, requestProcessorData);
     }
@@ -43,6 +50,14 @@ public class ReadRequestProcessor extends SnRequestProcessorBase {
         ReadRequest readReq = request.readRequest;
         List<Variable_Access_Specification> list = readReq.list();
 
+        if (this.rawDataBuffer != null && isBlockNumberAccess(list)) {
+            sendNextBlock();
+            return;
+        }
+
+        // a new request aborts the block transfer in progress
+        closeBlockTransfer();
+
         ReadResponse readRes = new ReadResponse();
         for (Variable_Access_Specification varAccessSpec : list) {
             switch (varAccessSpec.getChoiceIndex()) {
@@ -84,70 +99,57 @@ public class ReadRequestProcessor extends SnRequestProcessorBase {
 
     }
 
+    @Override
+    public void close() {
+        closeBlockTransfer();
+    }
+
+    /**
+     * Sends the first block of the response. The further blocks are sent, when the client requests them with a
+     * block number access.
+     */
     private void sendResposneAsBlocks(ReadResponse readRes, byte[] encodedApdu) throws IOException {
         readRes.encodeAndSave(encodedApdu.length);
         byte[] rawDataToSend = readRes.code;
 
         final int expectedApduOverhead = encodedApdu.length - rawDataToSend.length;
 
-        ByteBuffer rawDataBuffer = ByteBuffer.wrap(rawDataToSend);
-
-        long blockNumber = 1;
-
-        final int blockSize = this.associationMessenger.getMaxMessageLength() - expectedApduOverhead;
-
-        byte[] blockVal = new byte[blockSize];
-        while (true) {
-            rawDataBuffer.get(blockVal);
-            boolean lastBlock = !rawDataBuffer.hasRemaining();
-
-            ReadResponse blockResponse = new ReadResponse();
-            SubChoice block = new SubChoice();
-            Data_Block_Result blockData = new Data_Block_Result(new AxdrBoolean(lastBlock),
-                    new Unsigned16(blockNumber++), new AxdrOctetString(blockVal));
-            block.setdata_block_result(blockData);
-            blockResponse.add(block);
-
-            APdu blockApdu = newAPdu();
-            blockApdu.getCosemPdu().setreadResponse(blockResponse);
+        this.rawDataBuffer = ByteBuffer.wrap(rawDataToSend);
+        this.blockNumber = 1;
+        this.blockSize = this.associationMessenger.getMaxMessageLength() - expectedApduOverhead;
 
-            this.associationMessenger.encodeAndSend(blockApdu);
-
-            if (rawDataBuffer.remaining() < blockVal.length) {
-                if (!rawDataBuffer.hasRemaining()) {
-                    return;
-                }
-
-                blockVal = new byte[rawDataBuffer.remaining()];
-            }
-
-            veifyBlockNumberAccessResponse(blockNumber);
-        }
+        sendNextBlock();
     }
 
-    private void veifyBlockNumberAccessResponse(long blockNumber) throws IOException {
-        COSEMpdu cosemPdu = this.associationMessenger.readNextApdu().getCosemPdu();
-        if (cosemPdu == null || cosemPdu.getChoiceIndex() != COSEMpdu.Choices.READREQUEST) {
-            // error
-            throw new IOException("wrong cosem pdu" + cosemPdu);
-        }
+    private void sendNextBlock() throws IOException {
+        byte[] blockVal = new byte[Math.min(this.blockSize, this.rawDataBuffer.remaining())];
+        this.rawDataBuffer.get(blockVal);
+        boolean lastBlock = !this.rawDataBuffer.hasRemaining();
 
-        ReadRequest readRequest = cosemPdu.readRequest;
+        ReadResponse blockResponse = new ReadResponse();
+        SubChoice block = new SubChoice();
+        Data_Block_Result blockData = new Data_Block_Result(new AxdrBoolean(lastBlock),
+                new Unsigned16(this.blockNumber++), new AxdrOctetString(blockVal));
+        block.setdata_block_result(blockData);
+        blockResponse.add(block);
 
-        if (readRequest.size() != 1) {
-            // error
+        if (lastBlock) {
+            closeBlockTransfer();
         }
 
-        Variable_Access_Specification blockNumSpec = readRequest.get(0);
-        if (blockNumSpec.getChoiceIndex() != Variable_Access_Specification.Choices.BLOCK_NUMBER_ACCESS) {
-            // error
-        }
+        APdu blockApdu = newAPdu();
+        blockApdu.getCosemPdu().setreadResponse(blockResponse);
 
-        long blockNumRes = blockNumSpec.block_number_access.block_number.getValue();
+        this.associationMessenger.encodeAndSend(blockApdu);
+    }
 
-        if (blockNumRes != blockNumber) {
-            // error
-        }
+    private void closeBlockTransfer() {
+        this.rawDataBuffer = null;
+    }
+
+    private static boolean isBlockNumberAccess(List<Variable_Access_Specification> list) {
+        return list.size() == 1
+                && list.get(0).getChoiceIndex() == Variable_Access_Specification.Choices.BLOCK_NUMBER_ACCESS;
     }
 
     private SubChoice varParamAccess(Variable_Access_Specification varAccessSpec) throws IOException {
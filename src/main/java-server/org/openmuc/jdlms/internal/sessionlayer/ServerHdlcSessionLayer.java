@@ -4,9 +4,16 @@ import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame.newInformat
 import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame.newReceiveReadyFrame;
 import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame.newUnnumberedAcknowledgeFrame;
 import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcParameters.MAX_INFORMATION_LENGTH;
+import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcParameters.MAX_WINDOW_SIZE;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 
 import org.openmuc.jdlms.RawMessageData.RawMessageDataBuilder;
@@ -15,8 +22,8 @@ import org.openmuc.jdlms.internal.sessionlayer.hdlc.FrameInvalidException;
 import org.openmuc.jdlms.internal.sessionlayer.hdlc.FrameType;
 import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcAddressPair;
 import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame;
-import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrameSegmentBuffer;
 import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcMessageDecoder;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcMessageQueue;
 import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcParameters;
 import org.openmuc.jdlms.internal.settings.ServerSettings;
 import org.openmuc.jdlms.sessionlayer.HdlcSequenceNumber;
@@ -33,6 +40,20 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
     private HdlcParameters negParams;
     private final HdlcSequenceNumber sendSequenceNum;
     private final HdlcSequenceNumber receiveSequenceNum;
+    private final HdlcMessageQueue sendQueue;
+    private final ByteArrayOutputStream segmentBuffer;
+    private final Deque<HdlcFrame> receivedFrames;
+
+    /**
+     * <code>true</code> while the segments of a message are received.
+     */
+    private boolean receivingSegments;
+
+    /**
+     * The segments, which are sent once the client has acknowledged the window sent before, <code>null</code> if
+     * there are none.
+     */
+    private ByteBuffer pendingSegments;
 
     public ServerHdlcSessionLayer(StreamAccessor streamAccessor, ServerSettings settings) {
         this.streamAccessor = streamAccessor;
@@ -43,6 +64,9 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
 
         this.sendSequenceNum = new HdlcSequenceNumber();
         this.receiveSequenceNum = new HdlcSequenceNumber();
+        this.sendQueue = new HdlcMessageQueue();
+        this.segmentBuffer = new ByteArrayOutputStream();
+        this.receivedFrames = new ArrayDeque<>();
     }
 
     @Override
@@ -77,10 +101,10 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
         }
 
         int receiveInformationLength = Math.min(MAX_INFORMATION_LENGTH, clientParams.getTransmitInformationLength());
-        int receiveWindowSize = HdlcParameters.MIN_WINDOW_SIZE;
+        int receiveWindowSize = Math.min(MAX_WINDOW_SIZE, clientParams.getTransmitWindowSize());
 
         int transmitInformationLength = Math.min(MAX_INFORMATION_LENGTH, clientParams.getReceiveInformationLength());
-        int transmitWindowSize = HdlcParameters.MIN_WINDOW_SIZE;
+        int transmitWindowSize = Math.min(MAX_WINDOW_SIZE, clientParams.getReceiveWindowSize());
 
         this.negParams = new HdlcParameters(receiveInformationLength, receiveWindowSize, transmitInformationLength,
                 transmitWindowSize);
@@ -91,19 +115,62 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
         writeToStream(responseFrame);
     }
 
+    /**
+     * Processes the received frames until a message is complete. The segments of a message and the acknowledgements
+     * of the sent segments are processed as they arrive, the state is kept between the calls.
+     * 
+     * @return the received message or <code>null</code> if the frames received so far don't complete a message.
+     */
     @Override
     public byte[] readNextMessage() throws IOException {
-        RawMessageDataBuilder rawMessageBuilder = null;
+        HdlcFrame frame = nextFrame();
+
+        while (true) {
+            byte[] message = processFrame(frame);
+            if (message != null) {
+                return message;
+            }
+            if (!isFrameAvailable()) {
+                // wait for the next frames without blocking the caller
+                return null;
+            }
+            frame = nextFrame();
+        }
+    }
+
+    private byte[] processFrame(HdlcFrame frame) throws IOException {
+        frame.getAddressPair(); // TODO check address pairs..
+
+        if (this.pendingSegments != null && frame.getFrameType() == FrameType.RECEIVE_READY) {
+            acknowledgementReceived(frame);
+            return null;
+        }
+        if (this.pendingSegments != null) {
+            this.pendingSegments = null;
+            this.sendQueue.clear();
+
+            if (frame.getFrameType() == FrameType.INFORMATION) {
+                // the frame is handled as the next message
+                this.receivedFrames.addFirst(frame);
+                throw new IOException(MessageFormat.format(
+                        "Received a {0} frame while waiting for the acknowledgement of the sent segments.",
+                        frame.getFrameType()));
+            }
+        }
 
-        HdlcFrame incommingFrame = HdlcMessageDecoder
-                .decode(rawMessageBuilder, streamAccessor, this.settings.responseTimeout).get(0);
+        if (this.receivingSegments && frame.getFrameType() != FrameType.INFORMATION) {
+            this.receivingSegments = false;
 
-        incommingFrame.getAddressPair(); // TODO check address pairs..
+            // the frame is handled as the next message, a disconnect request is still answered
+            this.receivedFrames.addFirst(frame);
+            throw new IOException(MessageFormat.format(
+                    "Received a {0} frame instead of the next segment of the message.", frame.getFrameType()));
+        }
 
-        switch (incommingFrame.getFrameType()) {
+        switch (frame.getFrameType()) {
 
         case INFORMATION:
-            return handleIncomingInfoFrame(incommingFrame);
+            return segmentReceived(frame);
 
         case DISCONNECT:
             boolean finalFrame = true;
@@ -126,50 +193,80 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
 
     }
 
-    private byte[] handleIncomingInfoFrame(HdlcFrame incommingFrame) throws IOException {
-        if (incommingFrame.isSegmented()) {
-            return readSegmentsFromClient(incommingFrame);
-        }
-        else {
-            return incommingFrame.getInformationFieldWithoutLlc();
-        }
-    }
-
-    private byte[] readSegmentsFromClient(HdlcFrame incommingFrame) throws IOException {
-        HdlcFrameSegmentBuffer segmentBuffer = new HdlcFrameSegmentBuffer();
-
-        segmentBuffer.buffer(incommingFrame);
-
-        do {
-            sendReceiveReady(incommingFrame.getReceiveSequence());
+    /**
+     * Appends the information field of a segment of the message from the client to the segment buffer. The client is
+     * acknowledged at the end of each of its windows, a lost or repeated frame is skipped and requested again by the
+     * acknowledgement.
+     * 
+     * @return the message, if the frame completes it, <code>null</code> otherwise.
+     */
+    private byte[] segmentReceived(HdlcFrame frame) throws IOException {
+        if (frame.getSendSequence() == this.receiveSequenceNum.getValue()) {
+            this.receiveSequenceNum.increment();
+
+            if (!frame.isSegmented() && !this.receivingSegments) {
+                return frame.getInformationFieldWithoutLlc();
+            }
 
-            incommingFrame = HdlcMessageDecoder.decode(null, streamAccessor, settings.responseTimeout).get(0);
+            if (!this.receivingSegments) {
+                this.segmentBuffer.reset();
+                this.segmentBuffer.write(frame.getInformationFieldWithoutLlc());
+                this.receivingSegments = true;
+            }
+            else {
+                this.segmentBuffer.write(frame.getInformationField());
+            }
 
-            if (incommingFrame.getFrameType() != FrameType.INFORMATION) {
-                // TODO error
+            if (!frame.isSegmented()) {
+                this.receivingSegments = false;
+                return this.segmentBuffer.toByteArray();
             }
-            segmentBuffer.buffer(incommingFrame);
+        }
 
-        } while (incommingFrame.isSegmented());
+        if (frame.isPollFinal()) {
+            sendReceiveReady(this.receiveSequenceNum.getValue());
+        }
+        return null;
+    }
 
-        return segmentBuffer.toByteArray();
+    /**
+     * Returns the next received frame. The client sends the frames of a window at once, so that several frames may
+     * be decoded from a single read.
+     */
+    private HdlcFrame nextFrame() throws IOException {
+        while (this.receivedFrames.isEmpty()) {
+            RawMessageDataBuilder rawMessageBuilder = null;
+            List<HdlcFrame> frames = HdlcMessageDecoder.decode(rawMessageBuilder, streamAccessor,
+                    this.settings.responseTimeout);
+            this.receivedFrames.addAll(frames);
+        }
+        return this.receivedFrames.removeFirst();
+    }
+
+    private boolean isFrameAvailable() throws IOException {
+        return !this.receivedFrames.isEmpty() || this.streamAccessor.getInputStream().available() > 0;
     }
 
     private void sendReceiveReady(int sequenceNumber) throws IOException {
-        HdlcFrame receiveReadyFrame = newReceiveReadyFrame(addressPair, sequenceNumber, false);
+        HdlcFrame receiveReadyFrame = newReceiveReadyFrame(addressPair, sequenceNumber, true);
 
         writeToStream(receiveReadyFrame.encode());
     }
 
     @Override
     public void send(byte[] data) throws IOException {
+        send(data, 0, data.length);
+    }
 
-        if (data.length + INFORMATION_FRAME_OVERHEAD >= this.negParams.getTransmitInformationLength()) {
-            sendAsSegments(data);
+    @Override
+    public void send(byte[] data, int offset, int length) throws IOException {
+
+        if (length + INFORMATION_FRAME_OVERHEAD >= this.negParams.getTransmitInformationLength()) {
+            sendAsSegments(ByteBuffer.wrap(data, offset, length));
         }
         else {
             boolean segmented = false;
-            writeToStream(infoFrameDataFor(data, segmented));
+            writeToStream(infoFrameDataFor(Arrays.copyOfRange(data, offset, offset + length), segmented));
         }
 
     }
@@ -179,49 +276,88 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
         this.streamAccessor.getOutpuStream().flush();
     }
 
-    private void sendAsSegments(byte[] data) throws IOException {
-        byte[] segment = new byte[segmentLength()];
-        ByteBuffer segmentBuffer = ByteBuffer.wrap(data);
-
-        boolean first = true;
-        sendSegment(segment, segmentBuffer, first);
-
-        first = false;
+    /**
+     * Sends the first window of segments. The segments are sent in bursts of the negotiated window size, only the last
+     * frame of a window polls for an acknowledgement. The next window is sent by {@link #readNextMessage()}, once the
+     * client has acknowledged all frames of the previous one.
+     */
+    private void sendAsSegments(ByteBuffer segments) throws IOException {
+        this.sendQueue.clear();
+        this.pendingSegments = null;
+
+        boolean addLlc = true;
+        sendWindow(segments, addLlc);
+
+        if (segments.hasRemaining()) {
+            // the caller may reuse its buffer
+            byte[] remaining = new byte[segments.remaining()];
+            segments.get(remaining);
+            this.pendingSegments = ByteBuffer.wrap(remaining);
+        }
+    }
 
-        while (true) {
-            waitForRRFrame();
+    private void sendWindow(ByteBuffer segments, boolean addLlc) throws IOException {
+        int windowSize = this.negParams.getTransmitWindowSize();
+        List<HdlcFrame> window = new ArrayList<>(windowSize);
 
-            sendSegment(segment, segmentBuffer, first);
+        while (window.size() < windowSize && segments.hasRemaining()) {
+            byte[] segment = new byte[Math.min(segmentLength(), segments.remaining())];
+            segments.get(segment);
 
-            if (segmentBuffer.remaining() < segmentLength()) {
-                if (!segmentBuffer.hasRemaining()) {
-                    return;
-                }
+            boolean segmented = segments.hasRemaining();
+            boolean poll = !segmented || window.size() == windowSize - 1;
+            window.add(newInformationFrame(addressPair, this.sendSequenceNum.increment(),
+                    this.receiveSequenceNum.getValue(), segment, segmented, addLlc && window.isEmpty(), poll));
+        }
 
-                segment = new byte[segmentBuffer.remaining()];
-            }
+        writeToStream(window);
 
+        if (!segments.hasRemaining()) {
+            // the next request of the client acknowledges the last window
+            return;
         }
 
+        for (HdlcFrame frame : window) {
+            this.sendQueue.offerMessage(frame);
+        }
     }
 
-    private void waitForRRFrame() throws IOException {
-        HdlcFrame rrFrame = HdlcMessageDecoder.decode(null, streamAccessor, this.settings.responseTimeout).get(0);
+    /**
+     * Sends the next window, after the client has acknowledged all frames of the previous one. If the client has
+     * missed a frame, the window is sent again from the frame it expects.
+     */
+    private void acknowledgementReceived(HdlcFrame receiveReadyFrame) throws IOException {
+        this.sendQueue.acknowledge(receiveReadyFrame.getReceiveSequence());
+
+        List<HdlcFrame> unacknowledgedFrames = this.sendQueue.unacknowledgedFrames();
+        if (!unacknowledgedFrames.isEmpty()) {
+            List<HdlcFrame> frames = new ArrayList<>(unacknowledgedFrames.size());
+            for (int i = 0; i < unacknowledgedFrames.size(); i++) {
+                HdlcFrame frame = unacknowledgedFrames.get(i);
+
+                boolean addLlc = false;
+                boolean poll = i == unacknowledgedFrames.size() - 1;
+                frames.add(newInformationFrame(addressPair, frame.getSendSequence(),
+                        this.receiveSequenceNum.getValue(), frame.getInformationField(), frame.isSegmented(), addLlc,
+                        poll));
+            }
+            writeToStream(frames);
+            return;
+        }
 
-        if (rrFrame.getFrameType() != FrameType.RECEIVE_READY) {
-            // TODO error
-            System.err.println(rrFrame.getFrameType());
+        boolean addLlc = false;
+        sendWindow(this.pendingSegments, addLlc);
+        if (!this.pendingSegments.hasRemaining()) {
+            this.pendingSegments = null;
         }
     }
 
-    private void sendSegment(byte[] segment, ByteBuffer buffer, boolean first) throws IOException {
-        buffer.get(segment);
-
-        boolean segmented = buffer.hasRemaining();
-
-        byte[] frameData = infoFrameDataFor(segment, segmented, first);
-
-        writeToStream(frameData);
+    private void writeToStream(List<HdlcFrame> frames) throws IOException {
+        ByteArrayOutputStream burst = new ByteArrayOutputStream();
+        for (HdlcFrame frame : frames) {
+            burst.write(frame.encode());
+        }
+        writeToStream(burst.toByteArray());
     }
 
     private int segmentLength() {
@@ -229,10 +365,7 @@ public class ServerHdlcSessionLayer implements ServerSessionLayer {
     }
 
     private byte[] infoFrameDataFor(byte[] segment, boolean segmented) {
-        return infoFrameDataFor(segment, segmented, true);
-    }
-
-    private byte[] infoFrameDataFor(byte[] segment, boolean segmented, boolean addLlc) {
+        boolean addLlc = true;
         return newInformationFrame(addressPair, this.sendSequenceNum.increment(), this.receiveSequenceNum.getValue(),
                 segment, segmented, addLlc).encode();
     }
@@ -6,10 +6,33 @@ public interface ServerSessionLayer extends AutoCloseable {
 
     void initialize() throws IOException;
 
+    /**
+     * Reads the next message from the client. A message split into several frames is collected over several calls,
+     * so that a worker isn't blocked by a slow client.
+     * 
+     * @return the message or <code>null</code> if the received data doesn't complete a message yet.
+     * @throws IOException
+     *             if the message could not be read.
+     */
     byte[] readNextMessage() throws IOException;
 
     void send(byte[] data) throws IOException;
 
+    /**
+     * Sends <code>length</code> bytes of <code>data</code> starting at <code>offset</code>. The bytes in front of the
+     * offset may be overwritten, the session layer puts its header there to send the message without copying it.
+     * 
+     * @param data
+     *            the buffer holding the message.
+     * @param offset
+     *            the start of the message.
+     * @param length
+     *            the length of the message.
+     * @throws IOException
+     *             if the message could not be sent.
+     */
+    void send(byte[] data, int offset, int length) throws IOException;
+
     int getClientId();
 
     int getLogicalDeviceId();
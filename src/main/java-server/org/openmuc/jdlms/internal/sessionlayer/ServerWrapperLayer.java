@@ -28,11 +28,29 @@ public class ServerWrapperLayer implements ServerSessionLayer {
 
     @Override
     public void send(byte[] data) throws IOException {
-        byte[] header = this.headerBuilder.setLength(data.length).build().encode();
+        send(data, 0, data.length);
+    }
+
+    @Override
+    public void send(byte[] data, int offset, int length) throws IOException {
+        byte[] header = this.headerBuilder.setLength(length).build().encode();
 
-        byte[] wpdu = ByteBuffer.allocate(data.length + WrapperHeader.HEADER_LENGTH).put(header).put(data).array();
+        if (offset >= WrapperHeader.HEADER_LENGTH) {
+            int wpduOffset = offset - WrapperHeader.HEADER_LENGTH;
+            System.arraycopy(header, 0, data, wpduOffset, WrapperHeader.HEADER_LENGTH);
+            write(data, wpduOffset, length + WrapperHeader.HEADER_LENGTH);
+        }
+        else {
+            byte[] wpdu = ByteBuffer.allocate(length + WrapperHeader.HEADER_LENGTH)
+                    .put(header)
+                    .put(data, offset, length)
+                    .array();
+            write(wpdu, 0, wpdu.length);
+        }
+    }
 
-        this.streamAccessor.getOutpuStream().write(wpdu);
+    private void write(byte[] wpdu, int offset, int length) throws IOException {
+        this.streamAccessor.getOutpuStream().write(wpdu, offset, length);
         this.streamAccessor.getOutpuStream().flush();
     }
 
@@ -1,5 +1,8 @@
 package org.openmuc.jdlms.internal.settings;
 
+import java.util.concurrent.ThreadFactory;
+
+import org.openmuc.jdlms.FrameCounterTracker;
 import org.openmuc.jdlms.ServerConnectionListener;
 import org.openmuc.jdlms.settings.client.ReferencingMethod;
 
@@ -15,6 +18,10 @@ public abstract class ServerSettings {
 
     public ReferencingMethod referencingMethod;
 
+    public ThreadFactory threadFactory;
+
+    public FrameCounterTracker frameCounterTracker;
+
     public ServerSettings() {
     }
 }
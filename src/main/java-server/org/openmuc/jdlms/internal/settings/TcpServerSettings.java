@@ -4,6 +4,12 @@ public class TcpServerSettings extends ServerSettings {
 
     public int tcpPort;
 
+    public boolean nonBlocking;
+
+    public int eventLoops;
+
+    public int workerThreads;
+
     public TcpServerSettings(int tcpPort) {
         this.tcpPort = tcpPort;
     }
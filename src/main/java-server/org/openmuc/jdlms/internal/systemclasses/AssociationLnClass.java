@@ -19,12 +19,13 @@ import static org.openmuc.jdlms.datatypes.DataObject.Type.STRUCTURE;
 import static org.openmuc.jdlms.internal.WellKnownInstanceIds.SECURITY_SETUP_ID;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +49,7 @@ import org.openmuc.jdlms.internal.DataDirectory;
 import org.openmuc.jdlms.internal.DataDirectory.Attribute;
 import org.openmuc.jdlms.internal.DataDirectory.CosemClassInstance;
 import org.openmuc.jdlms.internal.DataDirectory.CosemLogicalDevice;
+import org.openmuc.jdlms.internal.EncodedDataList;
 import org.openmuc.jdlms.internal.MethodAccessor;
 import org.openmuc.jdlms.internal.ServerConnectionData;
 import org.openmuc.jdlms.internal.WellKnownInstanceIds;
@@ -99,6 +101,12 @@ public class AssociationLnClass extends CosemInterfaceObject {
         this.securitySetupReference = DataObject.newOctetStringData(new ObisCode(SECURITY_SETUP_ID).bytes());
     }
 
+    /**
+     * The object list elements of all instances, with their encoding. The instances of the logical device are not
+     * changed after the server has been built, so this is built once.
+     */
+    private volatile Map<ObisCode, ObjectListElement> objectListElements;
+
     public DataObject getObjectList(SelectiveAccessDescription sel) throws IllegalAttributeAccessException {
         if (sel == null) {
             if (this.objectList != null) {
@@ -113,6 +121,22 @@ public class AssociationLnClass extends CosemInterfaceObject {
 
     }
 
+    private Map<ObisCode, ObjectListElement> objectListElements() {
+        Map<ObisCode, ObjectListElement> elements = this.objectListElements;
+        if (elements != null) {
+            return elements;
+        }
+
+        CosemLogicalDevice logicalDevice = this.dataDirectory.getLogicalDeviceFor(this.logicalDeviceId);
+
+        elements = new LinkedHashMap<>();
+        for (ObisCode instanceId : logicalDevice.getInstanceIds()) {
+            elements.put(instanceId, new ObjectListElement(logicalDevice.get(instanceId)));
+        }
+
+        return this.objectListElements = elements;
+    }
+
     private DataObject buildFullObjectList(boolean excludeAccessRights) {
         return buildObjectsList(excludeAccessRights, new Filter() {
             @Override
@@ -149,19 +173,16 @@ public class AssociationLnClass extends CosemInterfaceObject {
         if (classIdDo.getType() != LONG_UNSIGNED || logicalNameDo.getType() != OCTET_STRING) {
             throw new IllegalAttributeAccessException(TYPE_UNMATCHED);
         }
-        CosemLogicalDevice logicalDevice = this.dataDirectory.getLogicalDeviceFor(this.logicalDeviceId);
-
         byte[] logicalName = logicalNameDo.getValue();
-        CosemClassInstance cosemClassInstance = logicalDevice.get(new ObisCode(logicalName));
+        ObjectListElement element = objectListElements().get(new ObisCode(logicalName));
 
         Integer classId = classIdDo.getValue();
 
-        if (cosemClassInstance.getCosemClass().id() == classId) {
+        if (element == null || element.classInstance.getCosemClass().id() != classId) {
             return newNullData();
         }
 
-        boolean excludeAccessRights = false;
-        return buildObjectListElement(excludeAccessRights, cosemClassInstance);
+        return element.element;
     }
 
     private static List<DataObject> extractObjectIdStruct(DataObject dataObject)
@@ -253,22 +274,27 @@ public class AssociationLnClass extends CosemInterfaceObject {
     }
 
     private DataObject buildObjectsList(boolean excludeAccessRights, Filter filter) {
-        CosemLogicalDevice logicalDevice = this.dataDirectory.getLogicalDeviceFor(this.logicalDeviceId);
-        List<DataObject> objectListElements = new LinkedList<>();
+        Collection<ObjectListElement> elements = objectListElements().values();
 
-        for (ObisCode instanceId : logicalDevice.getInstanceIds()) {
-            CosemClassInstance cosemClassInstance = logicalDevice.get(instanceId);
+        List<DataObject> listElements = new ArrayList<>(elements.size());
+        List<byte[]> encodedListElements = new ArrayList<>(elements.size());
 
-            if (!filter.passes(cosemClassInstance)) {
+        for (ObjectListElement element : elements) {
+            if (!filter.passes(element.classInstance)) {
                 continue;
             }
 
-            DataObject listElement = buildObjectListElement(excludeAccessRights, cosemClassInstance);
-            objectListElements.add(listElement);
-
+            if (excludeAccessRights) {
+                listElements.add(element.elementWithoutAccessRights);
+                encodedListElements.add(element.encodedElementWithoutAccessRights);
+            }
+            else {
+                listElements.add(element.element);
+                encodedListElements.add(element.encodedElement);
+            }
         }
 
-        return DataObject.newArrayData(objectListElements);
+        return EncodedDataList.newArrayData(listElements, encodedListElements);
     }
 
     private static DataObject buildObjectListElement(boolean excludeAccessRights,
@@ -373,17 +399,19 @@ public class AssociationLnClass extends CosemInterfaceObject {
 
         SecuritySuite sec = logicalDevice.getRestrictions().get(connectionData.clientId);
 
-        checkChallengeEquality(dataObject, connectionData);
-
         HlsSecretProcessor secretProcessor = hlsSecretProcessorFor(sec.getAuthenticationMechanism());
 
+        checkChallengeEquality(dataObject, connectionData, secretProcessor, sec);
+
         byte[] clientToServerChallenge = connectionData.clientToServerChallenge;
 
         byte[] processedClientToServerChallenge;
         try {
+            int frameCounter = connectionData.frameCounterTracker.nextFrameCounter(logicalDevice.getSystemTitle(),
+                    sec);
             processedClientToServerChallenge = secretProcessor.process(clientToServerChallenge,
                     sec.getAuthenticationKey(), sec.getGlobalUnicastEncryptionKey(), logicalDevice.getSystemTitle(),
-                    connectionData.frameCounter);
+                    frameCounter);
         } catch (UnsupportedOperationException | IOException e) {
             throw new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
         }
@@ -411,11 +439,28 @@ public class AssociationLnClass extends CosemInterfaceObject {
         return secretProcessor;
     }
 
-    private static void checkChallengeEquality(DataObject dataObject, ServerConnectionData connectionData)
-            throws IllegalMethodAccessException {
+    private static void checkChallengeEquality(DataObject dataObject, ServerConnectionData connectionData,
+            HlsSecretProcessor secretProcessor, SecuritySuite sec) throws IllegalMethodAccessException {
         byte[] receivedServerToClientChallenge = dataObject.getValue();
 
-        byte[] processedServerToClientChallenge = connectionData.processedServerToClientChallenge;
+        byte[] serverToClientChallenge = connectionData.serverToClientChallenge;
+        if (serverToClientChallenge == null || receivedServerToClientChallenge.length < 5) {
+            throw new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
+        }
+        // the challenge can only be answered once
+        connectionData.serverToClientChallenge = null;
+
+        // the client processes the challenge with an invocation counter of its own, which follows the security control
+        int frameCounter = ByteBuffer.wrap(receivedServerToClientChallenge, 1, 4).getInt();
+
+        byte[] processedServerToClientChallenge;
+        try {
+            processedServerToClientChallenge = secretProcessor.process(serverToClientChallenge,
+                    sec.getAuthenticationKey(), sec.getGlobalUnicastEncryptionKey(), connectionData.clientSystemTitle,
+                    frameCounter);
+        } catch (UnsupportedOperationException | IOException e) {
+            throw new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
+        }
 
         if (!Arrays.equals(receivedServerToClientChallenge, processedServerToClientChallenge)) {
             throw new IllegalMethodAccessException(MethodResultCode.OTHER_REASON);
@@ -425,4 +470,24 @@ public class AssociationLnClass extends CosemInterfaceObject {
     private interface Filter {
         boolean passes(CosemClassInstance cosemClassInstance);
     }
+
+    private static class ObjectListElement {
+        private final CosemClassInstance classInstance;
+
+        private final DataObject element;
+        private final byte[] encodedElement;
+
+        private final DataObject elementWithoutAccessRights;
+        private final byte[] encodedElementWithoutAccessRights;
+
+        public ObjectListElement(CosemClassInstance classInstance) {
+            this.classInstance = classInstance;
+
+            this.element = buildObjectListElement(false, classInstance);
+            this.encodedElement = EncodedDataList.encode(this.element);
+
+            this.elementWithoutAccessRights = buildObjectListElement(true, classInstance);
+            this.encodedElementWithoutAccessRights = EncodedDataList.encode(this.elementWithoutAccessRights);
+        }
+    }
 }
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.openmuc.jdlms.AccessSynchronization;
 import org.openmuc.jdlms.CosemAttribute;
 import org.openmuc.jdlms.CosemClass;
 import org.openmuc.jdlms.CosemMethod;
@@ -55,6 +56,12 @@ public class SecuritySetup extends CosemSnInterfaceObject {
         this.serverSystemTitle = DataObject.newOctetStringData(logicalDevice.getSystemTitle());
     }
 
+    @Override
+    public AccessSynchronization getAccessSynchronization() {
+        // key transfers update the security suites shared with the associations
+        return AccessSynchronization.PER_OBJECT;
+    }
+
     public DataObject getSecurityPolicy(Long connectionId) {
         ServerConnectionData connectionData = connectionDataFor(connectionId);
 
@@ -0,0 +1,148 @@
+package org.openmuc.jdlms.internal.transportlayer;
+
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * Splits the byte stream of a connection into complete wrapper or HDLC PDUs.
+ *
+ * <p>
+ * The kind of PDU is recognized by its first byte: a HDLC frame starts with the flag <code>0x7E</code>, a wrapper PDU
+ * with the high byte of the version <code>0x0001</code>. Bytes of an unknown PDU are passed through unchanged, the
+ * session layer rejects them.
+ * </p>
+ */
+class PduFramer {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final byte HDLC_FLAG = 0x7E;
+    private static final int HDLC_LENGTH_MASK = 0x07FF;
+    private static final int HDLC_FRAME_FORMAT_TYPE = 0xA0;
+
+    private static final int WRAPPER_HEADER_LENGTH = 8;
+    private static final int WRAPPER_LENGTH_OFFSET = 6;
+
+    private byte[] pending;
+    private int pendingLength;
+    private boolean lastWasHdlc;
+
+    public PduFramer() {
+        this.pending = EMPTY;
+        this.pendingLength = 0;
+        this.lastWasHdlc = false;
+    }
+
+    /**
+     * Appends the received bytes and adds every PDU completed by them to the queue.
+     *
+     * @param data
+     *            the received bytes.
+     * @param offset
+     *            the offset of the first received byte.
+     * @param length
+     *            the number of received bytes.
+     * @param pdus
+     *            the queue to add the complete PDUs to.
+     * @return the number of PDUs added.
+     */
+    public int append(byte[] data, int offset, int length, Queue<byte[]> pdus) {
+        byte[] buffer = data;
+        int pos = offset;
+        int end = offset + length;
+
+        if (this.pendingLength > 0) {
+            ensurePendingCapacity(this.pendingLength + length);
+            System.arraycopy(data, offset, this.pending, this.pendingLength, length);
+            this.pendingLength += length;
+
+            buffer = this.pending;
+            pos = 0;
+            end = this.pendingLength;
+        }
+
+        int numPdus = 0;
+        int pduLength;
+        while (pos < end && (pduLength = pduLength(buffer, pos, end - pos)) > 0 && pduLength <= end - pos) {
+            pdus.add(pduFrom(buffer, pos, pduLength));
+            pos += pduLength;
+            ++numPdus;
+        }
+
+        int remaining = end - pos;
+        if (remaining == 0) {
+            // don't keep a buffer for idle connections
+            this.pending = EMPTY;
+            this.pendingLength = 0;
+        }
+        else if (buffer == this.pending) {
+            System.arraycopy(this.pending, pos, this.pending, 0, remaining);
+            this.pendingLength = remaining;
+        }
+        else {
+            ensurePendingCapacity(remaining);
+            System.arraycopy(buffer, pos, this.pending, 0, remaining);
+            this.pendingLength = remaining;
+        }
+
+        return numPdus;
+    }
+
+    private byte[] pduFrom(byte[] buffer, int pos, int pduLength) {
+        if (this.lastWasHdlc && buffer[pos] != HDLC_FLAG) {
+            // the frame shares its opening flag with the closing flag of the previous frame
+            byte[] frame = new byte[pduLength + 1];
+            frame[0] = HDLC_FLAG;
+            System.arraycopy(buffer, pos, frame, 1, pduLength);
+            return frame;
+        }
+
+        this.lastWasHdlc = buffer[pos] == HDLC_FLAG;
+        return Arrays.copyOfRange(buffer, pos, pos + pduLength);
+    }
+
+    /**
+     * @return the length of the PDU starting at pos, or 0 if the header has not been received completely.
+     */
+    private int pduLength(byte[] buffer, int pos, int available) {
+        int first = buffer[pos] & 0xFF;
+
+        if (first == HDLC_FLAG) {
+            if (available < 3) {
+                return 0;
+            }
+            // opening flag, frame and closing flag
+            return hdlcFrameLength(buffer, pos + 1) + 2;
+        }
+        else if (this.lastWasHdlc && (first & 0xF0) == HDLC_FRAME_FORMAT_TYPE) {
+            if (available < 2) {
+                return 0;
+            }
+            // frame and closing flag
+            return hdlcFrameLength(buffer, pos) + 1;
+        }
+        else if (first == 0x00) {
+            if (available < WRAPPER_HEADER_LENGTH) {
+                return 0;
+            }
+            int payloadLength = ((buffer[pos + WRAPPER_LENGTH_OFFSET] & 0xFF) << 8)
+                    | (buffer[pos + WRAPPER_LENGTH_OFFSET + 1] & 0xFF);
+            return WRAPPER_HEADER_LENGTH + payloadLength;
+        }
+        else {
+            this.lastWasHdlc = false;
+            return available;
+        }
+    }
+
+    private static int hdlcFrameLength(byte[] buffer, int frameFormatPos) {
+        return (((buffer[frameFormatPos] & 0xFF) << 8) | (buffer[frameFormatPos + 1] & 0xFF)) & HDLC_LENGTH_MASK;
+    }
+
+    private void ensurePendingCapacity(int capacity) {
+        if (this.pending.length < capacity) {
+            this.pending = Arrays.copyOf(this.pending, Math.max(capacity, this.pending.length * 2));
+        }
+    }
+
+}
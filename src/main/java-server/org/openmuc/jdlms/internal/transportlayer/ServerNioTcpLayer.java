@@ -0,0 +1,662 @@
+package org.openmuc.jdlms.internal.transportlayer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.jdlms.internal.DataDirectory;
+import org.openmuc.jdlms.internal.association.Association;
+import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayer;
+import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayerFactory;
+import org.openmuc.jdlms.internal.settings.TcpServerSettings;
+import org.openmuc.jdlms.transportlayer.client.StreamAccessor;
+
+/**
+ * TCP transport layer serving all clients from a few selector threads.
+ *
+ * <p>
+ * The event loops read from the non-blocking channels and split the received bytes into wrapper or HDLC PDUs. As soon
+ * as a complete PDU has been received, the association of the connection processes it on a worker of a fixed size
+ * pool. A connection without a received PDU does not occupy a thread, the number of connected clients is therefore
+ * not limited by the number of threads.
+ * </p>
+ *
+ * <p>
+ * The queues of a connection are bounded. The socket is not read, while the received PDUs wait for the worker, and a
+ * worker sending a response waits, while the client doesn't read the previously sent data.
+ * </p>
+ *
+ * <p>
+ * Exchanges spanning several PDUs, like segmented HDLC messages or block transfers, are continued, when the next PDU
+ * of the client arrives, so that the worker is released in between. A worker only waits for the rest of a PDU it is
+ * decoding and for a client reading the sent data slowly. Each wait lasts at most the response timeout, or
+ * {@value #MAX_WORKER_WAIT} ms if no response timeout is set.
+ * </p>
+ */
+public class ServerNioTcpLayer implements ServerTransportLayer {
+
+    private static final int READ_BUFFER_SIZE = 0x10000;
+    private static final int MAX_SELECT_TIMEOUT = 1000;
+
+    /**
+     * The longest time a worker waits for a client, if no response timeout is set.
+     */
+    private static final int MAX_WORKER_WAIT = 30000;
+
+    /**
+     * Reading pauses, when this number of received PDUs is queued.
+     */
+    private static final int MAX_QUEUED_PDUS = 32;
+
+    /**
+     * Writing blocks, when this number of bytes is queued.
+     */
+    private static final int MAX_QUEUED_WRITE_BYTES = 4 * READ_BUFFER_SIZE;
+
+    private final TcpServerSettings settings;
+    private final DataDirectory dataDirectory;
+    private final ServerSessionLayerFactory sessionLayerFactory;
+
+    private final AtomicInteger numClients;
+    private final AtomicInteger nextEventLoop;
+    private final AtomicLong connections;
+
+    private ServerSocketChannel serverChannel;
+    private EventLoop[] eventLoops;
+    private ExecutorService eventLoopExec;
+    private ExecutorService workers;
+
+    public ServerNioTcpLayer(TcpServerSettings settings, DataDirectory dataDirectory,
+            ServerSessionLayerFactory sessionLayerFactory) {
+        this.settings = settings;
+        this.dataDirectory = dataDirectory;
+        this.sessionLayerFactory = sessionLayerFactory;
+
+        this.numClients = new AtomicInteger();
+        this.nextEventLoop = new AtomicInteger();
+        this.connections = new AtomicLong();
+    }
+
+    @Override
+    public void start() throws IOException {
+        int numEventLoops = Math.max(1, this.settings.eventLoops);
+        this.eventLoops = new EventLoop[numEventLoops];
+        for (int i = 0; i < numEventLoops; i++) {
+            this.eventLoops[i] = new EventLoop();
+        }
+
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(this.settings.tcpPort));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(this.eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+
+        int numWorkers = Math.max(1, this.settings.workerThreads);
+        ThreadFactory threadFactory = this.settings.threadFactory;
+        this.workers = threadFactory == null ? Executors.newFixedThreadPool(numWorkers)
+                : Executors.newFixedThreadPool(numWorkers, threadFactory);
+        this.eventLoopExec = Executors.newFixedThreadPool(numEventLoops);
+        for (EventLoop eventLoop : this.eventLoops) {
+            this.eventLoopExec.execute(eventLoop);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.eventLoops == null) {
+            return;
+        }
+
+        this.serverChannel.close();
+        for (EventLoop eventLoop : this.eventLoops) {
+            eventLoop.close();
+        }
+        this.eventLoopExec.shutdown();
+        this.workers.shutdown();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.serverChannel.accept()) != null) {
+            int maxClients = this.settings.maxClients == 0 ? Integer.MAX_VALUE : this.settings.maxClients;
+            if (this.numClients.incrementAndGet() > maxClients) {
+                this.numClients.decrementAndGet();
+                closeQuietly(channel);
+                continue;
+            }
+
+            int index = (this.nextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % this.eventLoops.length;
+            this.eventLoops[index].register(channel);
+        }
+    }
+
+    private int maxWorkerWait() {
+        return this.settings.responseTimeout == 0 ? MAX_WORKER_WAIT : this.settings.responseTimeout;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final ByteBuffer readBuffer;
+        private final Queue<Runnable> tasks;
+        private volatile boolean run;
+
+        public EventLoop() throws IOException {
+            this.selector = Selector.open();
+            this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.tasks = new ConcurrentLinkedQueue<>();
+            this.run = true;
+        }
+
+        public void register(final SocketChannel channel) {
+            execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        channel.configureBlocking(false);
+                        channel.socket().setTcpNoDelay(true);
+                        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                        key.attach(new NioConnection(EventLoop.this, channel, key));
+                    } catch (IOException e) {
+                        closeQuietly(channel);
+                        numClients.decrementAndGet();
+                    }
+                }
+            });
+        }
+
+        public void execute(Runnable task) {
+            this.tasks.add(task);
+            this.selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            int inactivityTimeout = settings.inactivityTimeout;
+            int selectTimeout = inactivityTimeout == 0 ? 0 : Math.min(inactivityTimeout, MAX_SELECT_TIMEOUT);
+
+            try {
+                while (this.run) {
+                    this.selector.select(selectTimeout);
+
+                    Runnable task;
+                    while ((task = this.tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    for (SelectionKey key : this.selector.selectedKeys()) {
+                        handle(key);
+                    }
+                    this.selector.selectedKeys().clear();
+
+                    if (inactivityTimeout != 0) {
+                        checkInactivity(System.currentTimeMillis() - inactivityTimeout);
+                    }
+                }
+            } catch (IOException e) {
+                // ignore here, server will be closed
+            } finally {
+                for (SelectionKey key : this.selector.keys()) {
+                    Object attachment = key.attachment();
+                    closeQuietly(attachment != null ? (NioConnection) attachment : key.channel());
+                }
+                closeQuietly(this.selector);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+
+            if (key.isAcceptable()) {
+                try {
+                    accept();
+                } catch (IOException e) {
+                    // keep on accepting other clients
+                }
+                return;
+            }
+
+            NioConnection connection = (NioConnection) key.attachment();
+            try {
+                if (key.isWritable()) {
+                    connection.flush();
+                }
+                if (key.isReadable()) {
+                    connection.read(this.readBuffer);
+                }
+            } catch (CancelledKeyException e) {
+                // connection has been closed
+            } catch (IOException e) {
+                connection.disconnected();
+            }
+        }
+
+        private void checkInactivity(long receivedBefore) {
+            for (SelectionKey key : this.selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment != null) {
+                    ((NioConnection) attachment).checkInactivity(receivedBefore);
+                }
+            }
+        }
+
+        public void close() {
+            this.run = false;
+            this.selector.wakeup();
+        }
+    }
+
+    private class NioConnection implements StreamAccessor, Runnable {
+
+        private final EventLoop eventLoop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private final PduFramer framer;
+        private final BlockingQueue<byte[]> pdus;
+        private final Queue<ByteBuffer> writeQueue;
+
+        private final DataInputStream is;
+        private final DataOutputStream os;
+        private final Association association;
+
+        private final AtomicBoolean scheduled;
+        private final AtomicBoolean closed;
+        private final AtomicBoolean readPaused;
+        private int queuedWriteBytes;
+        private volatile boolean endOfStream;
+        private volatile boolean inactive;
+        private long lastReceived;
+        private int timeout;
+
+        public NioConnection(EventLoop eventLoop, SocketChannel channel, SelectionKey key) {
+            this.eventLoop = eventLoop;
+            this.channel = channel;
+            this.key = key;
+
+            this.framer = new PduFramer();
+            this.pdus = new LinkedBlockingQueue<>();
+            this.writeQueue = new ArrayDeque<>();
+
+            this.is = new DataInputStream(new PduInputStream());
+            this.os = new DataOutputStream(new ChannelOutputStream());
+
+            this.scheduled = new AtomicBoolean(false);
+            this.closed = new AtomicBoolean(false);
+            this.readPaused = new AtomicBoolean(false);
+            this.queuedWriteBytes = 0;
+            this.endOfStream = false;
+            this.inactive = false;
+            this.lastReceived = System.currentTimeMillis();
+            this.timeout = 0;
+
+            ServerSessionLayer sessionLayer = sessionLayerFactory.newSesssionLayer(this, settings);
+
+            Long connectionId = connections.incrementAndGet();
+            this.association = new Association(dataDirectory, sessionLayer, connectionId, settings,
+                    new ServerTcpLayer.TcpServerConnectionInformation(channel.socket().getInetAddress()));
+        }
+
+        void read(ByteBuffer readBuffer) {
+            readBuffer.clear();
+            int numBytes;
+            try {
+                numBytes = this.channel.read(readBuffer);
+            } catch (IOException e) {
+                numBytes = -1;
+            }
+
+            if (numBytes < 0) {
+                disconnected();
+                return;
+            }
+
+            if (this.framer.append(readBuffer.array(), 0, numBytes, this.pdus) > 0) {
+                this.lastReceived = System.currentTimeMillis();
+                this.inactive = false;
+
+                if (this.pdus.size() >= MAX_QUEUED_PDUS) {
+                    pauseReading();
+                }
+                dispatch();
+            }
+        }
+
+        /**
+         * Stops reading from the socket, until the worker has taken the queued PDUs. Called by the event loop.
+         */
+        private void pauseReading() {
+            this.readPaused.set(true);
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+
+            // the worker may have taken the PDUs in the meantime
+            if (this.pdus.size() < MAX_QUEUED_PDUS / 2 && this.readPaused.compareAndSet(true, false)) {
+                this.key.interestOps(this.key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Reads from the socket again, once half of the queued PDUs have been taken. Called by the worker.
+         */
+        private void resumeReadingIfDrained() {
+            if (!this.readPaused.get() || this.pdus.size() >= MAX_QUEUED_PDUS / 2
+                    || !this.readPaused.compareAndSet(true, false)) {
+                return;
+            }
+
+            this.eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (endOfStream) {
+                        return;
+                    }
+                    try {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                    } catch (CancelledKeyException e) {
+                        // connection has been closed
+                    }
+                }
+            });
+        }
+
+        void disconnected() {
+            this.endOfStream = true;
+            try {
+                this.key.interestOps(0);
+            } catch (CancelledKeyException e) {
+                // connection has been closed
+            }
+            dispatch();
+        }
+
+        void checkInactivity(long receivedBefore) {
+            if (!this.scheduled.get() && this.pdus.isEmpty() && this.lastReceived < receivedBefore) {
+                this.inactive = true;
+                dispatch();
+            }
+        }
+
+        /**
+         * Lets a worker process the next PDU, unless one is already busy with this connection.
+         */
+        private void dispatch() {
+            if (isReady() && this.scheduled.compareAndSet(false, true)) {
+                try {
+                    workers.execute(this);
+                } catch (RuntimeException e) {
+                    // server has been closed
+                    this.scheduled.set(false);
+                }
+            }
+        }
+
+        private boolean isReady() {
+            return !this.pdus.isEmpty() || this.endOfStream || this.inactive;
+        }
+
+        @Override
+        public void run() {
+            if (!this.association.processNextMessage()) {
+                return;
+            }
+
+            this.scheduled.set(false);
+            dispatch();
+        }
+
+        void flush() throws IOException {
+            synchronized (this.writeQueue) {
+                ByteBuffer buffer;
+                while ((buffer = this.writeQueue.peek()) != null) {
+                    this.channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        return;
+                    }
+                    this.writeQueue.poll();
+
+                    this.queuedWriteBytes -= buffer.capacity();
+                    this.writeQueue.notifyAll();
+                }
+
+                this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void write(byte[] data, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            synchronized (this.writeQueue) {
+                awaitWriteCapacity();
+
+                if (this.writeQueue.isEmpty()) {
+                    this.channel.write(buffer);
+                    if (!buffer.hasRemaining()) {
+                        return;
+                    }
+                }
+
+                // the caller may reuse its array
+                byte[] remaining = new byte[buffer.remaining()];
+                buffer.get(remaining);
+                this.writeQueue.add(ByteBuffer.wrap(remaining));
+                this.queuedWriteBytes += remaining.length;
+            }
+
+            this.eventLoop.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    } catch (CancelledKeyException e) {
+                        // connection has been closed
+                    }
+                }
+            });
+        }
+
+        /**
+         * Waits until the event loop has written enough of the queued data to the client. Must hold the lock of the
+         * write queue.
+         */
+        private void awaitWriteCapacity() throws IOException {
+            long deadline = System.currentTimeMillis() + maxWorkerWait();
+            try {
+                while (this.queuedWriteBytes >= MAX_QUEUED_WRITE_BYTES) {
+                    if (this.closed.get()) {
+                        throw new ClosedChannelException();
+                    }
+
+                    long waitTime = deadline - System.currentTimeMillis();
+                    if (waitTime <= 0) {
+                        throw new SocketTimeoutException("Client doesn't read the sent data.");
+                    }
+                    this.writeQueue.wait(Math.min(waitTime, MAX_SELECT_TIMEOUT));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public void setTimeout(int timeout) throws IOException {
+            this.timeout = timeout;
+        }
+
+        @Override
+        public DataInputStream getInputStream() throws IOException {
+            return this.is;
+        }
+
+        @Override
+        public DataOutputStream getOutpuStream() throws IOException {
+            return this.os;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.closed.compareAndSet(false, true)) {
+                return;
+            }
+
+            numClients.decrementAndGet();
+            this.key.cancel();
+            this.channel.close();
+
+            synchronized (this.writeQueue) {
+                // wakes up a waiting writer
+                this.writeQueue.notifyAll();
+            }
+        }
+
+        private class PduInputStream extends InputStream {
+
+            private byte[] pdu;
+            private int pos;
+
+            public PduInputStream() {
+                this.pdu = new byte[0];
+                this.pos = 0;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (!nextPduIfConsumed()) {
+                    return -1;
+                }
+                return this.pdu[this.pos++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!nextPduIfConsumed()) {
+                    return -1;
+                }
+
+                int numBytes = Math.min(len, this.pdu.length - this.pos);
+                System.arraycopy(this.pdu, this.pos, b, off, numBytes);
+                this.pos += numBytes;
+                return numBytes;
+            }
+
+            /**
+             * Returns the number of bytes of the current PDU or, if it has been read, of the next received PDU.
+             */
+            @Override
+            public int available() throws IOException {
+                if (this.pos < this.pdu.length) {
+                    return this.pdu.length - this.pos;
+                }
+
+                byte[] nextPdu = pdus.peek();
+                return nextPdu == null ? 0 : nextPdu.length;
+            }
+
+            private boolean nextPduIfConsumed() throws IOException {
+                if (this.pos < this.pdu.length) {
+                    return true;
+                }
+
+                byte[] nextPdu = pollPdu();
+                if (nextPdu == null) {
+                    return false;
+                }
+
+                this.pdu = nextPdu;
+                this.pos = 0;
+                return true;
+            }
+
+            private byte[] pollPdu() throws IOException {
+                byte[] nextPdu = takePdu();
+                resumeReadingIfDrained();
+                return nextPdu;
+            }
+
+            private byte[] takePdu() throws IOException {
+                byte[] nextPdu = pdus.poll();
+                if (nextPdu != null) {
+                    return nextPdu;
+                }
+                if (endOfStream) {
+                    return null;
+                }
+                if (inactive) {
+                    throw new SocketTimeoutException("Client has been inactive for too long.");
+                }
+
+                // the worker must not wait forever for a client, which stopped sending
+                long deadline = System.currentTimeMillis() + (timeout == 0 ? maxWorkerWait() : timeout);
+                try {
+                    while ((nextPdu = pdus.poll(MAX_SELECT_TIMEOUT, TimeUnit.MILLISECONDS)) == null) {
+                        if (endOfStream || closed.get()) {
+                            return null;
+                        }
+                        if (System.currentTimeMillis() >= deadline) {
+                            throw new SocketTimeoutException("Read timed out.");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                return nextPdu;
+            }
+        }
+
+        private class ChannelOutputStream extends OutputStream {
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (closed.get()) {
+                    throw new ClosedChannelException();
+                }
+                NioConnection.this.write(b, off, len);
+            }
+        }
+    }
+
+}
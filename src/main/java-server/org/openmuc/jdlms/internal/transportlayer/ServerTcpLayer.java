@@ -8,7 +8,8 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openmuc.jdlms.internal.DataDirectory;
 import org.openmuc.jdlms.internal.association.Association;
@@ -68,8 +69,9 @@ public class ServerTcpLayer implements ServerTransportLayer {
     private class SocketListener implements Runnable, AutoCloseable {
 
         private final ServerSocket serverSocket;
-        private final ThreadPoolExecutor threadPool;
+        private final ExecutorService threadPool;
         private final int maxPermits;
+        private final AtomicInteger numClients;
 
         private long connections;
         private boolean run;
@@ -79,7 +81,10 @@ public class ServerTcpLayer implements ServerTransportLayer {
             this.serverSocket.setSoTimeout(0);
 
             this.maxPermits = settings.maxClients == 0 ? Integer.MAX_VALUE : settings.maxClients;
-            this.threadPool = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+            ThreadFactory threadFactory = settings.threadFactory;
+            this.threadPool = threadFactory == null ? Executors.newCachedThreadPool()
+                    : Executors.newCachedThreadPool(threadFactory);
+            this.numClients = new AtomicInteger();
             this.connections = 0L;
             this.run = true;
         }
@@ -89,7 +94,9 @@ public class ServerTcpLayer implements ServerTransportLayer {
             try {
                 while (this.run) {
                     Socket socket = this.serverSocket.accept();
-                    if (this.threadPool.getActiveCount() >= this.maxPermits) {
+                    // the active count of the pool lags behind the accepted connections
+                    if (this.numClients.incrementAndGet() > this.maxPermits) {
+                        this.numClients.decrementAndGet();
                         try {
                             socket.close();
                         } catch (IOException e) {
@@ -103,10 +110,20 @@ public class ServerTcpLayer implements ServerTransportLayer {
 
                     Long connectionId = ++connections;
 
-                    Association association = new Association(dataDirectory, sessionLayer, connectionId, settings,
-                            new TcpServerConnectionInformation(socket.getInetAddress()));
+                    final Association association = new Association(dataDirectory, sessionLayer, connectionId,
+                            settings, new TcpServerConnectionInformation(socket.getInetAddress()));
 
-                    this.threadPool.execute(association);
+                    this.threadPool.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                association.run();
+                            } finally {
+                                numClients.decrementAndGet();
+                            }
+                        }
+                    });
                 }
             } catch (IOException e) {
                 // ignore here, connection will be closed
@@ -24,8 +24,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
 
 import org.openmuc.jdlms.internal.SecSuiteAccessor;
+import org.openmuc.jdlms.internal.ThreadFactories;
 import org.openmuc.jdlms.sessionlayer.SessionLayer;
 import org.openmuc.jdlms.settings.client.ConfirmedMode;
 import org.openmuc.jdlms.settings.client.ReferencingMethod;
@@ -67,6 +69,12 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
 
     private RawMessageListener rawMessageListener;
 
+    private int maxInFlightRequests;
+
+    private ThreadFactory threadFactory;
+
+    private FrameCounterTracker frameCounterTracker;
+
     /**
      * Create a new connection builder, with default settings.
      */
@@ -91,6 +99,10 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
         this.referencingMethod = ReferencingMethod.LOGICAL;
 
         this.rawMessageListener = null;
+
+        this.maxInFlightRequests = 1;
+
+        this.threadFactory = null;
     }
 
     /**
@@ -318,6 +330,91 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
         return self();
     }
 
+    /**
+     * Set the maximum number of requests, which are sent to the remote meter before their responses arrive.
+     * 
+     * <p>
+     * Only relevant for logical name referencing, where the responses are matched to the requests by their invoke ID.
+     * The number must be in the range {@code [1, 16]}. Default is {@code 1}.
+     * </p>
+     * 
+     * @param maxInFlightRequests
+     *            the maximum number of requests in flight.
+     * @return the ConnectionBuilder
+     * 
+     * @throws IllegalArgumentException
+     *             if the integer is not in the range {@code [1, 16]}.
+     * 
+     * @see DlmsConnection#getAsync(boolean, java.util.List)
+     */
+    public T setMaxInFlightRequests(int maxInFlightRequests) {
+        final int minRequests = 1;
+        final int maxRequests = 16;
+
+        if (maxInFlightRequests < minRequests || maxInFlightRequests > maxRequests) {
+            throw new IllegalArgumentException(
+                    "Max in flight requests has to be between " + minRequests + " and " + maxRequests);
+        }
+
+        this.maxInFlightRequests = maxInFlightRequests;
+        return self();
+    }
+
+    /**
+     * Set the factory creating the threads, which read the responses from the remote meter and process asynchronous
+     * requests.
+     * 
+     * <p>
+     * By default every connection starts its own platform threads.
+     * </p>
+     * 
+     * @param threadFactory
+     *            the thread factory or <code>null</code> to use the default.
+     * @return the ConnectionBuilder
+     * 
+     * @see #useVirtualThreads()
+     */
+    public T setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        return self();
+    }
+
+    /**
+     * Run the threads of the connection as virtual threads. A virtual thread blocked on the transport layer doesn't
+     * occupy a platform thread.
+     * 
+     * <p>
+     * Virtual threads require Java 21. On older runtimes the default platform threads are used.
+     * </p>
+     * 
+     * @return the ConnectionBuilder
+     * 
+     * @see #setThreadFactory(ThreadFactory)
+     */
+    public T useVirtualThreads() {
+        this.threadFactory = ThreadFactories.newVirtualThreadFactory();
+        return self();
+    }
+
+    /**
+     * Set the tracker of the invocation counters of ciphered APDUs.
+     * 
+     * <p>
+     * By default every connection tracks the counters on its own: the counters of the sent APDUs start at {@code 1}
+     * and replayed APDUs of the meter are only detected within the connection. Share a tracker between connections
+     * and give it a {@link FrameCounterStore} to never reuse a counter and to detect replays across connections. The
+     * counters are tracked per system title and encryption key, they start over once a key has been changed.
+     * </p>
+     * 
+     * @param frameCounterTracker
+     *            the tracker or <code>null</code> to use the default.
+     * @return the ConnectionBuilder
+     */
+    public T setFrameCounterTracker(FrameCounterTracker frameCounterTracker) {
+        this.frameCounterTracker = frameCounterTracker;
+        return self();
+    }
+
     /**
      * Builds a new DLMS/COSEM Connection.
      * 
@@ -359,6 +456,28 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
      */
     public abstract DlmsConnection build() throws IOException;
 
+    /**
+     * @return the address of the remote meter or <code>null</code>, if the connections of this builder can't be
+     *         pooled.
+     * 
+     * @see DlmsConnectionPool
+     */
+    String remoteAddress() {
+        return null;
+    }
+
+    /**
+     * @return the key of the connections of this builder in a {@link DlmsConnectionPool} or <code>null</code>.
+     */
+    String poolKey() {
+        String remoteAddress = remoteAddress();
+        if (remoteAddress == null) {
+            return null;
+        }
+        return remoteAddress + " (client " + this.clientId + ", logical device " + this.logicalDeviceId
+                + ", physical device " + this.physicalDeviceId + ")";
+    }
+
     @SuppressWarnings("unchecked")
     private T self() {
         return (T) this;
@@ -380,6 +499,9 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
         private final int physicalDeviceId;
         private final ReferencingMethod referencingMethod;
         private final RawMessageListener rawMessageListener;
+        private final int maxInFlightRequests;
+        private final ThreadFactory threadFactory;
+        private final FrameCounterTracker frameCounterTracker;
 
         public SettingsImpl(ConnectionBuilder<?> builder) {
             this.systemTitle = builder.systemTitle;
@@ -394,6 +516,9 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
             this.physicalDeviceId = builder.physicalDeviceId;
             this.referencingMethod = builder.referencingMethod;
             this.rawMessageListener = builder.rawMessageListener;
+            this.maxInFlightRequests = builder.maxInFlightRequests;
+            this.threadFactory = builder.threadFactory;
+            this.frameCounterTracker = builder.frameCounterTracker;
         }
 
         @Override
@@ -463,6 +588,21 @@ public abstract class ConnectionBuilder<T extends ConnectionBuilder<T>> {
             return this.rawMessageListener;
         }
 
+        @Override
+        public int maxInFlightRequests() {
+            return this.maxInFlightRequests;
+        }
+
+        @Override
+        public ThreadFactory threadFactory() {
+            return this.threadFactory;
+        }
+
+        @Override
+        public FrameCounterTracker frameCounterTracker() {
+            return this.frameCounterTracker;
+        }
+
         @Override
         public void updateAuthenticationKey(byte[] authenticationKey) {
             synchronized (securitySuite) {
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.EventListener;
+
+import org.openmuc.jdlms.datatypes.DataObject;
+
+/**
+ * Receives the rows of an attribute value while it is being transferred from the remote meter.
+ * 
+ * @see DlmsConnection#getRows(boolean, AttributeAddress, DataRowListener)
+ */
+public interface DataRowListener extends EventListener {
+
+    /**
+     * Invoked when a row has been decoded.
+     * 
+     * @param row
+     *            the decoded row, e.g. a structure holding the captured values of a profile generic buffer entry.
+     */
+    void rowReceived(DataObject row);
+}
@@ -29,7 +29,15 @@ import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openmuc.jasn1.ber.types.BerOctetString;
 import org.openmuc.jdlms.JDlmsException.ExceptionId;
@@ -41,11 +49,13 @@ import org.openmuc.jdlms.datatypes.DataObject.Type;
 import org.openmuc.jdlms.internal.APdu;
 import org.openmuc.jdlms.internal.ConformanceSettingConverter;
 import org.openmuc.jdlms.internal.ContextId;
+import org.openmuc.jdlms.internal.DataConverter;
 import org.openmuc.jdlms.internal.ObjectIdentifier;
 import org.openmuc.jdlms.internal.ReleaseReqReason;
 import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
 import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
 import org.openmuc.jdlms.internal.asn1.cosem.ConfirmedServiceError;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
 import org.openmuc.jdlms.internal.asn1.cosem.EXCEPTION_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.InitiateRequest;
 import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
@@ -63,7 +73,9 @@ import org.openmuc.jdlms.internal.asn1.iso.acse.RLRQApdu;
 import org.openmuc.jdlms.internal.asn1.iso.acse.ReleaseRequestReason;
 import org.openmuc.jdlms.internal.security.HlsProcessorGmac;
 import org.openmuc.jdlms.internal.security.HlsSecretProcessor;
+import org.openmuc.jdlms.internal.security.GcmModule;
 import org.openmuc.jdlms.internal.security.RandomSequenceGenerator;
+import org.openmuc.jdlms.internal.security.ReplayedApduException;
 import org.openmuc.jdlms.internal.sessionlayer.SessionLayerListener;
 import org.openmuc.jdlms.sessionlayer.SessionLayer;
 import org.openmuc.jdlms.settings.client.ConfirmedMode;
@@ -91,11 +103,15 @@ public abstract class DlmsConnection implements AutoCloseable {
 
     private int invokeId;
 
-    private IOException ioException;
+    private volatile IOException ioException;
+
+    private volatile boolean closed;
 
     private byte[] serverSystemTitle = null;
 
-    private int frameCounter;
+    private final FrameCounterTracker frameCounterTracker;
+
+    private ExecutorService asyncExecutor;
 
     DlmsConnection(Settings settings, SessionLayer sessionLayer) {
         this.settings = settings;
@@ -104,7 +120,8 @@ public abstract class DlmsConnection implements AutoCloseable {
 
         this.buffer = new byte[maxSendPduSize];
         this.invokeId = 1;
-        this.frameCounter = 1;
+        this.frameCounterTracker = settings.frameCounterTracker() != null ? settings.frameCounterTracker()
+                : new FrameCounterTracker();
         this.serverSystemTitle = settings.systemTitle();
     }
 
@@ -195,7 +212,8 @@ public abstract class DlmsConnection implements AutoCloseable {
         final SecuritySuite securitySuite = settings.securitySuite();
 
         if (securitySuite.getEncryptionMechanism() != EncryptionMechanism.NONE) {
-            return aPdu.encode(buffer, this.frameCounter++, settings.systemTitle(), securitySuite, rawMessageBuilder);
+            int frameCounter = this.frameCounterTracker.nextFrameCounter(settings.systemTitle(), securitySuite);
+            return aPdu.encode(buffer, frameCounter, settings.systemTitle(), securitySuite, rawMessageBuilder);
         }
         else {
             return unencryptedEncode(aPdu, rawMessageBuilder);
@@ -234,7 +252,19 @@ public abstract class DlmsConnection implements AutoCloseable {
         return this.maxSendPduSize;
     }
 
-    Invoke_Id_And_Priority invokeIdAndPriorityFor(boolean priority) {
+    /**
+     * The maximum size of a plain xDLMS PDU, so that the (ciphered) APDU does not exceed the max send PDU size.
+     * 
+     * @return the maximum plain PDU size.
+     */
+    int maxPlainPduSize() {
+        if (settings.securitySuite().getEncryptionMechanism() != EncryptionMechanism.NONE) {
+            return maxSendPduSize() - GcmModule.MAX_CIPHERING_OVERHEAD;
+        }
+        return maxSendPduSize();
+    }
+
+    synchronized Invoke_Id_And_Priority invokeIdAndPriorityFor(boolean priority) {
 
         byte[] invokeIdAndPriorityBytes = new byte[] { (byte) (invokeId & 0xF) };
         if (confirmedModeEnabled()) {
@@ -249,7 +279,7 @@ public abstract class DlmsConnection implements AutoCloseable {
         return result;
     }
 
-    void send(COSEMpdu pdu) throws IOException {
+    synchronized void send(COSEMpdu pdu) throws IOException {
         APdu aPdu = new APdu(null, pdu);
         RawMessageDataBuilder rawMessageBuilder = RawMessageData.builder().setMessageSource(MessageSource.CLIENT);
 
@@ -344,6 +374,112 @@ public abstract class DlmsConnection implements AutoCloseable {
      */
     public abstract List<GetResult> get(boolean priority, List<AttributeAddress> params) throws IOException;
 
+    /**
+     * Convenience method to call {@code getBatched(false, params)}.
+     * 
+     * @param params
+     *            args of specifiers which attributes to send (See {@link AttributeAddress})
+     * @return List of results from the smart meter in the same order as the requests
+     * 
+     * @throws IOException
+     *             if the connection breaks, while requesting.
+     *             <p>
+     *             May be of type {@link FatalJDlmsException} or {@link ResponseTimeoutException}
+     *             </p>
+     * 
+     * @see #getBatched(boolean, List)
+     */
+    public final List<GetResult> getBatched(List<AttributeAddress> params) throws IOException {
+        return getBatched(false, params);
+    }
+
+    /**
+     * Requests the remote smart meter to send the values of an arbitrary number of attributes.
+     * 
+     * <p>
+     * In contrast to {@link #get(boolean, List)} the attributes are split into as few requests as possible, so that
+     * every request fits into the negotiated max PDU size. The requests are sent pipelined, if
+     * {@link ConnectionBuilder#setMaxInFlightRequests(int)} allows more than one request in flight.
+     * </p>
+     * 
+     * @param priority
+     *            if true: sends this request with high priority, if supported
+     * @param params
+     *            args of specifiers which attributes to send (See {@link AttributeAddress})
+     * @return List of results from the smart meter in the same order as the requests
+     * 
+     * @throws IOException
+     *             if the connection breaks, while requesting.
+     *             <p>
+     *             May be of type {@link FatalJDlmsException} or {@link ResponseTimeoutException}
+     *             </p>
+     */
+    public abstract List<GetResult> getBatched(boolean priority, List<AttributeAddress> params) throws IOException;
+
+    /**
+     * Convenience method to call {@code getRows(false, attributeAddress, listener)}.
+     * 
+     * @param attributeAddress
+     *            specifier of the attribute to read (See {@link AttributeAddress})
+     * @param listener
+     *            receives the rows of the attribute value
+     * @return {@link AccessResultCode#SUCCESS} if the value has been read, the access result of the server otherwise.
+     * 
+     * @throws IOException
+     *             if the connection breaks, while requesting.
+     *             <p>
+     *             May be of type {@link FatalJDlmsException} or {@link ResponseTimeoutException}
+     *             </p>
+     * 
+     * @see #getRows(boolean, AttributeAddress, DataRowListener)
+     */
+    public final AccessResultCode getRows(AttributeAddress attributeAddress, DataRowListener listener)
+            throws IOException {
+        return getRows(false, attributeAddress, listener);
+    }
+
+    /**
+     * Requests the remote smart meter to send the value of an attribute and passes it row by row to the listener.
+     * 
+     * <p>
+     * If the value is an array, e.g. the buffer of a profile generic, every element is passed to the listener as soon
+     * as it has been decoded. With a block transfer the rows of a block are processed before the next block is
+     * requested, so the whole value is never held in memory. Any other value is passed as a single row.
+     * </p>
+     * 
+     * @param priority
+     *            if true: sends this request with high priority, if supported
+     * @param attributeAddress
+     *            specifier of the attribute to read (See {@link AttributeAddress})
+     * @param listener
+     *            receives the rows of the attribute value
+     * @return {@link AccessResultCode#SUCCESS} if the value has been read, the access result of the server otherwise.
+     * 
+     * @throws IOException
+     *             if the connection breaks, while requesting.
+     *             <p>
+     *             May be of type {@link FatalJDlmsException} or {@link ResponseTimeoutException}
+     *             </p>
+     */
+    public final AccessResultCode getRows(boolean priority, AttributeAddress attributeAddress,
+            final DataRowListener listener) throws IOException {
+        return getRawRows(priority, attributeAddress, new RawRowListener() {
+
+            @Override
+            public void rowReceived(Data row) {
+                listener.rowReceived(DataConverter.convertDataToDataObject(row));
+            }
+
+            @Override
+            public void blockReceived() {
+                // the rows have already been passed
+            }
+        });
+    }
+
+    abstract AccessResultCode getRawRows(boolean priority, AttributeAddress attributeAddress, RawRowListener listener)
+            throws IOException;
+
     /**
      * Requests the remote smart meter to set one attribute to the committed value.
      * 
@@ -515,6 +651,173 @@ public abstract class DlmsConnection implements AutoCloseable {
      */
     public abstract List<MethodResult> action(boolean priority, List<MethodParameter> params) throws IOException;
 
+    /**
+     * Requests the remote smart meter to send the values of one or several attributes, without waiting for the
+     * response.
+     * 
+     * <p>
+     * Convenience method to call {@code getAsync(false, params)}.
+     * </p>
+     * 
+     * @param params
+     *            args of specifiers which attributes to send (See {@link AttributeAddress})
+     * @return a future of the results from the smart meter in the same order as the requests.
+     * 
+     * @see #getAsync(boolean, List)
+     */
+    public final Future<List<GetResult>> getAsync(List<AttributeAddress> params) {
+        return getAsync(false, params);
+    }
+
+    /**
+     * Requests the remote smart meter to send the values of one or several attributes, without waiting for the
+     * response.
+     * 
+     * <p>
+     * Up to {@link ConnectionBuilder#setMaxInFlightRequests(int)} requests are sent to the meter, before their
+     * responses arrive. The responses are matched to the requests by their invoke ID. If the connection breaks while
+     * requesting, the future fails with an {@link IOException}.
+     * </p>
+     * 
+     * @param priority
+     *            if true: sends this request with high priority, if supported
+     * @param params
+     *            args of specifiers which attributes to send (See {@link AttributeAddress})
+     * @return a future of the results from the smart meter in the same order as the requests.
+     * 
+     * @see #get(boolean, List)
+     */
+    public final Future<List<GetResult>> getAsync(final boolean priority, final List<AttributeAddress> params) {
+        return asyncExecutor().submit(new Callable<List<GetResult>>() {
+
+            @Override
+            public List<GetResult> call() throws IOException {
+                return get(priority, params);
+            }
+        });
+    }
+
+    /**
+     * Requests the remote smart meter to set one or several attributes, without waiting for the response.
+     * 
+     * <p>
+     * Convenience method to call {@code setAsync(false, params)}.
+     * </p>
+     * 
+     * @param params
+     *            args of specifier which attributes to set to which values (See {@link SetParameter})
+     * @return a future of the results from the smart meter in the same order as the requests.
+     * 
+     * @see #setAsync(boolean, List)
+     */
+    public final Future<List<AccessResultCode>> setAsync(List<SetParameter> params) {
+        return setAsync(false, params);
+    }
+
+    /**
+     * Requests the remote smart meter to set one or several attributes, without waiting for the response.
+     * 
+     * @param priority
+     *            Sends this request with high priority, if supported
+     * @param params
+     *            args of specifier which attributes to set to which values (See {@link SetParameter})
+     * @return a future of the results from the smart meter in the same order as the requests.
+     * 
+     * @see #set(boolean, List)
+     * @see #getAsync(boolean, List)
+     */
+    public final Future<List<AccessResultCode>> setAsync(final boolean priority, final List<SetParameter> params) {
+        return asyncExecutor().submit(new Callable<List<AccessResultCode>>() {
+
+            @Override
+            public List<AccessResultCode> call() throws IOException {
+                return set(priority, params);
+            }
+        });
+    }
+
+    /**
+     * Requests the remote smart meter to call one or several methods, without waiting for the response.
+     * 
+     * <p>
+     * Convenience method to call {@code actionAsync(false, params)}.
+     * </p>
+     * 
+     * @param params
+     *            List of specifier which methods to be called and, if needed, what parameters to call (See
+     *            {@link MethodParameter}
+     * @return a future of the results from the smart meter in the same order as the requests.
+     * 
+     * @see #actionAsync(boolean, List)
+     */
+    public final Future<List<MethodResult>> actionAsync(List<MethodParameter> params) {
+        return actionAsync(false, params);
+    }
+
+    /**
+     * Requests the remote smart meter to call one or several methods, without waiting for the response.
+     * 
+     * @param priority
+     *            Sends this request with high priority, if supported
+     * @param params
+     *            List of specifier which methods to be called and, if needed, what parameters to call (See
+     *            {@link MethodParameter}
+     * @return a future of the results from the smart meter in the same order as the requests.
+     * 
+     * @see #action(boolean, List)
+     * @see #getAsync(boolean, List)
+     */
+    public final Future<List<MethodResult>> actionAsync(final boolean priority, final List<MethodParameter> params) {
+        return asyncExecutor().submit(new Callable<List<MethodResult>>() {
+
+            @Override
+            public List<MethodResult> call() throws IOException {
+                return action(priority, params);
+            }
+        });
+    }
+
+    /**
+     * Waits for the result of an asynchronous request.
+     * 
+     * @param future
+     *            the future of the request.
+     * @return the result.
+     * @throws IOException
+     *             if the request failed.
+     */
+    static <T> T resultOf(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for incoming response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private synchronized ExecutorService asyncExecutor() {
+        if (this.asyncExecutor == null) {
+            int numberOfThreads = maxParallelRequests();
+            ThreadFactory threadFactory = this.settings.threadFactory();
+            if (threadFactory == null) {
+                threadFactory = new AsyncRequestThreadFactory();
+            }
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60L,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            this.asyncExecutor = executor;
+        }
+        return this.asyncExecutor;
+    }
+
     /**
      * Disconnects gracefully from the server.
      * 
@@ -571,9 +874,26 @@ public abstract class DlmsConnection implements AutoCloseable {
      */
     @Override
     public void close() throws IOException {
+        this.closed = true;
+        synchronized (this) {
+            if (this.asyncExecutor != null) {
+                this.asyncExecutor.shutdownNow();
+            }
+        }
         this.sessionLayer.close();
     }
 
+    private static class AsyncRequestThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadCounter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jdlms-async-request-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     private class SessionLayerListenerImpl implements SessionLayerListener {
         @Override
         public void dataReceived(byte[] data, RawMessageDataBuilder rawMessageBuilder) {
@@ -588,7 +908,7 @@ public abstract class DlmsConnection implements AutoCloseable {
                 }
 
                 if (securitySuite.getEncryptionMechanism() != EncryptionMechanism.NONE) {
-                    aPdu = APdu.decode(data, serverSystemTitle, frameCounter, securitySuite, rawMessageBuilder);
+                    aPdu = APdu.decode(data, serverSystemTitle, frameCounterTracker, securitySuite, rawMessageBuilder);
                 }
                 else {
                     aPdu = APdu.decode(data, rawMessageBuilder);
@@ -599,6 +919,9 @@ public abstract class DlmsConnection implements AutoCloseable {
                     return;
                 }
 
+            } catch (ReplayedApduException e) {
+                // the replayed APDU is discarded, the awaited response may still arrive
+                return;
             } catch (IOException e) {
                 errorOnIncome(e);
                 return;
@@ -639,6 +962,7 @@ public abstract class DlmsConnection implements AutoCloseable {
         private void errorOnIncome(IOException ex) {
             ioException = ex;
             incomingResponses.putError(ex);
+            processError(ex);
         }
 
         @Override
@@ -671,6 +995,19 @@ public abstract class DlmsConnection implements AutoCloseable {
 
     abstract void processPdu(COSEMpdu pdu);
 
+    /**
+     * Called if an error occurred while receiving, to fail the requests waiting for a response.
+     * 
+     * @param e
+     *            the error.
+     */
+    abstract void processError(IOException e);
+
+    /**
+     * @return the number of requests which may be in flight at the same time.
+     */
+    abstract int maxParallelRequests();
+
     abstract void validateReferencingMethod() throws IOException;
 
     abstract MethodResult hlsAuthentication(byte[] processedChallenge) throws IOException;
@@ -732,7 +1069,8 @@ public abstract class DlmsConnection implements AutoCloseable {
         byte[] frameCounter = new byte[4];
         int frameCounterInt;
         processedChallenge = hlsSecretProcessor.process(serverToClientChallenge, securitySuite.getAuthenticationKey(),
-                securitySuite.getGlobalUnicastEncryptionKey(), settings.systemTitle(), this.frameCounter);
+                securitySuite.getGlobalUnicastEncryptionKey(), settings.systemTitle(),
+                this.frameCounterTracker.nextFrameCounter(settings.systemTitle(), securitySuite));
         try {
             remoteResponse = hlsAuthentication(processedChallenge);
         } catch (ResponseTimeoutException e) {
@@ -800,6 +1138,13 @@ public abstract class DlmsConnection implements AutoCloseable {
         }
     }
 
+    /**
+     * @return <code>false</code> if the connection has been closed or the session layer failed.
+     */
+    boolean isUsable() {
+        return !this.closed && this.ioException == null;
+    }
+
     Settings connectionSettings() {
         return this.settings;
     }
@@ -0,0 +1,564 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.jdlms.JDlmsException.ExceptionId;
+import org.openmuc.jdlms.JDlmsException.Fault;
+
+/**
+ * Keeps associations to meters open, so that they can be reused instead of connecting to the meter for every poll.
+ * 
+ * <p>
+ * The connections are keyed by the address of the meter, the client ID and the logical and physical device ID of the
+ * connection builder. All connections with the same key are assumed to be interchangeable, the remaining settings of
+ * the builder are only used to build new connections.
+ * </p>
+ * 
+ * <pre>
+ * DlmsConnection connection = pool.borrow(connectionBuilder);
+ * try {
+ *     connection.get(attributeAddress);
+ *     pool.release(connection);
+ * } catch (IOException e) {
+ *     pool.invalidate(connection);
+ *     throw e;
+ * }
+ * </pre>
+ * 
+ * <p>
+ * Connections idle for longer than the maximum idle time are released with a graceful disconnect. A borrowed
+ * connection, which has been idle for longer than the validation interval, is checked by reading the validation
+ * attribute first. The pool is thread safe.
+ * </p>
+ */
+public class DlmsConnectionPool implements AutoCloseable {
+
+    private final int maxConnectionsPerEndpoint;
+    private final long maxIdleTimeNanos;
+    private final long validationIntervalNanos;
+    private final AttributeAddress validationAddress;
+    private final long borrowTimeoutNanos;
+
+    private final ScheduledExecutorService evictor;
+
+    private final Map<String, Endpoint> endpoints;
+    private final Map<DlmsConnection, Endpoint> borrowedConnections;
+
+    private boolean closed;
+
+    private DlmsConnectionPool(DlmsConnectionPoolBuilder builder) {
+        this.maxConnectionsPerEndpoint = builder.maxConnectionsPerEndpoint;
+        this.maxIdleTimeNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxIdleTime);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.validationInterval);
+        this.validationAddress = builder.validationAddress;
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.borrowTimeout);
+
+        this.endpoints = new HashMap<>();
+        this.borrowedConnections = new IdentityHashMap<>();
+        this.closed = false;
+
+        if (builder.maxIdleTime > 0) {
+            ThreadFactory threadFactory = builder.threadFactory;
+            if (threadFactory == null) {
+                threadFactory = new EvictorThreadFactory();
+            }
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+            long period = Math.max(builder.maxIdleTime / 2, 1);
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictIdleConnections();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+            this.evictor = executor;
+        }
+        else {
+            this.evictor = null;
+        }
+    }
+
+    /**
+     * Creates a builder for a connection pool.
+     * 
+     * @return a new builder with default settings.
+     */
+    public static DlmsConnectionPoolBuilder builder() {
+        return new DlmsConnectionPoolBuilder();
+    }
+
+    /**
+     * Borrows a connection to the meter of the connection builder.
+     * 
+     * <p>
+     * An idle connection to the meter is reused if there is one. Otherwise a new connection is built, if the endpoint
+     * has less than the maximum number of connections. Else the method waits until a connection is returned.
+     * </p>
+     * 
+     * @param connectionBuilder
+     *            the builder of the connections to the meter.
+     * @return a connection, which has to be given back with {@link #release(DlmsConnection)} or
+     *         {@link #invalidate(DlmsConnection)}.
+     * @throws IOException
+     *             if building a new connection failed, or if no connection became available within the borrow
+     *             timeout.
+     * @throws IllegalArgumentException
+     *             if the connections of the builder can't be pooled.
+     * @throws IllegalStateException
+     *             if the pool has been closed.
+     */
+    public DlmsConnection borrow(ConnectionBuilder<?> connectionBuilder) throws IOException {
+        String key = connectionBuilder.poolKey();
+        if (key == null) {
+            throw new IllegalArgumentException("The connections of the builder can't be pooled, no meter address set.");
+        }
+
+        long deadline = System.nanoTime() + this.borrowTimeoutNanos;
+        while (true) {
+            Endpoint endpoint;
+            PooledConnection idleConnection;
+            synchronized (this) {
+                checkOpen();
+                endpoint = endpointFor(key);
+                idleConnection = endpoint.idleConnections.pollFirst();
+
+                if (idleConnection == null && endpoint.numConnections >= this.maxConnectionsPerEndpoint) {
+                    waitForReturn(key, deadline);
+                    continue;
+                }
+                else if (idleConnection == null) {
+                    // reserve the connection, it is built outside of the lock
+                    ++endpoint.numConnections;
+                }
+            }
+
+            if (idleConnection == null) {
+                return buildConnection(connectionBuilder, endpoint);
+            }
+
+            DlmsConnection connection = idleConnection.connection;
+            if (isHealthy(idleConnection)) {
+                synchronized (this) {
+                    this.borrowedConnections.put(connection, endpoint);
+                }
+                return connection;
+            }
+
+            discard(endpoint, connection);
+        }
+    }
+
+    private DlmsConnection buildConnection(ConnectionBuilder<?> connectionBuilder, Endpoint endpoint)
+            throws IOException {
+        DlmsConnection connection;
+        try {
+            connection = connectionBuilder.build();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                --endpoint.numConnections;
+                notifyAll();
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (!this.closed) {
+                this.borrowedConnections.put(connection, endpoint);
+                return connection;
+            }
+        }
+
+        discard(endpoint, connection);
+        throw new IllegalStateException("The connection pool has been closed.");
+    }
+
+    private void waitForReturn(String key, long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new NonFatalJDlmsException(ExceptionId.CONNECTION_POOL_EXHAUSTED, Fault.SYSTEM,
+                    MessageFormat.format("All {0} connections to {1} are in use.", this.maxConnectionsPerEndpoint,
+                            key));
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a pooled connection.", e);
+        }
+    }
+
+    private boolean isHealthy(PooledConnection idleConnection) {
+        DlmsConnection connection = idleConnection.connection;
+        if (!connection.isUsable()) {
+            return false;
+        }
+
+        long idleTime = System.nanoTime() - idleConnection.releaseTime;
+        if (this.validationAddress == null || idleTime < this.validationIntervalNanos) {
+            return true;
+        }
+
+        try {
+            // any answer of the meter proves, that the association is still open
+            connection.get(this.validationAddress);
+            return connection.isUsable();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. Connections, which failed or have been closed, are discarded.
+     * 
+     * @param connection
+     *            the connection borrowed from this pool.
+     * @throws IllegalArgumentException
+     *             if the connection isn't borrowed from this pool.
+     */
+    public void release(DlmsConnection connection) {
+        Endpoint endpoint;
+        synchronized (this) {
+            endpoint = removeBorrowed(connection);
+
+            if (!this.closed && connection.isUsable()) {
+                endpoint.idleConnections.addFirst(new PooledConnection(connection, System.nanoTime()));
+                notifyAll();
+                return;
+            }
+        }
+
+        discard(endpoint, connection);
+    }
+
+    /**
+     * Closes a borrowed connection and removes it from the pool. Invalidate a connection, if a request on it failed
+     * and the association might be broken.
+     * 
+     * @param connection
+     *            the connection borrowed from this pool.
+     * @throws IllegalArgumentException
+     *             if the connection isn't borrowed from this pool.
+     */
+    public void invalidate(DlmsConnection connection) {
+        Endpoint endpoint;
+        synchronized (this) {
+            endpoint = removeBorrowed(connection);
+        }
+
+        discard(endpoint, connection);
+    }
+
+    private Endpoint removeBorrowed(DlmsConnection connection) {
+        Endpoint endpoint = this.borrowedConnections.remove(connection);
+        if (endpoint == null) {
+            throw new IllegalArgumentException("The connection has not been borrowed from this pool.");
+        }
+        return endpoint;
+    }
+
+    private void discard(Endpoint endpoint, DlmsConnection connection) {
+        synchronized (this) {
+            --endpoint.numConnections;
+            notifyAll();
+        }
+
+        closeQuietly(connection);
+    }
+
+    /**
+     * Disconnects all connections, which have been idle for longer than the maximum idle time. This method is called
+     * periodically, if a maximum idle time is set.
+     */
+    public void evictIdleConnections() {
+        if (this.maxIdleTimeNanos == 0) {
+            return;
+        }
+
+        List<DlmsConnection> evictedConnections = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Endpoint endpoint : this.endpoints.values()) {
+                // the least recently released connections are at the end
+                Iterator<PooledConnection> iterator = endpoint.idleConnections.descendingIterator();
+                while (iterator.hasNext()) {
+                    PooledConnection idleConnection = iterator.next();
+                    if (now - idleConnection.releaseTime < this.maxIdleTimeNanos) {
+                        break;
+                    }
+                    iterator.remove();
+                    --endpoint.numConnections;
+                    evictedConnections.add(idleConnection.connection);
+                }
+            }
+
+            if (!evictedConnections.isEmpty()) {
+                notifyAll();
+            }
+        }
+
+        for (DlmsConnection connection : evictedConnections) {
+            disconnectQuietly(connection);
+        }
+    }
+
+    /**
+     * @return the number of idle connections of all meters.
+     */
+    public synchronized int getNumIdle() {
+        int numIdle = 0;
+        for (Endpoint endpoint : this.endpoints.values()) {
+            numIdle += endpoint.idleConnections.size();
+        }
+        return numIdle;
+    }
+
+    /**
+     * @return the number of borrowed connections of all meters.
+     */
+    public synchronized int getNumBorrowed() {
+        return this.borrowedConnections.size();
+    }
+
+    /**
+     * Disconnects all idle connections and stops the eviction. Borrowed connections are closed on release.
+     */
+    @Override
+    public void close() {
+        List<DlmsConnection> idleConnections = new ArrayList<>();
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+
+            for (Endpoint endpoint : this.endpoints.values()) {
+                for (PooledConnection idleConnection : endpoint.idleConnections) {
+                    idleConnections.add(idleConnection.connection);
+                }
+                endpoint.numConnections -= endpoint.idleConnections.size();
+                endpoint.idleConnections.clear();
+            }
+            notifyAll();
+        }
+
+        if (this.evictor != null) {
+            this.evictor.shutdownNow();
+        }
+
+        for (DlmsConnection connection : idleConnections) {
+            disconnectQuietly(connection);
+        }
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("The connection pool has been closed.");
+        }
+    }
+
+    private Endpoint endpointFor(String key) {
+        Endpoint endpoint = this.endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = new Endpoint();
+            this.endpoints.put(key, endpoint);
+        }
+        return endpoint;
+    }
+
+    private static void disconnectQuietly(DlmsConnection connection) {
+        try {
+            connection.disconnect();
+        } catch (IOException e) {
+            // the connection is closed anyway
+        }
+    }
+
+    private static void closeQuietly(DlmsConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // ignore, the connection is dropped
+        }
+    }
+
+    private static class Endpoint {
+        /**
+         * The most recently released connection first.
+         */
+        private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+
+        /**
+         * The number of idle, borrowed and currently built connections.
+         */
+        private int numConnections;
+    }
+
+    private static class PooledConnection {
+        private final DlmsConnection connection;
+        private final long releaseTime;
+
+        public PooledConnection(DlmsConnection connection, long releaseTime) {
+            this.connection = connection;
+            this.releaseTime = releaseTime;
+        }
+    }
+
+    private static class EvictorThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jdlms-connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Builder of a {@link DlmsConnectionPool}.
+     */
+    public static class DlmsConnectionPoolBuilder {
+
+        private int maxConnectionsPerEndpoint;
+        private long maxIdleTime;
+        private long validationInterval;
+        private AttributeAddress validationAddress;
+        private long borrowTimeout;
+        private ThreadFactory threadFactory;
+
+        private DlmsConnectionPoolBuilder() {
+            this.maxConnectionsPerEndpoint = 1;
+            this.maxIdleTime = 60000;
+            this.validationInterval = 30000;
+            this.validationAddress = null;
+            this.borrowTimeout = 20000;
+            this.threadFactory = null;
+        }
+
+        /**
+         * Sets the maximum number of connections to a single meter. Default is <code>1</code>, as most meters accept
+         * only one association per client.
+         * 
+         * @param maxConnectionsPerEndpoint
+         *            the maximum number of idle and borrowed connections per key.
+         * @return the builder.
+         */
+        public DlmsConnectionPoolBuilder setMaxConnectionsPerEndpoint(int maxConnectionsPerEndpoint) {
+            if (maxConnectionsPerEndpoint < 1) {
+                throw new IllegalArgumentException("At least one connection per endpoint must be allowed.");
+            }
+            this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+            return this;
+        }
+
+        /**
+         * Sets the time in <u>ms</u> after which an idle connection is disconnected. Default is <code>60000</code>.
+         * Meters release inactive associations on their own, the time should be shorter than the inactivity timeout
+         * of the meters.
+         * 
+         * @param maxIdleTime
+         *            the maximum idle time or <code>0</code> to keep idle connections until the pool is closed.
+         * @return the builder.
+         */
+        public DlmsConnectionPoolBuilder setMaxIdleTime(long maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        /**
+         * Sets the attribute read to validate a connection before it is borrowed, e.g. the logical name of the
+         * current association <code>new AttributeAddress(15, "0.0.40.0.0.255", 1)</code>. Default is
+         * <code>null</code>, then only connections, which failed locally, are discarded.
+         * 
+         * @param validationAddress
+         *            the attribute or <code>null</code>.
+         * @return the builder.
+         */
+        public DlmsConnectionPoolBuilder setValidationAddress(AttributeAddress validationAddress) {
+            this.validationAddress = validationAddress;
+            return this;
+        }
+
+        /**
+         * Sets the time in <u>ms</u> a connection may be idle before it is validated on borrow. Default is
+         * <code>30000</code>.
+         * 
+         * @param validationInterval
+         *            the validation interval.
+         * @return the builder.
+         * 
+         * @see #setValidationAddress(AttributeAddress)
+         */
+        public DlmsConnectionPoolBuilder setValidationInterval(long validationInterval) {
+            this.validationInterval = validationInterval;
+            return this;
+        }
+
+        /**
+         * Sets the time in <u>ms</u> to wait for a connection, if all connections to the meter are borrowed. Default
+         * is <code>20000</code>.
+         * 
+         * @param borrowTimeout
+         *            the borrow timeout.
+         * @return the builder.
+         */
+        public DlmsConnectionPoolBuilder setBorrowTimeout(long borrowTimeout) {
+            this.borrowTimeout = borrowTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the factory of the thread, which disconnects idle connections.
+         * 
+         * @param threadFactory
+         *            the thread factory or <code>null</code> to create a daemon thread.
+         * @return the builder.
+         */
+        public DlmsConnectionPoolBuilder setThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Builds the pool.
+         * 
+         * @return a new connection pool.
+         */
+        public DlmsConnectionPool build() {
+            return new DlmsConnectionPool(this);
+        }
+    }
+
+}
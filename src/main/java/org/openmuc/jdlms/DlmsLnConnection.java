@@ -47,7 +47,9 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
 
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
 import org.openmuc.jdlms.JDlmsException.ExceptionId;
 import org.openmuc.jdlms.JDlmsException.Fault;
 import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
@@ -57,20 +59,28 @@ import org.openmuc.jdlms.internal.ContextId;
 import org.openmuc.jdlms.internal.DataConverter;
 import org.openmuc.jdlms.internal.PduHelper;
 import org.openmuc.jdlms.internal.WellKnownInstanceIds;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
 import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
 import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrEnum;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
 import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Request;
 import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_Next_Pblock;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_First_Pblock;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_List_And_First_Pblock;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_Pblock;
 import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_With_Optional_Data;
 import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
 import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor_With_Selection;
 import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Method_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_G;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_SA;
 import org.openmuc.jdlms.internal.asn1.cosem.GET_Request;
 import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.Get_Data_Result;
@@ -83,7 +93,11 @@ import org.openmuc.jdlms.internal.asn1.cosem.SET_Request;
 import org.openmuc.jdlms.internal.asn1.cosem.SET_Response;
 import org.openmuc.jdlms.internal.asn1.cosem.Selective_Access_Descriptor;
 import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_Datablock;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_First_Datablock;
 import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Request_With_List_And_First_Datablock;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
 import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
 import org.openmuc.jdlms.sessionlayer.SessionLayer;
 import org.openmuc.jdlms.settings.client.Settings;
@@ -98,8 +112,11 @@ class DlmsLnConnection extends DlmsConnection {
     private final ResponseQueue<GET_Response> getResponseQueue = new ResponseQueue<>();
     private final ResponseQueue<SET_Response> setResponseQueue = new ResponseQueue<>();
 
+    private final InvokeIdPool invokeIdPool;
+
     DlmsLnConnection(Settings settings, SessionLayer sessionlayer) throws IOException {
         super(settings, sessionlayer);
+        this.invokeIdPool = new InvokeIdPool(settings.maxInFlightRequests());
     }
 
     @Override
@@ -108,8 +125,34 @@ class DlmsLnConnection extends DlmsConnection {
             return emptyList();
         }
 
-        Invoke_Id_And_Priority id = invokeIdAndPriorityFor(priority);
-        int invokeId = PduHelper.invokeIdFrom(id);
+        Invoke_Id_And_Priority id = acquireInvokeIdAndPriority(priority);
+        try {
+            return get(id, params);
+        } finally {
+            this.invokeIdPool.release(invokeIdFrom(id));
+        }
+    }
+
+    private List<GetResult> get(Invoke_Id_And_Priority id, List<AttributeAddress> params) throws IOException {
+        GET_Response response = sendGetRequest(id, params);
+
+        switch (response.getChoiceIndex()) {
+        case GET_RESPONSE_NORMAL:
+            return Arrays.asList(convertPduToGetResult(response.get_response_normal.result));
+        case GET_RESPONSE_WITH_DATABLOCK:
+            return readDataBlockG(response, params);
+        case GET_RESPONSE_WITH_LIST:
+            return convertListToDataObject(response.get_response_with_list.result.list());
+        default:
+            throw new IllegalStateException(String.format(
+                    "Unknown response type with Choice Index %s. Please report to developer of the stack.",
+                    response.getChoiceIndex()));
+        }
+    }
+
+    private GET_Response sendGetRequest(Invoke_Id_And_Priority id, List<AttributeAddress> params)
+            throws IOException {
+        int invokeId = invokeIdFrom(id);
         COSEMpdu pdu = createGetPdu(id, params);
 
         int pduSize = pduSizeOf(pdu);
@@ -121,34 +164,160 @@ class DlmsLnConnection extends DlmsConnection {
                             "PDU ({0} byte) is too long for single GET.request. Max send PDU size is {1} byte.",
                             pduSize, maxSendPduSize()));
         }
+        getResponseQueue.expectResponseFor(invokeId);
         send(pdu);
-        int responseTimeout = connectionSettings().responseTimeout();
-        GET_Response response = getResponseQueue.poll(invokeId, responseTimeout);
+        return getResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
+    }
 
-        switch (response.getChoiceIndex()) {
-        case GET_RESPONSE_NORMAL:
-            return Arrays.asList(convertPduToGetResult(response.get_response_normal.result));
-        case GET_RESPONSE_WITH_DATABLOCK:
-            return readDataBlockG(priority, response, params);
-        case GET_RESPONSE_WITH_LIST:
-            return convertListToDataObject(response.get_response_with_list.result.list());
-        default:
-            throw new IllegalStateException(String.format(
-                    "Unknown response type with Choice Index %s. Please report to developer of the stack.",
-                    response.getChoiceIndex()));
+    @Override
+    AccessResultCode getRawRows(boolean priority, AttributeAddress attributeAddress, RawRowListener listener)
+            throws IOException {
+        Invoke_Id_And_Priority id = acquireInvokeIdAndPriority(priority);
+        try {
+            GET_Response response = sendGetRequest(id, Arrays.asList(attributeAddress));
+
+            switch (response.getChoiceIndex()) {
+            case GET_RESPONSE_NORMAL:
+                Get_Data_Result result = response.get_response_normal.result;
+                if (result.getChoiceIndex() != Get_Data_Result.Choices.DATA) {
+                    return enumValueFrom(result.data_access_result, AccessResultCode.class);
+                }
+                if (result.data.getChoiceIndex() == Data.Choices.ARRAY) {
+                    for (Data row : result.data.array.list()) {
+                        listener.rowReceived(row);
+                    }
+                }
+                else {
+                    listener.rowReceived(result.data);
+                }
+                return AccessResultCode.SUCCESS;
+
+            case GET_RESPONSE_WITH_DATABLOCK:
+                DataBlockInputStream dataByteStream = new DataBlockInputStream(response, listener);
+                readRows(dataByteStream, listener);
+                dataByteStream.skipRemainingBlocks();
+                return AccessResultCode.SUCCESS;
+
+            default:
+                throw new IOException("Server answered with an illegal response.");
+            }
+        } finally {
+            this.invokeIdPool.release(invokeIdFrom(id));
+        }
+    }
+
+    /*
+     * Decodes the elements of an array one after another, so every row is passed to the listener as soon as its last
+     * byte has been received.
+     */
+    private static void readRows(DataBlockInputStream dataByteStream, RawRowListener listener) throws IOException {
+        if (dataByteStream.peek() != Data.Choices.ARRAY.getValue()) {
+            Data value = new Data();
+            value.decode(dataByteStream);
+            listener.rowReceived(value);
+            return;
+        }
+
+        // skip the tag of the array
+        dataByteStream.read();
+        AxdrLength numberOfRows = new AxdrLength();
+        numberOfRows.decode(dataByteStream);
+
+        for (int i = 0; i < numberOfRows.getValue(); i++) {
+            Data row = new Data();
+            row.decode(dataByteStream);
+            listener.rowReceived(row);
+        }
+    }
+
+    @Override
+    public List<GetResult> getBatched(boolean priority, List<AttributeAddress> params) throws IOException {
+        List<List<AttributeAddress>> batches = splitIntoGetRequests(params);
+        if (batches.size() <= 1) {
+            return get(priority, params);
+        }
+
+        List<Future<List<GetResult>>> futures = new ArrayList<>(batches.size());
+        for (List<AttributeAddress> batch : batches) {
+            futures.add(getAsync(priority, batch));
+        }
+
+        List<GetResult> result = new ArrayList<>(params.size());
+        try {
+            for (Future<List<GetResult>> future : futures) {
+                result.addAll(resultOf(future));
+            }
+        } finally {
+            for (Future<List<GetResult>> future : futures) {
+                future.cancel(true);
+            }
         }
+        return result;
     }
 
-    private List<GetResult> readDataBlockG(boolean priority, GET_Response response, List<AttributeAddress> params)
+    /*
+     * Packs the attribute addresses greedily into as few GET requests as possible, each fitting into the max send PDU
+     * size.
+     */
+    List<List<AttributeAddress>> splitIntoGetRequests(List<AttributeAddress> params) throws IOException {
+        List<List<AttributeAddress>> batches = new ArrayList<>();
+        if (params.isEmpty()) {
+            return batches;
+        }
+
+        if (!negotiatedFeatures().contains(MULTIPLE_REFERENCES)) {
+            for (AttributeAddress param : params) {
+                batches.add(Arrays.asList(param));
+            }
+            return batches;
+        }
+
+        final int maxPduSize = maxPlainPduSize();
+        final int listOverhead = pduSizeOf(emptyGetRequestWithList()) - AxdrLength.encodeLength(0).length;
+
+        List<AttributeAddress> batch = new ArrayList<>();
+        int batchElementsSize = 0;
+        for (AttributeAddress param : params) {
+            int elementSize = pduSizeOf(descriptorWithSelectionFor(param));
+
+            int newBatchSize = listOverhead + AxdrLength.encodeLength(batch.size() + 1).length + batchElementsSize
+                    + elementSize;
+            if (!batch.isEmpty() && newBatchSize > maxPduSize) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchElementsSize = 0;
+            }
+
+            batch.add(param);
+            batchElementsSize += elementSize;
+        }
+        batches.add(batch);
+
+        return batches;
+    }
+
+    private static COSEMpdu emptyGetRequestWithList() {
+        Get_Request_With_List requestList = new Get_Request_With_List();
+        requestList.invoke_id_and_priority = new Invoke_Id_And_Priority(new byte[1]);
+        requestList.attribute_descriptor_list = new Get_Request_With_List.SubSeqOf_attribute_descriptor_list();
+
+        GET_Request getRequest = new GET_Request();
+        getRequest.setget_request_with_list(requestList);
+
+        COSEMpdu pdu = new COSEMpdu();
+        pdu.setget_request(getRequest);
+        return pdu;
+    }
+
+    private List<GetResult> readDataBlockG(GET_Response response, List<AttributeAddress> params)
             throws IOException {
-        GetResult res;
-        byte[] byteArray = readBlocks(response, priority);
-        InputStream dataByteStream = new ByteArrayInputStream(byteArray);
+        DataBlockInputStream dataByteStream = new DataBlockInputStream(response, null);
 
+        List<GetResult> result;
         if (params.size() > 1) {
             SubSeqOf_result subSeqOfResult = new SubSeqOf_result();
             subSeqOfResult.decode(dataByteStream);
-            return convertListToDataObject(subSeqOfResult.list());
+            result = convertListToDataObject(subSeqOfResult.list());
         }
         else {
             Data resultPduData = new Data();
@@ -157,31 +326,73 @@ class DlmsLnConnection extends DlmsConnection {
             Get_Data_Result getResult = new Get_Data_Result();
             getResult.setdata(resultPduData);
 
-            res = convertPduToGetResult(getResult);
-            return Arrays.asList(res);
+            result = Arrays.asList(convertPduToGetResult(getResult));
         }
+
+        dataByteStream.skipRemainingBlocks();
+        return result;
     }
 
-    private byte[] readBlocks(GET_Response response, boolean priority) throws IOException {
-        final Invoke_Id_And_Priority invokeIdAndPriority = response.get_response_with_datablock.invoke_id_and_priority;
-        final int invokeId = invokeIdAndPriority.getValue()[0] & 0xf;
+    /*
+     * Provides the raw data of a GET block transfer as stream. The next block is requested from the server not before
+     * the data of the current block has been consumed, so only one block is held in memory at a time.
+     */
+    private class DataBlockInputStream extends InputStream {
+
+        private final Invoke_Id_And_Priority invokeIdAndPriority;
+        private final int invokeId;
+        private final RawRowListener rowListener;
+
+        private DataBlock_G block;
+        private byte[] blockData;
+        private int position;
+
+        /*
+         * The row listener, if not null, is notified before the next block is requested.
+         */
+        public DataBlockInputStream(GET_Response firstResponse, RawRowListener rowListener) throws IOException {
+            this.invokeIdAndPriority = firstResponse.get_response_with_datablock.invoke_id_and_priority;
+            this.invokeId = invokeIdFrom(this.invokeIdAndPriority);
+            this.rowListener = rowListener;
+            setBlock(firstResponse.get_response_with_datablock.result);
+        }
 
-        ByteArrayOutputStream datablocks = new ByteArrayOutputStream();
-        GET_Request getRequest = new GET_Request();
-        COSEMpdu pdu = new COSEMpdu();
+        private void setBlock(DataBlock_G block) throws IOException {
+            if (block.result.raw_data == null) {
+                AccessResultCode accessResultCode = enumValueFrom(block.result.data_access_result,
+                        AccessResultCode.class);
+                throw new IOException("Meter aborted the block transfer, access result code: " + accessResultCode);
+            }
+
+            this.block = block;
+            this.blockData = block.result.raw_data.getValue();
+            this.position = 0;
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (this.block.last_block.getValue()) {
+                return false;
+            }
 
-        Get_Request_Next nextBlock = new Get_Request_Next();
-        while (!response.get_response_with_datablock.result.last_block.getValue()) {
-            datablocks.write(response.get_response_with_datablock.result.result.raw_data.getValue());
+            if (this.rowListener != null) {
+                this.rowListener.blockReceived();
+            }
 
-            nextBlock.block_number = response.get_response_with_datablock.result.block_number;
-            nextBlock.invoke_id_and_priority = invokeIdAndPriority;
+            Get_Request_Next nextBlock = new Get_Request_Next();
+            nextBlock.block_number = this.block.block_number;
+            nextBlock.invoke_id_and_priority = this.invokeIdAndPriority;
 
+            GET_Request getRequest = new GET_Request();
             getRequest.setget_request_next(nextBlock);
+            COSEMpdu pdu = new COSEMpdu();
             pdu.setget_request(getRequest);
+
+            getResponseQueue.expectResponseFor(this.invokeId);
             send(pdu);
+
+            GET_Response response;
             try {
-                response = getResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
+                response = getResponseQueue.poll(this.invokeId, connectionSettings().responseTimeout());
             } catch (ResponseTimeoutException e) {
                 // Send PDU with wrong block number to indicate the
                 // device that the block transfer is
@@ -194,22 +405,78 @@ class DlmsLnConnection extends DlmsConnection {
 
                 throw e;
             }
+
+            if (response.getChoiceIndex() == GET_Response.Choices.GET_RESPONSE_NORMAL) {
+                AccessResultCode accessResultCode = enumValueFrom(
+                        response.get_response_normal.result.data_access_result, AccessResultCode.class);
+                throw new IOException("Meter aborted the block transfer, access result code: " + accessResultCode);
+            }
+            if (response.getChoiceIndex() != GET_Response.Choices.GET_RESPONSE_WITH_DATABLOCK) {
+                throw new IOException("Server answered with an illegal response.");
+            }
+
+            setBlock(response.get_response_with_datablock.result);
+            return true;
+        }
+
+        /*
+         * Returns the next byte without consuming it.
+         */
+        public int peek() throws IOException {
+            if (available() == 0) {
+                return -1;
+            }
+            return this.blockData[this.position] & 0xff;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (available() == 0) {
+                return -1;
+            }
+            return this.blockData[this.position++] & 0xff;
         }
-        // TODO: check this
-        // if (response.getChoiceIndex().equals(Choices.GET_RESPONSE_NORMAL)) {
-        // throw new IOException("Meter response with error, access result code: "
-        // + response.get_response_normal.result.data_access_result);
-        // }
 
-        // TODO: evaluate on error
-        // if (response.get_response_with_datablock.result.result.raw_data == null) {
-        // AccessResultCode accessResultCode = AccessResultCode
-        // .forValue(response.get_response_with_datablock.result.result.data_access_result.getValue());
-        // }
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            // fill the requested length across block borders, the A-XDR decoders expect complete reads
+            int numBytesRead = 0;
+            while (numBytesRead < len && available() > 0) {
+                int length = Math.min(len - numBytesRead, this.blockData.length - this.position);
+                System.arraycopy(this.blockData, this.position, b, off + numBytesRead, length);
+                this.position += length;
+                numBytesRead += length;
+            }
+
+            return numBytesRead == 0 ? -1 : numBytesRead;
+        }
 
-        datablocks.write(response.get_response_with_datablock.result.result.raw_data.getValue());
+        /*
+         * Requests the next block if the current one has been consumed. Returns 0 only at the end of the transfer, the
+         * A-XDR decoders treat this as end of data.
+         */
+        @Override
+        public int available() throws IOException {
+            while (this.position == this.blockData.length) {
+                if (!nextBlock()) {
+                    return 0;
+                }
+            }
+            return this.blockData.length - this.position;
+        }
 
-        return datablocks.toByteArray();
+        /*
+         * Completes the block transfer, if the server sent more blocks than necessary.
+         */
+        public void skipRemainingBlocks() throws IOException {
+            while (nextBlock()) {
+                // discard data
+            }
+        }
     }
 
     private List<GetResult> convertListToDataObject(List<Get_Data_Result> resultList) {
@@ -238,8 +505,13 @@ class DlmsLnConnection extends DlmsConnection {
             return emptyList();
         }
 
-        Invoke_Id_And_Priority invokeIdAndPriority = invokeIdAndPriorityFor(priority);
-        SET_Response response = createAndSendSetPdu(invokeIdAndPriority, params);
+        Invoke_Id_And_Priority invokeIdAndPriority = acquireInvokeIdAndPriority(priority);
+        SET_Response response;
+        try {
+            response = createAndSendSetPdu(invokeIdAndPriority, params);
+        } finally {
+            this.invokeIdPool.release(invokeIdFrom(invokeIdAndPriority));
+        }
 
         switch (response.getChoiceIndex()) {
         case SET_RESPONSE_NORMAL:
@@ -278,26 +550,44 @@ class DlmsLnConnection extends DlmsConnection {
             return emptyList();
         }
 
-        final Invoke_Id_And_Priority id = invokeIdAndPriorityFor(priority);
-
-        ACTION_Response response = createAndSendActionPdu(id, params);
+        final Invoke_Id_And_Priority id = acquireInvokeIdAndPriority(priority);
+        try {
+            ACTION_Response response = createAndSendActionPdu(id, params);
 
-        switch (response.getChoiceIndex()) {
-        case ACTION_RESPONSE_NORMAL:
-            return processActionNormal(response);
-        case ACTION_RESPONSE_WITH_LIST:
-            return processActionWithList(response);
-        case ACTION_RESPONSE_WITH_PBLOCK:
-            return processActionWithPblock(id, response);
+            switch (response.getChoiceIndex()) {
+            case ACTION_RESPONSE_NORMAL:
+                return processActionNormal(response);
+            case ACTION_RESPONSE_WITH_LIST:
+                return processActionWithList(response);
+            case ACTION_RESPONSE_WITH_PBLOCK:
+                return processActionWithPblock(id, response);
 
-        default:
-        case ACTION_RESPONSE_NEXT_PBLOCK:
-        case _ERR_NONE_SELECTED:
-            throw new IOException("Server answered with an illegal response.");
+            default:
+            case ACTION_RESPONSE_NEXT_PBLOCK:
+            case _ERR_NONE_SELECTED:
+                throw new IOException("Server answered with an illegal response.");
+            }
+        } finally {
+            this.invokeIdPool.release(invokeIdFrom(id));
         }
 
     }
 
+    /*
+     * Blocks until the number of requests in flight allows a further request and returns a free invoke ID. The
+     * invoke ID must be released with the invoke ID pool, after the request has been finished.
+     */
+    private Invoke_Id_And_Priority acquireInvokeIdAndPriority(boolean priority) throws IOException {
+        this.invokeIdPool.acquirePermit();
+
+        Invoke_Id_And_Priority id;
+        do {
+            id = invokeIdAndPriorityFor(priority);
+        } while (!this.invokeIdPool.claim(invokeIdFrom(id)));
+
+        return id;
+    }
+
     private List<MethodResult> processActionNormal(ACTION_Response response) {
         Action_Response_With_Optional_Data resWithOpt = response.action_response_normal.single_response;
 
@@ -336,6 +626,7 @@ class DlmsLnConnection extends DlmsConnection {
             nextBlock.block_number = response.action_response_with_pblock.pblock.block_number;
             request.setaction_request_next_pblock(nextBlock);
             pdu.setaction_request(request);
+            this.actionResponseQueue.expectResponseFor(invokeIdFrom(id));
             send(pdu);
 
             response = this.actionResponseQueue.poll(invokeIdFrom(id), connectionSettings().responseTimeout());
@@ -384,6 +675,18 @@ class DlmsLnConnection extends DlmsConnection {
         }
     }
 
+    @Override
+    void processError(IOException e) {
+        getResponseQueue.putError(e);
+        setResponseQueue.putError(e);
+        actionResponseQueue.putError(e);
+    }
+
+    @Override
+    int maxParallelRequests() {
+        return this.invokeIdPool.capacity();
+    }
+
     @Override
     Set<ConformanceSetting> proposedConformance() {
         return new HashSet<>(Arrays.asList(GET, SET, ACTION, /* EVENT_NOTIFICATION, */ SELECTIVE_ACCESS,
@@ -437,14 +740,7 @@ class DlmsLnConnection extends DlmsConnection {
             requestList.invoke_id_and_priority = id;
             requestList.attribute_descriptor_list = new Get_Request_With_List.SubSeqOf_attribute_descriptor_list();
             for (AttributeAddress p : params) {
-                Selective_Access_Descriptor access = null;
-                SelectiveAccessDescription accessSelection = p.getAccessSelection();
-                if (accessSelection != null) {
-                    access = new Selective_Access_Descriptor(new Unsigned8(accessSelection.getAccessSelector()),
-                            DataConverter.convertDataObjectToData(accessSelection.getAccessParameter()));
-                }
-                requestList.attribute_descriptor_list
-                        .add(new Cosem_Attribute_Descriptor_With_Selection(p.toDescriptor(), access));
+                requestList.attribute_descriptor_list.add(descriptorWithSelectionFor(p));
             }
 
             getRequest.setget_request_with_list(requestList);
@@ -456,6 +752,16 @@ class DlmsLnConnection extends DlmsConnection {
         return pdu;
     }
 
+    private static Cosem_Attribute_Descriptor_With_Selection descriptorWithSelectionFor(AttributeAddress p) {
+        Selective_Access_Descriptor access = null;
+        SelectiveAccessDescription accessSelection = p.getAccessSelection();
+        if (accessSelection != null) {
+            access = new Selective_Access_Descriptor(new Unsigned8(accessSelection.getAccessSelector()),
+                    DataConverter.convertDataObjectToData(accessSelection.getAccessParameter()));
+        }
+        return new Cosem_Attribute_Descriptor_With_Selection(p.toDescriptor(), access);
+    }
+
     private static void checkAttributeIdValidty(List<AttributeAddress> params) {
         for (AttributeAddress param : params) {
             if (param.getId() == 0) {
@@ -516,89 +822,79 @@ class DlmsLnConnection extends DlmsConnection {
             COSEMpdu pdu = new COSEMpdu();
             pdu.setset_request(request);
 
+            setResponseQueue.expectResponseFor(invokeIdFrom(id));
             send(pdu);
 
             return setResponseQueue.poll(invokeIdFrom(id), connectionSettings().responseTimeout());
         }
-        else {
 
-            // if (params.length == 1) {
-            // baos.reset();
-            // request.set_request_normal.value.encode(baos);
-            // dataBuffer = ByteBuffer.wrap(baos.getArray());
-            //
-            // Set_Request_With_First_Datablock requestFirstBlock = new Set_Request_With_First_Datablock();
-            // requestFirstBlock.invoke_id_and_priority = id;
-            // requestFirstBlock.cosem_attribute_descriptor = request.set_request_normal.cosem_attribute_descriptor;
-            // requestFirstBlock.access_selection = request.set_request_normal.access_selection;
-            // requestFirstBlock.datablock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0),
-            // new AxdrOctetString(0));
-            //
-            // // TODO what is baos used here for?
-            // baos.reset();
-            // int length = requestFirstBlock.encode(baos);
-            // byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-            // dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-            // requestFirstBlock.datablock.raw_data = new AxdrOctetString(firstDataChunk);
-            //
-            // request.setset_request_with_first_datablock(requestFirstBlock);
-            // pdu = new COSEMpdu();
-            // pdu.setset_request(request);
-            // result.add(pdu);
-            // }
-            // else {
-            // baos.reset();
-            // for (int i = request.set_request_with_list.value_list.size() - 1; i >= 0; i--) {
-            // request.set_request_with_list.value_list.get(i).encode(baos);
-            // }
-            // dataBuffer = ByteBuffer.wrap(baos.getArray());
-            //
-            // Set_Request_With_List_And_First_Datablock requestListFirstBlock = new
-            // Set_Request_With_List_And_First_Datablock();
-            // requestListFirstBlock.invoke_id_and_priority = id;
-            // requestListFirstBlock.attribute_descriptor_list = new
-            // Set_Request_With_List_And_First_Datablock.SubSeqOf_attribute_descriptor_list();
-            // requestListFirstBlock.datablock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(1),
-            // new AxdrOctetString(0));
-            //
-            // for (Cosem_Attribute_Descriptor_With_Selection desc :
-            // request.set_request_with_list.attribute_descriptor_list
-            // .list()) {
-            // requestListFirstBlock.attribute_descriptor_list.add(desc);
-            // }
-            //
-            // baos.reset();
-            // int length = requestListFirstBlock.encode(baos);
-            // byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-            // dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-            // requestListFirstBlock.datablock.raw_data = new AxdrOctetString(firstDataChunk);
-            //
-            // request.setset_request_with_list_and_first_datablock(requestListFirstBlock);
-            // pdu = new COSEMpdu();
-            // pdu.setset_request(request);
-            // result.add(pdu);
-            // }
-            //
-            // int blockNr = 1;
-            // while (dataBuffer.hasRemaining()) {
-            // blockNr++;
-            // int blockLength = Math.min(maxSendPduSize() - 9, dataBuffer.remaining());
-            // byte[] dataBlock = new byte[blockLength];
-            // dataBuffer.get(dataBlock, 0, dataBlock.length);
-            //
-            // Set_Request_With_Datablock requestBlock = new Set_Request_With_Datablock();
-            // requestBlock.invoke_id_and_priority = id;
-            // requestBlock.datablock = new DataBlock_SA(new AxdrBoolean(dataBuffer.remaining() == 0),
-            // new Unsigned32(blockNr), new AxdrOctetString(dataBlock));
-            //
-            // request.setset_request_with_datablock(requestBlock);
-            // pdu = new COSEMpdu();
-            // pdu.setset_request(request);
-            // result.add(pdu);
-            // }
-            return null;
+        // PDU is too large to send in one chunk to the meter, use several data blocks instead
+        checkBlockTransferNegotiated(BLOCK_TRANSFER_WITH_SET_OR_WRITE, "SET");
+
+        final SET_Request firstBlockRequest = new SET_Request();
+        byte[] rawData;
+        if (params.size() == 1) {
+            Set_Request_Normal requestNormal = request.set_request_normal;
+            rawData = encodeRawData(requestNormal.value);
+
+            Set_Request_With_First_Datablock requestFirstBlock = new Set_Request_With_First_Datablock();
+            requestFirstBlock.invoke_id_and_priority = id;
+            requestFirstBlock.cosem_attribute_descriptor = requestNormal.cosem_attribute_descriptor;
+            requestFirstBlock.access_selection = requestNormal.access_selection;
+            firstBlockRequest.setset_request_with_first_datablock(requestFirstBlock);
+        }
+        else {
+            Set_Request_With_List requestList = request.set_request_with_list;
+            rawData = encodeRawData(requestList.value_list);
+
+            Set_Request_With_List_And_First_Datablock requestListFirstBlock = new Set_Request_With_List_And_First_Datablock();
+            requestListFirstBlock.invoke_id_and_priority = id;
+            requestListFirstBlock.attribute_descriptor_list = new Set_Request_With_List_And_First_Datablock.SubSeqOf_attribute_descriptor_list();
+            for (Cosem_Attribute_Descriptor_With_Selection desc : requestList.attribute_descriptor_list.list()) {
+                requestListFirstBlock.attribute_descriptor_list.add(desc);
+            }
+            firstBlockRequest.setset_request_with_list_and_first_datablock(requestListFirstBlock);
         }
 
+        final Set_Request_With_Datablock requestBlock = new Set_Request_With_Datablock();
+        requestBlock.invoke_id_and_priority = id;
+        final SET_Request blockRequest = new SET_Request();
+        blockRequest.setset_request_with_datablock(requestBlock);
+
+        BlockTransfer<SET_Response> blockTransfer = new BlockTransfer<SET_Response>(setResponseQueue,
+                invokeIdFrom(id)) {
+
+            @Override
+            COSEMpdu firstBlockPdu(DataBlock_SA block) {
+                if (firstBlockRequest.getChoiceIndex() == SET_Request.Choices.SET_REQUEST_WITH_FIRST_DATABLOCK) {
+                    firstBlockRequest.set_request_with_first_datablock.datablock = block;
+                }
+                else {
+                    firstBlockRequest.set_request_with_list_and_first_datablock.datablock = block;
+                }
+                COSEMpdu pdu = new COSEMpdu();
+                pdu.setset_request(firstBlockRequest);
+                return pdu;
+            }
+
+            @Override
+            COSEMpdu blockPdu(DataBlock_SA block) {
+                requestBlock.datablock = block;
+                COSEMpdu pdu = new COSEMpdu();
+                pdu.setset_request(blockRequest);
+                return pdu;
+            }
+
+            @Override
+            long acknowledgedBlockNumber(SET_Response response) {
+                if (response.getChoiceIndex() == SET_Response.Choices.SET_RESPONSE_DATABLOCK) {
+                    return response.set_response_datablock.block_number.getValue();
+                }
+                return -1;
+            }
+        };
+
+        return blockTransfer.transfer(rawData);
     }
 
     private ACTION_Response createAndSendActionPdu(Invoke_Id_And_Priority invokeIdAndPrio, List<MethodParameter> params)
@@ -641,80 +937,202 @@ class DlmsLnConnection extends DlmsConnection {
             request.setaction_request_with_list(requestList);
         }
 
+        int invokeId = invokeIdFrom(invokeIdAndPrio);
         if (maxSendPduSize() == 0 || pduSizeOf(request) <= maxSendPduSize()) {
             COSEMpdu pdu = new COSEMpdu();
             pdu.setaction_request(request);
+
+            actionResponseQueue.expectResponseFor(invokeId);
             send(pdu);
 
-            int invokeId = invokeIdFrom(invokeIdAndPrio);
             return actionResponseQueue.poll(invokeId, connectionSettings().responseTimeout());
         }
+
+        // PDU is too large to send in one chunk to the meter, use several parameter blocks instead
+        checkBlockTransferNegotiated(BLOCK_TRANSFER_WITH_ACTION, "ACTION");
+
+        final ACTION_Request firstBlockRequest = new ACTION_Request();
+        byte[] rawData;
+        if (params.size() == 1) {
+            Action_Request_Normal requestNormal = request.action_request_normal;
+            rawData = encodeRawData(requestNormal.method_invocation_parameters.getValue());
+
+            Action_Request_With_First_Pblock requestFirstBlock = new Action_Request_With_First_Pblock();
+            requestFirstBlock.invoke_id_and_priority = invokeIdAndPrio;
+            requestFirstBlock.cosem_method_descriptor = requestNormal.cosem_method_descriptor;
+            firstBlockRequest.setaction_request_with_first_pblock(requestFirstBlock);
+        }
         else {
-            // PDU is too large to send in one chunk to the meter
-            // use of several Datablocks instead
-
-            // if (params.length == 1) {
-            // request.action_request_normal.method_invocation_parameters.encode(baos);
-            // dataBuffer = ByteBuffer.wrap(baos.getArray());
-            //
-            // Action_Request_With_First_Pblock requestFirstBlock = new Action_Request_With_First_Pblock();
-            // requestFirstBlock.invoke_id_and_priority = id;
-            // requestFirstBlock.cosem_method_descriptor = request.action_request_normal.cosem_method_descriptor;
-            //
-            // baos.reset();
-            // int length = requestFirstBlock.encode(baos);
-            // byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-            // dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-            // requestFirstBlock.pblock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0),
-            // new AxdrOctetString(firstDataChunk));
-            //
-            // request.setaction_request_with_first_pblock(requestFirstBlock);
-            // pdu = new COSEMpdu();
-            // pdu.setaction_request(request);
-            // result.add(pdu);
-            // }
-            // else {
-            // baos.reset();
-            // request.action_request_with_list.method_invocation_parameters.encode(baos);
-            // dataBuffer = ByteBuffer.wrap(baos.getArray());
-            //
-            // Action_Request_With_List_And_First_Pblock requestListFirstBlock = new
-            // Action_Request_With_List_And_First_Pblock();
-            // requestListFirstBlock.invoke_id_and_priority = id;
-            // requestListFirstBlock.cosem_method_descriptor_list = new
-            // Action_Request_With_List_And_First_Pblock.SubSeqOf_cosem_method_descriptor_list();
-            //
-            // for (Cosem_Method_Descriptor desc : request.action_request_with_list.cosem_method_descriptor_list
-            // .list()) {
-            // requestListFirstBlock.cosem_method_descriptor_list.add(desc);
-            // }
-            //
-            // baos.reset();
-            // int length = requestListFirstBlock.encode(baos);
-            // byte[] firstDataChunk = new byte[maxSendPduSize() - 2 - length];
-            // dataBuffer.get(firstDataChunk, 0, firstDataChunk.length);
-            // requestListFirstBlock.pblock = new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0),
-            // new AxdrOctetString(firstDataChunk));
-            //
-            // request.setaction_request_with_list_and_first_pblock(requestListFirstBlock);
-            // }
-            //
-            // int blockNr = 1;
-            // while (dataBuffer.hasRemaining()) {
-            // int blockLength = Math.min(maxSendPduSize() - 8, dataBuffer.remaining());
-            // byte[] dataBlock = new byte[blockLength];
-            // dataBuffer.get(dataBlock, 0, dataBlock.length);
-            //
-            // Action_Request_With_Pblock requestBlock = new Action_Request_With_Pblock();
-            // requestBlock.pBlock = new DataBlock_SA(new AxdrBoolean(dataBuffer.remaining() == 0),
-            // new Unsigned32(blockNr), new AxdrOctetString(dataBlock));
-            //
-            // request.setaction_request_with_pblock(requestBlock);
-            // pdu = new COSEMpdu();
-            // pdu.setaction_request(request);
-            // result.add(pdu);
-            // }
-            return null;
+            Action_Request_With_List requestList = request.action_request_with_list;
+            rawData = encodeRawData(requestList.method_invocation_parameters);
+
+            Action_Request_With_List_And_First_Pblock requestListFirstBlock = new Action_Request_With_List_And_First_Pblock();
+            requestListFirstBlock.invoke_id_and_priority = invokeIdAndPrio;
+            requestListFirstBlock.cosem_method_descriptor_list = new Action_Request_With_List_And_First_Pblock.SubSeqOf_cosem_method_descriptor_list();
+            for (Cosem_Method_Descriptor desc : requestList.cosem_method_descriptor_list.list()) {
+                requestListFirstBlock.cosem_method_descriptor_list.add(desc);
+            }
+            firstBlockRequest.setaction_request_with_list_and_first_pblock(requestListFirstBlock);
+        }
+
+        final Action_Request_With_Pblock requestBlock = new Action_Request_With_Pblock();
+        requestBlock.invoke_id_and_priority = invokeIdAndPrio;
+        final ACTION_Request blockRequest = new ACTION_Request();
+        blockRequest.setaction_request_with_pblock(requestBlock);
+
+        BlockTransfer<ACTION_Response> blockTransfer = new BlockTransfer<ACTION_Response>(actionResponseQueue,
+                invokeId) {
+
+            @Override
+            COSEMpdu firstBlockPdu(DataBlock_SA block) {
+                if (firstBlockRequest.getChoiceIndex() == ACTION_Request.Choices.ACTION_REQUEST_WITH_FIRST_PBLOCK) {
+                    firstBlockRequest.action_request_with_first_pblock.pblock = block;
+                }
+                else {
+                    firstBlockRequest.action_request_with_list_and_first_pblock.pblock = block;
+                }
+                COSEMpdu pdu = new COSEMpdu();
+                pdu.setaction_request(firstBlockRequest);
+                return pdu;
+            }
+
+            @Override
+            COSEMpdu blockPdu(DataBlock_SA block) {
+                requestBlock.pBlock = block;
+                COSEMpdu pdu = new COSEMpdu();
+                pdu.setaction_request(blockRequest);
+                return pdu;
+            }
+
+            @Override
+            long acknowledgedBlockNumber(ACTION_Response response) {
+                if (response.getChoiceIndex() == ACTION_Response.Choices.ACTION_RESPONSE_NEXT_PBLOCK) {
+                    return response.action_response_next_pblock.block_number.getValue();
+                }
+                return -1;
+            }
+        };
+
+        return blockTransfer.transfer(rawData);
+    }
+
+    private void checkBlockTransferNegotiated(ConformanceSetting blockTransfer, String service) throws IOException {
+        if (!negotiatedFeatures().contains(blockTransfer)) {
+            throw new FatalJDlmsException(ExceptionId.REQUEST_TOO_LARGE, Fault.USER, MessageFormat.format(
+                    "{0}.request is too long for a single PDU and the server does not support block transfer with {0}.",
+                    service));
+        }
+    }
+
+    /*
+     * Measures the value without copying and encodes it once into an exactly sized array, so the buffer is never
+     * resized. The blocks are sliced from the array.
+     */
+    private static byte[] encodeRawData(AxdrType value) throws IOException {
+        BerByteArrayOutputStream os = new BerByteArrayOutputStream(pduSizeOf(value));
+        value.encode(os);
+        return os.buffer;
+    }
+
+    /*
+     * Sends raw data split into blocks, each fitting into the max send PDU size, as used by the SET and the ACTION
+     * service. Every block but the last one is acknowledged by the server with its block number. If the
+     * acknowledgement times out, the transfer resumes with the block following the last acknowledged one.
+     */
+    private abstract class BlockTransfer<R extends AxdrType> {
+
+        private static final int MAX_BLOCK_RETRIES = 3;
+
+        private final ResponseQueue<R> responseQueue;
+        private final int invokeId;
+
+        public BlockTransfer(ResponseQueue<R> responseQueue, int invokeId) {
+            this.responseQueue = responseQueue;
+            this.invokeId = invokeId;
+        }
+
+        /*
+         * The PDU transmitting the first block, including the attribute or method descriptors.
+         */
+        abstract COSEMpdu firstBlockPdu(DataBlock_SA block);
+
+        abstract COSEMpdu blockPdu(DataBlock_SA block);
+
+        /*
+         * Returns the block number acknowledged by the response or -1 if the response terminates the transfer.
+         */
+        abstract long acknowledgedBlockNumber(R response);
+
+        public R transfer(byte[] rawData) throws IOException {
+            final int firstBlockLength = blockLength(firstBlockPdu(emptyBlock()));
+            final int blockLength = blockLength(blockPdu(emptyBlock()));
+
+            long blockNumber = 1;
+            int retries = 0;
+            while (true) {
+                int from = blockNumber == 1 ? 0 : firstBlockLength + (int) (blockNumber - 2) * blockLength;
+                int to = Math.min(from + (blockNumber == 1 ? firstBlockLength : blockLength), rawData.length);
+                boolean lastBlock = to == rawData.length;
+
+                DataBlock_SA block = new DataBlock_SA(new AxdrBoolean(lastBlock), new Unsigned32(blockNumber),
+                        new AxdrOctetString(Arrays.copyOfRange(rawData, from, to)));
+                COSEMpdu pdu = blockNumber == 1 ? firstBlockPdu(block) : blockPdu(block);
+
+                R response;
+                this.responseQueue.expectResponseFor(this.invokeId);
+                send(pdu);
+                try {
+                    response = this.responseQueue.poll(this.invokeId, connectionSettings().responseTimeout());
+                } catch (ResponseTimeoutException e) {
+                    if (++retries > MAX_BLOCK_RETRIES) {
+                        throw e;
+                    }
+                    continue;
+                }
+
+                long acknowledgedBlockNumber = acknowledgedBlockNumber(response);
+                if (acknowledgedBlockNumber < 0) {
+                    return response;
+                }
+                if (acknowledgedBlockNumber < 1 || acknowledgedBlockNumber > blockNumber
+                        || lastBlock && acknowledgedBlockNumber == blockNumber) {
+                    throw new IOException(MessageFormat.format(
+                            "Server acknowledged unexpected block number {0}, while sending block {1}.",
+                            acknowledgedBlockNumber, blockNumber));
+                }
+
+                if (acknowledgedBlockNumber == blockNumber) {
+                    retries = 0;
+                }
+                else if (++retries > MAX_BLOCK_RETRIES) {
+                    throw new IOException("Server repeatedly did not acknowledge block " + blockNumber + ".");
+                }
+                // the server lost a block, resume after the block it acknowledged last
+                blockNumber = acknowledgedBlockNumber + 1;
+            }
+        }
+
+        private DataBlock_SA emptyBlock() {
+            return new DataBlock_SA(new AxdrBoolean(false), new Unsigned32(0), new AxdrOctetString(new byte[0]));
+        }
+
+        /*
+         * The max number of raw data bytes fitting into the PDU.
+         */
+        private int blockLength(COSEMpdu pduWithEmptyBlock) throws IOException {
+            int emptyRawDataLength = AxdrLength.encodeLength(0).length;
+            int available = maxPlainPduSize() - (pduSizeOf(pduWithEmptyBlock) - emptyRawDataLength);
+
+            int blockLength = available - emptyRawDataLength;
+            while (blockLength > 0 && blockLength + AxdrLength.encodeLength(blockLength).length > available) {
+                --blockLength;
+            }
+
+            if (blockLength <= 0) {
+                throw new IOException(MessageFormat.format(
+                        "Max send PDU size of {0} byte is too small for block transfer.", maxSendPduSize()));
+            }
+            return blockLength;
         }
     }
 
@@ -186,6 +186,34 @@ class DlmsSnConnection extends DlmsConnection {
         return params.size() == 1 || negotiatedFeatures().contains(MULTIPLE_REFERENCES);
     }
 
+    @Override
+    public List<GetResult> getBatched(boolean highPriority, List<AttributeAddress> params) throws IOException {
+        // read requests are already split, if multiple references are not allowed
+        return get(highPriority, params);
+    }
+
+    @Override
+    AccessResultCode getRawRows(boolean highPriority, AttributeAddress attributeAddress, RawRowListener listener)
+            throws IOException {
+        // the value is read at once, block transfer is not streamed with short name referencing
+        GetResult result = get(highPriority, attributeAddress);
+        if (result.getResultCode() != AccessResultCode.SUCCESS) {
+            return result.getResultCode();
+        }
+
+        DataObject value = result.getResultData();
+        if (value.getType() == DataObject.Type.ARRAY) {
+            List<DataObject> rows = value.getValue();
+            for (DataObject row : rows) {
+                listener.rowReceived(convertDataObjectToData(row));
+            }
+        }
+        else {
+            listener.rowReceived(convertDataObjectToData(value));
+        }
+        return AccessResultCode.SUCCESS;
+    }
+
     private List<GetResult> callAllGetSeperatly(List<AttributeAddress> params) throws IOException {
         List<GetResult> resultList = new ArrayList<>(params.size());
         for (AttributeAddress attributeAddress : params) {
@@ -478,6 +506,17 @@ class DlmsSnConnection extends DlmsConnection {
         }
     }
 
+    @Override
+    void processError(IOException e) {
+        // short name responses don't carry an invoke ID, waiting requests run into their timeout
+    }
+
+    @Override
+    int maxParallelRequests() {
+        // requests are processed one after the other
+        return 1;
+    }
+
     @Override
     protected Set<ConformanceSetting> proposedConformance() {
         return new HashSet<>(
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+
+/**
+ * Persists the invocation counters (frame counters) of ciphered xDLMS APDUs, so they survive a restart of the
+ * application.
+ * 
+ * <p>
+ * Values are saved concurrently and not necessarily in ascending order. An implementation must therefore keep the
+ * greatest value saved for a system title, key and direction.
+ * </p>
+ * 
+ * @see FrameCounterTracker
+ * @see MappedFrameCounterStore
+ */
+public interface FrameCounterStore {
+
+    enum Direction {
+        /**
+         * The invocation counters of the APDUs sent with the own system title. The saved value is the lowest counter,
+         * which has not been used yet.
+         */
+        SENT,
+        /**
+         * The invocation counters of the APDUs received from a remote system title. The saved value is the greatest
+         * counter received.
+         */
+        RECEIVED
+    }
+
+    /**
+     * Loads the greatest value saved for the system title and key.
+     * 
+     * @param systemTitle
+     *            the system title.
+     * @param keyId
+     *            the identifier of the encryption key the counters are used with.
+     * @param direction
+     *            the direction.
+     * @return the saved value or <code>-1</code> if nothing has been saved yet.
+     * @throws IOException
+     *             if the store could not be read.
+     */
+    long load(byte[] systemTitle, long keyId, Direction direction) throws IOException;
+
+    /**
+     * Saves a value for the system title and key.
+     * 
+     * @param systemTitle
+     *            the system title.
+     * @param keyId
+     *            the identifier of the encryption key the counters are used with.
+     * @param direction
+     *            the direction.
+     * @param frameCounter
+     *            the unsigned 32 bit value.
+     * @throws IOException
+     *             if the store could not be written.
+     */
+    void save(byte[] systemTitle, long keyId, Direction direction, long frameCounter) throws IOException;
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.jdlms.FrameCounterStore.Direction;
+
+/**
+ * Tracks the invocation counters (frame counters) of ciphered xDLMS APDUs per security context.
+ * 
+ * <p>
+ * A security context is identified by a system title and the global unicast encryption key of the security suite, so
+ * the counters start over once the key has been changed. The tracker hands out the counters of the APDUs sent with the
+ * own system title and validates the counters of the APDUs received from a remote system title. A received counter is
+ * accepted, if it is greater than every counter received before, or if it lies within the sliding window below the
+ * greatest counter and has not been received yet. The window allows APDUs to arrive slightly out of order. Every other
+ * counter belongs to a replayed APDU.
+ * </p>
+ * 
+ * <p>
+ * Both operations are lock-free and take constant time. A tracker may be shared by several connections. If a
+ * {@link FrameCounterStore} is set, the counters survive a restart of the application: the sent counters continue
+ * above every counter used before, so no initialization vector is ever reused with the same key. The greatest
+ * received counters are saved by a background thread, call {@link #flush()} before closing the store.
+ * </p>
+ */
+public class FrameCounterTracker {
+
+    /**
+     * The default size of the sliding window.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 16;
+
+    /**
+     * The maximum size of the sliding window.
+     */
+    public static final int MAX_WINDOW_SIZE = 32;
+
+    private static final long MAX_FRAME_COUNTER = 0xFFFFFFFFL;
+
+    /**
+     * Number of sent counters reserved in the store at once.
+     */
+    private static final long SENT_RESERVATION = 1024;
+
+    private final FrameCounterStore store;
+    private final int windowSize;
+
+    private final ConcurrentMap<ByteBuffer, SentCounter> sentCounters;
+    private final ConcurrentMap<ByteBuffer, ReceiveWindow> receiveWindows;
+
+    /**
+     * Saves the received counters, created with the first counter to save.
+     */
+    private ExecutorService saveExecutor;
+
+    /**
+     * Creates a tracker, which keeps the counters in memory, with the default window size.
+     */
+    public FrameCounterTracker() {
+        this(null, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a tracker with the default window size.
+     * 
+     * @param store
+     *            the store persisting the counters or <code>null</code> to keep them in memory only.
+     */
+    public FrameCounterTracker(FrameCounterStore store) {
+        this(store, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a tracker.
+     * 
+     * @param store
+     *            the store persisting the counters or <code>null</code> to keep them in memory only.
+     * @param windowSize
+     *            the number of counters below the greatest received counter, which are accepted if they have not been
+     *            received yet. A window of size {@code 1} only accepts strictly increasing counters.
+     * @throws IllegalArgumentException
+     *             if the window size is not in the range {@code [1, 32]}.
+     */
+    public FrameCounterTracker(FrameCounterStore store, int windowSize) {
+        if (windowSize < 1 || windowSize > MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Window size has to be between 1 and " + MAX_WINDOW_SIZE);
+        }
+        this.store = store;
+        this.windowSize = windowSize;
+
+        this.sentCounters = new ConcurrentHashMap<>();
+        this.receiveWindows = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Takes the invocation counter for the next APDU sent with the system title.
+     * 
+     * @param systemTitle
+     *            the own system title.
+     * @param securitySuite
+     *            the security suite the APDU is ciphered with.
+     * @return the invocation counter.
+     * @throws IOException
+     *             if the counters of the security context are exhausted or could not be persisted.
+     */
+    public int nextFrameCounter(byte[] systemTitle, SecuritySuite securitySuite) throws IOException {
+        ByteBuffer key = contextKey(systemTitle, securitySuite);
+
+        SentCounter sentCounter = this.sentCounters.get(key);
+        if (sentCounter == null) {
+            sentCounter = putIfAbsent(this.sentCounters, key, new SentCounter(systemTitle, securitySuite));
+        }
+        return sentCounter.next();
+    }
+
+    /**
+     * Checks if an APDU with the invocation counter would be accepted, without recording the counter.
+     * 
+     * <p>
+     * Replayed APDUs can be rejected this way before they are deciphered.
+     * </p>
+     * 
+     * @param systemTitle
+     *            the remote system title.
+     * @param securitySuite
+     *            the security suite the APDU is ciphered with.
+     * @param frameCounter
+     *            the received invocation counter.
+     * @return <code>true</code> if the counter has not been received yet.
+     * @throws IOException
+     *             if the counters of the security context could not be loaded.
+     */
+    public boolean isFresh(byte[] systemTitle, SecuritySuite securitySuite, int frameCounter) throws IOException {
+        return receiveWindowFor(systemTitle, securitySuite).isFresh(frameCounter & MAX_FRAME_COUNTER);
+    }
+
+    /**
+     * Records the invocation counter of an APDU, whose authentication tag has been verified.
+     * 
+     * @param systemTitle
+     *            the remote system title.
+     * @param securitySuite
+     *            the security suite the APDU is ciphered with.
+     * @param frameCounter
+     *            the received invocation counter.
+     * @return <code>true</code> if the counter has been accepted, <code>false</code> if the APDU has been replayed.
+     * @throws IOException
+     *             if the counters of the security context could not be loaded or persisted.
+     */
+    public boolean accept(byte[] systemTitle, SecuritySuite securitySuite, int frameCounter) throws IOException {
+        return receiveWindowFor(systemTitle, securitySuite).accept(frameCounter & MAX_FRAME_COUNTER);
+    }
+
+    /**
+     * Waits until the greatest received counters have been saved to the store.
+     * 
+     * @throws IOException
+     *             if a received counter could not be saved.
+     */
+    public void flush() throws IOException {
+        ExecutorService executor;
+        synchronized (this) {
+            executor = this.saveExecutor;
+        }
+
+        if (executor != null) {
+            // the single thread saves the counters in order, the pending saves complete before this task
+            Future<?> saved = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            try {
+                saved.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while saving the received invocation counters.", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        for (ReceiveWindow receiveWindow : this.receiveWindows.values()) {
+            receiveWindow.throwSaveException();
+        }
+    }
+
+    private synchronized ExecutorService saveExecutor() {
+        if (this.saveExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new SaveThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            this.saveExecutor = executor;
+        }
+        return this.saveExecutor;
+    }
+
+    private ReceiveWindow receiveWindowFor(byte[] systemTitle, SecuritySuite securitySuite) throws IOException {
+        ByteBuffer key = contextKey(systemTitle, securitySuite);
+
+        ReceiveWindow receiveWindow = this.receiveWindows.get(key);
+        if (receiveWindow == null) {
+            receiveWindow = putIfAbsent(this.receiveWindows, key, new ReceiveWindow(systemTitle, securitySuite));
+        }
+        return receiveWindow;
+    }
+
+    /**
+     * The system title followed by the encryption key, which identifies the security context in memory.
+     */
+    private static ByteBuffer contextKey(byte[] systemTitle, SecuritySuite securitySuite) {
+        byte[] encryptionKey = encryptionKeyOf(securitySuite);
+
+        byte[] key = Arrays.copyOf(systemTitle, systemTitle.length + encryptionKey.length);
+        System.arraycopy(encryptionKey, 0, key, systemTitle.length, encryptionKey.length);
+        return ByteBuffer.wrap(key);
+    }
+
+    private static byte[] encryptionKeyOf(SecuritySuite securitySuite) {
+        byte[] encryptionKey = securitySuite.getGlobalUnicastEncryptionKey();
+        return encryptionKey != null ? encryptionKey : new byte[0];
+    }
+
+    /**
+     * The identifier of the key saved to the store: the first 8 bytes of the SHA-256 digest of the encryption key, the
+     * key itself is never saved.
+     */
+    private static long keyIdOf(SecuritySuite securitySuite) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(encryptionKeyOf(securitySuite));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static <V> V putIfAbsent(ConcurrentMap<ByteBuffer, V> counters, ByteBuffer key, V counter) {
+        V previous = counters.putIfAbsent(key, counter);
+        return previous == null ? counter : previous;
+    }
+
+    private long load(byte[] systemTitle, long keyId, Direction direction) throws IOException {
+        if (this.store == null) {
+            return -1;
+        }
+        return this.store.load(systemTitle, keyId, direction);
+    }
+
+    private abstract static class Counter {
+        protected final byte[] systemTitle;
+        protected final long keyId;
+
+        public Counter(byte[] systemTitle, SecuritySuite securitySuite) throws IOException {
+            this.systemTitle = systemTitle.clone();
+            this.keyId = keyIdOf(securitySuite);
+        }
+    }
+
+    private class SentCounter extends Counter {
+        private final AtomicLong next;
+
+        /**
+         * All counters below this value have been persisted as possibly used.
+         */
+        private final AtomicLong reserved;
+
+        public SentCounter(byte[] systemTitle, SecuritySuite securitySuite) throws IOException {
+            super(systemTitle, securitySuite);
+
+            long saved = load(systemTitle, this.keyId, Direction.SENT);
+            this.next = new AtomicLong(saved < 0 ? 1 : saved);
+            this.reserved = new AtomicLong(saved < 0 ? 0 : saved);
+        }
+
+        public int next() throws IOException {
+            long frameCounter = this.next.getAndIncrement();
+            if (frameCounter > MAX_FRAME_COUNTER) {
+                throw new IOException(MessageFormat.format(
+                        "The invocation counters of system title {0} are exhausted, the keys need to be renewed.",
+                        HexConverter.toShortHexString(this.systemTitle)));
+            }
+
+            if (store != null) {
+                reserve(frameCounter);
+            }
+            return (int) frameCounter;
+        }
+
+        private void reserve(long frameCounter) throws IOException {
+            long reservedCounters;
+            while (frameCounter >= (reservedCounters = this.reserved.get())) {
+                // persist before publishing, so a used counter is never lost on a crash
+                long newReservation = Math.min(frameCounter + SENT_RESERVATION, MAX_FRAME_COUNTER + 1);
+                store.save(this.systemTitle, this.keyId, Direction.SENT, newReservation);
+                this.reserved.compareAndSet(reservedCounters, newReservation);
+            }
+        }
+    }
+
+    /**
+     * The state packs the greatest received counter into the upper and the window into the lower 32 bits. Bit
+     * <code>i</code> of the window is set, if the counter <code>greatest - i</code> has been received.
+     */
+    private class ReceiveWindow extends Counter implements Runnable {
+        private static final long WINDOW_MASK = 0xFFFFFFFFL;
+
+        private final AtomicLong state;
+
+        private final AtomicBoolean saveScheduled;
+        private volatile IOException saveException;
+
+        public ReceiveWindow(byte[] systemTitle, SecuritySuite securitySuite) throws IOException {
+            super(systemTitle, securitySuite);
+
+            long saved = load(systemTitle, this.keyId, Direction.RECEIVED);
+            this.state = new AtomicLong(saved < 0 ? 0 : (saved << 32) | WINDOW_MASK);
+            this.saveScheduled = new AtomicBoolean();
+        }
+
+        public boolean isFresh(long frameCounter) {
+            return isFresh(this.state.get(), frameCounter);
+        }
+
+        public boolean accept(long frameCounter) throws IOException {
+            throwSaveException();
+
+            long currentState;
+            do {
+                currentState = this.state.get();
+                if (!isFresh(currentState, frameCounter)) {
+                    return false;
+                }
+            } while (!this.state.compareAndSet(currentState, update(currentState, frameCounter)));
+
+            // saving is left to the background thread, which saves the greatest counter of several APDUs at once
+            if (store != null && frameCounter > currentState >>> 32 && this.saveScheduled.compareAndSet(false, true)) {
+                saveExecutor().execute(this);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            // reset first, so a greater counter received while saving schedules another save
+            this.saveScheduled.set(false);
+            try {
+                store.save(this.systemTitle, this.keyId, Direction.RECEIVED, this.state.get() >>> 32);
+            } catch (IOException e) {
+                this.saveException = e;
+            }
+        }
+
+        public void throwSaveException() throws IOException {
+            IOException e = this.saveException;
+            if (e != null) {
+                this.saveException = null;
+                throw new IOException(MessageFormat.format(
+                        "The received invocation counters of system title {0} could not be saved.",
+                        HexConverter.toShortHexString(this.systemTitle)), e);
+            }
+        }
+
+        private boolean isFresh(long state, long frameCounter) {
+            long greatest = state >>> 32;
+            if (frameCounter > greatest) {
+                return true;
+            }
+
+            long distance = greatest - frameCounter;
+            return distance < windowSize && (state & (1L << distance)) == 0;
+        }
+
+        private long update(long state, long frameCounter) {
+            long greatest = state >>> 32;
+            if (frameCounter <= greatest) {
+                return state | (1L << (greatest - frameCounter));
+            }
+
+            long shift = frameCounter - greatest;
+            long window = shift < 32 ? (state << shift) & WINDOW_MASK : 0;
+            return (frameCounter << 32) | window | 1;
+        }
+    }
+
+    private static class SaveThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadCounter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jdlms-frame-counter-store-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
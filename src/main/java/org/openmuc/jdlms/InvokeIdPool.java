@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Keeps track of the invoke IDs of the requests in flight.
+ * 
+ * <p>
+ * The number of requests in flight is bounded by the configured maximum and by the 16 available invoke IDs. An
+ * invoke ID is never handed out twice while the request using it is in flight.
+ * </p>
+ */
+class InvokeIdPool {
+
+    private final int capacity;
+    private final Semaphore permits;
+    private final boolean[] inUse;
+
+    public InvokeIdPool(int maxInFlightRequests) {
+        this.capacity = Math.max(1, Math.min(maxInFlightRequests, ResponseQueue.NUMBER_OF_INVOKE_IDS));
+        this.permits = new Semaphore(this.capacity, true);
+        this.inUse = new boolean[ResponseQueue.NUMBER_OF_INVOKE_IDS];
+    }
+
+    /**
+     * Blocks until a further request may be sent.
+     * 
+     * @throws IOException
+     *             if the thread has been interrupted while waiting.
+     */
+    public void acquirePermit() throws IOException {
+        try {
+            this.permits.acquire();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for a free invoke ID.");
+        }
+    }
+
+    /**
+     * Claims an invoke ID, after a permit has been acquired.
+     * 
+     * @param invokeId
+     *            the invoke ID.
+     * @return {@code true} if the invoke ID has been free.
+     */
+    public synchronized boolean claim(int invokeId) {
+        if (this.inUse[invokeId]) {
+            return false;
+        }
+        this.inUse[invokeId] = true;
+        return true;
+    }
+
+    /**
+     * Releases the invoke ID and the permit of a finished request.
+     * 
+     * @param invokeId
+     *            the invoke ID.
+     */
+    public void release(int invokeId) {
+        synchronized (this) {
+            this.inUse[invokeId] = false;
+        }
+        this.permits.release();
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+}
@@ -115,6 +115,16 @@ public abstract class JDlmsException extends IOException {
          */
         GET_REQUEST_TOO_LARGE,
 
+        /**
+         * SET.request or ACTION.request PDU is too large and the server does not support block transfer.
+         */
+        REQUEST_TOO_LARGE,
+
+        /**
+         * No pooled connection to the meter became available in time.
+         */
+        CONNECTION_POOL_EXHAUSTED,
+
         // ---------------------jRXTX------------------------------
         /**
          * The specified COM port does not exist.
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.jdlms.internal.LatencyHistogram;
+
+/**
+ * Snapshot of recorded latencies.
+ * 
+ * <p>
+ * The latencies are counted in buckets, whose upper bounds are powers of two in milliseconds. Percentiles are
+ * therefore given as the upper bound of the bucket they fall into.
+ * </p>
+ */
+public class LatencyStatistics {
+
+    private final long[] bucketCounts;
+    private final long[] bucketUpperBounds;
+    private final long count;
+    private final long meanNanos;
+    private final long maxNanos;
+
+    LatencyStatistics(LatencyHistogram histogram) {
+        int numberOfBuckets = histogram.numberOfBuckets();
+        this.bucketCounts = new long[numberOfBuckets];
+        this.bucketUpperBounds = new long[numberOfBuckets];
+
+        long sum = 0;
+        for (int i = 0; i < numberOfBuckets; i++) {
+            this.bucketCounts[i] = histogram.bucketCount(i);
+            this.bucketUpperBounds[i] = histogram.bucketUpperBoundMillis(i);
+            sum += this.bucketCounts[i];
+        }
+        this.count = sum;
+        this.meanNanos = histogram.meanNanos();
+        this.maxNanos = histogram.maxNanos();
+    }
+
+    /**
+     * @return the number of recorded latencies.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the mean latency in <u>ns</u>.
+     */
+    public long getMeanNanos() {
+        return this.meanNanos;
+    }
+
+    /**
+     * @return the greatest latency in <u>ns</u>.
+     */
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the recorded latencies lies.
+     * 
+     * @param percentile
+     *            the percentile in the range {@code (0, 100]}.
+     * @return the latency in <u>ms</u> or {@code 0} if nothing has been recorded.
+     * @throws IllegalArgumentException
+     *             if the percentile is out of range.
+     */
+    public long getPercentileMillis(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile has to be in the range (0, 100].");
+        }
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long maxMillis = TimeUnit.NANOSECONDS.toMillis(this.maxNanos) + 1;
+        long rank = (long) Math.ceil(percentile / 100 * this.count);
+        long cumulativeCount = 0;
+        for (int i = 0; i < this.bucketCounts.length; i++) {
+            cumulativeCount += this.bucketCounts[i];
+            if (cumulativeCount >= rank) {
+                return Math.min(this.bucketUpperBounds[i], maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+
+}
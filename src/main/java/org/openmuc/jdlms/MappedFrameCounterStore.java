@@ -0,0 +1,288 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Frame counter store appending the saved values to a memory-mapped file.
+ * 
+ * <p>
+ * Saving a value writes a record of 24 bytes to the mapped memory, no system call is involved. The operating system
+ * writes the records to the file, they survive a crash of the application. Once the file is full, the latest values
+ * are compacted into a new file, which atomically replaces the old one.
+ * </p>
+ * 
+ * <p>
+ * System titles must not be longer than 8 bytes.
+ * </p>
+ */
+public class MappedFrameCounterStore implements FrameCounterStore, Closeable {
+
+    /**
+     * The default number of records the file holds before it is compacted.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int MAX_SYSTEM_TITLE_LENGTH = 8;
+
+    /*
+     * Record layout: direction (1 byte, 0 marks the end of the log), system title length (1 byte), system title (8
+     * bytes), 2 bytes padding, frame counter (4 bytes), key id (8 bytes).
+     */
+    private static final int RECORD_LENGTH = 24;
+    private static final int SYSTEM_TITLE_OFFSET = 2;
+    private static final int FRAME_COUNTER_OFFSET = 12;
+    private static final int KEY_ID_OFFSET = 16;
+    private static final int KEY_ID_LENGTH = 8;
+
+    private final File file;
+    private final int capacity;
+
+    /**
+     * The latest values per direction, keyed by the system title followed by the key id.
+     */
+    private final Map<Direction, Map<ByteBuffer, Long>> latestValues;
+
+    private FileChannel channel;
+    private MappedByteBuffer records;
+    private int numRecords;
+
+    /**
+     * Opens or creates the store with the default capacity.
+     * 
+     * @param file
+     *            the file of the store.
+     * @throws IOException
+     *             if the file could not be opened or mapped.
+     */
+    public MappedFrameCounterStore(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens or creates the store.
+     * 
+     * @param file
+     *            the file of the store.
+     * @param capacity
+     *            the number of records the file holds before it is compacted.
+     * @throws IOException
+     *             if the file could not be opened or mapped.
+     */
+    public MappedFrameCounterStore(File file, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity has to be positive.");
+        }
+        this.file = file;
+        this.capacity = capacity;
+
+        this.latestValues = new EnumMap<>(Direction.class);
+        for (Direction direction : Direction.values()) {
+            this.latestValues.put(direction, new HashMap<ByteBuffer, Long>());
+        }
+
+        map(this.file, Math.max(capacity, (int) (file.length() / RECORD_LENGTH)));
+        readRecords();
+    }
+
+    @Override
+    public synchronized long load(byte[] systemTitle, long keyId, Direction direction) throws IOException {
+        checkOpen();
+        Long value = this.latestValues.get(direction).get(keyOf(systemTitle, keyId));
+        return value == null ? -1 : value;
+    }
+
+    @Override
+    public synchronized void save(byte[] systemTitle, long keyId, Direction direction, long frameCounter)
+            throws IOException {
+        checkOpen();
+        if (systemTitle.length > MAX_SYSTEM_TITLE_LENGTH) {
+            throw new IllegalArgumentException("System title must not be longer than 8 bytes.");
+        }
+
+        Map<ByteBuffer, Long> values = this.latestValues.get(direction);
+        ByteBuffer key = keyOf(systemTitle, keyId);
+        Long value = values.get(key);
+        if (value != null && value >= frameCounter) {
+            return;
+        }
+        values.put(key, frameCounter);
+
+        if (this.numRecords == this.records.capacity() / RECORD_LENGTH) {
+            compact();
+        }
+        else {
+            writeRecord(this.records, this.numRecords++, direction, key.array(), frameCounter);
+        }
+    }
+
+    /**
+     * Writes the mapped records to the file and closes it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.channel == null) {
+            return;
+        }
+        this.records.force();
+        this.channel.close();
+        this.channel = null;
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.channel == null) {
+            throw new IOException("Frame counter store has been closed.");
+        }
+    }
+
+    private void readRecords() {
+        int maxRecords = this.records.capacity() / RECORD_LENGTH;
+
+        byte[] systemTitle = new byte[MAX_SYSTEM_TITLE_LENGTH];
+        for (this.numRecords = 0; this.numRecords < maxRecords; this.numRecords++) {
+            int offset = this.numRecords * RECORD_LENGTH;
+
+            int directionCode = this.records.get(offset);
+            if (directionCode <= 0 || directionCode > Direction.values().length) {
+                break;
+            }
+            int length = this.records.get(offset + 1);
+            if (length < 0 || length > MAX_SYSTEM_TITLE_LENGTH) {
+                break;
+            }
+            Direction direction = Direction.values()[directionCode - 1];
+
+            for (int i = 0; i < length; i++) {
+                systemTitle[i] = this.records.get(offset + SYSTEM_TITLE_OFFSET + i);
+            }
+            long frameCounter = this.records.getInt(offset + FRAME_COUNTER_OFFSET) & 0xFFFFFFFFL;
+            long keyId = this.records.getLong(offset + KEY_ID_OFFSET);
+
+            Map<ByteBuffer, Long> values = this.latestValues.get(direction);
+            ByteBuffer key = keyOf(Arrays.copyOf(systemTitle, length), keyId);
+            Long value = values.get(key);
+            if (value == null || value < frameCounter) {
+                values.put(key, frameCounter);
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        int numValues = 0;
+        for (Map<ByteBuffer, Long> values : this.latestValues.values()) {
+            numValues += values.size();
+        }
+        int newCapacity = Math.max(this.capacity, 2 * numValues);
+
+        File compactedFile = new File(this.file.getPath() + ".tmp");
+        int numCompactedRecords;
+        Files.deleteIfExists(compactedFile.toPath());
+
+        try (RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw")) {
+            compacted.setLength((long) newCapacity * RECORD_LENGTH);
+            MappedByteBuffer compactedRecords = compacted.getChannel()
+                    .map(MapMode.READ_WRITE, 0, (long) newCapacity * RECORD_LENGTH);
+
+            int index = 0;
+            for (Entry<Direction, Map<ByteBuffer, Long>> values : this.latestValues.entrySet()) {
+                for (Entry<ByteBuffer, Long> value : values.getValue().entrySet()) {
+                    writeRecord(compactedRecords, index++, values.getKey(), value.getKey().array(), value.getValue());
+                }
+            }
+            compactedRecords.force();
+            numCompactedRecords = index;
+        }
+
+        // the old records have to be on disk, in case the file cannot be replaced, and must not be written anymore
+        int maxRecords = this.records.capacity() / RECORD_LENGTH;
+        this.records.force();
+        this.records = null;
+        this.channel.close();
+        this.channel = null;
+
+        try {
+            Files.move(compactedFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            map(this.file, maxRecords);
+            throw e;
+        }
+        map(this.file, newCapacity);
+        this.numRecords = numCompactedRecords;
+    }
+
+    private void map(File file, int maxRecords) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long length = (long) maxRecords * RECORD_LENGTH;
+            if (randomAccessFile.length() < length) {
+                randomAccessFile.setLength(length);
+            }
+            this.channel = randomAccessFile.getChannel();
+            this.records = this.channel.map(MapMode.READ_WRITE, 0, length);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer keyOf(byte[] systemTitle, long keyId) {
+        ByteBuffer key = ByteBuffer.allocate(systemTitle.length + KEY_ID_LENGTH);
+        key.put(systemTitle).putLong(keyId);
+        key.flip();
+        return key;
+    }
+
+    /**
+     * Writes the record of the key, which holds the system title followed by the key id.
+     */
+    private static void writeRecord(ByteBuffer records, int index, Direction direction, byte[] key,
+            long frameCounter) {
+        int offset = index * RECORD_LENGTH;
+        int systemTitleLength = key.length - KEY_ID_LENGTH;
+
+        records.put(offset + 1, (byte) systemTitleLength);
+        for (int i = 0; i < systemTitleLength; i++) {
+            records.put(offset + SYSTEM_TITLE_OFFSET + i, key[i]);
+        }
+        records.putInt(offset + FRAME_COUNTER_OFFSET, (int) frameCounter);
+        records.putLong(offset + KEY_ID_OFFSET, ByteBuffer.wrap(key, systemTitleLength, KEY_ID_LENGTH).getLong());
+
+        // the direction marks the record as complete
+        records.put(offset, (byte) (direction.ordinal() + 1));
+    }
+
+}
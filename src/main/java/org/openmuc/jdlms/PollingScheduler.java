@@ -0,0 +1,528 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls groups of meters periodically, as described by {@link ReadPlan}s.
+ * 
+ * <p>
+ * The polls of the meters of a plan are spread evenly over the cycle and delayed by a random jitter, so that the
+ * meters are not all polled at the same time. The attributes are read with {@link DlmsConnection#getBatched(List)}
+ * over connections borrowed from a {@link DlmsConnectionPool}, so the associations are kept open between the cycles.
+ * </p>
+ * 
+ * <p>
+ * The number of concurrent polls is limited overall and per gateway. The gateway of a meter is its TCP address and
+ * port or its serial port, shared by all meters behind a data concentrator or on a serial line. If polls have to
+ * wait, the polls of the plan with the highest priority are started first, the earliest due first within a plan.
+ * </p>
+ */
+public class PollingScheduler implements AutoCloseable {
+
+    private static final Comparator<PollTask> POLL_ORDER = new Comparator<PollTask>() {
+        @Override
+        public int compare(PollTask t1, PollTask t2) {
+            int priority1 = t1.planState.plan.getPriority();
+            int priority2 = t2.planState.plan.getPriority();
+            if (priority1 != priority2) {
+                return priority1 > priority2 ? -1 : 1;
+            }
+            // the due times are compared by their difference, as nano times may overflow
+            long dueTimeDifference = t1.dueTime - t2.dueTime;
+            if (dueTimeDifference != 0) {
+                return dueTimeDifference < 0 ? -1 : 1;
+            }
+            return Long.compare(t1.sequenceNumber, t2.sequenceNumber);
+        }
+    };
+
+    private final DlmsConnectionPool connectionPool;
+    private final boolean ownsConnectionPool;
+    private final int maxConcurrentPolls;
+    private final int maxConcurrentPollsPerGateway;
+    private final long maxJitter;
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService pollExecutor;
+
+    private final Map<ReadPlan, PlanState> plans;
+    private final Map<String, Gateway> gateways;
+    private final PriorityQueue<PollTask> readyPolls;
+    private int numActivePolls;
+    private long nextSequenceNumber;
+    private boolean closed;
+
+    private PollingScheduler(PollingSchedulerBuilder builder) {
+        if (builder.connectionPool != null) {
+            this.connectionPool = builder.connectionPool;
+            this.ownsConnectionPool = false;
+        }
+        else {
+            this.connectionPool = DlmsConnectionPool.builder().setThreadFactory(builder.threadFactory).build();
+            this.ownsConnectionPool = true;
+        }
+        this.maxConcurrentPolls = builder.maxConcurrentPolls;
+        this.maxConcurrentPollsPerGateway = builder.maxConcurrentPollsPerGateway;
+        this.maxJitter = builder.maxJitter;
+
+        ThreadFactory threadFactory = builder.threadFactory;
+        if (threadFactory == null) {
+            threadFactory = new PollingThreadFactory();
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.pollExecutor = Executors.newFixedThreadPool(this.maxConcurrentPolls, threadFactory);
+
+        this.plans = new IdentityHashMap<>();
+        this.gateways = new HashMap<>();
+        this.readyPolls = new PriorityQueue<>(64, POLL_ORDER);
+        this.numActivePolls = 0;
+        this.nextSequenceNumber = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Creates a builder for a polling scheduler.
+     * 
+     * @return a new builder with default settings.
+     */
+    public static PollingSchedulerBuilder builder() {
+        return new PollingSchedulerBuilder();
+    }
+
+    /**
+     * Starts polling the meters of the plan.
+     * 
+     * @param plan
+     *            the read plan.
+     * @return the metrics of the plan.
+     * @throws IllegalArgumentException
+     *             if the plan has already been added or the address of a meter is not set.
+     * @throws IllegalStateException
+     *             if the scheduler has been closed.
+     */
+    public synchronized ReadPlanMetrics addPlan(ReadPlan plan) {
+        checkOpen();
+        if (this.plans.containsKey(plan)) {
+            throw new IllegalArgumentException("The read plan " + plan + " has already been added.");
+        }
+
+        List<PollTask> tasks = new ArrayList<>(plan.getMeters().size());
+        PlanState planState = new PlanState(plan);
+        for (ConnectionBuilder<?> meter : plan.getMeters()) {
+            String gatewayAddress = meter.remoteAddress();
+            if (gatewayAddress == null) {
+                throw new IllegalArgumentException("The address of a meter of the read plan " + plan + " is not set.");
+            }
+            tasks.add(new PollTask(planState, meter, gatewayFor(gatewayAddress)));
+        }
+
+        this.plans.put(plan, planState);
+
+        long now = System.nanoTime();
+        long cycleTimeNanos = TimeUnit.MILLISECONDS.toNanos(plan.getCycleTime());
+        int numMeters = tasks.size();
+        for (int i = 0; i < numMeters; i++) {
+            PollTask task = tasks.get(i);
+            task.dueTime = now + cycleTimeNanos / numMeters * i;
+            schedule(task, now);
+        }
+
+        return planState.metrics;
+    }
+
+    /**
+     * Stops polling the meters of the plan. Running polls are completed.
+     * 
+     * @param plan
+     *            the read plan.
+     */
+    public synchronized void removePlan(ReadPlan plan) {
+        PlanState planState = this.plans.remove(plan);
+        if (planState == null) {
+            return;
+        }
+        planState.removed = true;
+
+        removeTasksOf(planState, this.readyPolls.iterator());
+        for (Gateway gateway : this.gateways.values()) {
+            removeTasksOf(planState, gateway.waitingPolls.iterator());
+        }
+    }
+
+    private static void removeTasksOf(PlanState planState, Iterator<PollTask> iterator) {
+        while (iterator.hasNext()) {
+            if (iterator.next().planState == planState) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param plan
+     *            the read plan.
+     * @return the metrics of the plan or <code>null</code> if the plan is not scheduled.
+     */
+    public synchronized ReadPlanMetrics metricsOf(ReadPlan plan) {
+        PlanState planState = this.plans.get(plan);
+        return planState == null ? null : planState.metrics;
+    }
+
+    /**
+     * @return the connection pool of the scheduler.
+     */
+    public DlmsConnectionPool getConnectionPool() {
+        return this.connectionPool;
+    }
+
+    /**
+     * Stops polling. Running polls are completed in the background, the connection pool is closed, if it has been
+     * created by the scheduler.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+
+            for (PlanState planState : this.plans.values()) {
+                planState.removed = true;
+            }
+            this.plans.clear();
+            this.readyPolls.clear();
+            for (Gateway gateway : this.gateways.values()) {
+                gateway.waitingPolls.clear();
+            }
+        }
+
+        this.timer.shutdownNow();
+        this.pollExecutor.shutdown();
+
+        if (this.ownsConnectionPool) {
+            this.connectionPool.close();
+        }
+    }
+
+    private void schedule(final PollTask task, long now) {
+        long jitter = this.maxJitter > 0 ? ThreadLocalRandom.current().nextLong(this.maxJitter + 1) : 0;
+        long delay = task.dueTime - now + TimeUnit.MILLISECONDS.toNanos(jitter);
+
+        this.timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pollDue(task);
+            }
+        }, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void pollDue(PollTask task) {
+        if (task.planState.removed) {
+            return;
+        }
+
+        task.readyTime = System.nanoTime();
+        task.sequenceNumber = this.nextSequenceNumber++;
+        this.readyPolls.add(task);
+        startPolls();
+    }
+
+    /**
+     * Starts the ready polls in order, as long as threads are available. Polls of busy gateways wait at the gateway.
+     */
+    private void startPolls() {
+        while (this.numActivePolls < this.maxConcurrentPolls && !this.readyPolls.isEmpty()) {
+            final PollTask task = this.readyPolls.poll();
+            Gateway gateway = task.gateway;
+
+            if (gateway.numActivePolls >= this.maxConcurrentPollsPerGateway) {
+                gateway.waitingPolls.add(task);
+                continue;
+            }
+
+            ++gateway.numActivePolls;
+            ++this.numActivePolls;
+            this.pollExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        poll(task);
+                    } finally {
+                        pollFinished(task);
+                    }
+                }
+            });
+        }
+    }
+
+    private void poll(PollTask task) {
+        PlanState planState = task.planState;
+        ReadPlan plan = planState.plan;
+        ReadPlanMetrics metrics = planState.metrics;
+
+        long startTime = System.nanoTime();
+        metrics.pollStarted(startTime - task.readyTime);
+
+        List<GetResult> results;
+        try {
+            results = read(task.meter, plan);
+        } catch (IOException | RuntimeException e) {
+            metrics.pollFailed(System.nanoTime() - startTime);
+
+            if (plan.getListener() != null) {
+                IOException cause = e instanceof IOException ? (IOException) e : new IOException(e);
+                plan.getListener().pollFailed(plan, task.meter, cause);
+            }
+            return;
+        }
+
+        metrics.pollCompleted(results.size(), System.nanoTime() - startTime);
+        if (plan.getListener() != null) {
+            plan.getListener().pollCompleted(plan, task.meter, results);
+        }
+    }
+
+    private List<GetResult> read(ConnectionBuilder<?> meter, ReadPlan plan) throws IOException {
+        DlmsConnection connection = this.connectionPool.borrow(meter);
+        boolean released = false;
+        try {
+            List<GetResult> results = connection.getBatched(plan.getAttributes());
+            this.connectionPool.release(connection);
+            released = true;
+            return results;
+        } finally {
+            if (!released) {
+                this.connectionPool.invalidate(connection);
+            }
+        }
+    }
+
+    private synchronized void pollFinished(PollTask task) {
+        Gateway gateway = task.gateway;
+        --gateway.numActivePolls;
+        --this.numActivePolls;
+
+        PollTask waitingPoll = gateway.waitingPolls.poll();
+        if (waitingPoll != null) {
+            this.readyPolls.add(waitingPoll);
+        }
+
+        if (!task.planState.removed && !this.closed) {
+            scheduleNextCycle(task);
+        }
+
+        if (!this.closed) {
+            startPolls();
+        }
+    }
+
+    private void scheduleNextCycle(PollTask task) {
+        long cycleTimeNanos = TimeUnit.MILLISECONDS.toNanos(task.planState.plan.getCycleTime());
+        long now = System.nanoTime();
+
+        // keep the phase of the meter, skip the cycles which are already over
+        task.dueTime += cycleTimeNanos;
+        if (now - task.dueTime > 0) {
+            long missedCycles = (now - task.dueTime) / cycleTimeNanos + 1;
+            task.dueTime += missedCycles * cycleTimeNanos;
+            task.planState.metrics.cyclesMissed(missedCycles);
+        }
+
+        schedule(task, now);
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("The polling scheduler has been closed.");
+        }
+    }
+
+    private Gateway gatewayFor(String address) {
+        Gateway gateway = this.gateways.get(address);
+        if (gateway == null) {
+            gateway = new Gateway();
+            this.gateways.put(address, gateway);
+        }
+        return gateway;
+    }
+
+    private static class PlanState {
+        private final ReadPlan plan;
+        private final ReadPlanMetrics metrics;
+        private volatile boolean removed;
+
+        public PlanState(ReadPlan plan) {
+            this.plan = plan;
+            this.metrics = new ReadPlanMetrics();
+            this.removed = false;
+        }
+    }
+
+    private static class Gateway {
+        private final PriorityQueue<PollTask> waitingPolls = new PriorityQueue<>(16, POLL_ORDER);
+        private int numActivePolls;
+    }
+
+    /**
+     * The periodic poll of one meter of a plan.
+     */
+    private static class PollTask {
+        private final PlanState planState;
+        private final ConnectionBuilder<?> meter;
+        private final Gateway gateway;
+
+        private long dueTime;
+        private long readyTime;
+        private long sequenceNumber;
+
+        public PollTask(PlanState planState, ConnectionBuilder<?> meter, Gateway gateway) {
+            this.planState = planState;
+            this.meter = meter;
+            this.gateway = gateway;
+        }
+    }
+
+    private static class PollingThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadCounter = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jdlms-polling-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Builder of a {@link PollingScheduler}.
+     */
+    public static class PollingSchedulerBuilder {
+
+        private DlmsConnectionPool connectionPool;
+        private int maxConcurrentPolls;
+        private int maxConcurrentPollsPerGateway;
+        private long maxJitter;
+        private ThreadFactory threadFactory;
+
+        private PollingSchedulerBuilder() {
+            this.connectionPool = null;
+            this.maxConcurrentPolls = 16;
+            this.maxConcurrentPollsPerGateway = 1;
+            this.maxJitter = 1000;
+            this.threadFactory = null;
+        }
+
+        /**
+         * Sets the pool of the connections to the meters. By default the scheduler creates a pool with default
+         * settings and closes it on close.
+         * 
+         * @param connectionPool
+         *            the connection pool.
+         * @return the builder.
+         */
+        public PollingSchedulerBuilder setConnectionPool(DlmsConnectionPool connectionPool) {
+            this.connectionPool = connectionPool;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of meters polled at the same time. Default is <code>16</code>.
+         * 
+         * @param maxConcurrentPolls
+         *            the number of polling threads.
+         * @return the builder.
+         */
+        public PollingSchedulerBuilder setMaxConcurrentPolls(int maxConcurrentPolls) {
+            if (maxConcurrentPolls < 1) {
+                throw new IllegalArgumentException("At least one concurrent poll must be allowed.");
+            }
+            this.maxConcurrentPolls = maxConcurrentPolls;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of meters polled at the same time through one gateway or serial line. Default is
+         * <code>1</code>.
+         * 
+         * @param maxConcurrentPollsPerGateway
+         *            the maximum number of polls per gateway.
+         * @return the builder.
+         */
+        public PollingSchedulerBuilder setMaxConcurrentPollsPerGateway(int maxConcurrentPollsPerGateway) {
+            if (maxConcurrentPollsPerGateway < 1) {
+                throw new IllegalArgumentException("At least one concurrent poll per gateway must be allowed.");
+            }
+            this.maxConcurrentPollsPerGateway = maxConcurrentPollsPerGateway;
+            return this;
+        }
+
+        /**
+         * Sets the maximum random delay of a poll in <u>ms</u>. Default is <code>1000</code>.
+         * 
+         * @param maxJitter
+         *            the maximum jitter or <code>0</code> to poll exactly at the due times.
+         * @return the builder.
+         */
+        public PollingSchedulerBuilder setMaxJitter(long maxJitter) {
+            this.maxJitter = maxJitter;
+            return this;
+        }
+
+        /**
+         * Sets the factory of the polling threads.
+         * 
+         * @param threadFactory
+         *            the thread factory or <code>null</code> to create daemon threads.
+         * @return the builder.
+         */
+        public PollingSchedulerBuilder setThreadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        /**
+         * Builds the scheduler.
+         * 
+         * @return a new scheduler.
+         */
+        public PollingScheduler build() {
+            return new PollingScheduler(this);
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.openmuc.jdlms.datatypes.CosemDateFormat.Field;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Entries of a profile generic buffer, stored column by column in primitive arrays.
+ * 
+ * <p>
+ * Integer values are provided as {@code long}, floating point values as {@code double} and date-time values as
+ * milliseconds since the epoch. Values which are missing in an entry (null-data) are returned as {@link #MISSING},
+ * respectively {@link Double#NaN}. Other data types, e.g. octet strings which are no date-time, are not stored.
+ * </p>
+ * 
+ * @see ProfileGenericReader
+ * @see ProfileBufferListener
+ */
+public class ProfileBuffer {
+
+    /**
+     * The value of a missing integer or timestamp value.
+     */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final int DATE_TIME_LENGTH = 12;
+    private static final int NOT_SPECIFIED = 0xFF;
+    private static final int INITIAL_CAPACITY = 96;
+
+    /**
+     * The type of values a column holds.
+     */
+    public enum ColumnType {
+        /**
+         * Date-time values in milliseconds since the epoch.
+         */
+        TIMESTAMP,
+        /**
+         * Integer, enum, boolean or bit string values.
+         */
+        INTEGER,
+        /**
+         * Float32 or float64 values.
+         */
+        FLOATING_POINT,
+        /**
+         * The type of the column is not known yet, since all values have been missing.
+         */
+        UNKNOWN,
+        /**
+         * Values which can't be represented as primitive.
+         */
+        OTHER
+    }
+
+    private final ColumnType[] columnTypes;
+    private final long[][] columns;
+    private final int timestampColumn;
+    private final long capturePeriodMillis;
+    private int numberOfRows;
+
+    /**
+     * The timestamp of the previous entry, kept when the buffer is cleared.
+     */
+    private long previousTimestamp;
+
+    ProfileBuffer(int numberOfColumns, int timestampColumn, long capturePeriodMillis) {
+        this.columnTypes = new ColumnType[numberOfColumns];
+        Arrays.fill(this.columnTypes, ColumnType.UNKNOWN);
+        this.columns = new long[numberOfColumns][INITIAL_CAPACITY];
+        this.timestampColumn = timestampColumn;
+        this.capturePeriodMillis = capturePeriodMillis;
+        this.numberOfRows = 0;
+        this.previousTimestamp = MISSING;
+    }
+
+    /*
+     * Decodes a buffer entry directly into the columns, without creating data objects.
+     */
+    void addRow(Data row) throws IOException {
+        if (row.getChoiceIndex() != Data.Choices.STRUCTURE) {
+            throw new IOException("Buffer entry is not a structure, but " + row.getChoiceIndex());
+        }
+        List<Data> values = row.structure.list();
+        if (values.size() != this.columns.length) {
+            throw new IOException("Buffer entry has " + values.size() + " values, but there are " + this.columns.length
+                    + " capture objects.");
+        }
+
+        if (this.numberOfRows == this.columns[0].length) {
+            int newCapacity = this.numberOfRows * 2;
+            for (int i = 0; i < this.columns.length; i++) {
+                this.columns[i] = Arrays.copyOf(this.columns[i], newCapacity);
+            }
+        }
+
+        int column = 0;
+        for (Data value : values) {
+            this.columns[column][this.numberOfRows] = valueOf(column, value);
+            ++column;
+        }
+
+        if (this.timestampColumn >= 0) {
+            this.previousTimestamp = this.columns[this.timestampColumn][this.numberOfRows];
+        }
+        ++this.numberOfRows;
+    }
+
+    /*
+     * Removes the entries, so the buffer can be reused for the following entries of a streamed read.
+     */
+    void clear() {
+        this.numberOfRows = 0;
+    }
+
+    private long valueOf(int column, Data value) {
+        switch (value.getChoiceIndex()) {
+        case NULL_DATA:
+            if (column == this.timestampColumn && this.capturePeriodMillis > 0 && this.previousTimestamp != MISSING) {
+                // the timestamp of an entry may be omitted, if it follows the previous entry after one capture period
+                return this.previousTimestamp + this.capturePeriodMillis;
+            }
+            return MISSING;
+
+        case DOUBLE_LONG:
+            return integerValue(column, value.double_long.getValue());
+        case DOUBLE_LONG_UNSIGNED:
+            return integerValue(column, value.double_long_unsigned.getValue());
+        case INTEGER:
+            return integerValue(column, value.integer.getValue());
+        case LONG_INTEGER:
+            return integerValue(column, value.long_integer.getValue());
+        case UNSIGNED:
+            return integerValue(column, value.unsigned.getValue());
+        case LONG_UNSIGNED:
+            return integerValue(column, value.long_unsigned.getValue());
+        case LONG64:
+            return integerValue(column, value.long64.getValue());
+        case LONG64_UNSIGNED:
+            return integerValue(column, value.long64_unsigned.getValue());
+        case ENUMERATE:
+            return integerValue(column, value.enumerate.getValue());
+        case BCD:
+            return integerValue(column, value.bcd.getValue());
+        case BOOL:
+            return integerValue(column, value.bool.getValue() ? 1 : 0);
+        case BIT_STRING:
+            return integerValue(column, bitStringValue(value.bit_string.getValue()));
+
+        case FLOAT32:
+            return floatingPointValue(column, ByteBuffer.wrap(value.float32.getValue()).getFloat());
+        case FLOAT64:
+            return floatingPointValue(column, ByteBuffer.wrap(value.float64.getValue()).getDouble());
+
+        case DATE_TIME:
+            return timestampValue(column, value.date_time.getValue());
+        case OCTET_STRING:
+            if (value.octet_string.getValue().length == DATE_TIME_LENGTH) {
+                return timestampValue(column, value.octet_string.getValue());
+            }
+            updateColumnType(column, ColumnType.OTHER);
+            return MISSING;
+
+        default:
+            updateColumnType(column, ColumnType.OTHER);
+            return MISSING;
+        }
+    }
+
+    private long integerValue(int column, long value) {
+        updateColumnType(column, ColumnType.INTEGER);
+        return value;
+    }
+
+    private long floatingPointValue(int column, double value) {
+        updateColumnType(column, ColumnType.FLOATING_POINT);
+        // the bits of -0.0 equal MISSING
+        return Double.doubleToLongBits(value == 0 ? 0.0 : value);
+    }
+
+    private long timestampValue(int column, byte[] dateTime) {
+        updateColumnType(column, ColumnType.TIMESTAMP);
+        CosemDateTime cosemDateTime = CosemDateTime.decode(dateTime);
+        Calendar calendar = cosemDateTime.toCalendar();
+        if (cosemDateTime.get(Field.HUNDREDTHS) == NOT_SPECIFIED) {
+            calendar.set(Calendar.MILLISECOND, 0);
+        }
+        return calendar.getTimeInMillis();
+    }
+
+    private static long bitStringValue(byte[] bitString) {
+        long value = 0;
+        for (int i = 0; i < bitString.length && i < 8; i++) {
+            value = value << 8 | bitString[i] & 0xff;
+        }
+        return value;
+    }
+
+    private void updateColumnType(int column, ColumnType type) {
+        if (this.columnTypes[column] == ColumnType.UNKNOWN) {
+            this.columnTypes[column] = type;
+        }
+        else if (this.columnTypes[column] != type) {
+            this.columnTypes[column] = ColumnType.OTHER;
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return the number of entries.
+     */
+    public int numberOfRows() {
+        return this.numberOfRows;
+    }
+
+    /**
+     * Returns the number of columns, which equals the number of capture objects.
+     * 
+     * @return the number of columns.
+     */
+    public int numberOfColumns() {
+        return this.columns.length;
+    }
+
+    /**
+     * Returns the type of the values in a column.
+     * 
+     * @param column
+     *            the index of the column.
+     * @return the column type.
+     */
+    public ColumnType columnType(int column) {
+        return this.columnTypes[column];
+    }
+
+    /**
+     * Returns the timestamps of the entries, taken from the clock capture object.
+     * 
+     * @return the timestamps in milliseconds since the epoch.
+     * @throws IllegalStateException
+     *             if the profile does not capture the clock.
+     */
+    public long[] timestamps() {
+        if (this.timestampColumn < 0) {
+            throw new IllegalStateException("The profile does not capture the clock.");
+        }
+        return longColumn(this.timestampColumn);
+    }
+
+    /**
+     * Returns the timestamp of the last entry.
+     * 
+     * @return the timestamp in milliseconds since the epoch or {@link #MISSING} if the buffer is empty or the profile
+     *         does not capture the clock.
+     */
+    public long lastTimestamp() {
+        if (this.timestampColumn < 0 || this.numberOfRows == 0) {
+            return MISSING;
+        }
+        return this.columns[this.timestampColumn][this.numberOfRows - 1];
+    }
+
+    /**
+     * Returns the values of a column as long. Floating point values are truncated.
+     * 
+     * @param column
+     *            the index of the column.
+     * @return the values of all entries.
+     * @throws IllegalStateException
+     *             if the column holds values which can't be represented as primitive.
+     */
+    public long[] longColumn(int column) {
+        long[] values = Arrays.copyOf(checkedColumn(column), this.numberOfRows);
+        if (this.columnTypes[column] == ColumnType.FLOATING_POINT) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = values[i] == MISSING ? MISSING : (long) Double.longBitsToDouble(values[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values of a column as double.
+     * 
+     * @param column
+     *            the index of the column.
+     * @return the values of all entries.
+     * @throws IllegalStateException
+     *             if the column holds values which can't be represented as primitive.
+     */
+    public double[] doubleColumn(int column) {
+        long[] rawValues = checkedColumn(column);
+        boolean floatingPoint = this.columnTypes[column] == ColumnType.FLOATING_POINT;
+
+        double[] values = new double[this.numberOfRows];
+        for (int i = 0; i < values.length; i++) {
+            if (rawValues[i] == MISSING) {
+                values[i] = Double.NaN;
+            }
+            else if (floatingPoint) {
+                values[i] = Double.longBitsToDouble(rawValues[i]);
+            }
+            else {
+                values[i] = rawValues[i];
+            }
+        }
+        return values;
+    }
+
+    private long[] checkedColumn(int column) {
+        if (this.columnTypes[column] == ColumnType.OTHER) {
+            throw new IllegalStateException("Column " + column + " holds values which are no primitives.");
+        }
+        return this.columns[column];
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.EventListener;
+
+/**
+ * Receives the entries of a profile generic buffer while the buffer is being transferred from the remote meter.
+ * 
+ * @see ProfileGenericReader#readAll(ProfileBufferListener)
+ */
+public interface ProfileBufferListener extends EventListener {
+
+    /**
+     * Invoked with the entries decoded from a data block, before the next block is requested, and with the remaining
+     * entries at the end of the transfer.
+     * 
+     * <p>
+     * The buffer is cleared and reused for the following entries, it must not be kept.
+     * </p>
+     * 
+     * @param entries
+     *            the entries received since the previous call.
+     */
+    void entriesReceived(ProfileBuffer entries);
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import static org.openmuc.jdlms.datatypes.DataObject.newArrayData;
+import static org.openmuc.jdlms.datatypes.DataObject.newOctetStringData;
+import static org.openmuc.jdlms.datatypes.DataObject.newStructureData;
+import static org.openmuc.jdlms.datatypes.DataObject.newUInteger16Data;
+import static org.openmuc.jdlms.datatypes.DataObject.newUInteger32Data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.interfaceclass.InterfaceClass;
+import org.openmuc.jdlms.interfaceclass.attribute.ClockAttribute;
+import org.openmuc.jdlms.interfaceclass.attribute.ProfileGenericAttribute;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Reads the buffer of a profile generic object, e.g. a load profile.
+ * 
+ * <p>
+ * The capture objects are read once and define the columns of the returned {@link ProfileBuffer}. Every entry is
+ * decoded into the primitive columns as soon as it has been received. The methods taking a
+ * {@link ProfileBufferListener} pass the entries block by block, so a large buffer is never held in memory as a
+ * whole.
+ * </p>
+ * 
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ */
+public class ProfileGenericReader {
+
+    private static final int RANGE_DESCRIPTOR = 1;
+    private static final int ENTRY_DESCRIPTOR = 2;
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+
+    private final DlmsConnection connection;
+    private final ObisCode instanceId;
+
+    private List<CaptureObject> captureObjects;
+    private long capturePeriodMillis;
+    private int clockColumn;
+
+    private long lastTimestamp = ProfileBuffer.MISSING;
+
+    /**
+     * Creates a reader for a profile generic object.
+     * 
+     * @param connection
+     *            the connection to the remote meter.
+     * @param instanceId
+     *            the logical name of the profile generic object.
+     */
+    public ProfileGenericReader(DlmsConnection connection, ObisCode instanceId) {
+        this.connection = connection;
+        this.instanceId = instanceId;
+    }
+
+    /**
+     * Returns the capture objects of the profile. They are read from the remote meter on the first call.
+     * 
+     * @return the capture objects, one for each column of the buffer.
+     * @throws IOException
+     *             if the connection breaks or the capture objects can't be read.
+     */
+    public List<CaptureObject> captureObjects() throws IOException {
+        if (this.captureObjects == null) {
+            readCaptureObjects();
+        }
+        return this.captureObjects;
+    }
+
+    private void readCaptureObjects() throws IOException {
+        List<GetResult> results = this.connection.get(Arrays.asList(
+                new AttributeAddress(ProfileGenericAttribute.CAPTURE_OBJECTS, this.instanceId),
+                new AttributeAddress(ProfileGenericAttribute.CAPTURE_PERIOD, this.instanceId)));
+
+        GetResult captureObjectsResult = results.get(0);
+        if (captureObjectsResult.getResultCode() != AccessResultCode.SUCCESS) {
+            throw new IOException(
+                    "Failed to read the capture objects, access result: " + captureObjectsResult.getResultCode());
+        }
+
+        List<DataObject> definitions = captureObjectsResult.getResultData().getValue();
+        List<CaptureObject> objects = new ArrayList<>(definitions.size());
+        int clockIndex = -1;
+        for (DataObject definition : definitions) {
+            CaptureObject captureObject = CaptureObject.from(definition);
+            if (clockIndex < 0 && captureObject.isClock()) {
+                clockIndex = objects.size();
+            }
+            objects.add(captureObject);
+        }
+
+        GetResult capturePeriodResult = results.get(1);
+        long capturePeriod = 0;
+        if (capturePeriodResult.getResultCode() == AccessResultCode.SUCCESS) {
+            Number seconds = capturePeriodResult.getResultData().getValue();
+            capturePeriod = seconds.longValue() * MILLIS_PER_SECOND;
+        }
+
+        this.captureObjects = Collections.unmodifiableList(objects);
+        this.clockColumn = clockIndex;
+        this.capturePeriodMillis = capturePeriod;
+    }
+
+    /**
+     * Reads the whole buffer.
+     * 
+     * @return the entries of the buffer.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     */
+    public ProfileBuffer readAll() throws IOException {
+        return read(null);
+    }
+
+    /**
+     * Reads the whole buffer and passes the entries to the listener while they are being received.
+     * 
+     * @param listener
+     *            receives the entries of the buffer.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     */
+    public void readAll(ProfileBufferListener listener) throws IOException {
+        read(null, listener);
+    }
+
+    /**
+     * Reads the entries captured in a time window, using the range descriptor with the clock as restricting object.
+     * 
+     * @param from
+     *            the start of the window in milliseconds since the epoch (inclusive).
+     * @param to
+     *            the end of the window in milliseconds since the epoch (inclusive).
+     * @return the entries captured in the window.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     * @throws IllegalStateException
+     *             if the profile does not capture the clock.
+     */
+    public ProfileBuffer readRange(long from, long to) throws IOException {
+        return read(rangeAccess(from, to));
+    }
+
+    /**
+     * Reads the entries captured in a time window and passes them to the listener while they are being received.
+     * 
+     * @param from
+     *            the start of the window in milliseconds since the epoch (inclusive).
+     * @param to
+     *            the end of the window in milliseconds since the epoch (inclusive).
+     * @param listener
+     *            receives the entries captured in the window.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     * @throws IllegalStateException
+     *             if the profile does not capture the clock.
+     * @see #readRange(long, long)
+     */
+    public void readRange(long from, long to, ProfileBufferListener listener) throws IOException {
+        read(rangeAccess(from, to), listener);
+    }
+
+    private SelectiveAccessDescription rangeAccess(long from, long to) throws IOException {
+        captureObjects();
+        if (this.clockColumn < 0) {
+            throw new IllegalStateException("The profile does not capture the clock, can't select by range.");
+        }
+
+        DataObject restrictingObject = this.captureObjects.get(this.clockColumn).toDataObject();
+        DataObject rangeDescriptor = newStructureData(restrictingObject, dateTimeData(from), dateTimeData(to),
+                newArrayData(Collections.<DataObject>emptyList()));
+
+        return new SelectiveAccessDescription(RANGE_DESCRIPTOR, rangeDescriptor);
+    }
+
+    /**
+     * Reads a range of entries, using the entry descriptor.
+     * 
+     * @param fromEntry
+     *            the index of the first entry to read, starting with 1.
+     * @param toEntry
+     *            the index of the last entry to read (inclusive) or 0 to read up to the youngest entry.
+     * @return the selected entries.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     */
+    public ProfileBuffer readEntries(long fromEntry, long toEntry) throws IOException {
+        return read(entryAccess(fromEntry, toEntry));
+    }
+
+    /**
+     * Reads a range of entries and passes them to the listener while they are being received.
+     * 
+     * @param fromEntry
+     *            the index of the first entry to read, starting with 1.
+     * @param toEntry
+     *            the index of the last entry to read (inclusive) or 0 to read up to the youngest entry.
+     * @param listener
+     *            receives the selected entries.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     * @see #readEntries(long, long)
+     */
+    public void readEntries(long fromEntry, long toEntry, ProfileBufferListener listener) throws IOException {
+        read(entryAccess(fromEntry, toEntry), listener);
+    }
+
+    private static SelectiveAccessDescription entryAccess(long fromEntry, long toEntry) {
+        if (fromEntry < 1 || toEntry < 0 || toEntry != 0 && toEntry < fromEntry) {
+            throw new IllegalArgumentException("Invalid entry range [" + fromEntry + ", " + toEntry + "].");
+        }
+
+        DataObject entryDescriptor = newStructureData(newUInteger32Data(fromEntry), newUInteger32Data(toEntry),
+                newUInteger16Data(1), newUInteger16Data(0));
+
+        return new SelectiveAccessDescription(ENTRY_DESCRIPTOR, entryDescriptor);
+    }
+
+    /**
+     * Reads the entries captured after the last entry returned by this reader.
+     * 
+     * <p>
+     * On the first call, or if the profile doesn't capture the clock, the whole buffer is read. The end of the time
+     * window is one day ahead of the local time to tolerate deviations of the meter clock.
+     * </p>
+     * 
+     * @return the new entries.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     * @see #setLastTimestamp(long)
+     */
+    public ProfileBuffer readNewEntries() throws IOException {
+        return read(newEntriesAccess());
+    }
+
+    /**
+     * Reads the entries captured after the last entry returned by this reader and passes them to the listener while
+     * they are being received.
+     * 
+     * @param listener
+     *            receives the new entries.
+     * @throws IOException
+     *             if the connection breaks or the buffer can't be read.
+     * @see #readNewEntries()
+     */
+    public void readNewEntries(ProfileBufferListener listener) throws IOException {
+        read(newEntriesAccess(), listener);
+    }
+
+    private SelectiveAccessDescription newEntriesAccess() throws IOException {
+        captureObjects();
+        if (this.lastTimestamp == ProfileBuffer.MISSING || this.clockColumn < 0) {
+            return null;
+        }
+        return rangeAccess(this.lastTimestamp + MILLIS_PER_SECOND, System.currentTimeMillis() + MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the timestamp of the youngest entry read so far.
+     * 
+     * @return the timestamp in milliseconds since the epoch or {@link ProfileBuffer#MISSING} if unknown.
+     */
+    public long getLastTimestamp() {
+        return this.lastTimestamp;
+    }
+
+    /**
+     * Sets the timestamp of the youngest entry already known, e.g. to resume polling after a restart.
+     * 
+     * @param lastTimestamp
+     *            the timestamp in milliseconds since the epoch or {@link ProfileBuffer#MISSING} to read the whole
+     *            buffer on the next poll.
+     * @see #readNewEntries()
+     */
+    public void setLastTimestamp(long lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    private ProfileBuffer read(SelectiveAccessDescription access) throws IOException {
+        final ProfileBuffer buffer = newBuffer();
+        readBuffer(access, new RawRowListener() {
+
+            @Override
+            public void rowReceived(Data row) throws IOException {
+                buffer.addRow(row);
+            }
+
+            @Override
+            public void blockReceived() {
+                // the entries are collected until the end of the transfer
+            }
+        });
+
+        updateLastTimestamp(buffer);
+        return buffer;
+    }
+
+    private void read(SelectiveAccessDescription access, final ProfileBufferListener listener) throws IOException {
+        final ProfileBuffer buffer = newBuffer();
+        readBuffer(access, new RawRowListener() {
+
+            @Override
+            public void rowReceived(Data row) throws IOException {
+                buffer.addRow(row);
+            }
+
+            @Override
+            public void blockReceived() {
+                passEntries(buffer, listener);
+            }
+        });
+
+        passEntries(buffer, listener);
+    }
+
+    private ProfileBuffer newBuffer() throws IOException {
+        captureObjects();
+        return new ProfileBuffer(this.captureObjects.size(), this.clockColumn, this.capturePeriodMillis);
+    }
+
+    private void readBuffer(SelectiveAccessDescription access, RawRowListener rowListener) throws IOException {
+        AttributeAddress address = new AttributeAddress(ProfileGenericAttribute.BUFFER, this.instanceId, access);
+        AccessResultCode resultCode = this.connection.getRawRows(false, address, rowListener);
+
+        if (resultCode != AccessResultCode.SUCCESS) {
+            throw new IOException("Failed to read the buffer, access result: " + resultCode);
+        }
+    }
+
+    private void passEntries(ProfileBuffer buffer, ProfileBufferListener listener) {
+        if (buffer.numberOfRows() == 0) {
+            return;
+        }
+
+        updateLastTimestamp(buffer);
+        listener.entriesReceived(buffer);
+        buffer.clear();
+    }
+
+    private void updateLastTimestamp(ProfileBuffer buffer) {
+        long bufferLastTimestamp = buffer.lastTimestamp();
+        if (bufferLastTimestamp != ProfileBuffer.MISSING
+                && (this.lastTimestamp == ProfileBuffer.MISSING || bufferLastTimestamp > this.lastTimestamp)) {
+            this.lastTimestamp = bufferLastTimestamp;
+        }
+    }
+
+    private static DataObject dateTimeData(long timestamp) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(timestamp);
+
+        CosemDateTime dateTime = new CosemDateTime(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE),
+                calendar.get(Calendar.SECOND), 0);
+        return newOctetStringData(dateTime.encode());
+    }
+
+    /**
+     * An object captured by the profile, defining one column of the buffer.
+     */
+    public static class CaptureObject {
+
+        private final int classId;
+        private final ObisCode instanceId;
+        private final int attributeIndex;
+        private final int dataIndex;
+
+        public CaptureObject(int classId, ObisCode instanceId, int attributeIndex, int dataIndex) {
+            this.classId = classId;
+            this.instanceId = instanceId;
+            this.attributeIndex = attributeIndex;
+            this.dataIndex = dataIndex;
+        }
+
+        private static CaptureObject from(DataObject definition) throws IOException {
+            if (definition.getType() != DataObject.Type.STRUCTURE) {
+                throw new IOException("Capture object definition is not a structure.");
+            }
+            List<DataObject> elements = definition.getValue();
+            if (elements.size() != 4) {
+                throw new IOException("Capture object definition has " + elements.size() + " elements, expected 4.");
+            }
+
+            Number classId = elements.get(0).getValue();
+            byte[] logicalName = elements.get(1).getValue();
+            Number attributeIndex = elements.get(2).getValue();
+            Number dataIndex = elements.get(3).getValue();
+            return new CaptureObject(classId.intValue(), new ObisCode(logicalName), attributeIndex.intValue(),
+                    dataIndex.intValue());
+        }
+
+        private DataObject toDataObject() {
+            return newStructureData(newUInteger16Data(this.classId), newOctetStringData(this.instanceId.bytes()),
+                    DataObject.newInteger8Data((byte) this.attributeIndex), newUInteger16Data(this.dataIndex));
+        }
+
+        private boolean isClock() {
+            return this.classId == InterfaceClass.CLOCK.id() && this.attributeIndex == ClockAttribute.TIME.attributeId();
+        }
+
+        public int getClassId() {
+            return this.classId;
+        }
+
+        public ObisCode getInstanceId() {
+            return this.instanceId;
+        }
+
+        public int getAttributeIndex() {
+            return this.attributeIndex;
+        }
+
+        public int getDataIndex() {
+            return this.dataIndex;
+        }
+
+        @Override
+        public String toString() {
+            return "{" + this.classId + ", " + this.instanceId + ", " + this.attributeIndex + ", " + this.dataIndex
+                    + "}";
+        }
+    }
+
+}
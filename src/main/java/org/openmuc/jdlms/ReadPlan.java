@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of meters and the attributes, which are read from every meter of the group once per cycle.
+ * 
+ * @see PollingScheduler
+ */
+public class ReadPlan {
+
+    private final String name;
+    private final List<ConnectionBuilder<?>> meters;
+    private final List<AttributeAddress> attributes;
+    private final long cycleTime;
+    private final int priority;
+    private final ReadPlanListener listener;
+
+    private ReadPlan(ReadPlanBuilder builder) {
+        this.name = builder.name;
+        this.meters = Collections.unmodifiableList(new ArrayList<>(builder.meters));
+        this.attributes = Collections.unmodifiableList(new ArrayList<>(builder.attributes));
+        this.cycleTime = builder.cycleTime;
+        this.priority = builder.priority;
+        this.listener = builder.listener;
+    }
+
+    /**
+     * Creates a builder for a read plan.
+     * 
+     * @param name
+     *            the name of the plan, e.g. used in logs.
+     * @return a new builder.
+     */
+    public static ReadPlanBuilder builder(String name) {
+        return new ReadPlanBuilder(name);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public List<ConnectionBuilder<?>> getMeters() {
+        return this.meters;
+    }
+
+    public List<AttributeAddress> getAttributes() {
+        return this.attributes;
+    }
+
+    /**
+     * @return the time between two polls of a meter in <u>ms</u>.
+     */
+    public long getCycleTime() {
+        return this.cycleTime;
+    }
+
+    public int getPriority() {
+        return this.priority;
+    }
+
+    public ReadPlanListener getListener() {
+        return this.listener;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    /**
+     * Builder of a {@link ReadPlan}.
+     */
+    public static class ReadPlanBuilder {
+
+        private final String name;
+        private final List<ConnectionBuilder<?>> meters;
+        private final List<AttributeAddress> attributes;
+        private long cycleTime;
+        private int priority;
+        private ReadPlanListener listener;
+
+        private ReadPlanBuilder(String name) {
+            this.name = name;
+            this.meters = new ArrayList<>();
+            this.attributes = new ArrayList<>();
+            this.cycleTime = 15 * 60 * 1000;
+            this.priority = 0;
+            this.listener = null;
+        }
+
+        /**
+         * Adds a meter to the group. The builder is used to borrow connections to the meter and must not be changed
+         * while the plan is scheduled.
+         * 
+         * @param meter
+         *            the connection builder of the meter.
+         * @return the builder.
+         */
+        public ReadPlanBuilder addMeter(ConnectionBuilder<?> meter) {
+            this.meters.add(meter);
+            return this;
+        }
+
+        /**
+         * Adds the attributes, which are read from every meter.
+         * 
+         * @param attributes
+         *            the attributes.
+         * @return the builder.
+         */
+        public ReadPlanBuilder addAttributes(AttributeAddress... attributes) {
+            Collections.addAll(this.attributes, attributes);
+            return this;
+        }
+
+        /**
+         * Sets the time between two polls of a meter in <u>ms</u>. Default is 15 minutes.
+         * 
+         * @param cycleTime
+         *            the cycle time.
+         * @return the builder.
+         */
+        public ReadPlanBuilder setCycleTime(long cycleTime) {
+            if (cycleTime <= 0) {
+                throw new IllegalArgumentException("The cycle time must be positive.");
+            }
+            this.cycleTime = cycleTime;
+            return this;
+        }
+
+        /**
+         * Sets the priority of the plan. If polls have to wait for a free gateway or thread, the polls of the plan
+         * with the highest priority are started first. Default is <code>0</code>.
+         * 
+         * @param priority
+         *            the priority.
+         * @return the builder.
+         */
+        public ReadPlanBuilder setPriority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the listener, which receives the results of the polls.
+         * 
+         * @param listener
+         *            the listener.
+         * @return the builder.
+         */
+        public ReadPlanBuilder setListener(ReadPlanListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Builds the read plan.
+         * 
+         * @return a new read plan.
+         */
+        public ReadPlan build() {
+            if (this.attributes.isEmpty()) {
+                throw new IllegalArgumentException("The read plan has no attributes.");
+            }
+            return new ReadPlan(this);
+        }
+    }
+
+}
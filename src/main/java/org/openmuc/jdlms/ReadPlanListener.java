@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the results of the polls of a {@link ReadPlan}.
+ * 
+ * <p>
+ * The methods are called by the polling threads of the {@link PollingScheduler}, the connection to the meter is
+ * already given back to the pool. The gateway of the meter stays reserved until the method returns.
+ * </p>
+ */
+public interface ReadPlanListener {
+
+    /**
+     * Called after all attributes of the plan have been read from the meter.
+     * 
+     * @param plan
+     *            the read plan.
+     * @param meter
+     *            the connection builder of the meter.
+     * @param results
+     *            the results in the order of the attributes of the plan.
+     */
+    void pollCompleted(ReadPlan plan, ConnectionBuilder<?> meter, List<GetResult> results);
+
+    /**
+     * Called if connecting to the meter or reading the attributes failed.
+     * 
+     * @param plan
+     *            the read plan.
+     * @param meter
+     *            the connection builder of the meter.
+     * @param e
+     *            the cause.
+     */
+    void pollFailed(ReadPlan plan, ConnectionBuilder<?> meter, IOException e);
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.jdlms.internal.LatencyHistogram;
+
+/**
+ * Throughput and latency of the polls of a {@link ReadPlan}, counted since the plan has been added to the scheduler.
+ */
+public class ReadPlanMetrics {
+
+    private final long startTime;
+
+    private final AtomicLong completedPolls = new AtomicLong();
+    private final AtomicLong failedPolls = new AtomicLong();
+    private final AtomicLong missedCycles = new AtomicLong();
+    private final AtomicLong readAttributes = new AtomicLong();
+
+    private final LatencyHistogram pollLatencies = new LatencyHistogram();
+    private final LatencyHistogram startDelays = new LatencyHistogram();
+
+    ReadPlanMetrics() {
+        this.startTime = System.nanoTime();
+    }
+
+    void pollStarted(long startDelayNanos) {
+        this.startDelays.record(startDelayNanos);
+    }
+
+    void pollCompleted(int numAttributes, long latencyNanos) {
+        this.completedPolls.incrementAndGet();
+        this.readAttributes.addAndGet(numAttributes);
+        this.pollLatencies.record(latencyNanos);
+    }
+
+    void pollFailed(long latencyNanos) {
+        this.failedPolls.incrementAndGet();
+        this.pollLatencies.record(latencyNanos);
+    }
+
+    void cyclesMissed(long numCycles) {
+        this.missedCycles.addAndGet(numCycles);
+    }
+
+    public long getCompletedPolls() {
+        return this.completedPolls.get();
+    }
+
+    public long getFailedPolls() {
+        return this.failedPolls.get();
+    }
+
+    /**
+     * @return the number of cycles, which have been skipped, because the previous poll of the meter took longer than
+     *         the cycle time.
+     */
+    public long getMissedCycles() {
+        return this.missedCycles.get();
+    }
+
+    public long getReadAttributes() {
+        return this.readAttributes.get();
+    }
+
+    /**
+     * @return the number of attributes read per second.
+     */
+    public double getAttributesPerSecond() {
+        long elapsedNanos = System.nanoTime() - this.startTime;
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return this.readAttributes.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return a snapshot of the durations of the polls, from borrowing the connection until all attributes have been
+     *         read.
+     */
+    public LatencyStatistics getPollLatencies() {
+        return new LatencyStatistics(this.pollLatencies);
+    }
+
+    /**
+     * @return a snapshot of the delays between the due time and the start of the polls, caused by busy gateways or
+     *         threads.
+     */
+    public LatencyStatistics getStartDelays() {
+        return new LatencyStatistics(this.startDelays);
+    }
+
+}
@@ -21,18 +21,97 @@
 package org.openmuc.jdlms;
 
 import java.io.IOException;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.openmuc.jdlms.internal.LatencyHistogram;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
 
+/**
+ * Dispatches incoming responses of one service type to the waiting requests.
+ * 
+ * <p>
+ * Every invoke ID has its own slot, so a thread waiting for a response is woken directly when its response arrives,
+ * independent of the order the server answers in.
+ * </p>
+ * 
+ * <p>
+ * Each slot records the latencies between sending a request and receiving the matching response. A response is only
+ * timed against a request still waiting for it, late and duplicate responses are not recorded.
+ * </p>
+ */
 class ResponseQueue<E extends AxdrType> {
 
-    private final BlockingDeque<Entry> queue = new LinkedBlockingDeque<>();
+    static final int NUMBER_OF_INVOKE_IDS = 16;
+
+    private final List<Slot> slots;
+
+    public ResponseQueue() {
+        this.slots = new ArrayList<>(NUMBER_OF_INVOKE_IDS);
+        for (int i = 0; i < NUMBER_OF_INVOKE_IDS; i++) {
+            this.slots.add(new Slot());
+        }
+    }
+
+    /**
+     * Prepares the slot of the invoke ID for a new request. Must be called before the request is sent.
+     * 
+     * <p>
+     * Removes stale responses from the slot, e.g. a response which arrived after its request timed out.
+     * </p>
+     * 
+     * @param invokeId
+     *            the invoke ID of the request.
+     */
+    public void expectResponseFor(int invokeId) {
+        Slot slot = slotFor(invokeId);
+        slot.responses.clear();
+        slot.requestTimestamp.set(System.nanoTime());
+    }
+
+    /**
+     * Stops timing the request of the invoke ID, e.g. if it has timed out. A late response is not recorded.
+     * 
+     * @param invokeId
+     *            the invoke ID of the request.
+     */
+    public void reset(int invokeId) {
+        slotFor(invokeId).requestTimestamp.set(0);
+    }
 
     public void put(int invokeId, E data) throws InterruptedException {
-        queue.putFirst(new Entry(invokeId, data));
+        if (!isValid(invokeId)) {
+            // the response can't be associated with a request
+            return;
+        }
+
+        Slot slot = slotFor(invokeId);
+
+        // the timestamp is cleared, so only the first response matching the request is recorded
+        long requestTimestamp = slot.requestTimestamp.getAndSet(0);
+        if (requestTimestamp != 0) {
+            slot.latencyHistogram.record(System.nanoTime() - requestTimestamp);
+        }
+
+        slot.responses.put(new Entry(data, null));
+    }
+
+    /**
+     * Wakes all waiting requests with the given exception, e.g. if the connection has been interrupted.
+     * 
+     * @param e
+     *            the exception the waiting requests fail with.
+     */
+    public void putError(IOException e) {
+        Entry entry = new Entry(null, e);
+        for (Slot slot : this.slots) {
+            slot.requestTimestamp.set(0);
+            slot.responses.offer(entry);
+        }
     }
 
     public E poll(int invokeId, long timeout) throws IOException {
@@ -45,38 +124,66 @@ class ResponseQueue<E extends AxdrType> {
         }
     }
 
-    private E pollForData(int invokeId, long timeout) throws InterruptedException, ResponseTimeoutException {
-        Entry tmp;
-        while (true) {
-            if (timeout == 0) {
-                tmp = queue.takeFirst();
-            }
-            else {
-                tmp = queue.poll(timeout, TimeUnit.MILLISECONDS);
-                if (tmp == null) {
-                    throw new ResponseTimeoutException("Timed out while waiting for incoming response.");
-                }
-            }
+    private E pollForData(int invokeId, long timeout) throws InterruptedException, IOException {
+        BlockingQueue<Entry> responses = slotFor(invokeId).responses;
 
-            if (tmp.invokeId == invokeId) {
-                break;
-            }
-            else {
-                this.queue.addLast(tmp);
-                Thread.sleep(100L);
+        Entry entry;
+        if (timeout == 0) {
+            entry = responses.take();
+        }
+        else {
+            entry = responses.poll(timeout, TimeUnit.MILLISECONDS);
+            if (entry == null) {
+                reset(invokeId);
+                throw new ResponseTimeoutException("Timed out while waiting for incoming response.");
             }
+        }
+
+        if (entry.exception != null) {
+            throw entry.exception;
+        }
+        return entry.data;
+    }
+
+    /**
+     * The latencies between sending a request and receiving the response for a certain invoke ID.
+     * 
+     * @param invokeId
+     *            the invoke ID.
+     * @return the latency histogram of the slot.
+     */
+    public LatencyHistogram latencyHistogramFor(int invokeId) {
+        return slotFor(invokeId).latencyHistogram;
+    }
 
+    private Slot slotFor(int invokeId) {
+        if (!isValid(invokeId)) {
+            throw new IllegalArgumentException("Invoke ID must be in the range [0, 15], but was " + invokeId);
         }
-        return tmp.data;
+        return this.slots.get(invokeId);
+    }
+
+    private static boolean isValid(int invokeId) {
+        return invokeId >= 0 && invokeId < NUMBER_OF_INVOKE_IDS;
     }
 
     private class Entry {
         private final E data;
-        private final int invokeId;
+        private final IOException exception;
 
-        public Entry(int invokeId, E pdu) {
-            this.invokeId = invokeId;
-            this.data = pdu;
+        public Entry(E data, IOException exception) {
+            this.data = data;
+            this.exception = exception;
         }
     }
+
+    private class Slot {
+        private final BlockingQueue<Entry> responses = new LinkedBlockingQueue<>();
+        private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+        /**
+         * The time the request has been sent, <code>0</code> if no request waits for a response.
+         */
+        private final AtomicLong requestTimestamp = new AtomicLong();
+    }
 }
@@ -180,6 +180,17 @@ public class SerialConnectionBuilder extends ConnectionBuilder<SerialConnectionB
         return buildConnection(settings, sessionLayer);
     }
 
+    @Override
+    String remoteAddress() {
+        if (this.serialPortName == null) {
+            return null;
+        }
+        else if (this.iec21Handshake == DataFlowControl.ENABLED) {
+            return this.serialPortName + "/" + this.iec21Address;
+        }
+        return this.serialPortName;
+    }
+
     public class HdlcSettingsImpl extends SettingsImpl implements SerialSettings {
         private final String serialPortName;
         private final int baudrate;
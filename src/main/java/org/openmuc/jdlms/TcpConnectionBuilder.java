@@ -102,6 +102,14 @@ public class TcpConnectionBuilder extends ConnectionBuilder<TcpConnectionBuilder
         return buildConnection(settings, sessionLayer);
     }
 
+    @Override
+    String remoteAddress() {
+        if (this.inetAddress == null) {
+            return null;
+        }
+        return this.inetAddress.getHostAddress() + ":" + this.tcpPort + "/" + this.sessionLayerType;
+    }
+
     private SessionLayer buildSessionLayer(TcpSettingsImpl settings) throws IOException {
         switch (sessionLayerType) {
         case HDLC:
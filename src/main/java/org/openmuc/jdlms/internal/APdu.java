@@ -26,9 +26,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.text.MessageFormat;
+import java.util.Arrays;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
 import org.openmuc.jdlms.FatalJDlmsException;
+import org.openmuc.jdlms.FrameCounterTracker;
 import org.openmuc.jdlms.JDlmsException.ExceptionId;
 import org.openmuc.jdlms.JDlmsException.Fault;
 import org.openmuc.jdlms.RawMessageData;
@@ -45,6 +47,7 @@ import org.openmuc.jdlms.internal.asn1.iso.acse.AssociateSourceDiagnostic;
 import org.openmuc.jdlms.internal.asn1.iso.acse.AssociationInformation;
 import org.openmuc.jdlms.internal.association.AssociatRequestException;
 import org.openmuc.jdlms.internal.security.GcmModule;
+import org.openmuc.jdlms.internal.security.ReplayedApduException;
 
 public class APdu {
     private static final SecuritySuite DEFAULT_SECURITY_SUITE = SecuritySuite.builder().build();
@@ -68,13 +71,42 @@ public class APdu {
         return cosemPdu;
     }
 
-    public static APdu decode(byte[] bytes, byte[] serverSystemTitle, int frameCounter, SecuritySuite securitySuite,
-            RawMessageDataBuilder rawMessageBuilder) throws IOException {
-        return decode(bytes, true, serverSystemTitle, frameCounter, securitySuite, rawMessageBuilder);
+    /**
+     * Decodes a ciphered APDU.
+     * 
+     * @param frameCounterTracker
+     *            the tracker validating the invocation counter of the APDU or <code>null</code> to accept any counter.
+     * @throws ReplayedApduException
+     *             if the invocation counter has already been received.
+     */
+    public static APdu decode(byte[] bytes, byte[] serverSystemTitle, FrameCounterTracker frameCounterTracker,
+            SecuritySuite securitySuite, RawMessageDataBuilder rawMessageBuilder) throws IOException {
+        return decode(bytes, true, serverSystemTitle, frameCounterTracker, securitySuite, rawMessageBuilder);
     }
 
     public static APdu decode(byte[] bytes, RawMessageDataBuilder rawMessageBuilder) throws IOException {
-        return decode(bytes, false, null, 0, DEFAULT_SECURITY_SUITE, rawMessageBuilder);
+        return decode(bytes, false, null, null, DEFAULT_SECURITY_SUITE, rawMessageBuilder);
+    }
+
+    /**
+     * Checks the tag of the encoded APDU.
+     * 
+     * @return <code>true</code> if the APDU is an ACSE APDU.
+     */
+    public static boolean isAcseApdu(byte[] bytes) {
+        int tag = bytes[0] & 0xFF;
+        return tag >= 0x60 && tag <= 0x63;
+    }
+
+    /**
+     * Checks the tag of the encoded APDU, without decoding it.
+     * 
+     * @return <code>true</code> if the APDU is a glo- or ded-ciphered xDLMS APDU.
+     */
+    public static boolean isCipheredApdu(byte[] bytes) {
+        int tag = bytes[0] & 0xFF;
+        // glo-initiateRequest to glo-informationReportRequest, glo-get-request to ded-actionResponse
+        return (tag >= 33 && tag <= 56) || (tag >= 200 && tag <= 215);
     }
 
     public boolean isEncrypted() {
@@ -124,14 +156,14 @@ public class APdu {
         }
     }
 
-    private static APdu decode(byte[] bytes, boolean encrypt, byte[] serverSystemTitle, int frameCounter,
-            SecuritySuite securitySuite, RawMessageData.RawMessageDataBuilder rawMessageBuilder) throws IOException {
+    private static APdu decode(byte[] bytes, boolean encrypt, byte[] serverSystemTitle,
+            FrameCounterTracker frameCounterTracker, SecuritySuite securitySuite,
+            RawMessageData.RawMessageDataBuilder rawMessageBuilder) throws IOException {
         DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes));
 
         APdu aPdu = new APdu();
 
-        final int tag = bytes[0] & 0xFF;
-        if (tag >= 0x60 && tag <= 0x63) {
+        if (isAcseApdu(bytes)) {
             aPdu.acseAPdu = new ACSEApdu();
             ACSEApdu acseAPdu = aPdu.acseAPdu;
             acseAPdu.decode(is, null);
@@ -188,15 +220,26 @@ public class APdu {
 
             is.read();
 
-            AxdrLength axdrLength = new AxdrLength();
-            axdrLength.decode(is);
-            int encLength = axdrLength.getValue();
+            int encLength = AxdrLength.decodeLength(is);
 
             ciphertext = new byte[encLength];
             is.readFully(ciphertext);
 
+            // replays are rejected before they are deciphered, the counter is only recorded once the tag is verified
+            int frameCounter = GcmModule.frameCounterOf(ciphertext);
+            if (frameCounterTracker != null
+                    && !frameCounterTracker.isFresh(serverSystemTitle, securitySuite, frameCounter)) {
+                throw new ReplayedApduException(serverSystemTitle, frameCounter);
+            }
+
             plaintext = GcmModule.decrypt(ciphertext, serverSystemTitle, securitySuite);
 
+            // without an authentication tag anybody could have set the counter, it must not move the window
+            if (frameCounterTracker != null && securitySuite.getSecurityPolicy().isAuthenticated()
+                    && !frameCounterTracker.accept(serverSystemTitle, securitySuite, frameCounter)) {
+                throw new ReplayedApduException(serverSystemTitle, frameCounter);
+            }
+
             cosemPduIs = new ByteArrayInputStream(plaintext);
         }
 
@@ -277,8 +320,31 @@ public class APdu {
 
     public int encode(byte[] buffer, int frameCounter, byte[] systemTitle, SecuritySuite securitySuite,
             RawMessageDataBuilder rawMessageBuilder) throws IOException {
+        return encodeCiphered(buffer, encodePlainCosemPdu(buffer), frameCounter, systemTitle, securitySuite,
+                rawMessageBuilder);
+    }
+
+    /**
+     * Encodes the xDLMS APDU in plain text to the end of the buffer, the first step of
+     * {@link #encode(byte[], int, byte[], SecuritySuite, RawMessageDataBuilder)}.
+     * 
+     * @return the length of the plain xDLMS APDU.
+     */
+    public int encodePlainCosemPdu(byte[] buffer) throws IOException {
         BerByteArrayOutputStream baos = new BerByteArrayOutputStream(buffer, buffer.length - 1);
-        int numBytesEncoded = encodeCosemPdu(buffer, baos);
+        return encodeCosemPdu(buffer, baos);
+    }
+
+    /**
+     * Ciphers the plain xDLMS APDU at the end of the buffer in place and embeds it into the ACSE APDU, if there is
+     * one. The frame counter is only needed for this second step, so it is not spent on an APDU which can't be
+     * encoded.
+     * 
+     * @return the length of the encoded APDU.
+     */
+    public int encodeCiphered(byte[] buffer, int plainLength, int frameCounter, byte[] systemTitle,
+            SecuritySuite securitySuite, RawMessageDataBuilder rawMessageBuilder) throws IOException {
+        int numBytesEncoded = plainLength;
 
         // -- encrypting
         int origTag = buffer[buffer.length - numBytesEncoded] & 0xff;
@@ -290,13 +356,14 @@ public class APdu {
         else {
             newTag = origTag + 8;
         }
-        byte[] ciphertext = GcmModule.processPlain(buffer, buffer.length - numBytesEncoded, numBytesEncoded,
-                systemTitle, frameCounter, securitySuite, (byte) newTag);
-
-        numBytesEncoded = ciphertext.length;
+        numBytesEncoded = GcmModule.processPlainInPlace(buffer, numBytesEncoded, systemTitle, frameCounter,
+                securitySuite, (byte) newTag);
 
-        System.arraycopy(ciphertext, 0, buffer, buffer.length - numBytesEncoded, ciphertext.length);
-        baos = new BerByteArrayOutputStream(buffer, buffer.length - numBytesEncoded - 1);
+        byte[] ciphertext = null;
+        if (rawMessageBuilder != null) {
+            ciphertext = Arrays.copyOfRange(buffer, buffer.length - numBytesEncoded, buffer.length);
+        }
+        BerByteArrayOutputStream baos = new BerByteArrayOutputStream(buffer, buffer.length - numBytesEncoded - 1);
         // -- encrypting
 
         numBytesEncoded = encodeAcsePdu(numBytesEncoded, baos);
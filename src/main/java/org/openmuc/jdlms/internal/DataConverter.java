@@ -22,7 +22,6 @@ package org.openmuc.jdlms.internal;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.openmuc.jdlms.AttributeAddress;
@@ -73,14 +72,14 @@ public final class DataConverter {
 
         switch (choice) {
         case ARRAY:
-            innerData = new LinkedList<>();
+            innerData = new ArrayList<>(pdu.array.size());
             for (Data item : pdu.array.list()) {
                 innerData.add(convertDataToDataObject(item));
             }
             return DataObject.newArrayData(innerData);
 
         case STRUCTURE:
-            innerData = new LinkedList<>();
+            innerData = new ArrayList<>(pdu.structure.size());
             for (Data item : pdu.structure.list()) {
                 innerData.add(convertDataToDataObject(item));
             }
@@ -336,6 +335,10 @@ public final class DataConverter {
         else {
 
             List<DataObject> dataList = data.getValue();
+            if (dataList instanceof EncodedDataList) {
+                return ((EncodedDataList) dataList).toData();
+            }
+
             if (type == Type.STRUCTURE) {
                 result.setstructure(new SubSeqOf_structure());
                 setSeq(result.structure, dataList);
@@ -396,7 +399,7 @@ public final class DataConverter {
 
         case FLOAT32:
             buffer = ByteBuffer.allocate(4);
-            buffer.putDouble(value.floatValue());
+            buffer.putFloat(value.floatValue());
             buffer.flip();
 
             result.setfloat32(new AxdrOctetString(4, buffer.array()));
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+/**
+ * Unmodifiable list of the elements of an array {@link DataObject} together with their A-XDR encoding.
+ * 
+ * <p>
+ * {@link DataConverter#convertDataObjectToData(DataObject)} uses the encoding instead of converting the elements
+ * again. This is used for large data, which is sent frequently but changes rarely.
+ * </p>
+ */
+public class EncodedDataList extends AbstractList<DataObject> implements RandomAccess {
+
+    private final List<DataObject> elements;
+    private final byte[] encoding;
+
+    private EncodedDataList(List<DataObject> elements, byte[] encoding) {
+        this.elements = elements;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Creates a new array data object from elements with a known encoding.
+     * 
+     * @param elements
+     *            the elements of the array.
+     * @param encodedElements
+     *            the A-XDR encoding of each element, in the same order.
+     * @return the array data object.
+     * @throws IllegalArgumentException
+     *             if the number of elements and encodings does not match or the elements are not of the same type.
+     */
+    public static DataObject newArrayData(List<DataObject> elements, List<byte[]> encodedElements)
+            throws IllegalArgumentException {
+        if (elements.size() != encodedElements.size()) {
+            throw new IllegalArgumentException("Number of elements and number of encoded elements does not match.");
+        }
+
+        byte[] length;
+        try {
+            length = AxdrLength.encodeLength(elements.size());
+        } catch (IOException e) {
+            // should not occur
+            throw new IllegalArgumentException(e);
+        }
+
+        int encodingLength = 1 + length.length;
+        for (byte[] encodedElement : encodedElements) {
+            encodingLength += encodedElement.length;
+        }
+
+        byte[] encoding = new byte[encodingLength];
+        encoding[0] = (byte) Data.Choices.ARRAY.getValue();
+        System.arraycopy(length, 0, encoding, 1, length.length);
+
+        int offset = 1 + length.length;
+        for (byte[] encodedElement : encodedElements) {
+            System.arraycopy(encodedElement, 0, encoding, offset, encodedElement.length);
+            offset += encodedElement.length;
+        }
+
+        return DataObject.newArrayData(new EncodedDataList(new ArrayList<>(elements), encoding));
+    }
+
+    /**
+     * Encodes a data object.
+     * 
+     * @param dataObject
+     *            the data object to encode.
+     * @return the A-XDR encoding of the data object.
+     */
+    public static byte[] encode(DataObject dataObject) {
+        BerByteArrayOutputStream axdrOStream = new BerByteArrayOutputStream(64, true);
+        try {
+            DataConverter.convertDataObjectToData(dataObject).encode(axdrOStream);
+        } catch (IOException e) {
+            // should not occur, the stream is resized automatically
+            throw new IllegalArgumentException(e);
+        }
+        return axdrOStream.getArray();
+    }
+
+    Data toData() {
+        return new Data(this.encoding);
+    }
+
+    @Override
+    public DataObject get(int index) {
+        return this.elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return this.elements.size();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of response latencies.
+ * 
+ * <p>
+ * The buckets are powers of two milliseconds: bucket {@code 0} counts latencies below 1 ms, bucket {@code i} counts
+ * latencies in {@code [2^(i-1), 2^i)} ms. The last bucket collects everything above.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    private static final int NUMBER_OF_BUCKETS = 18;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a single latency.
+     * 
+     * @param nanos
+     *            the latency in nano seconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+
+        this.buckets.incrementAndGet(bucketIndexFor(nanos));
+        this.totalNanos.addAndGet(nanos);
+
+        long currentMax;
+        do {
+            currentMax = this.maxNanos.get();
+        } while (nanos > currentMax && !this.maxNanos.compareAndSet(currentMax, nanos));
+    }
+
+    private static int bucketIndexFor(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int index = 64 - Long.numberOfLeadingZeros(millis);
+        return Math.min(index, NUMBER_OF_BUCKETS - 1);
+    }
+
+    public int numberOfBuckets() {
+        return NUMBER_OF_BUCKETS;
+    }
+
+    /**
+     * The exclusive upper bound of a bucket in milliseconds.
+     * 
+     * @param index
+     *            the bucket index.
+     * @return the upper bound or {@link Long#MAX_VALUE} for the last bucket.
+     */
+    public long bucketUpperBoundMillis(int index) {
+        if (index >= NUMBER_OF_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return 1L << index;
+    }
+
+    public long bucketCount(int index) {
+        return this.buckets.get(index);
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            count += this.buckets.get(i);
+        }
+        return count;
+    }
+
+    public long maxNanos() {
+        return this.maxNanos.get();
+    }
+
+    public long meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : this.totalNanos.get() / count;
+    }
+
+    /**
+     * Adds all recorded values of an other histogram to this one.
+     * 
+     * @param other
+     *            the histogram to merge.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            this.buckets.addAndGet(i, other.buckets.get(i));
+        }
+        this.totalNanos.addAndGet(other.totalNanos.get());
+
+        long otherMax = other.maxNanos.get();
+        long currentMax;
+        do {
+            currentMax = this.maxNanos.get();
+        } while (otherMax > currentMax && !this.maxNanos.compareAndSet(currentMax, otherMax));
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the thread factories for the reader and worker threads.
+ */
+public class ThreadFactories {
+
+    private static final String VIRTUAL_THREAD_PREFIX = "jdlms-virtual-";
+
+    /**
+     * Creates a factory for virtual threads. Virtual threads are available since Java 21, the factory is looked up
+     * reflectively to keep the library compatible with older runtimes.
+     * 
+     * @return a factory for virtual threads or <code>null</code> if the runtime doesn't support virtual threads.
+     */
+    public static ThreadFactory newVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            builder = nameMethod.invoke(builder, VIRTUAL_THREAD_PREFIX, 0L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // older runtime or preview feature not enabled
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the runtime supports virtual threads.
+     * 
+     * @return <code>true</code> if virtual threads are available.
+     */
+    public static boolean virtualThreadsSupported() {
+        return newVirtualThreadFactory() != null;
+    }
+
+    /**
+     * Don't let anyone instantiate this class.
+     */
+    private ThreadFactories() {
+    }
+
+}
@@ -98,27 +98,63 @@ public class AxdrLength {
     }
 
     public int decode(InputStream iStream) throws IOException {
-        int codeLength = 0;
-
-        length = iStream.read();
-        codeLength++;
+        int codeLength = 1;
 
+        length = readByte(iStream);
         if ((length & 0x80) == 0x80) {
             int encodedLength = length ^ 0x80;
             codeLength += encodedLength;
-            length = 0;
-            byte[] byteCode = new byte[encodedLength];
-            if (iStream.read(byteCode, 0, encodedLength) < encodedLength) {
-                throw new IOException("Error Decoding AxdrLength");
-            }
-            for (int i = 0; i < encodedLength; i++) {
-                length |= (byteCode[i] & 0xff) << (8 * (encodedLength - i - 1));
-            }
+            length = readLength(iStream, encodedLength);
         }
 
         return codeLength;
     }
 
+    /**
+     * Decodes a length without creating an AxdrLength.
+     * 
+     * @param iStream
+     *            the stream to read from.
+     * @return the decoded length.
+     * @throws IOException
+     *             if the stream ends before the length.
+     */
+    public static int decodeLength(InputStream iStream) throws IOException {
+        int length = readByte(iStream);
+
+        if ((length & 0x80) == 0x80) {
+            length = readLength(iStream, length ^ 0x80);
+        }
+
+        return length;
+    }
+
+    /**
+     * @return the number of bytes of the minimal encoding of the length, as produced by {@link #encodeLength(int)}.
+     */
+    public static int codeLengthOf(int length) {
+        if (length < 128) {
+            return 1;
+        }
+        return 1 + AxdrWriter.byteLengthOfUnsigned(length);
+    }
+
+    private static int readLength(InputStream iStream, int encodedLength) throws IOException {
+        int length = 0;
+        for (int i = 0; i < encodedLength; i++) {
+            length = (length << 8) | readByte(iStream);
+        }
+        return length;
+    }
+
+    private static int readByte(InputStream iStream) throws IOException {
+        int b = iStream.read();
+        if (b == -1) {
+            throw new IOException("Error Decoding AxdrLength");
+        }
+        return b;
+    }
+
     public int getValue() {
         return length;
     }
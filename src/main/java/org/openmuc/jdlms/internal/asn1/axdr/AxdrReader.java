@@ -0,0 +1,191 @@
+package org.openmuc.jdlms.internal.asn1.axdr;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads A-XDR encoded primitives from a byte buffer, without creating intermediate objects.
+ * 
+ * <p>
+ * The reader starts at the position of the buffer and advances it. Multi byte integers are big endian, as A-XDR
+ * requires.
+ * </p>
+ */
+public final class AxdrReader {
+
+    private ByteBuffer buffer;
+
+    public AxdrReader(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public AxdrReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Continues with another buffer, so the reader can be reused.
+     */
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    public int remaining() {
+        return this.buffer.remaining();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readUnsigned8() != 0;
+    }
+
+    public int readUnsigned8() throws IOException {
+        require(1);
+        return this.buffer.get() & 0xff;
+    }
+
+    public int readUnsigned16() throws IOException {
+        require(2);
+        return this.buffer.getShort() & 0xffff;
+    }
+
+    public long readUnsigned32() throws IOException {
+        require(4);
+        return this.buffer.getInt() & 0xffffffffL;
+    }
+
+    public int readInteger8() throws IOException {
+        require(1);
+        return this.buffer.get();
+    }
+
+    public int readInteger16() throws IOException {
+        require(2);
+        return this.buffer.getShort();
+    }
+
+    public int readInteger32() throws IOException {
+        require(4);
+        return this.buffer.getInt();
+    }
+
+    public long readInteger64() throws IOException {
+        require(8);
+        return this.buffer.getLong();
+    }
+
+    /**
+     * Reads a big endian integer of a fixed number of bytes.
+     * 
+     * @param numBytes
+     *            the number of bytes, from 1 to 8.
+     * @param signed
+     *            <code>true</code> to extend the sign of the most significant byte.
+     * @return the value.
+     * @throws IOException
+     *             if the buffer ends before the integer.
+     */
+    public long readInteger(int numBytes, boolean signed) throws IOException {
+        require(numBytes);
+
+        long value = 0;
+        for (int i = 0; i < numBytes; i++) {
+            value = (value << 8) | (this.buffer.get() & 0xff);
+        }
+
+        if (signed && numBytes < 8) {
+            int shift = 64 - 8 * numBytes;
+            value = (value << shift) >> shift;
+        }
+        return value;
+    }
+
+    /**
+     * Reads an integer without a fixed length. Values from 0 to 127 are encoded in a single byte, all others are
+     * preceded by their number of bytes.
+     * 
+     * @return the value.
+     * @throws IOException
+     *             if the buffer ends before the integer.
+     */
+    public long readInteger() throws IOException {
+        int first = readUnsigned8();
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+
+        int numBytes = first & 0x7f;
+        if (numBytes < 1 || numBytes > 8) {
+            throw new IOException("Invalid length of A-XDR integer: " + numBytes);
+        }
+        return readInteger(numBytes, true);
+    }
+
+    /**
+     * Reads the length of an octet string, a bit string or a sequence of.
+     * 
+     * @return the length.
+     * @throws IOException
+     *             if the buffer ends before the length or the length exceeds an int.
+     */
+    public int readLength() throws IOException {
+        int first = readUnsigned8();
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+
+        int numBytes = first & 0x7f;
+        if (numBytes > 4) {
+            throw new IOException("Unsupported A-XDR length of " + numBytes + " bytes.");
+        }
+
+        long length = readInteger(numBytes, false);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Unsupported A-XDR length: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Reads an octet string, which is preceded by its length.
+     * 
+     * @param dst
+     *            the array the octets are copied to, starting at index 0.
+     * @return the length of the octet string.
+     * @throws IOException
+     *             if the buffer ends before the octet string or if the octet string doesn't fit into dst.
+     */
+    public int readOctetString(byte[] dst) throws IOException {
+        int length = readLength();
+        if (length > dst.length) {
+            throw new IOException("Octet string of length " + length + " exceeds the destination of length "
+                    + dst.length + ".");
+        }
+        readBytes(dst, 0, length);
+        return length;
+    }
+
+    /**
+     * Reads an octet string of fixed length, which is not preceded by its length.
+     */
+    public void readBytes(byte[] dst, int off, int len) throws IOException {
+        require(len);
+        this.buffer.get(dst, off, len);
+    }
+
+    public void skip(int numBytes) throws IOException {
+        require(numBytes);
+        this.buffer.position(this.buffer.position() + numBytes);
+    }
+
+    private void require(int numBytes) throws EOFException {
+        if (this.buffer.remaining() < numBytes) {
+            throw new EOFException("Unexpected end of A-XDR data.");
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.openmuc.jdlms.internal.asn1.axdr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes A-XDR encoded primitives to a byte buffer, without creating intermediate objects.
+ * 
+ * <p>
+ * Other than the {@link org.openmuc.jasn1.ber.BerByteArrayOutputStream}, the writer encodes front to back: it starts at
+ * the position of the buffer and advances it. Since every length of an A-XDR encoding is known before its content,
+ * nothing has to be reversed.
+ * </p>
+ */
+public final class AxdrWriter {
+
+    private ByteBuffer buffer;
+
+    public AxdrWriter(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public AxdrWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Continues with another buffer, so the writer can be reused.
+     */
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        writeUnsigned8(value ? 0x01 : 0x00);
+    }
+
+    public void writeUnsigned8(int value) throws IOException {
+        ensure(1);
+        this.buffer.put((byte) value);
+    }
+
+    public void writeUnsigned16(int value) throws IOException {
+        ensure(2);
+        this.buffer.putShort((short) value);
+    }
+
+    public void writeUnsigned32(long value) throws IOException {
+        ensure(4);
+        this.buffer.putInt((int) value);
+    }
+
+    public void writeInteger8(int value) throws IOException {
+        writeUnsigned8(value);
+    }
+
+    public void writeInteger16(int value) throws IOException {
+        writeUnsigned16(value);
+    }
+
+    public void writeInteger32(int value) throws IOException {
+        ensure(4);
+        this.buffer.putInt(value);
+    }
+
+    public void writeInteger64(long value) throws IOException {
+        ensure(8);
+        this.buffer.putLong(value);
+    }
+
+    /**
+     * Writes the lower bytes of the value as big endian integer of a fixed number of bytes.
+     * 
+     * @param value
+     *            the value.
+     * @param numBytes
+     *            the number of bytes, from 1 to 8.
+     * @throws IOException
+     *             if the buffer is too small.
+     */
+    public void writeInteger(long value, int numBytes) throws IOException {
+        ensure(numBytes);
+        for (int i = numBytes - 1; i >= 0; i--) {
+            this.buffer.put((byte) (value >> (8 * i)));
+        }
+    }
+
+    /**
+     * Writes an integer without a fixed length, preceded by its number of bytes. Like the stream encoder of
+     * {@link org.openmuc.jdlms.internal.asn1.axdr.types.AxdrInteger}, values from 0 to 127 are written in one byte
+     * after the length byte.
+     * 
+     * @see AxdrReader#readInteger()
+     */
+    public void writeInteger(long value) throws IOException {
+        int numBytes = byteLengthOfSigned(value);
+        writeUnsigned8(0x80 | numBytes);
+        writeInteger(value, numBytes);
+    }
+
+    /**
+     * Writes the length of an octet string, a bit string or a sequence of.
+     */
+    public void writeLength(int length) throws IOException {
+        if (length < 128) {
+            writeUnsigned8(length);
+            return;
+        }
+
+        int numBytes = byteLengthOfUnsigned(length);
+        writeUnsigned8(0x80 | numBytes);
+        writeInteger(length, numBytes);
+    }
+
+    /**
+     * Writes an octet string preceded by its length.
+     */
+    public void writeOctetString(byte[] src, int off, int len) throws IOException {
+        writeLength(len);
+        writeBytes(src, off, len);
+    }
+
+    /**
+     * Writes an octet string of fixed length, which is not preceded by its length.
+     */
+    public void writeBytes(byte[] src, int off, int len) throws IOException {
+        ensure(len);
+        this.buffer.put(src, off, len);
+    }
+
+    /**
+     * @return the number of bytes needed to encode the value as signed integer.
+     */
+    public static int byteLengthOfSigned(long value) {
+        // the bits without the redundant sign bits, plus one sign bit
+        int numBits = 65 - Long.numberOfLeadingZeros(value ^ (value >> 63));
+        return (numBits + 7) / 8;
+    }
+
+    /**
+     * @return the number of bytes needed to encode the non-negative value as unsigned integer.
+     */
+    public static int byteLengthOfUnsigned(long value) {
+        int numBits = 64 - Long.numberOfLeadingZeros(value);
+        return Math.max(1, (numBits + 7) / 8);
+    }
+
+    private void ensure(int numBytes) throws IOException {
+        if (this.buffer.remaining() < numBytes) {
+            throw new IOException("A-XDR buffer is too small.");
+        }
+    }
+
+}
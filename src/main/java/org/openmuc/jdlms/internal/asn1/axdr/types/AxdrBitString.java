@@ -88,8 +88,7 @@ public class AxdrBitString implements AxdrType {
         }
 
         if (!fixedLength) {
-            AxdrLength length = new AxdrLength(numBits);
-            codeLength += length.encode(axdrOStream);
+            codeLength += AxdrLength.encodeLength(axdrOStream, numBits);
         }
 
         return codeLength;
@@ -100,10 +99,8 @@ public class AxdrBitString implements AxdrType {
         int codeLength = 0;
 
         if (!fixedLength) {
-            AxdrLength l = new AxdrLength();
-            codeLength += l.decode(iStream);
-
-            numBits = l.getValue();
+            numBits = AxdrLength.decodeLength(iStream);
+            codeLength += AxdrLength.codeLengthOf(numBits);
         }
 
         int byteArrayLength = numBits % 8 == 0 ? numBits / 8 : numBits / 8 + 1;
@@ -21,11 +21,14 @@
  */
 package org.openmuc.jdlms.internal.asn1.axdr.types;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
 
 public class AxdrInteger implements AxdrType {
 
@@ -41,6 +44,11 @@ public class AxdrInteger implements AxdrType {
 
     private boolean isUnsigned = false;
 
+    /**
+     * The number of bytes of a fixed length integer, derived from its range.
+     */
+    private int fixedLength = 0;
+
     public AxdrInteger() {
     }
 
@@ -58,6 +66,7 @@ public class AxdrInteger implements AxdrType {
         setValue(val);
         isFixedLength = true;
         isUnsigned = (min >= 0);
+        fixedLength = Math.max(getByteLength(min), getByteLength(max));
     }
 
     @Override
@@ -70,7 +79,7 @@ public class AxdrInteger implements AxdrType {
         }
         else {
             if (isFixedLength) {
-                codeLength = Math.max(getByteLength(minVal), getByteLength(maxVal));
+                codeLength = fixedLength;
 
                 for (int i = 0; i < codeLength; i++) {
                     axdrOStream.write(((int) (val >> 8 * (i))) & 0xff);
@@ -98,18 +107,17 @@ public class AxdrInteger implements AxdrType {
     @Override
     public int decode(InputStream iStream) throws IOException {
         int codeLength = 0;
-        byte[] byteCode;
-        byte length = 0;
+        int length = 0;
 
         if (isFixedLength) {
-            length = (byte) Math.max(getByteLength(minVal), getByteLength(maxVal));
+            length = fixedLength;
             codeLength = length;
         }
         else {
-            length = (byte) iStream.read();
+            length = readByte(iStream);
 
             if ((length & 0x80) == 0x80) {
-                length = (byte) (length ^ 0x80);
+                length = length ^ 0x80;
                 codeLength = length + 1;
             }
             else {
@@ -118,25 +126,53 @@ public class AxdrInteger implements AxdrType {
             }
         }
 
-        byteCode = new byte[length];
-        Util.readFully(iStream, byteCode);
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | readByte(iStream);
+        }
 
-        if ((byteCode[0] & 0x80) == 0x80 && !isUnsigned) {
-            val = -1;
-            for (int i = 0; i < length; i++) {
-                int numShiftBits = 8 * (length - i - 1);
-                val &= ((byteCode[i]) << numShiftBits) | ~(0xff << numShiftBits);
-            }
+        if (!isUnsigned && length > 0 && length < 8) {
+            int shift = 64 - 8 * length;
+            value = (value << shift) >> shift;
+        }
+        val = value;
+
+        return codeLength;
+    }
 
+    /**
+     * Decodes the integer from the reader, without intermediate objects.
+     */
+    public void decode(AxdrReader reader) throws IOException {
+        if (isFixedLength) {
+            val = reader.readInteger(fixedLength, !isUnsigned);
         }
         else {
-            val = 0;
-            for (int i = 0; i < length; i++) {
-                val |= (long) (byteCode[i] & 0xff) << (8 * (length - i - 1));
-            }
+            val = reader.readInteger();
         }
+    }
 
-        return codeLength;
+    /**
+     * Encodes the integer to the writer, without intermediate objects.
+     */
+    public void encode(AxdrWriter writer) throws IOException {
+        if (code != null) {
+            writer.writeBytes(code, 0, code.length);
+        }
+        else if (isFixedLength) {
+            writer.writeInteger(val, fixedLength);
+        }
+        else {
+            writer.writeInteger(val);
+        }
+    }
+
+    private static int readByte(InputStream iStream) throws IOException {
+        int b = iStream.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of input stream.");
+        }
+        return b;
     }
 
     public void encodeAndSave(int encodingSizeGuess) throws IOException {
@@ -147,24 +183,11 @@ public class AxdrInteger implements AxdrType {
 
     private int getByteLength(long val) {
         if (minVal != null && minVal >= 0) {
-            for (int i = 1; i <= 8; i++) {
-                long upperBound = (long) (Math.pow(2, (i * 8)) - 1);
-                if (upperBound >= val) {
-                    return i;
-                }
-            }
+            return AxdrWriter.byteLengthOfUnsigned(val);
         }
         else {
-            for (int i = 1; i <= 8; i++) {
-                long lowerBound = (long) (Math.pow(2, (i * 8) - 1) * (-1));
-                long upperBound = (long) (Math.pow(2, (i * 8) - 1) - 1);
-                if (lowerBound <= val && upperBound >= val) {
-                    return i;
-                }
-            }
+            return AxdrWriter.byteLengthOfSigned(val);
         }
-        // Unreachable, a long has at max 8 Byte
-        return 0;
     }
 
     @Override
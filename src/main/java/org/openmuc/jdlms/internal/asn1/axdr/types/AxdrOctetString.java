@@ -26,7 +26,9 @@ import java.io.InputStream;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrReader;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
+import org.openmuc.jdlms.internal.asn1.axdr.AxdrWriter;
 
 public class AxdrOctetString implements AxdrType {
 
@@ -65,8 +67,7 @@ public class AxdrOctetString implements AxdrType {
         codeLength = octetString.length;
 
         if (length == 0) {
-            AxdrLength length = new AxdrLength(octetString.length);
-            codeLength += length.encode(axdrOStream);
+            codeLength += AxdrLength.encodeLength(axdrOStream, octetString.length);
         }
 
         return codeLength;
@@ -79,10 +80,9 @@ public class AxdrOctetString implements AxdrType {
         int length = this.length;
 
         if (length == 0) {
-            AxdrLength l = new AxdrLength();
-            codeLength += l.decode(iStream);
+            length = AxdrLength.decodeLength(iStream);
+            codeLength += AxdrLength.codeLengthOf(length);
 
-            length = l.getValue();
             octetString = new byte[length];
         }
 
@@ -97,6 +97,32 @@ public class AxdrOctetString implements AxdrType {
 
     }
 
+    /**
+     * Decodes the octet string from the reader. A fixed length octet string is read into its current array.
+     */
+    public void decode(AxdrReader reader) throws IOException {
+        int length = this.length;
+
+        if (length == 0) {
+            length = reader.readLength();
+            octetString = new byte[length];
+        }
+
+        reader.readBytes(octetString, 0, length);
+    }
+
+    /**
+     * Encodes the octet string to the writer, without intermediate objects.
+     */
+    public void encode(AxdrWriter writer) throws IOException {
+        if (length == 0) {
+            writer.writeOctetString(octetString, 0, octetString.length);
+        }
+        else {
+            writer.writeBytes(octetString, 0, octetString.length);
+        }
+    }
+
     public byte[] getValue() {
         return octetString;
     }
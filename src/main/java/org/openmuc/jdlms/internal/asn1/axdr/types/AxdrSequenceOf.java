@@ -26,8 +26,8 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
@@ -35,17 +35,22 @@ import org.openmuc.jdlms.internal.asn1.axdr.AxdrType;
 
 public abstract class AxdrSequenceOf<E extends AxdrType> implements AxdrType {
 
+    /*
+     * The number of elements is read from the stream, don't trust it for more than this when allocating.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
     public byte[] code = null;
     private Integer length = null;
     private List<E> seqOf;
 
     public AxdrSequenceOf() {
-        seqOf = new LinkedList<>();
+        seqOf = new ArrayList<>();
     }
 
     public AxdrSequenceOf(byte[] code) {
         this.code = code;
-        seqOf = new LinkedList<>();
+        seqOf = new ArrayList<>();
     }
 
     public AxdrSequenceOf(List<E> seqOf) {
@@ -73,8 +78,10 @@ public abstract class AxdrSequenceOf<E extends AxdrType> implements AxdrType {
             }
 
             codeLength = 0;
-            for (int i = (seqOf.size() - 1); i >= 0; i--) {
-                codeLength += seqOf.get(i).encode(axdrOStream);
+            // the stream is written backwards, iterating from the end is linear for any list implementation
+            ListIterator<E> it = seqOf.listIterator(seqOf.size());
+            while (it.hasPrevious()) {
+                codeLength += it.previous().encode(axdrOStream);
             }
 
             if (length == null) {
@@ -98,7 +105,7 @@ public abstract class AxdrSequenceOf<E extends AxdrType> implements AxdrType {
             numElements = length.getValue();
         }
 
-        seqOf = new LinkedList<>();
+        seqOf = new ArrayList<>(Math.min(numElements, MAX_INITIAL_CAPACITY));
 
         for (int i = 0; i < numElements; i++) {
             E subElem = createListElement();
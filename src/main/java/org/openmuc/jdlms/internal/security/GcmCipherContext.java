@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.security;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.modes.gcm.Tables8kGCMMultiplier;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+/**
+ * AES-GCM cipher bound to one key. The key schedule and the GHASH tables are computed once and reused for every APDU
+ * ciphered with that key.
+ * <p>
+ * A context is not thread safe, use one context per thread.
+ * </p>
+ */
+abstract class GcmCipherContext {
+
+    static final int TAG_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = TAG_LENGTH * 8;
+
+    private final byte[] key;
+
+    private GcmCipherContext(byte[] key) {
+        this.key = key.clone();
+    }
+
+    /**
+     * Creates a new context for the given key. If useJce is set and the JCE provides AES/GCM, the JCE is used (and
+     * with it AES-NI where the JVM supports it), otherwise BouncyCastle.
+     */
+    static GcmCipherContext newContext(byte[] key, boolean useJce) {
+        if (useJce) {
+            try {
+                return new JceContext(key);
+            } catch (GeneralSecurityException e) {
+                // AES/GCM is not available in this JRE, fall back to BouncyCastle
+            }
+        }
+        return new BouncyCastleContext(key);
+    }
+
+    boolean isContextFor(byte[] key) {
+        return Arrays.equals(this.key, key);
+    }
+
+    /**
+     * Encrypts len bytes of in and writes the cipher text followed by the authentication tag to out.
+     * <p>
+     * in and out may be the same array, as long as outOff is not greater than inOff.
+     * </p>
+     * 
+     * @return the number of bytes written to out, that is len + {@value #TAG_LENGTH}.
+     */
+    abstract int encrypt(byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff)
+            throws IOException;
+
+    /**
+     * Verifies and decrypts len bytes of cipher text and tag of in and writes the plain text to out.
+     * 
+     * @return the number of bytes written to out, that is len - {@value #TAG_LENGTH}.
+     */
+    abstract int decrypt(byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff)
+            throws IOException;
+
+    private static class BouncyCastleContext extends GcmCipherContext {
+
+        private final KeyParameter keyParameter;
+        private GCMBlockCipher cipher;
+        private boolean keyInitialized;
+        private byte[] lastIv;
+
+        public BouncyCastleContext(byte[] key) {
+            super(key);
+            this.keyParameter = new KeyParameter(key);
+            this.cipher = newCipher();
+        }
+
+        @Override
+        int encrypt(byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff) throws IOException {
+            if (Arrays.equals(iv, this.lastIv)) {
+                // BouncyCastle refuses to encrypt with the nonce of the previous init of the same cipher instance
+                this.cipher = newCipher();
+                this.keyInitialized = false;
+            }
+            init(true, iv, aad);
+
+            try {
+                int length = this.cipher.processBytes(in, inOff, len, out, outOff);
+                return length + this.cipher.doFinal(out, outOff + length);
+            } catch (IllegalStateException | InvalidCipherTextException e) {
+                throw new IOException("Unable to cipher/encrypt xDLMS APDU", e);
+            }
+        }
+
+        @Override
+        int decrypt(byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff) throws IOException {
+            init(false, iv, aad);
+
+            try {
+                int length = this.cipher.processBytes(in, inOff, len, out, outOff);
+                return length + this.cipher.doFinal(out, outOff + length);
+            } catch (IllegalStateException | InvalidCipherTextException e) {
+                throw new IOException("Unable to decipher/decrypt xDLMS pdu", e);
+            }
+        }
+
+        private void init(boolean forEncryption, byte[] iv, byte[] aad) {
+            // passing no key reuses the key schedule and the multiplier tables of the previous init
+            KeyParameter key = this.keyInitialized ? null : this.keyParameter;
+            this.cipher.init(forEncryption, new AEADParameters(key, TAG_LENGTH_BITS, iv, aad));
+            this.keyInitialized = true;
+            this.lastIv = iv;
+        }
+
+        private static GCMBlockCipher newCipher() {
+            return new GCMBlockCipher(new AESEngine(), new Tables8kGCMMultiplier());
+        }
+    }
+
+    private static class JceContext extends GcmCipherContext {
+
+        private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+        private final SecretKeySpec keySpec;
+        private Cipher cipher;
+        private byte[] lastEncryptionIv;
+
+        public JceContext(byte[] key) throws GeneralSecurityException {
+            super(key);
+            this.keySpec = new SecretKeySpec(key, "AES");
+            this.cipher = Cipher.getInstance(TRANSFORMATION);
+        }
+
+        @Override
+        int encrypt(byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff) throws IOException {
+            try {
+                if (Arrays.equals(iv, this.lastEncryptionIv)) {
+                    // the JCE refuses to reuse an IV with the same cipher instance
+                    this.cipher = Cipher.getInstance(TRANSFORMATION);
+                }
+                init(Cipher.ENCRYPT_MODE, iv, aad);
+                this.lastEncryptionIv = iv;
+                return this.cipher.doFinal(in, inOff, len, out, outOff);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Unable to cipher/encrypt xDLMS APDU", e);
+            }
+        }
+
+        @Override
+        int decrypt(byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff) throws IOException {
+            try {
+                init(Cipher.DECRYPT_MODE, iv, aad);
+                return this.cipher.doFinal(in, inOff, len, out, outOff);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Unable to decipher/decrypt xDLMS pdu", e);
+            }
+        }
+
+        private void init(int mode, byte[] iv, byte[] aad) throws GeneralSecurityException {
+            this.cipher.init(mode, this.keySpec, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            if (aad.length > 0) {
+                this.cipher.updateAAD(aad);
+            }
+        }
+    }
+
+}
@@ -21,64 +21,143 @@
 package org.openmuc.jdlms.internal.security;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-
-import org.bouncycastle.crypto.InvalidCipherTextException;
-import org.bouncycastle.crypto.engines.AESEngine;
-import org.bouncycastle.crypto.modes.GCMBlockCipher;
-import org.bouncycastle.crypto.modes.gcm.BasicGCMMultiplier;
-import org.bouncycastle.crypto.params.AEADParameters;
-import org.bouncycastle.crypto.params.KeyParameter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import org.openmuc.jdlms.SecuritySuite;
 import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
 import org.openmuc.jdlms.internal.asn1.axdr.AxdrLength;
 
+/**
+ * Ciphers and deciphers xDLMS APDUs with AES-GCM.
+ * <p>
+ * The cipher contexts, holding the key schedule and the GHASH tables, are cached per security suite. Every connection
+ * and association has its own suite, so the contexts are dropped together with it. Set the system property
+ * {@value #USE_JCE_PROPERTY} to <code>true</code> to cipher with the JCE AES/GCM implementation instead of
+ * BouncyCastle.
+ * </p>
+ */
 public class GcmModule {
 
+    /**
+     * System property to select the JCE AES/GCM implementation.
+     */
+    public static final String USE_JCE_PROPERTY = "org.openmuc.jdlms.gcm.jce";
+
+    private static final boolean USE_JCE = Boolean.getBoolean(USE_JCE_PROPERTY);
+
     private static final int FC_LENGTH = 4;
     private static final int IV_LENGTH = 12;
-    private static final int IV_LENGTH_BITS = IV_LENGTH * 8;
+    private static final int SC_FC_LENGTH = 1 + FC_LENGTH;
     private static final int LENGTH_FC_TAG_SC = 6;
+    private static final int MAX_LENGTH_FIELD_LENGTH = 3;
+    private static final int AUTHENTICATION_TAG_LENGTH = GcmCipherContext.TAG_LENGTH;
+
+    /**
+     * The idle cipher contexts per security suite, a context is taken by one thread at a time. Guarded by itself.
+     */
+    private static final Map<SecuritySuite, Queue<GcmCipherContext>> CIPHER_CONTEXTS = new WeakHashMap<>();
+
+    /**
+     * The maximum number of bytes a ciphered xDLMS APDU is longer than its plain text.
+     */
+    public static final int MAX_CIPHERING_OVERHEAD = LENGTH_FC_TAG_SC + MAX_LENGTH_FIELD_LENGTH
+            + AUTHENTICATION_TAG_LENGTH;
 
     public static byte[] processPlain(byte[] plaintext, int off, int len, byte[] systemTitle, int frameCounter,
             SecuritySuite securitySuite, byte tag) throws IOException {
-        byte[] frameCounterBytes = intToByteArray(frameCounter);
-
-        byte[] iv = concat(systemTitle, frameCounterBytes);
+        byte[] lengthBytes = lengthFieldFor(len, securitySuite);
+        int headerLength = 1 + lengthBytes.length + SC_FC_LENGTH;
 
-        byte[] additionalAssociationData = createAadIfExists(securitySuite);
+        // the tag is always computed, even if it is not transmitted
+        byte[] cipheredApdu = new byte[headerLength + len + AUTHENTICATION_TAG_LENGTH];
+        encrypt(plaintext, off, len, systemTitle, frameCounter, securitySuite, tag, lengthBytes, cipheredApdu, 0);
 
-        AEADParameters parameters = new AEADParameters(new KeyParameter(securitySuite.getGlobalUnicastEncryptionKey()),
-                IV_LENGTH_BITS, iv, additionalAssociationData);
+        if (!securitySuite.getSecurityPolicy().isAuthenticated()) {
+            return Arrays.copyOf(cipheredApdu, headerLength + len);
+        }
+        return cipheredApdu;
+    }
 
-        GCMBlockCipher encCipher = createBlockCipher(true, parameters);
+    /**
+     * Ciphers the plain xDLMS APDU, which has been encoded to the last len bytes of the buffer, in place.
+     * <p>
+     * The ciphered APDU replaces the plain APDU at the end of the buffer. The buffer needs
+     * {@link #MAX_CIPHERING_OVERHEAD} free bytes in front of the plain APDU.
+     * </p>
+     * 
+     * @return the length of the ciphered APDU.
+     */
+    public static int processPlainInPlace(byte[] buffer, int len, byte[] systemTitle, int frameCounter,
+            SecuritySuite securitySuite, byte tag) throws IOException {
+        int off = buffer.length - len;
+        byte[] lengthBytes = lengthFieldFor(len, securitySuite);
+        int headerLength = 1 + lengthBytes.length + SC_FC_LENGTH;
 
-        byte[] chipherText = new byte[encCipher.getOutputSize(len)];
-        int length = encCipher.processBytes(plaintext, off, len, chipherText, 0);
-        try {
-            encCipher.doFinal(chipherText, length);
-        } catch (IllegalStateException | InvalidCipherTextException e) {
-            throw new IOException("Unable to cipher/encrypt xDLMS APDU", e);
+        // the cipher text starts one tag length in front of the plain text, so that the cipher only ever writes bytes
+        // it has already read
+        int apduOffset = off - AUTHENTICATION_TAG_LENGTH - headerLength;
+        if (apduOffset < 0) {
+            throw new IOException("Unable to cipher/encrypt xDLMS APDU, the buffer is too small.");
         }
+        encrypt(buffer, off, len, systemTitle, frameCounter, securitySuite, tag, lengthBytes, buffer, apduOffset);
 
-        int chipherTextLength = chipherText.length;
-
+        int apduLength = headerLength + len;
         if (!securitySuite.getSecurityPolicy().isAuthenticated()) {
-            chipherTextLength -= 12;
+            // the tag is not transmitted, drop it by moving the APDU to the end of the buffer
+            System.arraycopy(buffer, apduOffset, buffer, buffer.length - apduLength, apduLength);
+            return apduLength;
+        }
+        return apduLength + AUTHENTICATION_TAG_LENGTH;
+    }
+
+    /**
+     * Returns the length of the ciphered xDLMS APDU, without ciphering it.
+     * 
+     * @param len
+     *            the length of the plain xDLMS APDU.
+     * @param securitySuite
+     *            the security suite the APDU is ciphered with.
+     * @return the length of the ciphered APDU.
+     */
+    public static int cipheredLength(int len, SecuritySuite securitySuite) throws IOException {
+        int apduLength = 1 + lengthFieldFor(len, securitySuite).length + SC_FC_LENGTH + len;
+        if (securitySuite.getSecurityPolicy().isAuthenticated()) {
+            apduLength += AUTHENTICATION_TAG_LENGTH;
         }
-        byte[] lengthBytes = AxdrLength.encodeLength(chipherTextLength + 5);
+        return apduLength;
+    }
 
-        final int cipheredApduLength = chipherTextLength + LENGTH_FC_TAG_SC + lengthBytes.length;
+    private static byte[] lengthFieldFor(int len, SecuritySuite securitySuite) throws IOException {
+        int chipherTextLength = len;
+        if (securitySuite.getSecurityPolicy().isAuthenticated()) {
+            chipherTextLength += AUTHENTICATION_TAG_LENGTH;
+        }
+        return AxdrLength.encodeLength(chipherTextLength + SC_FC_LENGTH);
+    }
 
-        byte controlByte = securityControlByteFrom(securitySuite);
+    /**
+     * Writes the security header followed by the cipher text and the tag to dest.
+     */
+    private static void encrypt(byte[] plaintext, int off, int len, byte[] systemTitle, int frameCounter,
+            SecuritySuite securitySuite, byte tag, byte[] lengthBytes, byte[] dest, int destOff) throws IOException {
+        dest[destOff] = tag;
+        System.arraycopy(lengthBytes, 0, dest, destOff + 1, lengthBytes.length);
+        int scIndex = destOff + 1 + lengthBytes.length;
+        dest[scIndex] = securityControlByteFrom(securitySuite);
+        putInt(frameCounter, dest, scIndex + 1);
 
-        return ByteBuffer.allocate(cipheredApduLength)
-                .put(tag)
-                .put(lengthBytes)
-                .put(controlByte)
-                .put(frameCounterBytes)
-                .put(chipherText, 0, chipherTextLength)
-                .array();
+        Queue<GcmCipherContext> contexts = cipherContextsOf(securitySuite);
+        GcmCipherContext context = takeCipherContext(contexts, securitySuite);
+        try {
+            context.encrypt(iv(systemTitle, dest, scIndex + 1), createAadIfExists(securitySuite), plaintext, off, len,
+                    dest, scIndex + SC_FC_LENGTH);
+        } finally {
+            contexts.add(context);
+        }
     }
 
     private static byte[] createAadIfExists(SecuritySuite securitySuite) {
@@ -91,36 +170,74 @@ public class GcmModule {
 
     public static byte[] decrypt(byte[] cipheredApdu, byte[] systemTitle, SecuritySuite securitySuite)
             throws IOException {
-        byte[] iv = ByteBuffer.allocate(IV_LENGTH).put(systemTitle).put(cipheredApdu, 1, FC_LENGTH).array();
-
-        byte[] additionalAssociationData = createAadIfExists(securitySuite);
-        AEADParameters parameters = new AEADParameters(new KeyParameter(securitySuite.getGlobalUnicastEncryptionKey()),
-                IV_LENGTH_BITS, iv, additionalAssociationData);
-
-        GCMBlockCipher decCipher = createBlockCipher(false, parameters);
+        int cipherTextLength = cipheredApdu.length - SC_FC_LENGTH;
+        if (cipherTextLength < AUTHENTICATION_TAG_LENGTH) {
+            throw new IOException("Unable to decipher/decrypt xDLMS pdu, the pdu is too short.");
+        }
 
-        byte[] dec = new byte[decCipher.getOutputSize(cipheredApdu.length - 5)];
-        int length = decCipher.processBytes(cipheredApdu, 5, cipheredApdu.length - 5, dec, 0);
+        byte[] dec = new byte[cipherTextLength - AUTHENTICATION_TAG_LENGTH];
+        Queue<GcmCipherContext> contexts = cipherContextsOf(securitySuite);
+        GcmCipherContext context = takeCipherContext(contexts, securitySuite);
         try {
-            decCipher.doFinal(dec, length);
-        } catch (IllegalStateException | InvalidCipherTextException e) {
-            throw new IOException("Unable to decipher/decrypt xDLMS pdu", e);
+            context.decrypt(iv(systemTitle, cipheredApdu, 1), createAadIfExists(securitySuite), cipheredApdu,
+                    SC_FC_LENGTH, cipherTextLength, dec, 0);
+        } finally {
+            contexts.add(context);
         }
 
         return dec;
     }
 
+    /**
+     * @return the invocation counter of the ciphered APDU, which starts with the security header.
+     */
+    public static int frameCounterOf(byte[] cipheredApdu) throws IOException {
+        if (cipheredApdu.length < SC_FC_LENGTH) {
+            throw new IOException("Unable to decipher/decrypt xDLMS pdu, the pdu is too short.");
+        }
+        return (cipheredApdu[1] & 0xff) << 24 | (cipheredApdu[2] & 0xff) << 16 | (cipheredApdu[3] & 0xff) << 8
+                | cipheredApdu[4] & 0xff;
+    }
+
+    private static byte[] iv(byte[] systemTitle, byte[] apdu, int frameCounterOffset) {
+        byte[] iv = new byte[IV_LENGTH];
+        System.arraycopy(systemTitle, 0, iv, 0, systemTitle.length);
+        System.arraycopy(apdu, frameCounterOffset, iv, systemTitle.length, FC_LENGTH);
+        return iv;
+    }
+
     private static byte[] createAdditionalAssociationData(byte[] authenticationKey, byte securityControlByte) {
-        return ByteBuffer.allocate(authenticationKey.length + 1)
-                .put(securityControlByte)
-                .put(authenticationKey)
-                .array();
+        byte[] aad = new byte[authenticationKey.length + 1];
+        aad[0] = securityControlByte;
+        System.arraycopy(authenticationKey, 0, aad, 1, authenticationKey.length);
+        return aad;
+    }
+
+    private static Queue<GcmCipherContext> cipherContextsOf(SecuritySuite securitySuite) {
+        synchronized (CIPHER_CONTEXTS) {
+            Queue<GcmCipherContext> contexts = CIPHER_CONTEXTS.get(securitySuite);
+            if (contexts == null) {
+                contexts = new ConcurrentLinkedQueue<>();
+                CIPHER_CONTEXTS.put(securitySuite, contexts);
+            }
+            return contexts;
+        }
     }
 
-    private static GCMBlockCipher createBlockCipher(boolean forEncryption, AEADParameters parameters) {
-        GCMBlockCipher decCipher = new GCMBlockCipher(new AESEngine(), new BasicGCMMultiplier());
-        decCipher.init(forEncryption, parameters);
-        return decCipher;
+    /**
+     * Takes an idle context for the current encryption key of the security suite or creates a new one. Contexts for a
+     * replaced key are dropped.
+     */
+    private static GcmCipherContext takeCipherContext(Queue<GcmCipherContext> contexts, SecuritySuite securitySuite) {
+        byte[] key = securitySuite.getGlobalUnicastEncryptionKey();
+
+        GcmCipherContext context;
+        while ((context = contexts.poll()) != null) {
+            if (context.isContextFor(key)) {
+                return context;
+            }
+        }
+        return GcmCipherContext.newContext(key, USE_JCE);
     }
 
     private static byte securityControlByteFrom(SecuritySuite securitySuite) {
@@ -143,11 +260,11 @@ public class GcmModule {
         return (byte) (data | (1 << index));
     }
 
-    private static byte[] concat(byte[] a, byte[] b) {
-        byte[] c = new byte[a.length + b.length];
-        System.arraycopy(a, 0, c, 0, a.length);
-        System.arraycopy(b, 0, c, a.length, b.length);
-        return c;
+    private static void putInt(int value, byte[] buffer, int offset) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
     }
 
     public static final byte[] intToByteArray(int value) {
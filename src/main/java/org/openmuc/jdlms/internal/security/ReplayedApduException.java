@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-17 Fraunhofer ISE
+ *
+ * This file is part of jDLMS.
+ * For more information visit http://www.openmuc.org
+ *
+ * jDLMS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * jDLMS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with jDLMS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.jdlms.internal.security;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+
+import org.openmuc.jdlms.HexConverter;
+
+/**
+ * Thrown if a ciphered xDLMS APDU carries an invocation counter, which has already been received. The APDU is
+ * discarded.
+ */
+public class ReplayedApduException extends IOException {
+
+    private static final long serialVersionUID = -2393546263914780562L;
+
+    public ReplayedApduException(byte[] systemTitle, int frameCounter) {
+        super(MessageFormat.format("Received a replayed xDLMS APDU from system title {0}, invocation counter {1}.",
+                HexConverter.toShortHexString(systemTitle), Long.toString(frameCounter & 0xFFFFFFFFL)));
+    }
+
+}
@@ -3,6 +3,7 @@ package org.openmuc.jdlms.internal.sessionlayer.hdlc;
 import static org.openmuc.jdlms.JDlmsException.ExceptionId.HDLC_CONNECTION_CLOSE_ERROR;
 import static org.openmuc.jdlms.JDlmsException.ExceptionId.HDLC_CONNECTION_ESTABLISH_ERROR;
 import static org.openmuc.jdlms.JDlmsException.Fault.SYSTEM;
+import static org.openmuc.jdlms.JDlmsException.Fault.USER;
 import static org.openmuc.jdlms.RawMessageData.MessageSource.CLIENT;
 import static org.openmuc.jdlms.RawMessageData.MessageSource.SERVER;
 import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame.newDisconnectFrame;
@@ -14,15 +15,24 @@ import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.openmuc.jdlms.FatalJDlmsException;
 import org.openmuc.jdlms.RawMessageData;
@@ -38,10 +48,42 @@ import org.openmuc.jdlms.transportlayer.client.Iec21Layer;
 import org.openmuc.jdlms.transportlayer.client.TcpLayer;
 import org.openmuc.jdlms.transportlayer.client.TransportLayer;
 
+/**
+ * Multiplexes the HDLC connections to several meters over one physical link, e.g. the TCP connection to a data
+ * concentrator or a RS-485 bus.
+ * 
+ * <p>
+ * The physical links are shared by all connections with the same TCP address and port or serial port and are closed,
+ * when the last connection over the link is closed. The received frames are handed to the connections through a queue
+ * per address pair, so that a slow connection doesn't hold up the others. The queue of an address pair is bounded, a
+ * frame exceeding it is discarded like a frame lost on the line and requested again by the HDLC sequence numbers.
+ * </p>
+ * 
+ * <p>
+ * The connections take turns sending. Over TCP the turn is passed on after every send. On a serial bus the turn is
+ * held until the polled meter has answered with the final bit set, or the response timeout has expired, since a
+ * second meter answering at the same time would garble both answers.
+ * </p>
+ * 
+ * <p>
+ * The connections over a shared serial port have to use the same baud rate and IEC 62056-21 settings, since the
+ * handshake is done once per link.
+ * </p>
+ */
 public class HdlcDispatcher {
+
+    /**
+     * The maximum number of received frames waiting for the listener of an address pair.
+     */
+    static final int MAX_QUEUED_FRAMES = 64;
+
     private static HdlcDispatcher instance;
 
-    private final Map<Object, HdlcConnection> hdlcConnectionMap;
+    /**
+     * The open physical links per TCP address or serial port. An address pair, which is already connected over a
+     * link, is connected over a new link with the same key.
+     */
+    private final Map<Object, List<HdlcConnection>> hdlcConnectionMap;
 
     private HdlcDispatcher() {
         this.hdlcConnectionMap = new HashMap<>();
@@ -80,116 +122,280 @@ public class HdlcDispatcher {
         }
     }
 
-    public synchronized HdlcConnection connect(HdlcSettings settings, HdlcConnectionListener listener) {
-
-        HdlcConnection hdlcConnection;
+    public synchronized HdlcConnection connect(HdlcSettings settings, HdlcConnectionListener listener)
+            throws IOException {
+        Object linkKey;
 
         if (settings instanceof HdlcTcpSettings) {
             HdlcTcpSettings tcpSettings = (HdlcTcpSettings) settings;
+            linkKey = new TcpIpEntry(tcpSettings.inetAddress(), tcpSettings.tcpPort());
+        }
+        else if (settings instanceof SerialSettings) {
+            SerialSettings serialSettings = (SerialSettings) settings;
+            linkKey = serialSettings.serialPortName();
+            checkSerialSettings(serialSettings, this.hdlcConnectionMap.get(linkKey));
+        }
+        else {
+            // TODO: handle this properly.
+            throw new UnsupportedOperationException();
+        }
 
-            hdlcConnection = hdlcConnectionMap.get(new TcpIpEntry(tcpSettings.inetAddress(), tcpSettings.tcpPort()));
-
-            if (hdlcConnection == null) {
-                TransportLayer transportLayer = new TcpLayer(tcpSettings);
+        List<HdlcConnection> links = this.hdlcConnectionMap.get(linkKey);
+        if (links == null) {
+            links = new ArrayList<>(1);
+            this.hdlcConnectionMap.put(linkKey, links);
+        }
 
-                hdlcConnection = new HdlcConnection(settings, transportLayer);
+        for (HdlcConnection hdlcConnection : links) {
+            if (hdlcConnection.registerNewListener(settings, listener)) {
+                return hdlcConnection;
             }
         }
-        else if (settings instanceof SerialSettings) {
-            SerialSettings serialSettings = (SerialSettings) settings;
 
-            hdlcConnection = hdlcConnectionMap.get(serialSettings.serialPortName());
+        HdlcConnection hdlcConnection = new HdlcConnection(linkKey, settings, newTransportLayer(settings));
+        hdlcConnection.registerNewListener(settings, listener);
+        links.add(hdlcConnection);
+
+        return hdlcConnection;
+    }
+
+    private static void checkSerialSettings(SerialSettings settings, List<HdlcConnection> links)
+            throws FatalJDlmsException {
+        if (links == null) {
+            return;
+        }
+
+        for (HdlcConnection hdlcConnection : links) {
+            SerialSettings linkSettings = (SerialSettings) hdlcConnection.settings;
 
-            if (hdlcConnection == null) {
-                TransportLayer transportLayer = new Iec21Layer(serialSettings);
-                hdlcConnection = new HdlcConnection(settings, transportLayer);
+            if (linkSettings.baudrate() != settings.baudrate()
+                    || linkSettings.baudrateChangeDelay() != settings.baudrateChangeDelay()
+                    || linkSettings.iec21Handshake() != settings.iec21Handshake()
+                    || !sameAddress(linkSettings.iec21Address(), settings.iec21Address())) {
+                throw new FatalJDlmsException(HDLC_CONNECTION_ESTABLISH_ERROR, USER, MessageFormat.format(
+                        "The serial port {0} is already used with a different baud rate or IEC 21 settings.",
+                        settings.serialPortName()));
             }
+        }
+    }
+
+    private static boolean sameAddress(String iec21Address, String otherIec21Address) {
+        return iec21Address == null ? otherIec21Address == null : iec21Address.equals(otherIec21Address);
+    }
 
+    private static TransportLayer newTransportLayer(HdlcSettings settings) {
+        if (settings instanceof HdlcTcpSettings) {
+            return new TcpLayer((HdlcTcpSettings) settings);
         }
         else {
-            // TODO: handle this properly.
-            throw new UnsupportedOperationException();
+            return new Iec21Layer((SerialSettings) settings);
         }
+    }
 
-        hdlcConnection.registerNewListener(settings.addressPair(), listener);
-        return hdlcConnection;
+    /**
+     * Removes the address pair from the link.
+     * 
+     * @return <code>true</code> if the link is no longer used and has to be closed.
+     */
+    private synchronized boolean unregister(HdlcConnection hdlcConnection, HdlcAddressPair addressPair) {
+        hdlcConnection.channels.remove(addressPair);
+
+        if (!hdlcConnection.channels.isEmpty() || hdlcConnection.discarded) {
+            return false;
+        }
+
+        discard(hdlcConnection);
+        return true;
+    }
+
+    /**
+     * Removes the link from the map, so that no further connection is registered on it.
+     */
+    private synchronized void discard(HdlcConnection hdlcConnection) {
+        hdlcConnection.discarded = true;
+
+        List<HdlcConnection> links = this.hdlcConnectionMap.get(hdlcConnection.linkKey);
+        if (links == null) {
+            return;
+        }
+        links.remove(hdlcConnection);
+        if (links.isEmpty()) {
+            this.hdlcConnectionMap.remove(hdlcConnection.linkKey);
+        }
     }
 
     public class HdlcConnection {
+        private final Object linkKey;
         private final TransportLayer transportLayer;
         private final Settings settings;
-        private final Map<HdlcAddressPair, HdlcConnectionListener> listeners;
+        private final ConcurrentMap<HdlcAddressPair, AddressChannel> channels;
+        private final AtomicInteger numRawMessageListeners;
+
+        /**
+         * Fair lock, the waiting connections send their frames in turns.
+         */
+        private final ReentrantLock sendLock;
+
+        /**
+         * The meter polled on a serial bus, <code>null</code> if the sender doesn't wait for an answer.
+         */
+        private volatile PolledStation polledStation;
 
-        private HdlcAddressPair connectionKey;
-        private final BlockingQueue<HdlcFrame> incommingQueue;
         private ExecutorService connectionreaderExecutor;
+        private ExecutorService deliveryExecutor;
+
+        /**
+         * Guarded by the dispatcher.
+         */
+        private boolean discarded;
 
-        private HdlcConnection(Settings settings, TransportLayer transportLayer) {
+        private HdlcConnection(Object linkKey, Settings settings, TransportLayer transportLayer) {
+            this.linkKey = linkKey;
             this.settings = settings;
             this.transportLayer = transportLayer;
-            this.listeners = new LinkedHashMap<>();
+            this.channels = new ConcurrentHashMap<>();
+            this.numRawMessageListeners = new AtomicInteger();
 
-            this.incommingQueue = new ArrayBlockingQueue<>(1);
+            this.sendLock = new ReentrantLock(true);
+            this.discarded = false;
         }
 
-        public synchronized void send(byte[] data) throws IOException {
-            this.transportLayer.getOutpuStream().write(data);
-            this.transportLayer.getOutpuStream().flush();
+        public void send(byte[] data) throws IOException {
+            send(data, null);
         }
 
-        public synchronized HdlcParameters open(HdlcSettings settings) throws IOException {
-            if (this.transportLayer.isClosed()) {
-                this.transportLayer.open();
+        /**
+         * Sends the frames and, on a serial bus, holds the turn until the polled station has answered.
+         * 
+         * @param data
+         *            the encoded frames.
+         * @param polledAddressPair
+         *            the address pair of the last frame, if it has the poll bit set, <code>null</code> otherwise.
+         * @throws IOException
+         *             if the frames could not be sent.
+         */
+        public void send(byte[] data, HdlcAddressPair polledAddressPair) throws IOException {
+            this.sendLock.lock();
+            try {
+                PolledStation station = null;
+                if (polledAddressPair != null && this.settings instanceof SerialSettings) {
+                    // set before sending, the answer may arrive before the write returns
+                    station = new PolledStation(polledAddressPair);
+                    this.polledStation = station;
+                }
+
+                try {
+                    this.transportLayer.getOutpuStream().write(data);
+                    this.transportLayer.getOutpuStream().flush();
 
-                this.connectionreaderExecutor = Executors.newSingleThreadExecutor();
-                this.connectionreaderExecutor.execute(new ConnectionReader());
+                    if (station != null) {
+                        station.awaitAnswer(this.settings.responseTimeout());
+                    }
+                } finally {
+                    this.polledStation = null;
+                }
+            } finally {
+                this.sendLock.unlock();
+            }
+        }
+
+        public HdlcParameters open(HdlcSettings settings) throws IOException {
+            AddressChannel channel = this.channels.get(settings.addressPair());
+            if (channel == null) {
+                throw new FatalJDlmsException(HDLC_CONNECTION_ESTABLISH_ERROR, SYSTEM,
+                        "The connection has already been closed.");
             }
 
-            this.connectionKey = settings.addressPair();
             try {
-                return connectSequence(settings);
+                openPhysicalLayer();
+                return connectSequence(settings, channel);
             } catch (IOException ex) {
                 removeListenerAndTryClosePhysicalLayer(settings);
 
                 throw ex;
-            } finally {
-                this.connectionKey = null;
             }
         }
 
-        public synchronized void close(HdlcSettings settings) throws IOException {
-            this.connectionKey = settings.addressPair();
+        private synchronized void openPhysicalLayer() throws IOException {
+            if (!this.transportLayer.isClosed()) {
+                return;
+            }
+
+            synchronized (HdlcDispatcher.this) {
+                // the reader has closed the link after a failure, the link must not be reopened, since it is no
+                // longer closed by the last connection
+                if (this.discarded) {
+                    throw new FatalJDlmsException(HDLC_CONNECTION_ESTABLISH_ERROR, SYSTEM,
+                            "The physical link has already been closed.");
+                }
+            }
+
+            this.transportLayer.open();
+
+            ThreadFactory threadFactory = this.settings.threadFactory();
+            if (threadFactory == null) {
+                this.connectionreaderExecutor = Executors.newSingleThreadExecutor();
+                this.deliveryExecutor = Executors.newCachedThreadPool();
+            }
+            else {
+                this.connectionreaderExecutor = Executors.newSingleThreadExecutor(threadFactory);
+                this.deliveryExecutor = Executors.newCachedThreadPool(threadFactory);
+            }
+
+            this.connectionreaderExecutor.execute(new ConnectionReader());
+        }
+
+        public void close(HdlcSettings settings) throws IOException {
+            AddressChannel channel = this.channels.get(settings.addressPair());
+            if (channel == null) {
+                return;
+            }
 
             try {
-                sendDisconnectSequence(settings);
+                sendDisconnectSequence(settings, channel);
             } finally {
                 removeListenerAndTryClosePhysicalLayer(settings);
-
-                this.connectionKey = null;
-                this.connectionreaderExecutor.shutdown();
             }
         }
 
         private void removeListenerAndTryClosePhysicalLayer(HdlcSettings settings) throws IOException {
-            synchronized (this.listeners) {
-                this.listeners.remove(settings.addressPair());
+            AddressChannel channel = this.channels.get(settings.addressPair());
+            if (channel != null && channel.rawMessages) {
+                this.numRawMessageListeners.decrementAndGet();
+            }
 
-                if (this.listeners.isEmpty()) {
-                    this.transportLayer.close();
+            if (unregister(this, settings.addressPair())) {
+                closePhysicalLayer();
+            }
+        }
+
+        private synchronized void closePhysicalLayer() throws IOException {
+            try {
+                this.transportLayer.close();
+            } finally {
+                if (this.connectionreaderExecutor != null) {
+                    this.connectionreaderExecutor.shutdown();
+                    this.deliveryExecutor.shutdown();
                 }
             }
         }
 
-        private void sendDisconnectSequence(HdlcSettings settings) throws IOException {
+        private void sendDisconnectSequence(HdlcSettings settings, AddressChannel channel) throws IOException {
             boolean poll = true;
             byte[] dfData = newDisconnectFrame(settings.addressPair(), poll).encode();
 
-            send(dfData);
-
             RawMessageListener rawMessageListener = settings.rawMessageListener();
-            notifyListener(dfData, CLIENT, rawMessageListener);
 
-            HdlcFrame disconnectAckFrame = waitForFrame(settings.responseTimeout());
+            HdlcFrame disconnectAckFrame;
+            channel.awaitControlFrame();
+            try {
+                send(dfData, settings.addressPair());
+                notifyListener(dfData, CLIENT, rawMessageListener);
+
+                disconnectAckFrame = channel.waitForControlFrame(settings.responseTimeout());
+            } finally {
+                channel.stopAwaitingControlFrame();
+            }
 
             if (disconnectAckFrame == null) {
                 throw new FatalJDlmsException(HDLC_CONNECTION_CLOSE_ERROR, SYSTEM,
@@ -203,17 +409,7 @@ public class HdlcDispatcher {
             }
         }
 
-        private HdlcFrame waitForFrame(long responseTimeout) {
-            HdlcFrame receivedFrame = null;
-            try {
-                receivedFrame = this.incommingQueue.poll(responseTimeout, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                // ignore, since this should't occur
-            }
-            return receivedFrame;
-        }
-
-        private HdlcParameters connectSequence(HdlcSettings settings) throws IOException {
+        private HdlcParameters connectSequence(HdlcSettings settings, AddressChannel channel) throws IOException {
 
             if (settings.confirmedMode() == ConfirmedMode.UNCONFIRMED) {
                 return new HdlcParameters(1024, 1);
@@ -233,9 +429,15 @@ public class HdlcDispatcher {
             RawMessageListener rawMessageListener = settings.rawMessageListener();
             notifyListener(snrmData, CLIENT, rawMessageListener);
 
-            send(snrmData);
+            HdlcFrame answerFrame;
+            channel.awaitControlFrame();
+            try {
+                send(snrmData, settings.addressPair());
 
-            HdlcFrame answerFrame = waitForFrame(settings.responseTimeout());
+                answerFrame = channel.waitForControlFrame(settings.responseTimeout());
+            } finally {
+                channel.stopAwaitingControlFrame();
+            }
 
             if (answerFrame == null) {
                 throw new FatalJDlmsException(HDLC_CONNECTION_ESTABLISH_ERROR, SYSTEM,
@@ -294,9 +496,116 @@ public class HdlcDispatcher {
             }
         }
 
-        private void registerNewListener(HdlcAddressPair key, HdlcConnectionListener listener) {
-            synchronized (this.listeners) {
-                this.listeners.put(key, listener);
+        /**
+         * Guarded by the dispatcher.
+         * 
+         * @return <code>false</code> if the address pair is already connected over this link or the link is closed.
+         */
+        private boolean registerNewListener(HdlcSettings settings, HdlcConnectionListener listener) {
+            if (this.discarded || this.channels.containsKey(settings.addressPair())) {
+                return false;
+            }
+
+            boolean rawMessages = settings.rawMessageListener() != null;
+            this.channels.put(settings.addressPair(), new AddressChannel(listener, rawMessages));
+            if (rawMessages) {
+                this.numRawMessageListeners.incrementAndGet();
+            }
+            return true;
+        }
+
+        /**
+         * The frames received for one address pair. The frames are handed to the listener in order by a thread of the
+         * delivery executor, while the frames of other address pairs are delivered concurrently.
+         */
+        private class AddressChannel implements Runnable {
+            private final HdlcConnectionListener listener;
+            private final boolean rawMessages;
+
+            private final Queue<ReceivedFrame> receivedFrames;
+            private boolean delivering;
+
+            private final BlockingQueue<HdlcFrame> controlFrames;
+            private volatile boolean awaitingControlFrame;
+
+            public AddressChannel(HdlcConnectionListener listener, boolean rawMessages) {
+                this.listener = listener;
+                this.rawMessages = rawMessages;
+
+                this.receivedFrames = new ArrayDeque<>();
+                this.delivering = false;
+
+                this.controlFrames = new LinkedBlockingQueue<>();
+                this.awaitingControlFrame = false;
+            }
+
+            private void frameReceived(RawMessageDataBuilder rawMessageBuilder, HdlcFrame frame) {
+                if (this.awaitingControlFrame) {
+                    this.controlFrames.add(frame);
+                }
+                else {
+                    deliver(new ReceivedFrame(rawMessageBuilder, frame, null));
+                }
+            }
+
+            private void deliver(ReceivedFrame receivedFrame) {
+                synchronized (this.receivedFrames) {
+                    if (receivedFrame.exception == null && this.receivedFrames.size() >= MAX_QUEUED_FRAMES) {
+                        // the listener is too slow, the reader must not wait for it
+                        return;
+                    }
+                    this.receivedFrames.add(receivedFrame);
+                    if (this.delivering) {
+                        return;
+                    }
+                    this.delivering = true;
+                }
+
+                try {
+                    deliveryExecutor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // the link has been closed in the meantime
+                }
+            }
+
+            @Override
+            public void run() {
+                while (true) {
+                    ReceivedFrame receivedFrame;
+                    synchronized (this.receivedFrames) {
+                        receivedFrame = this.receivedFrames.poll();
+                        if (receivedFrame == null) {
+                            this.delivering = false;
+                            return;
+                        }
+                    }
+
+                    if (receivedFrame.exception != null) {
+                        this.listener.connectionInterrupted(receivedFrame.exception);
+                    }
+                    else {
+                        this.listener.dataReceived(receivedFrame.rawMessageBuilder, receivedFrame.frame);
+                    }
+                }
+            }
+
+            private void awaitControlFrame() {
+                this.controlFrames.clear();
+                this.awaitingControlFrame = true;
+            }
+
+            private void stopAwaitingControlFrame() {
+                this.awaitingControlFrame = false;
+            }
+
+            private HdlcFrame waitForControlFrame(long responseTimeout) {
+                HdlcFrame receivedFrame = null;
+                try {
+                    receivedFrame = this.controlFrames.poll(responseTimeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // ignore, since this should't occur
+                }
+                return receivedFrame;
             }
         }
 
@@ -318,24 +627,26 @@ public class HdlcDispatcher {
             }
 
             private void closeAll() {
+                discard(HdlcConnection.this);
                 try {
                     transportLayer.close();
-                    listeners.clear();
                 } catch (IOException e) {
                     // ignore
+                } finally {
+                    deliveryExecutor.shutdown();
                 }
             }
 
             private void notifyAllListners(IOException e) {
-                for (HdlcConnectionListener listener : listeners.values()) {
-                    listener.connectionInterrupted(e);
+                for (AddressChannel channel : channels.values()) {
+                    channel.deliver(new ReceivedFrame(null, null, e));
                 }
             }
 
             private void mainLoop() throws IOException {
                 while (!transportLayer.isClosed()) {
                     RawMessageDataBuilder rawMessageBuilder = null;
-                    if (settings.rawMessageListener() != null) {
+                    if (numRawMessageListeners.get() > 0) {
                         rawMessageBuilder = RawMessageData.builder();
                     }
 
@@ -343,28 +654,18 @@ public class HdlcDispatcher {
                             settings.messageFragmentTimeout());
 
                     for (HdlcFrame hdlcFrame : frames) {
-                        HdlcAddressPair switchedPair = hdlcFrame.getAddressPair().switchedPair();
-                        if (connectionKey != null && connectionKey.equals(switchedPair)) {
-                            try {
-                                incommingQueue.put(hdlcFrame);
-                            } catch (InterruptedException e) {
-                                // ignore this
-                            }
-                        }
-                        else {
-                            synchronized (listeners) {
-                                HdlcConnectionListener listener = listeners.get(switchedPair);
-
-                                if (listener != null) {
-                                    listener.dataReceived(rawMessageBuilder, hdlcFrame);
-                                }
-                                // else {
-                                // // ignore
-                                // }
-
-                            }
+                        HdlcAddressPair addressPair = hdlcFrame.getAddressPair().switchedPair();
+
+                        PolledStation station = polledStation;
+                        if (station != null && hdlcFrame.isPollFinal()) {
+                            station.answerReceived(addressPair);
                         }
 
+                        AddressChannel channel = channels.get(addressPair);
+
+                        if (channel != null) {
+                            channel.frameReceived(rawMessageBuilder, hdlcFrame);
+                        }
                     }
                 }
             }
@@ -373,6 +674,47 @@ public class HdlcDispatcher {
 
     }
 
+    /**
+     * The station polled on a serial bus. The bus is free again, when the station has answered with the final bit set.
+     */
+    private static class PolledStation {
+        private final HdlcAddressPair addressPair;
+        private final CountDownLatch answered;
+
+        public PolledStation(HdlcAddressPair addressPair) {
+            this.addressPair = addressPair;
+            this.answered = new CountDownLatch(1);
+        }
+
+        private void answerReceived(HdlcAddressPair sender) {
+            if (this.addressPair.equals(sender)) {
+                this.answered.countDown();
+            }
+        }
+
+        private void awaitAnswer(long responseTimeout) throws InterruptedIOException {
+            try {
+                // the sender handles a missing answer, the turn is passed on in any case
+                this.answered.await(responseTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static class ReceivedFrame {
+        private final RawMessageDataBuilder rawMessageBuilder;
+        private final HdlcFrame frame;
+        private final IOException exception;
+
+        public ReceivedFrame(RawMessageDataBuilder rawMessageBuilder, HdlcFrame frame, IOException exception) {
+            this.rawMessageBuilder = rawMessageBuilder;
+            this.frame = frame;
+            this.exception = exception;
+        }
+    }
+
     public interface HdlcConnectionListener {
         void dataReceived(RawMessageDataBuilder rawMessageBuilder, HdlcFrame frame);
 
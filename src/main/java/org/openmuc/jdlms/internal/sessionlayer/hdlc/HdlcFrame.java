@@ -201,6 +201,18 @@ public class HdlcFrame {
 
     public static HdlcFrame newInformationFrame(HdlcAddressPair addressPair, int sendSequence, int receiveSequence,
             byte[] data, boolean segmented, boolean addLcc) {
+        return newInformationFrame(addressPair, sendSequence, receiveSequence, data, segmented, addLcc, !segmented);
+    }
+
+    /**
+     * Creates a new information frame.
+     * 
+     * @param poll
+     *            set the poll/final bit, to ask the remote station for an acknowledgement of the frames sent so far.
+     *            Is set on the last frame of a window and on the last segment of a message.
+     */
+    public static HdlcFrame newInformationFrame(HdlcAddressPair addressPair, int sendSequence, int receiveSequence,
+            byte[] data, boolean segmented, boolean addLcc, boolean poll) {
         byte[] informationField = data;
         if (addLcc) {
             informationField = ByteBuffer.allocate(LLC_REQUEST.length + data.length).put(LLC_REQUEST).put(data).array();
@@ -215,7 +227,7 @@ public class HdlcFrame {
         hdlcFrame.controlField = hdlcFrame.frameType.value();
         hdlcFrame.controlField |= ((sendSequence % 8) << 1);
         hdlcFrame.controlField |= ((receiveSequence % 8) << 5);
-        if (!segmented) {
+        if (poll) {
             hdlcFrame.controlField |= 0x10;
         }
 
@@ -381,6 +393,10 @@ public class HdlcFrame {
         return segmented;
     }
 
+    public boolean isPollFinal() {
+        return (controlField & 0x10) == 0x10;
+    }
+
     public byte[] encode() {
         byte[] data = encodeWithoutFlags();
         return ByteBuffer.allocate(data.length + 2).put(FLAG).put(data).put(FLAG).array();
@@ -54,6 +54,10 @@ public class HdlcMessageDecoder {
     private static byte[] readFrame(DataInputStream iStream, StreamAccessor streamAccessor, int timeout)
             throws IOException {
         short frameFormat = iStream.readShort();
+        while ((frameFormat >> 8 & 0xFF) == (HDLC_FLAG & 0xFF)) {
+            // opening flag of a frame, which does not share the flag with the preceding frame
+            frameFormat = (short) (frameFormat << 8 | iStream.readUnsignedByte());
+        }
         if (streamAccessor != null) {
             streamAccessor.setTimeout(timeout);
         }
@@ -20,100 +20,135 @@
  */
 package org.openmuc.jdlms.internal.sessionlayer.hdlc;
 
-import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
-
-public class HdlcMessageQueue implements Iterable<byte[]> {
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The information frames, which have been sent, but haven't been acknowledged by the remote station yet.
+ */
+public class HdlcMessageQueue {
 
-    private BlockingQueue<HdlcMessage> sendQueue;
-    private int capacity;
+    private final Deque<HdlcFrame> sendQueue;
+    private int acknowledgements;
+    private IOException failure;
 
-    public HdlcMessageQueue(int capacity) {
-        this.sendQueue = new ArrayBlockingQueue<>(capacity);
-        this.capacity = capacity;
+    public HdlcMessageQueue() {
+        this.sendQueue = new ArrayDeque<>();
+        this.acknowledgements = 0;
+        this.failure = null;
     }
 
-    public void reszize(int newSize) {
-        BlockingQueue<HdlcMessage> oldQueue = this.sendQueue;
-        this.sendQueue = new ArrayBlockingQueue<>(newSize);
-        this.sendQueue.addAll(oldQueue);
-
-        this.capacity = newSize;
+    public synchronized int size() {
+        return this.sendQueue.size();
     }
 
-    public int getCapacity() {
-        return this.capacity;
+    public synchronized boolean isEmpty() {
+        return this.sendQueue.isEmpty();
     }
 
-    public void clearTil(int sendSeq) {
-
-        while (!sendQueue.isEmpty() && sendQueue.poll().sequenceCounter < sendSeq) {
-            // do nothing, sendQueue.poll() already removed the frame
-        }
+    public synchronized void clear() {
+        this.sendQueue.clear();
+        notifyAll();
     }
 
-    public int size() {
-        return this.sendQueue.size();
+    public synchronized void offerMessage(HdlcFrame frame) {
+        this.sendQueue.add(frame);
     }
 
-    public void clear() {
-        sendQueue.clear();
+    /**
+     * Marks the queue as failed, because the frames can't be acknowledged anymore. A waiting sender wakes up and
+     * fails.
+     * 
+     * @param cause
+     *            the cause of the failure.
+     */
+    public synchronized void fail(IOException cause) {
+        this.failure = cause;
+        this.sendQueue.clear();
+        notifyAll();
     }
 
-    public void offerMessage(byte[] dataToSend, int sendSequence) {
-        HdlcMessage newHdlcMessage = new HdlcMessage(dataToSend, sendSequence);
-        try {
-            if (!this.sendQueue.offer(newHdlcMessage, 10, TimeUnit.SECONDS)) {
-                // TODO fatal..
-            }
-        } catch (InterruptedException e) {
+    /**
+     * Removes the frames, which have been acknowledged by the remote station.
+     * 
+     * @param receiveSequence
+     *            the receive sequence N(R) of a frame received from the remote station, which is the send sequence of
+     *            the next frame it expects.
+     */
+    public synchronized void acknowledge(int receiveSequence) {
+        if (this.sendQueue.isEmpty()) {
+            return;
         }
-    }
-
-    @Override
-    public Iterator<byte[]> iterator() {
-        return new ByteArrayIter();
-    }
-
-    private class HdlcMessage {
-        private final byte[] data;
-        private final int sequenceCounter;
 
-        public HdlcMessage(byte[] data, int sequenceCounter) {
-            this.data = data;
-            this.sequenceCounter = sequenceCounter;
+        if ((this.sendQueue.getLast().getSendSequence() + 1) % 8 == receiveSequence) {
+            this.sendQueue.clear();
         }
-
-        public byte[] data() {
-            return data;
+        else if (contains(receiveSequence)) {
+            while (this.sendQueue.getFirst().getSendSequence() != receiveSequence) {
+                this.sendQueue.removeFirst();
+            }
+        }
+        else {
+            // outdated acknowledgement
+            return;
         }
-    }
-
-    private class ByteArrayIter implements Iterator<byte[]> {
 
-        private final Iterator<HdlcMessage> iterator;
+        this.acknowledgements++;
+        notifyAll();
+    }
 
-        public ByteArrayIter() {
-            this.iterator = sendQueue.iterator();
+    private boolean contains(int sendSequence) {
+        for (HdlcFrame frame : this.sendQueue) {
+            if (frame.getSendSequence() == sendSequence) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        @Override
-        public boolean hasNext() {
-            return this.iterator.hasNext();
-        }
+    /**
+     * Waits until the remote station acknowledges frames of the queue.
+     * 
+     * @param timeout
+     *            the maximum time to wait in ms.
+     * @return <code>true</code> if all frames have been acknowledged, <code>false</code> if the frames need to be
+     *         retransmitted.
+     * @throws InterruptedIOException
+     *             if the thread has been interrupted while waiting.
+     * @throws IOException
+     *             if the queue has failed.
+     */
+    public synchronized boolean awaitAcknowledgement(long timeout) throws IOException {
+        int acknowledgementsBefore = this.acknowledgements;
+        long deadline = System.currentTimeMillis() + timeout;
 
-        @Override
-        public byte[] next() {
-            return this.iterator.next().data();
+        try {
+            while (this.failure == null && !this.sendQueue.isEmpty()
+                    && this.acknowledgements == acknowledgementsBefore) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an acknowledgement.");
         }
 
-        @Override
-        public void remove() {
-            this.iterator.remove();
+        if (this.failure != null) {
+            throw new IOException("The connection has been interrupted while waiting for an acknowledgement.",
+                    this.failure);
         }
+        return this.sendQueue.isEmpty();
+    }
 
+    public synchronized List<HdlcFrame> unacknowledgedFrames() {
+        return new ArrayList<>(this.sendQueue);
     }
 
 }
@@ -21,13 +21,17 @@
 package org.openmuc.jdlms.sessionlayer;
 
 import static org.openmuc.jdlms.JDlmsException.ExceptionId.CONNECTION_ALREADY_CLOSED;
+import static org.openmuc.jdlms.JDlmsException.ExceptionId.RESPONSE_TIMEOUT;
 import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame.newInformationFrame;
 import static org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame.newReceiveReadyFrame;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.openmuc.jdlms.FatalJDlmsException;
 import org.openmuc.jdlms.JDlmsException.Fault;
@@ -52,6 +56,8 @@ import org.openmuc.jdlms.settings.client.HdlcSettings;
  */
 public class HdlcLayer implements SessionLayer {
 
+    private static final int MAX_RETRANSMISSIONS = 3;
+
     private SessionLayerListener connectionListener;
 
     private final HdlcSettings settings;
@@ -68,13 +74,13 @@ public class HdlcLayer implements SessionLayer {
 
     private final HdlcConnection hdlcConnection;
 
-    public HdlcLayer(HdlcSettings settings) {
+    public HdlcLayer(HdlcSettings settings) throws IOException {
         this.settings = settings;
 
         this.sendSeqNum = new HdlcSequenceNumber();
         this.recSeqNum = new HdlcSequenceNumber();
 
-        this.sendQueue = new HdlcMessageQueue(1);
+        this.sendQueue = new HdlcMessageQueue();
 
         this.closed = true;
 
@@ -90,10 +96,6 @@ public class HdlcLayer implements SessionLayer {
         this.sendInformationLength = parameterNegotiation.getReceiveInformationLength();
         this.sendWindowSize = parameterNegotiation.getReceiveWindowSize();
 
-        if (this.sendQueue.getCapacity() < sendWindowSize) {
-            this.sendQueue.reszize(sendWindowSize);
-        }
-
         this.closed = false;
     }
 
@@ -103,49 +105,96 @@ public class HdlcLayer implements SessionLayer {
         int toIndex = off + len;
         final byte[] data = Arrays.copyOfRange(tSdu, off, toIndex);
 
-        if (len > maxMessageLength()) {
+        if (len > maxSegmentLength()) {
             sendAsSegments(rawMessageDataBuilder, data);
         }
         else {
             boolean segmented = false;
             boolean addLlc = true;
-            sendInfoFrame(rawMessageDataBuilder, data, segmented, addLlc);
+            HdlcFrame frame = newInformationFrame(this.settings.addressPair(), this.sendSeqNum.increment(),
+                    this.recSeqNum.getValue(), data, segmented, addLlc);
+            sendFrames(rawMessageDataBuilder, Collections.singletonList(frame));
         }
     }
 
+    /**
+     * Sends the segments in windows of the size negotiated with the remote station. The frames of a window are
+     * written at once, only the last frame polls for an acknowledgement. The next window is sent, when the remote
+     * station has acknowledged the previous one. The last window is acknowledged by the response.
+     */
     private void sendAsSegments(RawMessageDataBuilder rawMessageDataBuilder, byte[] data) throws IOException {
-        ByteBuffer segmentBufferBuffer = ByteBuffer.wrap(data);
-        byte[] segment = new byte[this.sendInformationLength - 12];
-
+        ByteBuffer segmentBuffer = ByteBuffer.wrap(data);
         boolean addLlc = true;
-        sendSegment(rawMessageDataBuilder, segmentBufferBuffer, segment, addLlc);
 
-        addLlc = false;
+        this.sendQueue.clear();
+
         while (true) {
-            sendSegment(rawMessageDataBuilder, segmentBufferBuffer, segment, addLlc);
+            List<HdlcFrame> window = new ArrayList<>(this.sendWindowSize);
 
-            if (segmentBufferBuffer.remaining() < segment.length) {
-                if (!segmentBufferBuffer.hasRemaining()) {
-                    return;
-                }
+            while (window.size() < this.sendWindowSize && segmentBuffer.hasRemaining()) {
+                byte[] segment = new byte[Math.min(maxSegmentLength(), segmentBuffer.remaining())];
+                segmentBuffer.get(segment);
+
+                boolean segmented = segmentBuffer.hasRemaining();
+                boolean poll = !segmented || window.size() == this.sendWindowSize - 1;
+                window.add(newInformationFrame(this.settings.addressPair(), this.sendSeqNum.increment(),
+                        this.recSeqNum.getValue(), segment, segmented, addLlc, poll));
+                addLlc = false;
+            }
 
-                segment = new byte[segmentBufferBuffer.remaining()];
+            for (HdlcFrame frame : window) {
+                this.sendQueue.offerMessage(frame);
             }
+            sendFrames(rawMessageDataBuilder, window);
+
+            awaitAcknowledgement(rawMessageDataBuilder);
 
+            if (!segmentBuffer.hasRemaining()) {
+                return;
+            }
         }
+    }
 
+    /**
+     * Waits for the acknowledgement of the sent window. The monitors of the connection are held while waiting, so the
+     * total wait including the retransmissions is bounded by the response timeout.
+     */
+    private void awaitAcknowledgement(RawMessageDataBuilder rawMessageDataBuilder) throws IOException {
+        int retransmissions = 0;
+        long timeout = Math.max(1, this.settings.responseTimeout() / (MAX_RETRANSMISSIONS + 1));
+
+        while (!this.sendQueue.awaitAcknowledgement(timeout)) {
+            if (retransmissions++ == MAX_RETRANSMISSIONS) {
+                throw new FatalJDlmsException(RESPONSE_TIMEOUT, Fault.SYSTEM,
+                        "Remote station didn't acknowledge the sent segments.");
+            }
+
+            retransmit(rawMessageDataBuilder);
+        }
     }
 
-    private void sendSegment(RawMessageDataBuilder rawMessageDataBuilder, ByteBuffer segmentBufferBuffer,
-            byte[] segment, boolean addLlc) throws IOException {
-        segmentBufferBuffer.get(segment);
-        boolean segmented = segmentBufferBuffer.hasRemaining();
+    /**
+     * Resends the frames, which haven't been acknowledged on a timeout or if the remote station has acknowledged only
+     * a part of the window.
+     */
+    private void retransmit(RawMessageDataBuilder rawMessageDataBuilder) throws IOException {
+        List<HdlcFrame> unacknowledgedFrames = this.sendQueue.unacknowledgedFrames();
+        List<HdlcFrame> frames = new ArrayList<>(unacknowledgedFrames.size());
+
+        for (int i = 0; i < unacknowledgedFrames.size(); i++) {
+            HdlcFrame frame = unacknowledgedFrames.get(i);
+
+            boolean addLlc = false;
+            boolean poll = i == unacknowledgedFrames.size() - 1;
+            frames.add(newInformationFrame(this.settings.addressPair(), frame.getSendSequence(),
+                    this.recSeqNum.getValue(), frame.getInformationField(), frame.isSegmented(), addLlc, poll));
+        }
 
-        sendInfoFrame(rawMessageDataBuilder, segment, segmented, addLlc);
+        sendFrames(rawMessageDataBuilder, frames);
     }
 
-    private int maxMessageLength() {
-        return this.sendInformationLength * this.sendWindowSize;
+    private int maxSegmentLength() {
+        return this.sendInformationLength - 12;
     }
 
     @Override
@@ -171,31 +220,36 @@ public class HdlcLayer implements SessionLayer {
         }
     }
 
-    private void sendInfoFrame(RawMessageDataBuilder rawMessageDataBuilder, byte[] data, boolean segmented,
-            boolean addLlc) throws IOException {
-        HdlcAddressPair addressPair = settings.addressPair();
-        HdlcFrame frame = newInformationFrame(addressPair, this.sendSeqNum.increment(), this.recSeqNum.getValue(), data,
-                segmented, addLlc);
-
-        sendAndBufferFrame(rawMessageDataBuilder, frame);
-    }
-
-    private void sendAndBufferFrame(RawMessageDataBuilder rawMessageDataBuilder, HdlcFrame infoFrame)
-            throws IOException {
-        byte[] dataToSend = infoFrame.encode();
-
-        sendQueue.offerMessage(dataToSend, infoFrame.getSendSequence());
-
+    /**
+     * Writes the frames to the physical link at once.
+     */
+    private void sendFrames(RawMessageDataBuilder rawMessageDataBuilder, List<HdlcFrame> frames) throws IOException {
         RawMessageListener rawMessageListener = this.settings.rawMessageListener();
 
-        if (rawMessageListener != null) {
-            RawMessageData rawMessageData = rawMessageDataBuilder.setMessageSource(MessageSource.CLIENT)
-                    .setMessage(dataToSend)
-                    .build();
-            rawMessageListener.messageCaptured(rawMessageData);
+        List<byte[]> encodedFrames = new ArrayList<>(frames.size());
+        int length = 0;
+        for (HdlcFrame frame : frames) {
+            byte[] dataToSend = frame.encode();
+            encodedFrames.add(dataToSend);
+            length += dataToSend.length;
+
+            if (rawMessageListener != null) {
+                RawMessageData rawMessageData = rawMessageDataBuilder.setMessageSource(MessageSource.CLIENT)
+                        .setMessage(dataToSend)
+                        .build();
+                rawMessageListener.messageCaptured(rawMessageData);
+            }
+        }
+
+        ByteBuffer burst = ByteBuffer.allocate(length);
+        for (byte[] dataToSend : encodedFrames) {
+            burst.put(dataToSend);
         }
 
-        this.hdlcConnection.send(dataToSend);
+        // on a serial bus, no other meter is polled until this one has answered
+        HdlcFrame lastFrame = frames.get(frames.size() - 1);
+        HdlcAddressPair polledAddressPair = lastFrame.isPollFinal() ? this.settings.addressPair() : null;
+        this.hdlcConnection.send(burst.array(), polledAddressPair);
     }
 
     private class HdlcConnectionListenerImpl implements HdlcConnectionListener {
@@ -214,7 +268,7 @@ public class HdlcLayer implements SessionLayer {
             notifyRawMessageListener(ackFrame, messageSource);
 
             try {
-                hdlcConnection.send(ackFrame);
+                hdlcConnection.send(ackFrame, settings.addressPair());
             } catch (InterruptedIOException e) {
                 // ignore this
             }
@@ -222,46 +276,65 @@ public class HdlcLayer implements SessionLayer {
 
         @Override
         public void dataReceived(RawMessageDataBuilder rawMessageDataBuilder, HdlcFrame frame) {
+            if (frame.getFrameType() == FrameType.RECEIVE_READY) {
+                sendQueue.acknowledge(frame.getReceiveSequence());
+                return;
+            }
+            else if (frame.getFrameType() != FrameType.INFORMATION) {
+                return;
+            }
+
+            sendQueue.acknowledge(frame.getReceiveSequence());
+
+            if (frame.getSendSequence() != recSeqNum.getValue()) {
+                // a frame of the window has been lost or is repeated, the acknowledgement requests the missing one
+                acknowledgeWindow(frame);
+                return;
+            }
             recSeqNum.increment();
 
             if (frame.isSegmented()) {
-
                 segmentBuffer.buffer(frame);
 
                 notifyListener(rawMessageDataBuilder);
 
-                try {
-                    sendAcknowledge();
-                } catch (IOException e) {
-                    closeUnsafe();
-                    connectionInterrupted(e);
-                    return;
-                }
+                acknowledgeWindow(frame);
+                return;
             }
-            else if (frame.getFrameType() == FrameType.INFORMATION) {
-                acknowledgeSendFramesTil(frame.getReceiveSequence());
-                byte[] cosemFrame;
-                if (!segmentBuffer.isEmpty()) {
 
-                    segmentBuffer.buffer(frame);
-                    notifyListener(rawMessageDataBuilder);
+            byte[] cosemFrame;
+            if (!segmentBuffer.isEmpty()) {
 
-                    if (settings.rawMessageListener() != null) {
-                        rawMessageDataBuilder.setMessage(this.segmentBuffer.concatFramesBytes());
-                    }
+                segmentBuffer.buffer(frame);
+                notifyListener(rawMessageDataBuilder);
 
-                    cosemFrame = segmentBuffer.toByteArray();
-                    segmentBuffer.clear();
-                }
-                else {
-                    cosemFrame = frame.getInformationFieldWithoutLlc();
+                if (settings.rawMessageListener() != null) {
+                    rawMessageDataBuilder.setMessage(this.segmentBuffer.concatFramesBytes());
                 }
 
-                connectionListener.dataReceived(cosemFrame, rawMessageDataBuilder);
+                cosemFrame = segmentBuffer.toByteArray();
+                segmentBuffer.clear();
             }
-            else if (frame.getFrameType() == FrameType.RECEIVE_READY) {
-                acknowledgeSendFramesTil(frame.getReceiveSequence());
-                sendQueuedFrames();
+            else {
+                cosemFrame = frame.getInformationFieldWithoutLlc();
+            }
+
+            connectionListener.dataReceived(cosemFrame, rawMessageDataBuilder);
+        }
+
+        /**
+         * Acknowledges the received frames, if the frame is the last one of the window sent by the remote station.
+         */
+        private void acknowledgeWindow(HdlcFrame frame) {
+            if (!frame.isPollFinal()) {
+                return;
+            }
+
+            try {
+                sendAcknowledge();
+            } catch (IOException e) {
+                closeUnsafe();
+                connectionInterrupted(e);
             }
         }
 
@@ -272,31 +345,13 @@ public class HdlcLayer implements SessionLayer {
             }
         }
 
-        private void acknowledgeSendFramesTil(int sendSeq) {
-            if (sendSeq == 0) {
-                sendSeq = 8;
-            }
-
-            sendQueue.clearTil(sendSeq);
-        }
-
         @Override
         public void connectionInterrupted(IOException e) {
+            // wakes up a waiting sender
+            sendQueue.fail(e);
             connectionListener.connectionInterrupted(e);
         }
 
-        private void sendQueuedFrames() {
-            try {
-                for (byte[] message : sendQueue) {
-                    hdlcConnection.send(message);
-                }
-            } catch (IOException e) {
-                closeUnsafe();
-                connectionListener.connectionInterrupted(e);
-            }
-
-        }
-
     }
 
     private void notifyRawMessageListener(byte[] data, MessageSource messageSource) {
@@ -7,6 +7,7 @@ import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
 
 import org.openmuc.jdlms.FatalJDlmsException;
 import org.openmuc.jdlms.JDlmsException.ExceptionId;
@@ -46,7 +47,14 @@ public class WrapperLayer implements SessionLayer {
         transportLayer.open();
         this.closed = false;
 
-        Thread readerThread = new Thread(new ConnectionReader());
+        ThreadFactory threadFactory = this.settings.threadFactory();
+        Thread readerThread;
+        if (threadFactory == null) {
+            readerThread = new Thread(new ConnectionReader());
+        }
+        else {
+            readerThread = threadFactory.newThread(new ConnectionReader());
+        }
         readerThread.setName("jDLMS - WRAPPER/TCP-CONNECTION_READER");
         readerThread.start();
     }
@@ -20,6 +20,9 @@
  */
 package org.openmuc.jdlms.settings.client;
 
+import java.util.concurrent.ThreadFactory;
+
+import org.openmuc.jdlms.FrameCounterTracker;
 import org.openmuc.jdlms.RawMessageListener;
 import org.openmuc.jdlms.SecuritySuite;
 
@@ -54,4 +57,16 @@ public interface Settings {
     ReferencingMethod referencingMethod();
 
     RawMessageListener rawMessageListener();
+
+    int maxInFlightRequests();
+
+    /**
+     * @return the factory for the threads of the connection, or <code>null</code> for the default platform threads.
+     */
+    ThreadFactory threadFactory();
+
+    /**
+     * @return the tracker of the invocation counters, or <code>null</code> to track them per connection.
+     */
+    FrameCounterTracker frameCounterTracker();
 }
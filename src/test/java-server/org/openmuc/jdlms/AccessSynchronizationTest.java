@@ -0,0 +1,143 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataObject.Type;
+
+public class AccessSynchronizationTest {
+
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void testConcurrentGetsAreNotSerialized() throws Exception {
+        assertEquals(2, maxConcurrentGets(AccessSynchronization.NONE));
+    }
+
+    @Test
+    public void testObjectsAreSynchronizedByDefault() throws Exception {
+        assertEquals(AccessSynchronization.PER_OBJECT, new CosemInterfaceObject("0.0.0.2.1.255") {
+        }.getAccessSynchronization());
+    }
+
+    @Test
+    public void testPerObjectSynchronization() throws Exception {
+        assertEquals(1, maxConcurrentGets(AccessSynchronization.PER_OBJECT));
+    }
+
+    @Test
+    public void testPerMemberSynchronization() throws Exception {
+        assertEquals(1, maxConcurrentGets(AccessSynchronization.PER_MEMBER));
+    }
+
+    private int maxConcurrentGets(AccessSynchronization synchronization) throws Exception {
+        ConcurrencyRecordingClass cosemObject = new ConcurrencyRecordingClass(synchronization);
+
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(cosemObject);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DlmsServer server = DlmsServer.tcpServerBuilder(this.port).registerLogicalDevice(logicalDevice).build();
+        try (DlmsConnection client1 = newClient(); DlmsConnection client2 = newClient()) {
+            Future<GetResult> result1 = executor.submit(getTask(client1));
+            Future<GetResult> result2 = executor.submit(getTask(client2));
+
+            assertEquals(AccessResultCode.SUCCESS, result1.get().getResultCode());
+            assertEquals(AccessResultCode.SUCCESS, result2.get().getResultCode());
+        } finally {
+            executor.shutdown();
+            server.close();
+        }
+
+        return cosemObject.maxConcurrentAccesses.get();
+    }
+
+    private DlmsConnection newClient() throws IOException {
+        return new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(this.port)
+                .setLogicalDeviceId(1)
+                .setResponseTimeout(5000)
+                .build();
+    }
+
+    private static Callable<GetResult> getTask(final DlmsConnection client) {
+        return new Callable<GetResult>() {
+
+            @Override
+            public GetResult call() throws Exception {
+                return client.get(ADDRESS);
+            }
+        };
+    }
+
+    @CosemClass(id = 99)
+    public static class ConcurrencyRecordingClass extends CosemInterfaceObject {
+
+        @CosemAttribute(id = 2, type = Type.OCTET_STRING, accessMode = AttributeAccessMode.READ_ONLY)
+        private DataObject d1;
+
+        private final AccessSynchronization synchronization;
+        private final CountDownLatch arrivals = new CountDownLatch(2);
+        private final AtomicInteger concurrentAccesses = new AtomicInteger();
+        private final AtomicInteger maxConcurrentAccesses = new AtomicInteger();
+
+        public ConcurrencyRecordingClass(AccessSynchronization synchronization) {
+            super("0.0.0.2.1.255");
+            this.synchronization = synchronization;
+        }
+
+        @Override
+        public AccessSynchronization getAccessSynchronization() {
+            return this.synchronization;
+        }
+
+        public DataObject getD1() {
+            int accesses = this.concurrentAccesses.incrementAndGet();
+            this.arrivals.countDown();
+            try {
+                // gives the other association the chance to enter
+                awaitArrivals();
+                accesses = Math.max(accesses, this.concurrentAccesses.get());
+
+                int max;
+                do {
+                    max = this.maxConcurrentAccesses.get();
+                } while (accesses > max && !this.maxConcurrentAccesses.compareAndSet(max, accesses));
+
+                return DataObject.newOctetStringData(new byte[0]);
+            } finally {
+                this.concurrentAccesses.decrementAndGet();
+            }
+        }
+
+        private void awaitArrivals() {
+            try {
+                this.arrivals.await(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
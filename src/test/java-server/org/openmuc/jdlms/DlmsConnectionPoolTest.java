@@ -0,0 +1,123 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.JDlmsException.ExceptionId;
+import org.openmuc.jdlms.NonBlockingServerTest.HelloClass;
+
+public class DlmsConnectionPoolTest {
+
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private DlmsServer server;
+    private TcpConnectionBuilder connectionBuilder;
+
+    @Before
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(new HelloClass());
+        this.server = DlmsServer.tcpServerBuilder(port).registerLogicalDevice(logicalDevice).build();
+
+        this.connectionBuilder = new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(port)
+                .setLogicalDeviceId(1)
+                .setResponseTimeout(2000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.close();
+    }
+
+    @Test
+    public void testReleasedConnectionIsReused() throws Exception {
+        try (DlmsConnectionPool pool = DlmsConnectionPool.builder().build()) {
+            DlmsConnection connection = pool.borrow(this.connectionBuilder);
+            assertEquals(AccessResultCode.SUCCESS, connection.get(ADDRESS).getResultCode());
+            pool.release(connection);
+            assertEquals(1, pool.getNumIdle());
+
+            DlmsConnection reused = pool.borrow(this.connectionBuilder);
+            assertSame(connection, reused);
+            assertEquals(AccessResultCode.SUCCESS, reused.get(ADDRESS).getResultCode());
+            assertEquals(1, pool.getNumBorrowed());
+            pool.release(reused);
+        }
+    }
+
+    @Test
+    public void testEndpointLimit() throws Exception {
+        try (DlmsConnectionPool pool = DlmsConnectionPool.builder().setBorrowTimeout(100).build()) {
+            DlmsConnection connection = pool.borrow(this.connectionBuilder);
+            try {
+                pool.borrow(this.connectionBuilder);
+                fail("Borrowed more connections than allowed.");
+            } catch (NonFatalJDlmsException e) {
+                assertEquals(ExceptionId.CONNECTION_POOL_EXHAUSTED, e.getExceptionId());
+            }
+
+            DlmsConnection otherClient = pool.borrow(this.connectionBuilder.setClientId(17));
+            assertNotSame(connection, otherClient);
+            assertEquals(2, pool.getNumBorrowed());
+
+            pool.release(connection);
+            pool.release(otherClient);
+        }
+    }
+
+    @Test
+    public void testBrokenConnectionsAreDiscarded() throws Exception {
+        try (DlmsConnectionPool pool = DlmsConnectionPool.builder().build()) {
+            DlmsConnection connection = pool.borrow(this.connectionBuilder);
+            pool.invalidate(connection);
+            assertEquals(0, pool.getNumIdle());
+
+            connection = pool.borrow(this.connectionBuilder);
+            connection.close();
+            pool.release(connection);
+            assertEquals(0, pool.getNumIdle());
+
+            DlmsConnection newConnection = pool.borrow(this.connectionBuilder);
+            assertNotSame(connection, newConnection);
+            assertEquals(AccessResultCode.SUCCESS, newConnection.get(ADDRESS).getResultCode());
+            pool.release(newConnection);
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsAreEvicted() throws Exception {
+        try (DlmsConnectionPool pool = DlmsConnectionPool.builder()
+                .setMaxIdleTime(50)
+                .setValidationInterval(0)
+                .setValidationAddress(ADDRESS)
+                .build()) {
+            DlmsConnection connection = pool.borrow(this.connectionBuilder);
+            pool.release(connection);
+            assertSame(connection, pool.borrow(this.connectionBuilder));
+            pool.release(connection);
+
+            Thread.sleep(100);
+            pool.evictIdleConnections();
+            assertEquals(0, pool.getNumIdle());
+
+            DlmsConnection newConnection = pool.borrow(this.connectionBuilder);
+            assertNotSame(connection, newConnection);
+            pool.release(newConnection);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataObject.Type;
+import org.openmuc.jdlms.internal.sessionlayer.ServerSessionLayerFactories;
+
+public class NonBlockingServerTest {
+
+    private static final byte[] VALUE = "HELLO WORLD".getBytes(StandardCharsets.US_ASCII);
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private int port;
+    private DlmsServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testIdleClientsDontOccupyWorkers() throws Exception {
+        this.server = newServerBuilder().setWorkerThreads(1).build();
+
+        try (DlmsConnection client1 = newClientBuilder().build();
+                DlmsConnection client2 = newClientBuilder().build()) {
+            for (int i = 0; i < 3; i++) {
+                assertGet(client1);
+                assertGet(client2);
+            }
+        }
+    }
+
+    @Test
+    public void testHdlc() throws Exception {
+        this.server = newServerBuilder()
+                .setSessionLayerFactory(ServerSessionLayerFactories.newHdlcSessionLayerFactory())
+                .build();
+
+        try (DlmsConnection client = newClientBuilder().useHdlc().build()) {
+            assertGet(client);
+            assertGet(client);
+        }
+    }
+
+    @Test
+    public void testMaxClients() throws Exception {
+        this.server = newServerBuilder().setMaxClients(1).build();
+
+        try (DlmsConnection client = newClientBuilder().build()) {
+            try {
+                newClientBuilder().build().close();
+                fail("Second client has been accepted.");
+            } catch (IOException e) {
+                // expected
+            }
+
+            assertGet(client);
+        }
+
+        // the released connection is available again
+        Thread.sleep(100);
+        try (DlmsConnection client = newClientBuilder().build()) {
+            assertGet(client);
+        }
+    }
+
+    private DlmsServer.TcpServerBuilder newServerBuilder() {
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(new HelloClass());
+
+        return DlmsServer.tcpServerBuilder(this.port)
+                .setNonBlocking(true)
+                .setEventLoops(1)
+                .registerLogicalDevice(logicalDevice);
+    }
+
+    private TcpConnectionBuilder newClientBuilder() throws IOException {
+        return new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(this.port)
+                .setLogicalDeviceId(1)
+                .setResponseTimeout(2000);
+    }
+
+    private static void assertGet(DlmsConnection client) throws IOException {
+        GetResult result = client.get(ADDRESS);
+
+        assertEquals(AccessResultCode.SUCCESS, result.getResultCode());
+        assertArrayEquals(VALUE, (byte[]) result.getResultData().getValue());
+    }
+
+    @CosemClass(id = 99)
+    public static class HelloClass extends CosemInterfaceObject {
+
+        @CosemAttribute(id = 2, type = Type.OCTET_STRING, accessMode = AttributeAccessMode.READ_ONLY)
+        private DataObject d1;
+
+        public HelloClass() {
+            super("0.0.0.2.1.255");
+        }
+
+        public DataObject getD1() {
+            return DataObject.newOctetStringData(VALUE);
+        }
+    }
+
+}
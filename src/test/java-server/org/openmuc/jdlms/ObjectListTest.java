@@ -0,0 +1,114 @@
+package org.openmuc.jdlms;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.NonBlockingServerTest.HelloClass;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.interfaceclass.attribute.AssociationLnAttribute;
+
+public class ObjectListTest {
+
+    private static final String CURRENT_ASSOCIATION = "0.0.40.0.0.255";
+    private static final ObisCode HELLO_ID = new ObisCode("0.0.0.2.1.255");
+
+    private DlmsServer server;
+    private DlmsConnection client;
+
+    @Before
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(new HelloClass());
+
+        this.server = DlmsServer.tcpServerBuilder(port).registerLogicalDevice(logicalDevice).build();
+        this.client = new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(port)
+                .setLogicalDeviceId(1)
+                .setResponseTimeout(2000)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.client.close();
+        this.server.close();
+    }
+
+    @Test
+    public void testFullObjectList() throws IOException {
+        List<DataObject> objectList = getObjectList(null);
+
+        assertTrue(objectList.size() > 1);
+
+        List<DataObject> helloElement = findElement(objectList, HELLO_ID);
+        assertEquals(4, helloElement.size());
+        assertEquals(99, ((Number) helloElement.get(0).getValue()).intValue());
+
+        // the cached list is sent again
+        assertEquals(objectList.size(), getObjectList(null).size());
+    }
+
+    @Test
+    public void testFilterAccessRights() throws IOException {
+        List<DataObject> objectList = getObjectList(new SelectiveAccessDescription(1, DataObject.newNullData()));
+
+        assertEquals(getObjectList(null).size(), objectList.size());
+        assertEquals(3, findElement(objectList, HELLO_ID).size());
+    }
+
+    @Test
+    public void testFilterClassList() throws IOException {
+        DataObject classList = DataObject.newArrayData(asList(DataObject.newUInteger16Data(99)));
+        List<DataObject> objectList = getObjectList(new SelectiveAccessDescription(2, classList));
+
+        assertEquals(1, objectList.size());
+        List<DataObject> element = objectList.get(0).getValue();
+        assertArrayEquals(HELLO_ID.bytes(), (byte[]) element.get(2).getValue());
+    }
+
+    @Test
+    public void testFilterObjectId() throws IOException {
+        DataObject objectId = DataObject.newStructureData(DataObject.newUInteger16Data(99),
+                DataObject.newOctetStringData(HELLO_ID.bytes()));
+        GetResult result = this.client.get(new AttributeAddress(AssociationLnAttribute.OBJECT_LIST,
+                CURRENT_ASSOCIATION, new SelectiveAccessDescription(4, objectId)));
+
+        assertEquals(AccessResultCode.SUCCESS, result.getResultCode());
+        List<DataObject> element = result.getResultData().getValue();
+        assertArrayEquals(HELLO_ID.bytes(), (byte[]) element.get(2).getValue());
+    }
+
+    private List<DataObject> getObjectList(SelectiveAccessDescription access) throws IOException {
+        GetResult result = this.client
+                .get(new AttributeAddress(AssociationLnAttribute.OBJECT_LIST, CURRENT_ASSOCIATION, access));
+
+        assertEquals(AccessResultCode.SUCCESS, result.getResultCode());
+        return result.getResultData().getValue();
+    }
+
+    private static List<DataObject> findElement(List<DataObject> objectList, ObisCode instanceId) {
+        for (DataObject elementDo : objectList) {
+            List<DataObject> element = elementDo.getValue();
+            if (Arrays.equals(instanceId.bytes(), (byte[]) element.get(2).getValue())) {
+                return element;
+            }
+        }
+        throw new AssertionError("Instance " + instanceId + " is not in the object list.");
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.NonBlockingServerTest.HelloClass;
+
+public class PollingSchedulerTest {
+
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private int port;
+    private DlmsServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(new HelloClass());
+        this.server = DlmsServer.tcpServerBuilder(this.port).registerLogicalDevice(logicalDevice).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.close();
+    }
+
+    @Test
+    public void testMetersArePolledPeriodically() throws Exception {
+        ConcurrencyRecorder recorder = new ConcurrencyRecorder(6);
+        ReadPlan plan = ReadPlan.builder("hello")
+                .addMeter(newMeter(16))
+                .addMeter(newMeter(17))
+                .addAttributes(ADDRESS)
+                .setCycleTime(100)
+                .setListener(recorder)
+                .build();
+
+        try (PollingScheduler scheduler = PollingScheduler.builder().setMaxJitter(10).build()) {
+            ReadPlanMetrics metrics = scheduler.addPlan(plan);
+
+            assertTrue(recorder.polls.await(5, TimeUnit.SECONDS));
+            scheduler.removePlan(plan);
+
+            assertEquals(0, metrics.getFailedPolls());
+            assertTrue(metrics.getCompletedPolls() >= 6);
+            assertTrue(metrics.getReadAttributes() >= 6);
+            assertTrue(metrics.getPollLatencies().getCount() >= 6);
+            assertTrue(metrics.getPollLatencies().getPercentileMillis(99) <= 2000);
+        }
+
+        // both meters are connected through the same gateway
+        assertEquals(1, recorder.maxActivePolls.get());
+        assertEquals(0, recorder.failures.get());
+    }
+
+    @Test
+    public void testHigherPriorityIsPolledFirst() throws Exception {
+        final CountDownLatch blockerStarted = new CountDownLatch(1);
+        final CountDownLatch releaseBlocker = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch polls = new CountDownLatch(2);
+
+        ReadPlanListener orderListener = new ReadPlanListener() {
+            @Override
+            public void pollCompleted(ReadPlan plan, ConnectionBuilder<?> meter, List<GetResult> results) {
+                order.add(plan.getName());
+                polls.countDown();
+            }
+
+            @Override
+            public void pollFailed(ReadPlan plan, ConnectionBuilder<?> meter, IOException e) {
+                polls.countDown();
+            }
+        };
+
+        ReadPlan blocker = ReadPlan.builder("blocker")
+                .addMeter(newMeter(16))
+                .addAttributes(ADDRESS)
+                .setCycleTime(60000)
+                .setListener(new ReadPlanListener() {
+                    @Override
+                    public void pollCompleted(ReadPlan plan, ConnectionBuilder<?> meter, List<GetResult> results) {
+                        blockerStarted.countDown();
+                        try {
+                            releaseBlocker.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    @Override
+                    public void pollFailed(ReadPlan plan, ConnectionBuilder<?> meter, IOException e) {
+                        blockerStarted.countDown();
+                    }
+                })
+                .build();
+        ReadPlan low = ReadPlan.builder("low")
+                .addMeter(newMeter(17))
+                .addAttributes(ADDRESS)
+                .setCycleTime(60000)
+                .setListener(orderListener)
+                .build();
+        ReadPlan high = ReadPlan.builder("high")
+                .addMeter(newMeter(18))
+                .addAttributes(ADDRESS)
+                .setCycleTime(60000)
+                .setPriority(1)
+                .setListener(orderListener)
+                .build();
+
+        try (PollingScheduler scheduler = PollingScheduler.builder().setMaxJitter(0).build()) {
+            scheduler.addPlan(blocker);
+            assertTrue(blockerStarted.await(5, TimeUnit.SECONDS));
+
+            scheduler.addPlan(low);
+            scheduler.addPlan(high);
+            Thread.sleep(100);
+            releaseBlocker.countDown();
+
+            assertTrue(polls.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(Arrays.asList("high", "low"), order);
+    }
+
+    @Test
+    public void testUnexpectedExceptionReleasesConnection() throws Exception {
+        final CountDownLatch polls = new CountDownLatch(3);
+        final List<IOException> failures = Collections.synchronizedList(new ArrayList<IOException>());
+
+        // the null attribute can't be encoded
+        ReadPlan plan = ReadPlan.builder("broken")
+                .addMeter(newMeter(16))
+                .addAttributes((AttributeAddress) null)
+                .setCycleTime(50)
+                .setListener(new ReadPlanListener() {
+                    @Override
+                    public void pollCompleted(ReadPlan plan, ConnectionBuilder<?> meter, List<GetResult> results) {
+                    }
+
+                    @Override
+                    public void pollFailed(ReadPlan plan, ConnectionBuilder<?> meter, IOException e) {
+                        failures.add(e);
+                        polls.countDown();
+                    }
+                })
+                .build();
+
+        DlmsConnectionPool connectionPool = DlmsConnectionPool.builder()
+                .setMaxConnectionsPerEndpoint(1)
+                .setBorrowTimeout(100)
+                .build();
+        try (PollingScheduler scheduler = PollingScheduler.builder()
+                .setConnectionPool(connectionPool)
+                .setMaxJitter(0)
+                .build()) {
+            ReadPlanMetrics metrics = scheduler.addPlan(plan);
+
+            assertTrue(polls.await(5, TimeUnit.SECONDS));
+            scheduler.removePlan(plan);
+
+            assertTrue(metrics.getFailedPolls() >= 3);
+        } finally {
+            connectionPool.close();
+        }
+
+        // a leaked connection would exhaust the pool for the following polls
+        for (IOException failure : failures.subList(0, 3)) {
+            assertTrue(failure.getCause() instanceof RuntimeException);
+        }
+    }
+
+    private TcpConnectionBuilder newMeter(int clientId) {
+        return new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(this.port)
+                .setLogicalDeviceId(1)
+                .setClientId(clientId)
+                .setResponseTimeout(2000);
+    }
+
+    private static class ConcurrencyRecorder implements ReadPlanListener {
+
+        private final CountDownLatch polls;
+        private final AtomicInteger activePolls = new AtomicInteger();
+        private final AtomicInteger maxActivePolls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        public ConcurrencyRecorder(int numPolls) {
+            this.polls = new CountDownLatch(numPolls);
+        }
+
+        @Override
+        public void pollCompleted(ReadPlan plan, ConnectionBuilder<?> meter, List<GetResult> results) {
+            int active = this.activePolls.incrementAndGet();
+            int max;
+            do {
+                max = this.maxActivePolls.get();
+            } while (active > max && !this.maxActivePolls.compareAndSet(max, active));
+
+            if (results.get(0).getResultCode() != AccessResultCode.SUCCESS) {
+                this.failures.incrementAndGet();
+            }
+
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.activePolls.decrementAndGet();
+            this.polls.countDown();
+        }
+
+        @Override
+        public void pollFailed(ReadPlan plan, ConnectionBuilder<?> meter, IOException e) {
+            this.failures.incrementAndGet();
+            this.polls.countDown();
+        }
+    }
+
+}
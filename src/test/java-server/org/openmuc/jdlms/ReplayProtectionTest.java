@@ -0,0 +1,113 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.NonBlockingServerTest.HelloClass;
+import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
+
+public class ReplayProtectionTest {
+
+    private static final byte[] AUTHENTICATION_KEY = HexConverter
+            .fromShortHexString("5468697349734150617373776f726431");
+    private static final byte[] GLOBAL_ENCRYPTION_KEY = HexConverter
+            .fromShortHexString("000102030405060708090a0b0c0d0e0f");
+    private static final byte[] MASTER_KEY = HexConverter.fromShortHexString("aa0102030405060738090a0b0c0d0eff");
+
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private int port;
+    private DlmsServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testSharedTrackersAcrossAssociations() throws Exception {
+        this.server = newServerBuilder().setFrameCounterTracker(new FrameCounterTracker()).build();
+
+        FrameCounterTracker clientTracker = new FrameCounterTracker();
+        for (int i = 0; i < 3; i++) {
+            try (DlmsConnection client = newClientBuilder().setFrameCounterTracker(clientTracker).build()) {
+                assertEquals(AccessResultCode.SUCCESS, client.get(ADDRESS).getResultCode());
+                assertEquals(AccessResultCode.SUCCESS, client.get(ADDRESS).getResultCode());
+            }
+        }
+    }
+
+    @Test
+    public void testRestartedClientIsAcceptedByDefault() throws Exception {
+        this.server = newServerBuilder().build();
+
+        // every association tracks the counters on its own, the counters of every new client start at 1 again
+        for (int i = 0; i < 3; i++) {
+            try (DlmsConnection client = newClientBuilder().build()) {
+                assertEquals(AccessResultCode.SUCCESS, client.get(ADDRESS).getResultCode());
+            }
+        }
+    }
+
+    @Test
+    public void testReusedCountersAreRejected() throws Exception {
+        this.server = newServerBuilder().setFrameCounterTracker(new FrameCounterTracker()).build();
+
+        try (DlmsConnection client = newClientBuilder().setFrameCounterTracker(new FrameCounterTracker()).build()) {
+            assertEquals(AccessResultCode.SUCCESS, client.get(ADDRESS).getResultCode());
+        }
+
+        // the counters of the new tracker start at 1 again
+        try {
+            newClientBuilder().setFrameCounterTracker(new FrameCounterTracker()).build().close();
+            fail("Association with reused invocation counters has been accepted.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private DlmsServer.TcpServerBuilder newServerBuilder() {
+        SecuritySuite securitySuite = newSecuritySuite();
+
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.setMasterKey(MASTER_KEY);
+        logicalDevice.addRestriction(16, securitySuite);
+        logicalDevice.registerCosemObject(new HelloClass());
+
+        return DlmsServer.tcpServerBuilder(this.port).registerLogicalDevice(logicalDevice);
+    }
+
+    private TcpConnectionBuilder newClientBuilder() {
+        return new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(this.port)
+                .setLogicalDeviceId(1)
+                .setSystemTitle("ISE", 1)
+                .setSecuritySuite(newSecuritySuite())
+                .setResponseTimeout(2000);
+    }
+
+    private static SecuritySuite newSecuritySuite() {
+        return SecuritySuite.builder()
+                .setAuthenticationKey(AUTHENTICATION_KEY)
+                .setGlobalUnicastEncryptionKey(GLOBAL_ENCRYPTION_KEY)
+                .setAuthenticationMechanism(AuthenticationMechanism.HLS5_GMAC)
+                .setEncryptionMechanism(EncryptionMechanism.AES_GMC_128)
+                .build();
+    }
+
+}
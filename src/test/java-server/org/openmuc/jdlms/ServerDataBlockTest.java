@@ -0,0 +1,143 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataObject.Type;
+
+public class ServerDataBlockTest {
+
+    private static final byte[] AUTHENTICATION_KEY = HexConverter.fromShortHexString("5468697349734150617373776f726431");
+    private static final byte[] GLOBAL_ENCRYPTION_KEY = HexConverter
+            .fromShortHexString("000102030405060708090a0b0c0d0e0f");
+
+    private static final byte[] MASTER_KEY = HexConverter.fromShortHexString("aa0102030405060738090a0b0c0d0eff");
+
+    // larger than the max PDU size of the client and the initial encoding buffer
+    private static final int VALUE_LENGTH = 150000;
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private int port;
+    private DlmsServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testLargeResponseIsSentInBlocks() throws Exception {
+        this.server = newServerBuilder(null).build();
+
+        try (DlmsConnection client = newClientBuilder().build()) {
+            assertLargeGet(client);
+            assertLargeGet(client);
+        }
+    }
+
+    @Test
+    public void testLargeCipheredResponseIsSentInBlocks() throws Exception {
+        SecuritySuite securitySuite = SecuritySuite.builder()
+                .setAuthenticationKey(AUTHENTICATION_KEY)
+                .setGlobalUnicastEncryptionKey(GLOBAL_ENCRYPTION_KEY)
+                .setAuthenticationMechanism(AuthenticationMechanism.HLS5_GMAC)
+                .setEncryptionMechanism(EncryptionMechanism.AES_GMC_128)
+                .build();
+        this.server = newServerBuilder(SecuritySuite.newSecuritySuiteFrom(securitySuite)).build();
+
+        // the counters of the server start at 1 in every test
+        RecordingTracker tracker = new RecordingTracker();
+        try (DlmsConnection client = newClientBuilder().setSecuritySuite(securitySuite)
+                .setFrameCounterTracker(tracker)
+                .build()) {
+            assertLargeGet(client);
+            assertLargeGet(client);
+        }
+
+        // the too large response is not ciphered before it is sent in blocks, so no counter is skipped after the
+        // association, the second counter is spent on the HLS pass of the server
+        for (int i = 2; i < tracker.receivedCounters.size(); i++) {
+            assertEquals(tracker.receivedCounters.get(i - 1) + 1, (int) tracker.receivedCounters.get(i));
+        }
+    }
+
+    private DlmsServer.TcpServerBuilder newServerBuilder(SecuritySuite securitySuite) {
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        if (securitySuite != null) {
+            logicalDevice.setMasterKey(MASTER_KEY);
+            logicalDevice.addRestriction(16, securitySuite);
+        }
+        logicalDevice.registerCosemObject(new LargeValueClass());
+
+        return DlmsServer.tcpServerBuilder(this.port).registerLogicalDevice(logicalDevice);
+    }
+
+    private TcpConnectionBuilder newClientBuilder() {
+        return new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(this.port)
+                .setLogicalDeviceId(1)
+                .setSystemTitle("ISE", 1)
+                .setResponseTimeout(2000);
+    }
+
+    private static void assertLargeGet(DlmsConnection client) throws IOException {
+        GetResult result = client.get(ADDRESS);
+
+        assertEquals(AccessResultCode.SUCCESS, result.getResultCode());
+        assertArrayEquals(LargeValueClass.value(), (byte[]) result.getResultData().getValue());
+    }
+
+    private static class RecordingTracker extends FrameCounterTracker {
+        private final List<Integer> receivedCounters = new ArrayList<>();
+
+        @Override
+        public synchronized boolean accept(byte[] systemTitle, SecuritySuite securitySuite, int frameCounter)
+                throws IOException {
+            this.receivedCounters.add(frameCounter);
+            return super.accept(systemTitle, securitySuite, frameCounter);
+        }
+    }
+
+    @CosemClass(id = 99)
+    public static class LargeValueClass extends CosemInterfaceObject {
+
+        @CosemAttribute(id = 2, type = Type.OCTET_STRING, accessMode = AttributeAccessMode.READ_ONLY)
+        private DataObject d1;
+
+        public LargeValueClass() {
+            super("0.0.0.2.1.255");
+        }
+
+        public DataObject getD1() {
+            return DataObject.newOctetStringData(value());
+        }
+
+        static byte[] value() {
+            byte[] value = new byte[VALUE_LENGTH];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = (byte) (i * 7);
+            }
+            return value;
+        }
+    }
+
+}
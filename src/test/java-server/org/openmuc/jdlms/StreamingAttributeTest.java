@@ -0,0 +1,168 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataObject.Type;
+
+public class StreamingAttributeTest {
+
+    private static final String INSTANCE_ID = "0.0.99.1.0.255";
+
+    private ProfileClass profile;
+    private DlmsServer server;
+    private DlmsConnection client;
+
+    @Before
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        this.profile = new ProfileClass();
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(this.profile);
+
+        this.server = DlmsServer.tcpServerBuilder(port).registerLogicalDevice(logicalDevice).build();
+        this.client = new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(port)
+                .setLogicalDeviceId(1)
+                .setResponseTimeout(5000)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.client.close();
+        this.server.close();
+    }
+
+    @Test
+    public void testLargeStreamIsSentInBlocks() throws IOException {
+        // ~ 300 kB, several data blocks
+        this.profile.numOfEntries = 10000;
+
+        assertEntries(10000, get(2));
+        assertEquals(1, this.profile.numOfClosedStreams);
+
+        // the association is still usable
+        assertEntries(10000, get(2));
+        assertEquals(2, this.profile.numOfClosedStreams);
+    }
+
+    @Test
+    public void testSmallStreamIsSentAsNormalResponse() throws IOException {
+        this.profile.numOfEntries = 3;
+
+        assertEntries(3, get(2));
+        assertEquals(1, this.profile.numOfClosedStreams);
+    }
+
+    @Test
+    public void testNotStreamedAttribute() throws IOException {
+        GetResult result = get(3);
+
+        assertEquals(AccessResultCode.SUCCESS, result.getResultCode());
+        assertEquals(Long.valueOf(42), result.getResultData().getValue());
+    }
+
+    @Test
+    public void testFailingStreamAbortsTransfer() throws IOException {
+        this.profile.numOfEntries = 10000;
+        this.profile.failAtEntry = 8000;
+
+        try {
+            get(2);
+            fail("Block transfer has not been aborted.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(AccessResultCode.TEMPORARY_FAILURE.name()));
+        }
+        assertEquals(1, this.profile.numOfClosedStreams);
+
+        this.profile.failAtEntry = -1;
+        assertEntries(10000, get(2));
+    }
+
+    private GetResult get(int attributeId) throws IOException {
+        return this.client.get(new AttributeAddress(7, INSTANCE_ID, attributeId));
+    }
+
+    private static void assertEntries(int numOfEntries, GetResult result) {
+        assertEquals(AccessResultCode.SUCCESS, result.getResultCode());
+
+        List<DataObject> entries = result.getResultData().getValue();
+        assertEquals(numOfEntries, entries.size());
+
+        for (int i = 0; i < numOfEntries; i++) {
+            List<DataObject> entry = entries.get(i).getValue();
+            assertEquals(Long.valueOf(i), entry.get(0).getValue());
+            assertArrayEquals(ProfileClass.VALUE, (byte[]) entry.get(1).getValue());
+        }
+    }
+
+    @CosemClass(id = 7, version = 1)
+    public static class ProfileClass extends CosemInterfaceObject implements StreamingAttributeProvider {
+
+        private static final byte[] VALUE = new byte[20];
+
+        @CosemAttribute(id = 2, type = Type.ARRAY, accessMode = AttributeAccessMode.READ_ONLY)
+        private DataObject buffer;
+
+        @CosemAttribute(id = 3, type = Type.DOUBLE_LONG_UNSIGNED, accessMode = AttributeAccessMode.READ_ONLY)
+        private DataObject entriesInUse = DataObject.newUInteger32Data(42);
+
+        private volatile int numOfEntries;
+        private volatile int failAtEntry = -1;
+        private volatile int numOfClosedStreams;
+
+        public ProfileClass() {
+            super(INSTANCE_ID);
+        }
+
+        @Override
+        public ArrayDataStream streamAttribute(int attributeId, SelectiveAccessDescription selectiveAccessDescription,
+                Long connectionId) throws IllegalAttributeAccessException {
+            if (attributeId != 2) {
+                return null;
+            }
+
+            final int size = this.numOfEntries;
+            final int failAt = this.failAtEntry;
+            return new ArrayDataStream() {
+                private int index = 0;
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public DataObject nextElement() throws IllegalAttributeAccessException {
+                    assertTrue(this.index < size);
+                    if (this.index == failAt) {
+                        throw new IllegalAttributeAccessException(AccessResultCode.TEMPORARY_FAILURE);
+                    }
+                    return DataObject.newStructureData(DataObject.newUInteger32Data(this.index++),
+                            DataObject.newOctetStringData(VALUE));
+                }
+
+                @Override
+                public void close() {
+                    numOfClosedStreams++;
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.NonBlockingServerTest.HelloClass;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataObject.Type;
+import org.openmuc.jdlms.internal.ThreadFactories;
+
+public class ThreadFactoryTest {
+
+    private static final AttributeAddress ADDRESS = new AttributeAddress(99, "0.0.0.2.1.255", 2);
+
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void testThreadsAreCreatedByFactory() throws Exception {
+        CountingThreadFactory serverThreads = new CountingThreadFactory();
+        CountingThreadFactory clientThreads = new CountingThreadFactory();
+
+        DlmsServer server = newServerBuilder().setThreadFactory(serverThreads).build();
+        try (DlmsConnection client = newClientBuilder().setThreadFactory(clientThreads).build()) {
+            assertEquals(AccessResultCode.SUCCESS, client.get(ADDRESS).getResultCode());
+        } finally {
+            server.close();
+        }
+
+        assertEquals(1, serverThreads.count.get());
+        assertEquals(1, clientThreads.count.get());
+        assertEquals("jDLMS - WRAPPER/TCP-CONNECTION_READER", clientThreads.lastThread.getName());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        assumeTrue(ThreadFactories.virtualThreadsSupported());
+
+        ThreadRecordingClass cosemObject = new ThreadRecordingClass();
+
+        DlmsServer server = newServerBuilder(cosemObject).useVirtualThreads().build();
+        try (DlmsConnection client = newClientBuilder().useVirtualThreads().build()) {
+            assertEquals(AccessResultCode.SUCCESS, client.get(ADDRESS).getResultCode());
+        } finally {
+            server.close();
+        }
+
+        assertTrue(cosemObject.threadName.startsWith("jdlms-virtual-"));
+    }
+
+    private DlmsServer.TcpServerBuilder newServerBuilder() {
+        return newServerBuilder(new HelloClass());
+    }
+
+    private DlmsServer.TcpServerBuilder newServerBuilder(CosemInterfaceObject cosemObject) {
+        LogicalDevice logicalDevice = new LogicalDevice(1, "L_D_I", "ISE", 9999L);
+        logicalDevice.registerCosemObject(cosemObject);
+
+        return DlmsServer.tcpServerBuilder(this.port).registerLogicalDevice(logicalDevice);
+    }
+
+    private TcpConnectionBuilder newClientBuilder() {
+        return new TcpConnectionBuilder(InetAddress.getLoopbackAddress()).setTcpPort(this.port)
+                .setLogicalDeviceId(1)
+                .setResponseTimeout(2000);
+    }
+
+    @CosemClass(id = 99)
+    public static class ThreadRecordingClass extends CosemInterfaceObject {
+
+        @CosemAttribute(id = 2, type = Type.OCTET_STRING, accessMode = AttributeAccessMode.READ_ONLY)
+        private DataObject d1;
+
+        private volatile String threadName;
+
+        public ThreadRecordingClass() {
+            super("0.0.0.2.1.255");
+        }
+
+        public DataObject getD1() {
+            this.threadName = Thread.currentThread().getName();
+            return DataObject.newOctetStringData(new byte[0]);
+        }
+    }
+
+    private static class CountingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile Thread lastThread;
+
+        @Override
+        public Thread newThread(Runnable r) {
+            this.count.incrementAndGet();
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            this.lastThread = thread;
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package org.openmuc.jdlms.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.openmuc.jdlms.AccessResultCode;
+import org.openmuc.jdlms.CosemAttribute;
+import org.openmuc.jdlms.CosemClass;
+import org.openmuc.jdlms.CosemInterfaceObject;
+import org.openmuc.jdlms.CosemMethod;
+import org.openmuc.jdlms.IllegalAttributeAccessException;
+import org.openmuc.jdlms.IllegalMethodAccessException;
+import org.openmuc.jdlms.MethodResultCode;
+import org.openmuc.jdlms.SelectiveAccessDescription;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.datatypes.DataObject.Type;
+import org.openmuc.jdlms.internal.AttributeAccessor.FieldAccessor;
+import org.openmuc.jdlms.internal.AttributeAccessor.MethodAttributeAccessor;
+import org.openmuc.jdlms.internal.DataDirectory.CosemClassInstance;
+
+public class AccessorTest {
+
+    private static final Long CONNECTION_ID = 42L;
+
+    private final TestClass testObject = new TestClass();
+    private final CosemClassInstance classInstance = new CosemClassInstance(
+            TestClass.class.getAnnotation(CosemClass.class), testObject);
+
+    @Test
+    public void testFieldAccessor() throws Exception {
+        FieldAccessor accessor = new FieldAccessor(TestClass.class.getDeclaredField("d2"), attribute("d2"));
+
+        DataObject value = DataObject.newInteger32Data(5);
+        accessor.set(value, this.classInstance, null, CONNECTION_ID, null);
+
+        assertSame(value, this.testObject.d2);
+        assertSame(value, accessor.get(this.classInstance, null, CONNECTION_ID, null));
+    }
+
+    @Test
+    public void testMethodAttributeAccessor() throws Exception {
+        MethodAttributeAccessor accessor = new MethodAttributeAccessor(
+                TestClass.class.getMethod("getD3", SelectiveAccessDescription.class, Long.class),
+                TestClass.class.getMethod("setD3", DataObject.class, Long.class), attribute("d3"),
+                Collections.singleton(1));
+
+        SelectiveAccessDescription access = new SelectiveAccessDescription(1, DataObject.newNullData());
+        DataObject value = DataObject.newInteger32Data(7);
+        accessor.set(value, this.classInstance, null, CONNECTION_ID, null);
+
+        assertSame(value, this.testObject.d3);
+        assertEquals(CONNECTION_ID, this.testObject.connectionId);
+
+        assertSame(value, accessor.get(this.classInstance, access, 1L, null));
+        assertSame(access, this.testObject.access);
+        assertEquals(Long.valueOf(1L), this.testObject.connectionId);
+    }
+
+    @Test
+    public void testMethodAttributeAccessorPassesException() throws Exception {
+        MethodAttributeAccessor accessor = new MethodAttributeAccessor(TestClass.class.getMethod("getD4"), null,
+                attribute("d4"), Collections.<Integer>emptySet());
+
+        try {
+            accessor.get(this.classInstance, null, CONNECTION_ID, null);
+            fail("Exception has not been passed.");
+        } catch (IllegalAttributeAccessException e) {
+            assertEquals(AccessResultCode.TEMPORARY_FAILURE, e.getAccessResultCode());
+        }
+    }
+
+    @Test
+    public void testMethodAccessor() throws Exception {
+        MethodAccessor accessor = methodAccessor("m1", Type.DOUBLE_LONG, Type.DONT_CARE, DataObject.class, Long.class);
+
+        DataObject argument = DataObject.newInteger32Data(3);
+        assertSame(argument, accessor.invoke(this.classInstance, argument, CONNECTION_ID, null));
+        assertEquals(CONNECTION_ID, this.testObject.connectionId);
+
+        try {
+            accessor.invoke(this.classInstance, DataObject.newBoolData(true), CONNECTION_ID, null);
+            fail("Argument of wrong type has been accepted.");
+        } catch (IllegalMethodAccessException e) {
+            assertEquals(MethodResultCode.TYPE_UNMATCHED, e.getMethodResultCode());
+        }
+    }
+
+    @Test
+    public void testVoidMethodAccessor() throws Exception {
+        MethodAccessor accessor = methodAccessor("m2", null, null, Long.class);
+
+        assertNull(accessor.invoke(this.classInstance, null, CONNECTION_ID, null));
+        assertEquals(CONNECTION_ID, this.testObject.connectionId);
+
+        try {
+            accessor.invoke(this.classInstance, null, -1L, null);
+            fail("Exception has not been passed.");
+        } catch (IllegalMethodAccessException e) {
+            assertEquals(MethodResultCode.HARDWARE_FAULT, e.getMethodResultCode());
+        }
+    }
+
+    private static CosemAttribute attribute(String fieldName) throws NoSuchFieldException {
+        return TestClass.class.getDeclaredField(fieldName).getAnnotation(CosemAttribute.class);
+    }
+
+    private static MethodAccessor methodAccessor(String name, Type parameterType, Type returnType,
+            Class<?>... parameterTypes) throws NoSuchMethodException {
+        java.lang.reflect.Method method = TestClass.class.getMethod(name, parameterTypes);
+        return new MethodAccessor(method, method.getAnnotation(CosemMethod.class), parameterType, returnType);
+    }
+
+    @CosemClass(id = 99)
+    public static class TestClass extends CosemInterfaceObject {
+
+        @CosemAttribute(id = 2)
+        private DataObject d2;
+
+        @CosemAttribute(id = 3, selector = 1)
+        private DataObject d3;
+
+        @CosemAttribute(id = 4)
+        private DataObject d4;
+
+        private SelectiveAccessDescription access;
+        private Long connectionId;
+
+        public TestClass() {
+            super("0.0.0.2.1.255");
+        }
+
+        public DataObject getD3(SelectiveAccessDescription access, Long connectionId) {
+            this.access = access;
+            this.connectionId = connectionId;
+            return this.d3;
+        }
+
+        public void setD3(DataObject d3, Long connectionId) {
+            this.d3 = d3;
+            this.connectionId = connectionId;
+        }
+
+        public DataObject getD4() throws IllegalAttributeAccessException {
+            throw new IllegalAttributeAccessException(AccessResultCode.TEMPORARY_FAILURE);
+        }
+
+        @CosemMethod(id = 1, consumes = Type.DOUBLE_LONG)
+        public DataObject m1(DataObject argument, Long connectionId) {
+            this.connectionId = connectionId;
+            return argument;
+        }
+
+        @CosemMethod(id = 2)
+        public void m2(Long connectionId) throws IllegalMethodAccessException {
+            if (connectionId < 0) {
+                throw new IllegalMethodAccessException(MethodResultCode.HARDWARE_FAULT);
+            }
+            this.connectionId = connectionId;
+        }
+    }
+
+}
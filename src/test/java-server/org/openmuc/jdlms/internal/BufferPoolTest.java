@@ -0,0 +1,55 @@
+package org.openmuc.jdlms.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testBuffersAreSizeClassed() {
+        BufferPool bufferPool = new BufferPool();
+
+        assertEquals(256, bufferPool.acquire(1).length);
+        assertEquals(1024, bufferPool.acquire(1000).length);
+        assertEquals(1024, bufferPool.acquire(1024).length);
+        assertEquals(2048, bufferPool.acquire(1025).length);
+    }
+
+    @Test
+    public void testReleasedBufferIsReused() {
+        BufferPool bufferPool = new BufferPool();
+
+        byte[] buffer = bufferPool.acquire(1500);
+        bufferPool.release(buffer);
+
+        assertSame(buffer, bufferPool.acquire(1100));
+        assertNotSame(buffer, bufferPool.acquire(1100));
+    }
+
+    @Test
+    public void testForeignBufferIsNotPooled() {
+        BufferPool bufferPool = new BufferPool();
+
+        byte[] buffer = new byte[1000];
+        bufferPool.release(buffer);
+
+        assertNotSame(buffer, bufferPool.acquire(1000));
+    }
+
+    @Test
+    public void testRetainedBytesAreLimited() {
+        BufferPool bufferPool = new BufferPool();
+
+        byte[] buffer1 = bufferPool.acquire(1 << 24);
+        byte[] buffer2 = bufferPool.acquire(1 << 24);
+        bufferPool.release(buffer1);
+        bufferPool.release(buffer2);
+
+        assertSame(buffer1, bufferPool.acquire(1 << 24));
+        assertNotSame(buffer2, bufferPool.acquire(1 << 24));
+    }
+
+}
@@ -0,0 +1,241 @@
+package org.openmuc.jdlms.internal.sessionlayer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.RawMessageData.RawMessageDataBuilder;
+import org.openmuc.jdlms.TcpConnectionBuilder;
+import org.openmuc.jdlms.internal.association.AssociationShutdownException;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcAddress;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcAddressPair;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcParameters;
+import org.openmuc.jdlms.internal.settings.ServerSettings;
+import org.openmuc.jdlms.sessionlayer.HdlcLayer;
+import org.openmuc.jdlms.transportlayer.client.StreamAccessor;
+
+public class ServerHdlcSessionLayerTest {
+
+    private ServerSocket serverSocket;
+    private final BlockingQueue<byte[]> serverReceived = new LinkedBlockingQueue<>();
+    private final BlockingQueue<byte[]> clientReceived = new LinkedBlockingQueue<>();
+    private final AtomicInteger serverWrites = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        this.serverSocket = new ServerSocket(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.serverSocket.close();
+    }
+
+    @Test
+    public void testSegmentsAreExchangedInWindows() throws Exception {
+        byte[] request = newData(16000);
+        byte[] response = newData(20000);
+        startServer(response);
+
+        TcpConnectionBuilder builder = new TcpConnectionBuilder(InetAddress.getLoopbackAddress())
+                .setTcpPort(this.serverSocket.getLocalPort())
+                .useHdlc()
+                .setResponseTimeout(2000);
+        HdlcLayer hdlcLayer = new HdlcLayer(builder.new TcpSettingsImpl(builder));
+        hdlcLayer.startListening(new SessionLayerListener() {
+
+            @Override
+            public void dataReceived(byte[] data, RawMessageDataBuilder rawMessageBuilder) {
+                clientReceived.add(data);
+            }
+
+            @Override
+            public void connectionInterrupted(IOException e) {
+            }
+        });
+
+        try {
+            hdlcLayer.send(request, 0, request.length, null);
+
+            assertArrayEquals(request, poll(this.serverReceived));
+            assertArrayEquals(response, poll(this.clientReceived));
+        } finally {
+            hdlcLayer.close();
+        }
+
+        // UA, the RR after the first of two request windows, the two response windows and the disconnect UA
+        assertEquals(5, this.serverWrites.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testIncompleteMessageIsContinued() throws Exception {
+        HdlcAddressPair clientPair = new HdlcAddressPair(new HdlcAddress(16), new HdlcAddress(1));
+        ServerSettings settings = new ServerSettings() {
+        };
+        settings.responseTimeout = 2000;
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), this.serverSocket.getLocalPort());
+                Socket socket = this.serverSocket.accept()) {
+            ServerHdlcSessionLayer sessionLayer = new ServerHdlcSessionLayer(new SocketAccessor(socket), settings);
+            OutputStream os = client.getOutputStream();
+
+            os.write(HdlcFrame.newSetNormalResponseModeFrame(clientPair, new HdlcParameters(128, 2, 128, 2), true)
+                    .encode());
+            sessionLayer.initialize();
+
+            byte[] firstSegment = newData(50);
+            byte[] lastSegment = newData(30);
+            os.write(HdlcFrame.newInformationFrame(clientPair, 0, 0, firstSegment, true, true, false).encode());
+            assertNull(sessionLayer.readNextMessage());
+
+            os.write(HdlcFrame.newInformationFrame(clientPair, 1, 0, lastSegment, false, false, true).encode());
+            byte[] message = sessionLayer.readNextMessage();
+
+            assertEquals(firstSegment.length + lastSegment.length, message.length);
+            assertArrayEquals(firstSegment, Arrays.copyOfRange(message, 0, firstSegment.length));
+            assertArrayEquals(lastSegment, Arrays.copyOfRange(message, firstSegment.length, message.length));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testDisconnectWhileWaitingForAcknowledgement() throws Exception {
+        HdlcAddressPair clientPair = new HdlcAddressPair(new HdlcAddress(16), new HdlcAddress(1));
+        ServerSettings settings = new ServerSettings() {
+        };
+        settings.responseTimeout = 2000;
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), this.serverSocket.getLocalPort());
+                Socket socket = this.serverSocket.accept()) {
+            ServerHdlcSessionLayer sessionLayer = new ServerHdlcSessionLayer(new SocketAccessor(socket), settings);
+            OutputStream os = client.getOutputStream();
+
+            // one frame per window, the client disconnects instead of acknowledging the first one
+            os.write(HdlcFrame.newSetNormalResponseModeFrame(clientPair, new HdlcParameters(128, 1, 128, 1), true)
+                    .encode());
+            sessionLayer.initialize();
+            os.write(HdlcFrame.newDisconnectFrame(clientPair, true).encode());
+
+            // only the first window is sent, the send doesn't wait for the acknowledgement
+            sessionLayer.send(newData(1000));
+
+            try {
+                sessionLayer.readNextMessage();
+                fail("The disconnect request has been lost.");
+            } catch (AssociationShutdownException e) {
+                // expected
+            }
+        }
+    }
+
+    private void startServer(final byte[] response) {
+        final ServerSettings settings = new ServerSettings() {
+        };
+        settings.responseTimeout = 2000;
+
+        Thread serverThread = new Thread() {
+            @Override
+            public void run() {
+                try (Socket socket = serverSocket.accept()) {
+                    ServerHdlcSessionLayer sessionLayer = new ServerHdlcSessionLayer(new SocketAccessor(socket),
+                            settings);
+                    sessionLayer.initialize();
+
+                    serverReceived.add(readMessage(sessionLayer));
+                    sessionLayer.send(response);
+
+                    // processes the acknowledgements of the response windows
+                    readMessage(sessionLayer);
+                } catch (IOException e) {
+                    // the client has disconnected
+                }
+            }
+        };
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    private static byte[] readMessage(ServerHdlcSessionLayer sessionLayer) throws IOException {
+        byte[] message;
+        while ((message = sessionLayer.readNextMessage()) == null) {
+            // the message is continued by the next frames
+        }
+        return message;
+    }
+
+    private static byte[] poll(BlockingQueue<byte[]> queue) throws InterruptedException {
+        byte[] data = queue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(data);
+        return data;
+    }
+
+    private static byte[] newData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private class SocketAccessor implements StreamAccessor {
+
+        private final Socket socket;
+        private final DataInputStream is;
+        private final DataOutputStream os;
+
+        public SocketAccessor(Socket socket) throws IOException {
+            this.socket = socket;
+            this.is = new DataInputStream(socket.getInputStream());
+
+            // buffered, so the frames are only sent when the flush has been counted
+            OutputStream socketStream = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+            this.os = new DataOutputStream(socketStream) {
+                @Override
+                public void flush() throws IOException {
+                    serverWrites.incrementAndGet();
+                    super.flush();
+                }
+            };
+        }
+
+        @Override
+        public void setTimeout(int timeout) throws IOException {
+            this.socket.setSoTimeout(timeout);
+        }
+
+        @Override
+        public DataInputStream getInputStream() throws IOException {
+            return this.is;
+        }
+
+        @Override
+        public DataOutputStream getOutpuStream() throws IOException {
+            return this.os;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.openmuc.jdlms.internal.transportlayer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.junit.Test;
+import org.openmuc.jdlms.HexConverter;
+
+public class PduFramerTest {
+
+    private static final byte[] WRAPPER_PDU = HexConverter.fromShortHexString("000100100001000DC0010000080000010000FF0200");
+    private static final byte[] HDLC_FRAME = HexConverter.fromShortHexString("7EA00A000200232193F8B47E");
+
+    @Test
+    public void testFramesWrapperPdusReceivedInPieces() {
+        PduFramer framer = new PduFramer();
+        Queue<byte[]> pdus = new ArrayDeque<>();
+
+        for (int i = 0; i < WRAPPER_PDU.length - 1; i++) {
+            assertEquals(0, framer.append(WRAPPER_PDU, i, 1, pdus));
+        }
+        assertEquals(1, framer.append(WRAPPER_PDU, WRAPPER_PDU.length - 1, 1, pdus));
+
+        assertArrayEquals(WRAPPER_PDU, pdus.poll());
+        assertTrue(pdus.isEmpty());
+    }
+
+    @Test
+    public void testFramesPdusReceivedAtOnce() {
+        byte[] received = new byte[2 * WRAPPER_PDU.length + 3];
+        System.arraycopy(WRAPPER_PDU, 0, received, 0, WRAPPER_PDU.length);
+        System.arraycopy(WRAPPER_PDU, 0, received, WRAPPER_PDU.length, WRAPPER_PDU.length);
+        System.arraycopy(WRAPPER_PDU, 0, received, 2 * WRAPPER_PDU.length, 3);
+
+        PduFramer framer = new PduFramer();
+        Queue<byte[]> pdus = new ArrayDeque<>();
+
+        assertEquals(2, framer.append(received, 0, received.length, pdus));
+        assertEquals(1, framer.append(WRAPPER_PDU, 3, WRAPPER_PDU.length - 3, pdus));
+
+        assertEquals(3, pdus.size());
+        for (byte[] pdu : pdus) {
+            assertArrayEquals(WRAPPER_PDU, pdu);
+        }
+    }
+
+    @Test
+    public void testAddsSharedHdlcFlag() {
+        byte[] received = new byte[2 * HDLC_FRAME.length - 1];
+        System.arraycopy(HDLC_FRAME, 0, received, 0, HDLC_FRAME.length);
+        System.arraycopy(HDLC_FRAME, 1, received, HDLC_FRAME.length, HDLC_FRAME.length - 1);
+
+        PduFramer framer = new PduFramer();
+        Queue<byte[]> pdus = new ArrayDeque<>();
+
+        assertEquals(2, framer.append(received, 0, received.length, pdus));
+        assertArrayEquals(HDLC_FRAME, pdus.poll());
+        assertArrayEquals(HDLC_FRAME, pdus.poll());
+    }
+
+}
@@ -81,7 +81,10 @@ public class AssociationActionFragmentTest {
             @Override
             public Void answer(InvocationOnMock invocation) throws Throwable {
 
-                byte[] rdata = invocation.getArgumentAt(0, byte[].class);
+                byte[] sendBuffer = invocation.getArgumentAt(0, byte[].class);
+                int offset = invocation.getArgumentAt(1, Integer.class);
+                int length = invocation.getArgumentAt(2, Integer.class);
+                byte[] rdata = Arrays.copyOfRange(sendBuffer, offset, offset + length);
 
                 APdu apPdu = APdu.decode(rdata, RawMessageData.builder());
 
@@ -104,13 +107,13 @@ public class AssociationActionFragmentTest {
 
                 assertEquals("Block Number's are not equal.", blockCounter++, pblock.block_number.getValue());
 
+                byte[] rawData = pblock.raw_data.getValue();
+                byteAOS.write(rawData);
+
                 if (pblock.last_block.getValue()) {
                     return null;
                 }
 
-                byte[] rawData = pblock.raw_data.getValue();
-                byteAOS.write(rawData);
-
                 COSEMpdu retCosemPdu = new COSEMpdu();
                 ACTION_Request actionRequest = new ACTION_Request();
                 Action_Request_Next_Pblock nextPblock = new Action_Request_Next_Pblock(invokeIdAndPriorityFinal,
@@ -124,9 +127,9 @@ public class AssociationActionFragmentTest {
                 dataFifo.addLast(Arrays.copyOfRange(buffer, buffer.length - retLength, buffer.length));
                 return null;
             }
-        }).when(sessionLayer).send(Matchers.any(byte[].class));
+        }).when(sessionLayer).send(Matchers.any(byte[].class), Matchers.anyInt(), Matchers.anyInt());
 
-        ServerConnectionData connectionData = new ServerConnectionData(sessionLayer, 0L);
+        ServerConnectionData connectionData = new ServerConnectionData(sessionLayer, 0L, new FrameCounterTracker());
         connectionData.clientMaxReceivePduSize = 15;
         connectionData.securitySuite = SecuritySuite.builder().build();
 
@@ -148,6 +151,12 @@ public class AssociationActionFragmentTest {
 
         invokeMethod(actionRequestProcessor, SEND_ACTION_RESPONSE_AS_FRAGMENTS_METHOD_NAME, invokeIdAndPriorityFinal,
                 data);
+
+        // the next blocks are sent on request of the client
+        while (!dataFifo.isEmpty()) {
+            actionRequestProcessor.processRequest(associationMessenger.readNextApdu().getCosemPdu());
+        }
+
         assertArrayEquals("Server did not build die data correctly", data, byteAOS.toByteArray());
 
     }
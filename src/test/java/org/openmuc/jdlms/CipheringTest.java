@@ -2,9 +2,13 @@ package org.openmuc.jdlms;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.bouncycastle.crypto.InvalidCipherTextException;
 import org.junit.BeforeClass;
@@ -14,6 +18,7 @@ import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
 import org.openmuc.jdlms.SecuritySuite.SecurityPolicy;
 import org.openmuc.jdlms.SecuritySuite.SecuritySuiteBuilder;
 import org.openmuc.jdlms.internal.APdu;
+import org.openmuc.jdlms.internal.SecSuiteAccessor;
 import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
 import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
 import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
@@ -80,6 +85,41 @@ public class CipheringTest {
         assertArrayEquals(expecteds, encryptedApdu);
     }
 
+    @Test
+    public void testApduIsCipheredInPlace() throws Exception {
+        byte[] data = HexConverter.fromShortHexString("C0010000080000010000FF0200");
+        APdu aPdu = APdu.decode(data, null);
+
+        SecuritySuite securitySuite = securitySuiteBuilder.setSecurityPolicy(SecurityPolicy.AUTHENTICATED_AND_ENCRYPTED)
+                .build();
+        byte[] buffer = new byte[100];
+        int length = aPdu.encode(buffer, 0x1234567, SYSTEM_TITLE, securitySuite, null);
+        assertArrayEquals(
+                HexConverter.fromShortHexString("C81E3001234567411312FF935A47566827C467BC7D825C3BE4A77C3FCC056B6B"),
+                Arrays.copyOfRange(buffer, buffer.length - length, buffer.length));
+
+        securitySuite = securitySuiteBuilder.setSecurityPolicy(SecurityPolicy.ENCRYPTED).build();
+        length = aPdu.encode(buffer, 0x1234567, SYSTEM_TITLE, securitySuite, null);
+        assertArrayEquals(HexConverter.fromShortHexString("C8122001234567411312FF935A47566827C467BC"),
+                Arrays.copyOfRange(buffer, buffer.length - length, buffer.length));
+    }
+
+    @Test
+    public void testCipheredApduIsDecodedOnce() throws Exception {
+        byte[] data = HexConverter.fromShortHexString("C0010000080000010000FF0200");
+        assertFalse(APdu.isCipheredApdu(data));
+
+        SecuritySuite securitySuite = securitySuiteBuilder.setSecurityPolicy(SecurityPolicy.AUTHENTICATED_AND_ENCRYPTED)
+                .build();
+        byte[] buffer = new byte[100];
+        int length = APdu.decode(data, null).encode(buffer, 0x1234567, SYSTEM_TITLE, securitySuite, null);
+        byte[] ciphered = Arrays.copyOfRange(buffer, buffer.length - length, buffer.length);
+        assertTrue(APdu.isCipheredApdu(ciphered));
+
+        APdu aPdu = APdu.decode(ciphered, SYSTEM_TITLE, null, securitySuite, null);
+        assertEquals(COSEMpdu.Choices.GET_REQUEST, aPdu.getCosemPdu().getChoiceIndex());
+    }
+
     @Test
     public void testCipheringExampleFromStandard()
             throws IOException, IllegalStateException, InvalidCipherTextException {
@@ -110,6 +150,53 @@ public class CipheringTest {
 
     }
 
+    @Test
+    public void testRoundTripWithAlternatingKeys() throws IOException {
+        byte[] plaintext = getInitRequestXDlmsPduBytes();
+        SecuritySuite globalKeySuite = securitySuiteBuilder.build();
+        SecuritySuite dedicatedKeySuite = SecuritySuite.builder()
+                .setGlobalUnicastEncryptionKey(dedicatedKey)
+                .setAuthenticationKey(HexConverter.fromShortHexString("D0D1D2D3D4D5D6D7D8D9DADBDCDDDEDF"))
+                .setEncryptionMechanism(EncryptionMechanism.AES_GMC_128)
+                .setAuthenticationMechanism(AuthenticationMechanism.HLS5_GMAC)
+                .build();
+
+        for (int frameCounter = 1; frameCounter <= 3; frameCounter++) {
+            for (SecuritySuite securitySuite : new SecuritySuite[] { globalKeySuite, dedicatedKeySuite }) {
+                byte[] ciphered = GcmModule.processPlain(plaintext, 0, plaintext.length, SYSTEM_TITLE, frameCounter,
+                        securitySuite, (byte) 33);
+                // strip tag and length
+                byte[] cipheredApdu = Arrays.copyOfRange(ciphered, 2, ciphered.length);
+
+                assertArrayEquals(plaintext, GcmModule.decrypt(cipheredApdu, SYSTEM_TITLE, securitySuite));
+            }
+        }
+
+        byte[] ciphered = GcmModule.processPlain(plaintext, 0, plaintext.length, SYSTEM_TITLE, 1, globalKeySuite,
+                (byte) 33);
+        try {
+            GcmModule.decrypt(Arrays.copyOfRange(ciphered, 2, ciphered.length), SYSTEM_TITLE, dedicatedKeySuite);
+            fail("Deciphered with the wrong key.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testChangedKeyOfSuiteIsUsed() throws IOException {
+        byte[] plaintext = getInitRequestXDlmsPduBytes();
+        SecuritySuite securitySuite = securitySuiteBuilder.build();
+        GcmModule.processPlain(plaintext, 0, plaintext.length, SYSTEM_TITLE, 1, securitySuite, (byte) 33);
+
+        ((SecSuiteAccessor) securitySuite).updateGlobalUnicastEncryptionKey(dedicatedKey);
+        byte[] ciphered = GcmModule.processPlain(plaintext, 0, plaintext.length, SYSTEM_TITLE, 2, securitySuite,
+                (byte) 33);
+
+        SecuritySuite dedicatedKeySuite = SecuritySuite.newSecuritySuiteFrom(securitySuite);
+        assertArrayEquals(plaintext,
+                GcmModule.decrypt(Arrays.copyOfRange(ciphered, 2, ciphered.length), SYSTEM_TITLE, dedicatedKeySuite));
+    }
+
     private byte[] getInitRequestXDlmsPduBytes() throws IOException {
 
         byte[] conformanceBlock = HexConverter.fromShortHexString("007E1F");
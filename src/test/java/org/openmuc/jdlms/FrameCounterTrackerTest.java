@@ -0,0 +1,178 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.FrameCounterStore.Direction;
+import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
+
+public class FrameCounterTrackerTest {
+
+    private static final byte[] SYSTEM_TITLE = HexConverter.fromShortHexString("4D4D4D0000BC614E");
+    private static final byte[] OTHER_SYSTEM_TITLE = HexConverter.fromShortHexString("4D4D4D0000000001");
+
+    private static final SecuritySuite SUITE = newSecuritySuite("000102030405060708090a0b0c0d0e0f");
+    private static final SecuritySuite OTHER_SUITE = newSecuritySuite("0f0e0d0c0b0a09080706050403020100");
+
+    private static final long KEY_ID = 42L;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("frame-counters", ".bin");
+        this.file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Test
+    public void testRejectsReplayedCounters() throws Exception {
+        FrameCounterTracker tracker = new FrameCounterTracker();
+
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 1));
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 2));
+
+        assertFalse(tracker.isFresh(SYSTEM_TITLE, SUITE, 2));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 2));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 1));
+
+        // the system titles are tracked independently
+        assertTrue(tracker.accept(OTHER_SYSTEM_TITLE, SUITE, 1));
+    }
+
+    @Test
+    public void testAcceptsCountersOutOfOrderWithinWindow() throws Exception {
+        FrameCounterTracker tracker = new FrameCounterTracker(null, 4);
+
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 10));
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 8));
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 7));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 8));
+
+        // below the window
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 6));
+
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 12));
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 9));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 10));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 8));
+    }
+
+    @Test
+    public void testWindowOfOneOnlyAcceptsIncreasingCounters() throws Exception {
+        FrameCounterTracker tracker = new FrameCounterTracker(null, 1);
+
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 5));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 4));
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 100));
+    }
+
+    @Test
+    public void testAcceptsUnsignedCounters() throws Exception {
+        FrameCounterTracker tracker = new FrameCounterTracker();
+
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, Integer.MAX_VALUE));
+        assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 0x80000000));
+        assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testSentCountersIncrease() throws Exception {
+        FrameCounterTracker tracker = new FrameCounterTracker();
+
+        assertEquals(1, tracker.nextFrameCounter(SYSTEM_TITLE, SUITE));
+        assertEquals(2, tracker.nextFrameCounter(SYSTEM_TITLE, SUITE));
+        assertEquals(1, tracker.nextFrameCounter(OTHER_SYSTEM_TITLE, SUITE));
+    }
+
+    @Test
+    public void testCountersSurviveRestart() throws Exception {
+        int lastSent;
+        try (MappedFrameCounterStore store = new MappedFrameCounterStore(this.file)) {
+            FrameCounterTracker tracker = new FrameCounterTracker(store);
+
+            lastSent = 0;
+            for (int i = 0; i < 3000; i++) {
+                lastSent = tracker.nextFrameCounter(SYSTEM_TITLE, SUITE);
+            }
+            assertTrue(tracker.accept(OTHER_SYSTEM_TITLE, SUITE, 42));
+            tracker.flush();
+        }
+
+        try (MappedFrameCounterStore store = new MappedFrameCounterStore(this.file)) {
+            FrameCounterTracker tracker = new FrameCounterTracker(store);
+
+            assertTrue(tracker.nextFrameCounter(SYSTEM_TITLE, SUITE) > lastSent);
+
+            assertFalse(tracker.accept(OTHER_SYSTEM_TITLE, SUITE, 42));
+            assertFalse(tracker.accept(OTHER_SYSTEM_TITLE, SUITE, 41));
+            assertTrue(tracker.accept(OTHER_SYSTEM_TITLE, SUITE, 43));
+        }
+    }
+
+    @Test
+    public void testStoreKeepsGreatestValueWhenCompacted() throws Exception {
+        try (MappedFrameCounterStore store = new MappedFrameCounterStore(this.file, 4)) {
+            for (int i = 1; i <= 20; i++) {
+                store.save(SYSTEM_TITLE, KEY_ID, Direction.RECEIVED, i);
+                store.save(OTHER_SYSTEM_TITLE, KEY_ID, Direction.SENT, 100 + i);
+            }
+            store.save(SYSTEM_TITLE, KEY_ID, Direction.RECEIVED, 3);
+
+            assertEquals(20, store.load(SYSTEM_TITLE, KEY_ID, Direction.RECEIVED));
+        }
+
+        try (MappedFrameCounterStore store = new MappedFrameCounterStore(this.file, 4)) {
+            assertEquals(20, store.load(SYSTEM_TITLE, KEY_ID, Direction.RECEIVED));
+            assertEquals(120, store.load(OTHER_SYSTEM_TITLE, KEY_ID, Direction.SENT));
+            assertEquals(-1, store.load(SYSTEM_TITLE, KEY_ID, Direction.SENT));
+        }
+    }
+
+    @Test
+    public void testKeysAreTrackedIndependently() throws Exception {
+        try (MappedFrameCounterStore store = new MappedFrameCounterStore(this.file)) {
+            FrameCounterTracker tracker = new FrameCounterTracker(store);
+
+            assertTrue(tracker.accept(SYSTEM_TITLE, SUITE, 100));
+            assertEquals(1, tracker.nextFrameCounter(SYSTEM_TITLE, SUITE));
+
+            // the meter starts over after the key has been changed
+            assertTrue(tracker.accept(SYSTEM_TITLE, OTHER_SUITE, 1));
+            assertEquals(1, tracker.nextFrameCounter(SYSTEM_TITLE, OTHER_SUITE));
+            tracker.flush();
+        }
+
+        try (MappedFrameCounterStore store = new MappedFrameCounterStore(this.file)) {
+            FrameCounterTracker tracker = new FrameCounterTracker(store);
+
+            assertFalse(tracker.accept(SYSTEM_TITLE, SUITE, 100));
+            assertFalse(tracker.accept(SYSTEM_TITLE, OTHER_SUITE, 1));
+            assertTrue(tracker.accept(SYSTEM_TITLE, OTHER_SUITE, 2));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTooLargeWindow() {
+        new FrameCounterTracker(null, FrameCounterTracker.MAX_WINDOW_SIZE + 1);
+    }
+
+    private static SecuritySuite newSecuritySuite(String encryptionKey) {
+        return SecuritySuite.builder()
+                .setGlobalUnicastEncryptionKey(HexConverter.fromShortHexString(encryptionKey))
+                .setEncryptionMechanism(EncryptionMechanism.AES_GMC_128)
+                .build();
+    }
+
+}
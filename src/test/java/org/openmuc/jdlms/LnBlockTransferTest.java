@@ -0,0 +1,232 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.interfaceclass.attribute.DataAttribute;
+import org.openmuc.jdlms.internal.PduHelper;
+import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrEnum;
+import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.ACTION_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_With_List.SubSeqOf_method_invocation_parameters;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_Next_Pblock;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Response_With_Optional_Data;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_SA;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+import org.openmuc.jdlms.internal.asn1.cosem.SET_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.SET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Response_Datablock;
+import org.openmuc.jdlms.internal.asn1.cosem.Set_Response_Last_Datablock;
+import org.openmuc.jdlms.settings.client.Settings;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(DlmsLnConnection.class)
+public class LnBlockTransferTest {
+
+    private static final int MAX_SEND_PDU_SIZE = 50;
+
+    @Test
+    public void testSetWithDatablocks() throws Exception {
+        DlmsLnConnection connection = newConnection(1000);
+        SetServer server = new SetServer(connection, 0);
+
+        byte[] value = bytes(200);
+        AccessResultCode result = connection.set(setParameter(value));
+
+        assertEquals(AccessResultCode.SUCCESS, result);
+        // 203 byte raw data: 31 byte in the first block, 41 byte in each following block
+        assertEquals(6, server.numRequests.get());
+        assertOctetString(value, server.rawData.toByteArray());
+    }
+
+    @Test
+    public void testSetResumesAfterTimeout() throws Exception {
+        DlmsLnConnection connection = newConnection(100);
+        SetServer server = new SetServer(connection, 2);
+
+        byte[] value = bytes(200);
+        AccessResultCode result = connection.set(setParameter(value));
+
+        assertEquals(AccessResultCode.SUCCESS, result);
+        // block 2 has been sent twice
+        assertEquals(7, server.numRequests.get());
+        assertOctetString(value, server.rawData.toByteArray());
+    }
+
+    @Test
+    public void testActionWithListAndPblocks() throws Exception {
+        DlmsLnConnection connection = newConnection(1000);
+        final ResponseQueue<ACTION_Response> responseQueue = Whitebox.getInternalState(connection,
+                "actionResponseQueue");
+        final ByteArrayOutputStream rawData = new ByteArrayOutputStream();
+
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                COSEMpdu pdu = invocation.getArgumentAt(0, COSEMpdu.class);
+                assertTrue("Request exceeds max PDU size.", pdu.encode(new NullOutputStream()) <= MAX_SEND_PDU_SIZE);
+
+                ACTION_Request request = pdu.action_request;
+                Invoke_Id_And_Priority id;
+                DataBlock_SA block;
+                if (request.getChoiceIndex() == ACTION_Request.Choices.ACTION_REQUEST_WITH_LIST_AND_FIRST_PBLOCK) {
+                    id = request.action_request_with_list_and_first_pblock.invoke_id_and_priority;
+                    block = request.action_request_with_list_and_first_pblock.pblock;
+                    assertEquals(2, request.action_request_with_list_and_first_pblock.cosem_method_descriptor_list
+                            .size());
+                }
+                else {
+                    assertEquals(ACTION_Request.Choices.ACTION_REQUEST_WITH_PBLOCK, request.getChoiceIndex());
+                    id = request.action_request_with_pblock.invoke_id_and_priority;
+                    block = request.action_request_with_pblock.pBlock;
+                }
+                rawData.write(block.raw_data.getValue());
+
+                ACTION_Response response = new ACTION_Response();
+                if (block.last_block.getValue()) {
+                    Action_Response_With_Optional_Data singleResponse = new Action_Response_With_Optional_Data();
+                    singleResponse.result = new AxdrEnum(0);
+                    response.setaction_response_normal(new Action_Response_Normal(id, singleResponse));
+                }
+                else {
+                    response.setaction_response_next_pblock(new Action_Response_Next_Pblock(id, block.block_number));
+                }
+                responseQueue.put(PduHelper.invokeIdFrom(id), response);
+                return null;
+            }
+        }).when(connection).send(any(COSEMpdu.class));
+
+        byte[] param1 = bytes(100);
+        byte[] param2 = bytes(80);
+        ObisCode instanceId = new ObisCode(0, 0, 96, 3, 10, 255);
+        List<MethodResult> results = connection.action(false,
+                Arrays.asList(new MethodParameter(70, instanceId, 1, DataObject.newOctetStringData(param1)),
+                        new MethodParameter(70, instanceId, 2, DataObject.newOctetStringData(param2))));
+
+        assertEquals(MethodResultCode.SUCCESS, results.get(0).getResultCode());
+
+        SubSeqOf_method_invocation_parameters parameters = new SubSeqOf_method_invocation_parameters();
+        parameters.decode(new ByteArrayInputStream(rawData.toByteArray()));
+        assertEquals(2, parameters.size());
+        assertArrayEquals(param1, parameters.get(0).octet_string.getValue());
+        assertArrayEquals(param2, parameters.get(1).octet_string.getValue());
+    }
+
+    private static class SetServer implements Answer<Void> {
+
+        private final ResponseQueue<SET_Response> responseQueue;
+        private final AtomicInteger numRequests = new AtomicInteger();
+        private final AtomicBoolean dropped = new AtomicBoolean();
+        private final ByteArrayOutputStream rawData = new ByteArrayOutputStream();
+        private final long dropAckOfBlock;
+        private long nextBlockNumber = 1;
+
+        public SetServer(DlmsLnConnection connection, long dropAckOfBlock) throws Exception {
+            this.responseQueue = Whitebox.getInternalState(connection, "setResponseQueue");
+            this.dropAckOfBlock = dropAckOfBlock;
+            doAnswer(this).when(connection).send(any(COSEMpdu.class));
+        }
+
+        @Override
+        public Void answer(InvocationOnMock invocation) throws Throwable {
+            COSEMpdu pdu = invocation.getArgumentAt(0, COSEMpdu.class);
+            assertTrue("Request exceeds max PDU size.", pdu.encode(new NullOutputStream()) <= MAX_SEND_PDU_SIZE);
+            numRequests.incrementAndGet();
+
+            SET_Request request = pdu.set_request;
+            Invoke_Id_And_Priority id;
+            DataBlock_SA block;
+            if (request.getChoiceIndex() == SET_Request.Choices.SET_REQUEST_WITH_FIRST_DATABLOCK) {
+                id = request.set_request_with_first_datablock.invoke_id_and_priority;
+                block = request.set_request_with_first_datablock.datablock;
+            }
+            else {
+                assertEquals(SET_Request.Choices.SET_REQUEST_WITH_DATABLOCK, request.getChoiceIndex());
+                id = request.set_request_with_datablock.invoke_id_and_priority;
+                block = request.set_request_with_datablock.datablock;
+            }
+
+            if (block.block_number.getValue() == nextBlockNumber) {
+                rawData.write(block.raw_data.getValue());
+                ++nextBlockNumber;
+            }
+
+            if (block.block_number.getValue() == dropAckOfBlock && !dropped.getAndSet(true)) {
+                return null;
+            }
+
+            SET_Response response = new SET_Response();
+            if (block.last_block.getValue()) {
+                response.setset_response_last_datablock(
+                        new Set_Response_Last_Datablock(id, new AxdrEnum(0), block.block_number));
+            }
+            else {
+                response.setset_response_datablock(new Set_Response_Datablock(id, block.block_number));
+            }
+            responseQueue.put(PduHelper.invokeIdFrom(id), response);
+            return null;
+        }
+    }
+
+    private static void assertOctetString(byte[] expected, byte[] rawData) throws Exception {
+        Data data = new Data();
+        data.decode(new ByteArrayInputStream(rawData));
+        assertArrayEquals(expected, data.octet_string.getValue());
+    }
+
+    private static SetParameter setParameter(byte[] value) {
+        AttributeAddress address = new AttributeAddress(DataAttribute.VALUE, new ObisCode(0, 0, 42, 0, 0, 255));
+        return new SetParameter(address, DataObject.newOctetStringData(value));
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static DlmsLnConnection newConnection(int responseTimeout) throws Exception {
+        Settings settings = PowerMockito.mock(Settings.class);
+        when(settings.responseTimeout()).thenReturn(responseTimeout);
+        when(settings.maxInFlightRequests()).thenReturn(1);
+        when(settings.securitySuite()).thenReturn(SecuritySuite.builder().build());
+
+        DlmsLnConnection connection = PowerMockito.spy(new DlmsLnConnection(settings, null));
+        Whitebox.setInternalState(connection, "maxSendPduSize", MAX_SEND_PDU_SIZE);
+
+        when(connection.proposedConformance()).thenCallRealMethod();
+        Set<ConformanceSetting> proposedConformance = connection.proposedConformance();
+        when(connection.negotiatedFeatures()).thenReturn(proposedConformance);
+
+        return connection;
+    }
+
+}
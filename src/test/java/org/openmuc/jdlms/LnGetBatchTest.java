@@ -0,0 +1,136 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.openmuc.jdlms.internal.PduHelper.invokeIdFrom;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmuc.jdlms.interfaceclass.attribute.DataAttribute;
+import org.openmuc.jdlms.internal.asn1.axdr.NullOutputStream;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor_With_Selection;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Data_Result;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_With_List;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.settings.client.Settings;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(DlmsLnConnection.class)
+public class LnGetBatchTest {
+
+    private static final int MAX_SEND_PDU_SIZE = 50;
+
+    @Test
+    public void testSplitIntoGetRequests() throws Exception {
+        DlmsLnConnection connection = newConnection();
+
+        List<List<AttributeAddress>> batches = connection.splitIntoGetRequests(addresses(20));
+
+        // 4 bytes header + 4 * 10 bytes descriptors
+        assertEquals(5, batches.size());
+        for (List<AttributeAddress> batch : batches) {
+            assertEquals(4, batch.size());
+        }
+    }
+
+    @Test
+    public void testGetBatched() throws Exception {
+        DlmsLnConnection connection = newConnection();
+        final ResponseQueue<GET_Response> responseQueue = Whitebox.getInternalState(connection, "getResponseQueue");
+        final AtomicInteger numRequests = new AtomicInteger();
+
+        doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                COSEMpdu pdu = invocation.getArgumentAt(0, COSEMpdu.class);
+                assertTrue("Request exceeds max PDU size.", pdu.encode(new NullOutputStream()) <= MAX_SEND_PDU_SIZE);
+                numRequests.incrementAndGet();
+
+                GET_Request request = pdu.get_request;
+                GET_Response response = new GET_Response();
+                if (request.getChoiceIndex() == GET_Request.Choices.GET_REQUEST_NORMAL) {
+                    response.setget_response_normal(
+                            new Get_Response_Normal(request.get_request_normal.invoke_id_and_priority,
+                                    resultFor(request.get_request_normal.cosem_attribute_descriptor)));
+                    responseQueue.put(invokeIdFrom(request.get_request_normal.invoke_id_and_priority), response);
+                }
+                else {
+                    Get_Response_With_List.SubSeqOf_result results = new Get_Response_With_List.SubSeqOf_result();
+                    Get_Request_With_List requestList = request.get_request_with_list;
+                    for (Cosem_Attribute_Descriptor_With_Selection descriptor : requestList.attribute_descriptor_list
+                            .list()) {
+                        results.add(resultFor(descriptor.cosem_attribute_descriptor));
+                    }
+                    response.setget_response_with_list(
+                            new Get_Response_With_List(requestList.invoke_id_and_priority, results));
+                    responseQueue.put(invokeIdFrom(requestList.invoke_id_and_priority), response);
+                }
+                return null;
+            }
+        }).when(connection).send(any(COSEMpdu.class));
+
+        List<GetResult> results = connection.getBatched(addresses(21));
+
+        assertEquals(6, numRequests.get());
+        assertEquals(21, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Number value = results.get(i).getResultData().getValue();
+            assertEquals(i, value.intValue());
+        }
+    }
+
+    private static Get_Data_Result resultFor(Cosem_Attribute_Descriptor descriptor) {
+        Data data = new Data();
+        data.setlong_unsigned(new Unsigned16(descriptor.instance_id.getValue()[4] & 0xff));
+        Get_Data_Result result = new Get_Data_Result();
+        result.setdata(data);
+        return result;
+    }
+
+    private static List<AttributeAddress> addresses(int numAddresses) {
+        List<AttributeAddress> addresses = new ArrayList<>(numAddresses);
+        for (int i = 0; i < numAddresses; i++) {
+            addresses.add(new AttributeAddress(DataAttribute.VALUE, new ObisCode(1, 0, 1, 8, i, 255)));
+        }
+        return addresses;
+    }
+
+    private static DlmsLnConnection newConnection() throws Exception {
+        Settings settings = PowerMockito.mock(Settings.class);
+        when(settings.responseTimeout()).thenReturn(1000);
+        when(settings.maxInFlightRequests()).thenReturn(2);
+        when(settings.securitySuite()).thenReturn(SecuritySuite.builder().build());
+
+        DlmsLnConnection connection = PowerMockito.spy(new DlmsLnConnection(settings, null));
+        Whitebox.setInternalState(connection, "maxSendPduSize", MAX_SEND_PDU_SIZE);
+
+        when(connection.proposedConformance()).thenCallRealMethod();
+        Set<ConformanceSetting> proposedConformance = connection.proposedConformance();
+        when(connection.negotiatedFeatures()).thenReturn(proposedConformance);
+
+        return connection;
+    }
+
+}
@@ -0,0 +1,167 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.openmuc.jdlms.internal.PduHelper.invokeIdFrom;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.interfaceclass.attribute.ProfileGenericAttribute;
+import org.openmuc.jdlms.internal.DataConverter;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrBoolean;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_G;
+import org.openmuc.jdlms.internal.asn1.cosem.DataBlock_G.SubChoice_result;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Request;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_With_Datablock;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned32;
+import org.openmuc.jdlms.settings.client.Settings;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(DlmsLnConnection.class)
+public class LnGetRowsTest {
+
+    private static final int BLOCK_SIZE = 40;
+    private static final int NUM_ROWS = 50;
+
+    @Test
+    public void testRowsAreStreamedWhileBlocksArrive() throws Exception {
+        List<DataObject> rows = new ArrayList<>(NUM_ROWS);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            rows.add(DataObject.newStructureData(DataObject.newUInteger32Data(i), DataObject.newUInteger16Data(i)));
+        }
+        DlmsLnConnection connection = newConnection();
+        final BlockServer server = new BlockServer(connection, encode(DataObject.newArrayData(rows)));
+
+        final List<Integer> blocksSentPerRow = new ArrayList<>(NUM_ROWS);
+        final List<DataObject> receivedRows = new ArrayList<>(NUM_ROWS);
+        AccessResultCode resultCode = connection.getRows(
+                new AttributeAddress(ProfileGenericAttribute.BUFFER, new ObisCode(1, 0, 99, 1, 0, 255)),
+                new DataRowListener() {
+
+                    @Override
+                    public void rowReceived(DataObject row) {
+                        blocksSentPerRow.add(server.numBlocksSent);
+                        receivedRows.add(row);
+                    }
+                });
+
+        assertEquals(AccessResultCode.SUCCESS, resultCode);
+        assertEquals(NUM_ROWS, receivedRows.size());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            List<DataObject> row = receivedRows.get(i).getValue();
+            Number value = row.get(0).getValue();
+            assertEquals(i, value.intValue());
+        }
+
+        assertEquals(1, blocksSentPerRow.get(0).intValue());
+        assertTrue(server.numBlocks > 1);
+        assertEquals(server.numBlocks, server.numBlocksSent);
+    }
+
+    @Test
+    public void testSingleValueIsOneRow() throws Exception {
+        byte[] octetString = new byte[100];
+        Arrays.fill(octetString, (byte) 0x42);
+
+        DlmsLnConnection connection = newConnection();
+        new BlockServer(connection, encode(DataObject.newOctetStringData(octetString)));
+
+        final List<DataObject> receivedRows = new ArrayList<>();
+        connection.getRows(new AttributeAddress(1, new ObisCode(0, 0, 42, 0, 0, 255), 2), new DataRowListener() {
+
+            @Override
+            public void rowReceived(DataObject row) {
+                receivedRows.add(row);
+            }
+        });
+
+        assertEquals(1, receivedRows.size());
+        byte[] value = receivedRows.get(0).getValue();
+        assertTrue(Arrays.equals(octetString, value));
+    }
+
+    private static class BlockServer implements Answer<Void> {
+
+        private final ResponseQueue<GET_Response> responseQueue;
+        private final byte[] rawData;
+        private final int numBlocks;
+        private int numBlocksSent;
+
+        public BlockServer(DlmsLnConnection connection, byte[] rawData) throws Exception {
+            this.responseQueue = Whitebox.getInternalState(connection, "getResponseQueue");
+            this.rawData = rawData;
+            this.numBlocks = (rawData.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            doAnswer(this).when(connection).send(any(COSEMpdu.class));
+        }
+
+        @Override
+        public Void answer(InvocationOnMock invocation) throws Throwable {
+            GET_Request request = invocation.getArgumentAt(0, COSEMpdu.class).get_request;
+            Invoke_Id_And_Priority id;
+            if (request.getChoiceIndex() == GET_Request.Choices.GET_REQUEST_NORMAL) {
+                id = request.get_request_normal.invoke_id_and_priority;
+            }
+            else {
+                assertEquals(GET_Request.Choices.GET_REQUEST_NEXT, request.getChoiceIndex());
+                assertEquals(numBlocksSent, request.get_request_next.block_number.getValue());
+                id = request.get_request_next.invoke_id_and_priority;
+            }
+
+            int from = numBlocksSent * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, rawData.length);
+            ++numBlocksSent;
+
+            SubChoice_result result = new SubChoice_result();
+            result.setraw_data(new AxdrOctetString(Arrays.copyOfRange(rawData, from, to)));
+            DataBlock_G dataBlock = new DataBlock_G(new AxdrBoolean(to == rawData.length),
+                    new Unsigned32(numBlocksSent), result);
+
+            GET_Response response = new GET_Response();
+            response.setget_response_with_datablock(new Get_Response_With_Datablock(id, dataBlock));
+            responseQueue.put(invokeIdFrom(id), response);
+            return null;
+        }
+    }
+
+    private static byte[] encode(DataObject dataObject) throws Exception {
+        BerByteArrayOutputStream os = new BerByteArrayOutputStream(100, true);
+        DataConverter.convertDataObjectToData(dataObject).encode(os);
+        return os.getArray();
+    }
+
+    private static DlmsLnConnection newConnection() throws Exception {
+        Settings settings = PowerMockito.mock(Settings.class);
+        when(settings.responseTimeout()).thenReturn(1000);
+        when(settings.maxInFlightRequests()).thenReturn(1);
+        when(settings.securitySuite()).thenReturn(SecuritySuite.builder().build());
+
+        DlmsLnConnection connection = PowerMockito.spy(new DlmsLnConnection(settings, null));
+
+        when(connection.proposedConformance()).thenCallRealMethod();
+        Set<ConformanceSetting> proposedConformance = connection.proposedConformance();
+        when(connection.negotiatedFeatures()).thenReturn(proposedConformance);
+
+        return connection;
+    }
+
+}
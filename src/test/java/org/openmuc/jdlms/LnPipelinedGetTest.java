@@ -0,0 +1,114 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static org.openmuc.jdlms.internal.PduHelper.invokeIdFrom;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmuc.jdlms.interfaceclass.attribute.DataAttribute;
+import org.openmuc.jdlms.internal.asn1.cosem.COSEMpdu;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+import org.openmuc.jdlms.internal.asn1.cosem.GET_Response;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Data_Result;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Response_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+import org.openmuc.jdlms.settings.client.Settings;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(DlmsLnConnection.class)
+public class LnPipelinedGetTest {
+
+    @Test
+    public void testRequestsInFlight() throws Exception {
+        Settings settings = PowerMockito.mock(Settings.class);
+        when(settings.responseTimeout()).thenReturn(2000);
+        when(settings.maxInFlightRequests()).thenReturn(3);
+
+        DlmsLnConnection connection = PowerMockito.spy(new DlmsLnConnection(settings, null));
+
+        when(connection.proposedConformance()).thenCallRealMethod();
+        Set<ConformanceSetting> proposedConformance = connection.proposedConformance();
+        when(connection.negotiatedFeatures()).thenReturn(proposedConformance);
+
+        final BlockingQueue<Get_Request_Normal> sentRequests = new LinkedBlockingQueue<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                COSEMpdu pdu = invocation.getArgumentAt(0, COSEMpdu.class);
+                sentRequests.put(pdu.get_request.get_request_normal);
+                return null;
+            }
+        }).when(connection).send(any(COSEMpdu.class));
+
+        Future<List<GetResult>> result1 = connection
+                .getAsync(Arrays.asList(new AttributeAddress(DataAttribute.VALUE, "1.0.1.8.0.255")));
+        Future<List<GetResult>> result2 = connection
+                .getAsync(Arrays.asList(new AttributeAddress(DataAttribute.VALUE, "1.0.2.8.0.255")));
+        Future<List<GetResult>> result3 = connection
+                .getAsync(Arrays.asList(new AttributeAddress(DataAttribute.VALUE, "1.0.3.8.0.255")));
+
+        Get_Request_Normal[] requests = new Get_Request_Normal[3];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = sentRequests.poll(1, TimeUnit.SECONDS);
+            assertNotNull("Requests have not been sent in parallel.", requests[i]);
+        }
+        assertNull(sentRequests.poll(100, TimeUnit.MILLISECONDS));
+
+        Set<Integer> invokeIds = new HashSet<>();
+        for (Get_Request_Normal request : requests) {
+            invokeIds.add(invokeIdFrom(request.invoke_id_and_priority));
+        }
+        assertEquals("Invoke IDs of the requests in flight must differ.", requests.length, invokeIds.size());
+
+        // answer in reverse order, with the C field of the requested OBIS code
+        for (int i = requests.length - 1; i >= 0; i--) {
+            int cField = requests[i].cosem_attribute_descriptor.instance_id.getValue()[2];
+            connection.processPdu(responseFor(requests[i].invoke_id_and_priority, cField));
+        }
+
+        assertEquals(1, valueOf(result1.get(1, TimeUnit.SECONDS)));
+        assertEquals(2, valueOf(result2.get(1, TimeUnit.SECONDS)));
+        assertEquals(3, valueOf(result3.get(1, TimeUnit.SECONDS)));
+    }
+
+    private static long valueOf(List<GetResult> results) {
+        Number value = results.get(0).getResultData().getValue();
+        return value.longValue();
+    }
+
+    private static COSEMpdu responseFor(Invoke_Id_And_Priority id, int value) {
+        Data data = new Data();
+        data.setlong_unsigned(new Unsigned16(value));
+        Get_Data_Result result = new Get_Data_Result();
+        result.setdata(data);
+
+        GET_Response response = new GET_Response();
+        response.setget_response_normal(new Get_Response_Normal(id, result));
+
+        COSEMpdu pdu = new COSEMpdu();
+        pdu.setget_response(response);
+        return pdu;
+    }
+
+}
@@ -0,0 +1,180 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.openmuc.jdlms.datatypes.DataObject.newFloat32Data;
+import static org.openmuc.jdlms.datatypes.DataObject.newInteger8Data;
+import static org.openmuc.jdlms.datatypes.DataObject.newNullData;
+import static org.openmuc.jdlms.datatypes.DataObject.newOctetStringData;
+import static org.openmuc.jdlms.datatypes.DataObject.newStructureData;
+import static org.openmuc.jdlms.datatypes.DataObject.newUInteger16Data;
+import static org.openmuc.jdlms.datatypes.DataObject.newUInteger32Data;
+import static org.powermock.api.mockito.PowerMockito.doAnswer;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmuc.jdlms.datatypes.CosemDateTime;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.DataConverter;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+public class ProfileGenericReaderTest {
+
+    private static final ObisCode LOAD_PROFILE = new ObisCode(1, 0, 99, 1, 0, 255);
+
+    // 2017-03-01 00:00:00 UTC
+    private static final long T0 = 1488326400000L;
+    private static final long CAPTURE_PERIOD_MILLIS = 900 * 1000L;
+
+    private DlmsConnection connection;
+    private List<AttributeAddress> bufferRequests;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = PowerMockito.mock(DlmsConnection.class);
+        bufferRequests = new ArrayList<>();
+
+        DataObject captureObjects = DataObject.newArrayData(Arrays.asList(
+                captureObjectDefinition(8, new ObisCode(0, 0, 1, 0, 0, 255), 2),
+                captureObjectDefinition(3, new ObisCode(1, 0, 1, 8, 0, 255), 2),
+                captureObjectDefinition(3, new ObisCode(1, 0, 32, 7, 0, 255), 2)));
+        when(connection.get(eq(false), anyListOf(AttributeAddress.class))).thenReturn(
+                Arrays.asList(new GetResult(captureObjects), new GetResult(newUInteger32Data(900))));
+
+        final List<DataObject> rows = Arrays.asList(
+                newStructureData(dateTime(T0), newUInteger32Data(100), newFloat32Data(1.5f)),
+                newStructureData(newNullData(), newUInteger32Data(200), newFloat32Data(2.5f)),
+                newStructureData(dateTime(T0 + 2 * CAPTURE_PERIOD_MILLIS), newUInteger32Data(300), newNullData()));
+
+        doAnswer(new Answer<AccessResultCode>() {
+
+            @Override
+            public AccessResultCode answer(InvocationOnMock invocation) throws Throwable {
+                bufferRequests.add(invocation.getArgumentAt(1, AttributeAddress.class));
+                RawRowListener listener = invocation.getArgumentAt(2, RawRowListener.class);
+                // the first block holds the first entry
+                listener.rowReceived(DataConverter.convertDataObjectToData(rows.get(0)));
+                listener.blockReceived();
+                for (DataObject row : rows.subList(1, rows.size())) {
+                    listener.rowReceived(DataConverter.convertDataObjectToData(row));
+                }
+                return AccessResultCode.SUCCESS;
+            }
+        }).when(connection).getRawRows(eq(false), any(AttributeAddress.class), any(RawRowListener.class));
+    }
+
+    @Test
+    public void testReadRangeDecodesColumns() throws Exception {
+        ProfileGenericReader reader = new ProfileGenericReader(connection, LOAD_PROFILE);
+
+        ProfileBuffer buffer = reader.readRange(T0, T0 + 3 * CAPTURE_PERIOD_MILLIS);
+
+        assertEquals(3, buffer.numberOfRows());
+        assertEquals(3, buffer.numberOfColumns());
+        assertEquals(ProfileBuffer.ColumnType.TIMESTAMP, buffer.columnType(0));
+        assertEquals(ProfileBuffer.ColumnType.INTEGER, buffer.columnType(1));
+        assertEquals(ProfileBuffer.ColumnType.FLOATING_POINT, buffer.columnType(2));
+
+        // the omitted timestamp is derived from the capture period
+        assertArrayEquals(new long[] { T0, T0 + CAPTURE_PERIOD_MILLIS, T0 + 2 * CAPTURE_PERIOD_MILLIS },
+                buffer.timestamps());
+        assertArrayEquals(new long[] { 100, 200, 300 }, buffer.longColumn(1));
+
+        double[] values = buffer.doubleColumn(2);
+        assertEquals(1.5, values[0], 0);
+        assertEquals(2.5, values[1], 0);
+        assertTrue(Double.isNaN(values[2]));
+
+        SelectiveAccessDescription access = bufferRequests.get(0).getAccessSelection();
+        assertEquals(1, access.getAccessSelector());
+        List<DataObject> rangeDescriptor = access.getAccessParameter().getValue();
+        List<DataObject> restrictingObject = rangeDescriptor.get(0).getValue();
+        Number classId = restrictingObject.get(0).getValue();
+        assertEquals(8, classId.intValue());
+        assertArrayEquals(dateTimeBytes(T0), (byte[]) rangeDescriptor.get(1).getValue());
+    }
+
+    @Test
+    public void testEntriesArePassedBlockByBlock() throws Exception {
+        ProfileGenericReader reader = new ProfileGenericReader(connection, LOAD_PROFILE);
+        final List<long[]> timestamps = new ArrayList<>();
+
+        reader.readAll(new ProfileBufferListener() {
+
+            @Override
+            public void entriesReceived(ProfileBuffer entries) {
+                timestamps.add(entries.timestamps());
+            }
+        });
+
+        assertEquals(2, timestamps.size());
+        assertArrayEquals(new long[] { T0 }, timestamps.get(0));
+        // the omitted timestamp is derived from the entry passed with the previous block
+        assertArrayEquals(new long[] { T0 + CAPTURE_PERIOD_MILLIS, T0 + 2 * CAPTURE_PERIOD_MILLIS },
+                timestamps.get(1));
+        assertEquals(T0 + 2 * CAPTURE_PERIOD_MILLIS, reader.getLastTimestamp());
+    }
+
+    @Test
+    public void testReadNewEntriesContinuesAfterLastEntry() throws Exception {
+        ProfileGenericReader reader = new ProfileGenericReader(connection, LOAD_PROFILE);
+
+        reader.readNewEntries();
+        assertEquals(null, bufferRequests.get(0).getAccessSelection());
+        assertEquals(T0 + 2 * CAPTURE_PERIOD_MILLIS, reader.getLastTimestamp());
+
+        reader.readNewEntries();
+        List<DataObject> rangeDescriptor = bufferRequests.get(1).getAccessSelection().getAccessParameter().getValue();
+        assertArrayEquals(dateTimeBytes(T0 + 2 * CAPTURE_PERIOD_MILLIS + 1000),
+                (byte[]) rangeDescriptor.get(1).getValue());
+    }
+
+    @Test
+    public void testReadEntries() throws Exception {
+        ProfileGenericReader reader = new ProfileGenericReader(connection, LOAD_PROFILE);
+
+        reader.readEntries(10, 0);
+
+        SelectiveAccessDescription access = bufferRequests.get(0).getAccessSelection();
+        assertEquals(2, access.getAccessSelector());
+        List<DataObject> entryDescriptor = access.getAccessParameter().getValue();
+        Number fromEntry = entryDescriptor.get(0).getValue();
+        Number toEntry = entryDescriptor.get(1).getValue();
+        assertEquals(10, fromEntry.intValue());
+        assertEquals(0, toEntry.intValue());
+    }
+
+    private static DataObject captureObjectDefinition(int classId, ObisCode instanceId, int attributeIndex) {
+        return newStructureData(newUInteger16Data(classId), newOctetStringData(instanceId.bytes()),
+                newInteger8Data((byte) attributeIndex), newUInteger16Data(0));
+    }
+
+    private static DataObject dateTime(long timestamp) {
+        return newOctetStringData(dateTimeBytes(timestamp));
+    }
+
+    private static byte[] dateTimeBytes(long timestamp) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(timestamp);
+        return new CosemDateTime(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY),
+                calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND), 0).encode();
+    }
+
+}
@@ -0,0 +1,112 @@
+package org.openmuc.jdlms;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned8;
+
+public class ResponseQueueTest {
+
+    @Test
+    public void testOutOfOrderResponses() throws Exception {
+        final ResponseQueue<Unsigned8> queue = new ResponseQueue<>();
+
+        queue.expectResponseFor(3);
+        queue.expectResponseFor(4);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Unsigned8> response3 = executor.submit(pollTask(queue, 3));
+            Future<Unsigned8> response4 = executor.submit(pollTask(queue, 4));
+
+            queue.put(4, new Unsigned8(4));
+            assertEquals(4, response4.get(500, TimeUnit.MILLISECONDS).getValue());
+
+            queue.put(3, new Unsigned8(3));
+            assertEquals(3, response3.get(500, TimeUnit.MILLISECONDS).getValue());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, queue.latencyHistogramFor(3).count());
+        assertEquals(1, queue.latencyHistogramFor(4).count());
+    }
+
+    @Test
+    public void testOnlyMatchingResponseIsTimed() throws Exception {
+        ResponseQueue<Unsigned8> queue = new ResponseQueue<>();
+
+        // no request is waiting
+        queue.put(6, new Unsigned8(1));
+        assertEquals(0, queue.latencyHistogramFor(6).count());
+
+        queue.expectResponseFor(6);
+        queue.put(6, new Unsigned8(2));
+        // duplicate response
+        queue.put(6, new Unsigned8(3));
+        assertEquals(1, queue.latencyHistogramFor(6).count());
+
+        queue.expectResponseFor(6);
+        try {
+            queue.poll(6, 20);
+        } catch (ResponseTimeoutException e) {
+            // expected
+        }
+        // late response of the timed out request
+        queue.put(6, new Unsigned8(4));
+        assertEquals(1, queue.latencyHistogramFor(6).count());
+    }
+
+    @Test
+    public void testStaleResponseIsDiscarded() throws Exception {
+        ResponseQueue<Unsigned8> queue = new ResponseQueue<>();
+
+        queue.put(5, new Unsigned8(1));
+
+        queue.expectResponseFor(5);
+        queue.put(5, new Unsigned8(2));
+
+        assertEquals(2, queue.poll(5, 100).getValue());
+    }
+
+    @Test(expected = ResponseTimeoutException.class)
+    public void testTimeout() throws Exception {
+        ResponseQueue<Unsigned8> queue = new ResponseQueue<>();
+        queue.expectResponseFor(1);
+        queue.put(2, new Unsigned8(2));
+
+        queue.poll(1, 50);
+    }
+
+    @Test
+    public void testInvalidInvokeIdIsIgnored() throws Exception {
+        ResponseQueue<Unsigned8> queue = new ResponseQueue<>();
+        queue.expectResponseFor(0);
+        queue.put(-1, new Unsigned8(1));
+        queue.put(16, new Unsigned8(2));
+        queue.put(0, new Unsigned8(3));
+
+        assertEquals(3, queue.poll(0, 100).getValue());
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i == 0 ? 1 : 0, queue.latencyHistogramFor(i).count());
+        }
+    }
+
+    private static Callable<Unsigned8> pollTask(final ResponseQueue<Unsigned8> queue, final int invokeId) {
+        return new Callable<Unsigned8>() {
+
+            @Override
+            public Unsigned8 call() throws Exception {
+                return queue.poll(invokeId, 1000);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.openmuc.jdlms.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.openmuc.jdlms.datatypes.DataObject;
+import org.openmuc.jdlms.internal.asn1.cosem.Data;
+
+public class DataConverterTest {
+
+    @Test
+    public void testFloat32RoundTrip() {
+        Data data = DataConverter.convertDataObjectToData(DataObject.newFloat32Data(1.5f));
+
+        assertEquals(Data.Choices.FLOAT32, data.getChoiceIndex());
+        assertEquals(1.5f, ByteBuffer.wrap(data.float32.getValue()).getFloat(), 0);
+
+        Float value = DataConverter.convertDataToDataObject(data).getValue();
+        assertEquals(1.5f, value, 0);
+    }
+
+}
@@ -0,0 +1,201 @@
+package org.openmuc.jdlms.internal.asn1.axdr;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openmuc.jasn1.ber.BerByteArrayOutputStream;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrInteger;
+import org.openmuc.jdlms.internal.asn1.axdr.types.AxdrOctetString;
+import org.openmuc.jdlms.internal.asn1.cosem.Action_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Attribute_Descriptor;
+import org.openmuc.jdlms.internal.asn1.cosem.Cosem_Object_Instance_Id;
+import org.openmuc.jdlms.internal.asn1.cosem.Get_Request_Normal;
+import org.openmuc.jdlms.internal.asn1.cosem.Integer8;
+import org.openmuc.jdlms.internal.asn1.cosem.Invoke_Id_And_Priority;
+import org.openmuc.jdlms.internal.asn1.cosem.Unsigned16;
+
+public class AxdrReaderWriterTest {
+
+    @Test
+    public void testPrimitivesRoundTrip() throws IOException {
+        byte[] bytes = new byte[64];
+        AxdrWriter writer = new AxdrWriter(bytes);
+        writer.writeBoolean(true);
+        writer.writeUnsigned8(0xFF);
+        writer.writeUnsigned16(0xFFFE);
+        writer.writeUnsigned32(0xFFFFFFFDL);
+        writer.writeInteger8(-2);
+        writer.writeInteger16(-300);
+        writer.writeInteger32(Integer.MIN_VALUE);
+        writer.writeInteger64(Long.MIN_VALUE + 1);
+        writer.writeInteger(-129L);
+        writer.writeOctetString(new byte[] { 1, 2, 3 }, 0, 3);
+
+        AxdrReader reader = new AxdrReader(Arrays.copyOf(bytes, writer.buffer().position()));
+        assertTrue(reader.readBoolean());
+        assertEquals(0xFF, reader.readUnsigned8());
+        assertEquals(0xFFFE, reader.readUnsigned16());
+        assertEquals(0xFFFFFFFDL, reader.readUnsigned32());
+        assertEquals(-2, reader.readInteger8());
+        assertEquals(-300, reader.readInteger16());
+        assertEquals(Integer.MIN_VALUE, reader.readInteger32());
+        assertEquals(Long.MIN_VALUE + 1, reader.readInteger64());
+        assertEquals(-129L, reader.readInteger());
+
+        byte[] octetString = new byte[8];
+        assertEquals(3, reader.readOctetString(octetString));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Arrays.copyOf(octetString, 3));
+        assertEquals(0, reader.remaining());
+    }
+
+    @Test
+    public void testLengthMatchesAxdrLength() throws IOException {
+        for (int length : new int[] { 0, 127, 128, 255, 256, 65536 }) {
+            byte[] expected = AxdrLength.encodeLength(length);
+            assertEquals(expected.length, AxdrLength.codeLengthOf(length));
+
+            AxdrWriter writer = new AxdrWriter(new byte[8]);
+            writer.writeLength(length);
+            assertArrayEquals(expected, written(writer));
+
+            assertEquals(length, new AxdrReader(expected).readLength());
+            assertEquals(length, AxdrLength.decodeLength(new ByteArrayInputStream(expected)));
+        }
+    }
+
+    @Test
+    public void testIntegersMatchStreamCodec() throws IOException {
+        assertSameEncoding(new Unsigned16(65535), new Unsigned16());
+        assertSameEncoding(new Integer8(-128), new Integer8());
+        assertSameEncoding(new Integer8(127), new Integer8());
+
+        for (long value : new long[] { 0, 127, 128, -1, -128, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertSameEncoding(new AxdrInteger(value), new AxdrInteger());
+        }
+    }
+
+    @Test
+    public void testOctetStringsMatchStreamCodec() throws IOException {
+        AxdrOctetString decoded = new AxdrOctetString();
+        assertSameEncoding(new AxdrOctetString(new byte[200]), decoded);
+        assertEquals(200, decoded.getValue().length);
+
+        assertSameEncoding(new Cosem_Object_Instance_Id(new byte[] { 1, 0, 99, 1, 0, (byte) 255 }),
+                new Cosem_Object_Instance_Id());
+    }
+
+    @Test
+    public void testDescriptorIsDecodedIntoExistingFields() throws IOException {
+        Cosem_Attribute_Descriptor descriptor = new Cosem_Attribute_Descriptor(new Unsigned16(8),
+                new Cosem_Object_Instance_Id(new byte[] { 0, 0, 1, 0, 0, (byte) 255 }), new Integer8(2));
+        byte[] encoded = streamEncoded(descriptor);
+        assertArrayEquals(new byte[] { 0, 8, 0, 0, 1, 0, 0, (byte) 255, 2 }, encoded);
+
+        AxdrWriter writer = new AxdrWriter(new byte[16]);
+        descriptor.encode(writer);
+        assertArrayEquals(encoded, written(writer));
+
+        Cosem_Attribute_Descriptor decoded = new Cosem_Attribute_Descriptor();
+        decoded.decode(new AxdrReader(encoded));
+        Unsigned16 classId = decoded.class_id;
+        byte[] instanceId = decoded.instance_id.getValue();
+
+        decoded.decode(new AxdrReader(encoded));
+        assertTrue(classId == decoded.class_id);
+        assertTrue(instanceId == decoded.instance_id.getValue());
+        assertEquals(8, decoded.class_id.getValue());
+        assertArrayEquals(descriptor.instance_id.getValue(), instanceId);
+        assertEquals(2, decoded.attribute_id.getValue());
+    }
+
+    @Test
+    public void testGetRequestDescriptorRoundTrip() throws IOException {
+        Get_Request_Normal request = new Get_Request_Normal(new Invoke_Id_And_Priority(new byte[] { (byte) 0xC1 }),
+                new Cosem_Attribute_Descriptor(new Unsigned16(3),
+                        new Cosem_Object_Instance_Id(new byte[] { 1, 0, 1, 8, 0, (byte) 255 }), new Integer8(2)),
+                null);
+        byte[] encoded = streamEncoded(request);
+        assertArrayEquals(new byte[] { (byte) 0xC1, 0, 3, 1, 0, 1, 8, 0, (byte) 255, 2, 0 }, encoded);
+
+        Get_Request_Normal decoded = new Get_Request_Normal();
+        assertEquals(encoded.length, decoded.decode(new ByteArrayInputStream(encoded)));
+        assertEquals(3, decoded.cosem_attribute_descriptor.class_id.getValue());
+        assertArrayEquals(request.cosem_attribute_descriptor.instance_id.getValue(),
+                decoded.cosem_attribute_descriptor.instance_id.getValue());
+        assertEquals(2, decoded.cosem_attribute_descriptor.attribute_id.getValue());
+        assertFalse(decoded.access_selection.isUsed());
+    }
+
+    @Test
+    public void testTruncatedMethodDescriptorThrows() {
+        byte[] truncated = new byte[] { (byte) 0xC1, 0, 70, 0, 0, 96, 3, 10 };
+        try {
+            new Action_Request_Normal().decode(new ByteArrayInputStream(truncated));
+            fail("Decoded a truncated method descriptor.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testTruncatedInputThrows() {
+        AxdrReader reader = new AxdrReader(new byte[] { 0x12 });
+        try {
+            reader.readUnsigned16();
+            fail("Read beyond the end of the data.");
+        } catch (EOFException e) {
+            // expected
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        assertFalse(reader.remaining() == 0);
+    }
+
+    private static void assertSameEncoding(AxdrInteger value, AxdrInteger decoded) throws IOException {
+        byte[] encoded = streamEncoded(value);
+
+        AxdrWriter writer = new AxdrWriter(new byte[16]);
+        value.encode(writer);
+        assertArrayEquals(encoded, written(writer));
+
+        AxdrReader reader = new AxdrReader(encoded);
+        decoded.decode(reader);
+        assertEquals(value.getValue(), decoded.getValue());
+        assertEquals(0, reader.remaining());
+    }
+
+    private static void assertSameEncoding(AxdrOctetString value, AxdrOctetString decoded) throws IOException {
+        byte[] encoded = streamEncoded(value);
+
+        AxdrWriter writer = new AxdrWriter(new byte[256]);
+        value.encode(writer);
+        assertArrayEquals(encoded, written(writer));
+
+        AxdrReader reader = new AxdrReader(encoded);
+        decoded.decode(reader);
+        assertArrayEquals(value.getValue(), decoded.getValue());
+        assertEquals(0, reader.remaining());
+    }
+
+    private static byte[] streamEncoded(AxdrType value) throws IOException {
+        BerByteArrayOutputStream os = new BerByteArrayOutputStream(256, true);
+        value.encode(os);
+        return os.getArray();
+    }
+
+    private static byte[] written(AxdrWriter writer) {
+        ByteBuffer buffer = writer.buffer();
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+}
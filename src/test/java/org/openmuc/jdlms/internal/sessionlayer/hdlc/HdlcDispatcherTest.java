@@ -0,0 +1,311 @@
+package org.openmuc.jdlms.internal.sessionlayer.hdlc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.FatalJDlmsException;
+import org.openmuc.jdlms.RawMessageData.RawMessageDataBuilder;
+import org.openmuc.jdlms.SerialConnectionBuilder;
+import org.openmuc.jdlms.TcpConnectionBuilder;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcDispatcher.HdlcConnection;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcDispatcher.HdlcConnectionListener;
+import org.openmuc.jdlms.settings.client.HdlcSettings;
+
+public class HdlcDispatcherTest {
+
+    private FakeConcentrator concentrator;
+
+    @Before
+    public void setUp() throws IOException {
+        this.concentrator = new FakeConcentrator();
+        this.concentrator.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.concentrator.close();
+    }
+
+    @Test
+    public void testMetersShareThePhysicalLink() throws Exception {
+        HdlcSettings settings16 = newSettings(16);
+        HdlcSettings settings17 = newSettings(17);
+        RecordingListener listener16 = new RecordingListener(null);
+        RecordingListener listener17 = new RecordingListener(null);
+
+        HdlcConnection connection16 = HdlcDispatcher.instance().connect(settings16, listener16);
+        HdlcConnection connection17 = HdlcDispatcher.instance().connect(settings17, listener17);
+        assertSame(connection16, connection17);
+
+        connection16.open(settings16);
+        connection17.open(settings17);
+
+        connection16.send(newInformationFrame(settings16, new byte[] { 16 }));
+        connection17.send(newInformationFrame(settings17, new byte[] { 17 }));
+
+        assertArrayEquals(new byte[] { 16 }, listener16.poll().getInformationFieldWithoutLlc());
+        assertArrayEquals(new byte[] { 17 }, listener17.poll().getInformationFieldWithoutLlc());
+
+        connection16.close(settings16);
+        connection17.send(newInformationFrame(settings17, new byte[] { 18 }));
+        assertArrayEquals(new byte[] { 18 }, listener17.poll().getInformationFieldWithoutLlc());
+        connection17.close(settings17);
+
+        assertEquals(1, this.concentrator.acceptedSockets.get());
+        assertTrue(this.concentrator.closed.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlockOtherAddresses() throws Exception {
+        HdlcSettings settings16 = newSettings(16);
+        HdlcSettings settings17 = newSettings(17);
+        CountDownLatch releaseSlowListener = new CountDownLatch(1);
+        RecordingListener slowListener = new RecordingListener(releaseSlowListener);
+        RecordingListener listener17 = new RecordingListener(null);
+
+        HdlcConnection connection = HdlcDispatcher.instance().connect(settings16, slowListener);
+        HdlcDispatcher.instance().connect(settings17, listener17);
+
+        connection.open(settings16);
+        connection.open(settings17);
+
+        try {
+            connection.send(newInformationFrame(settings16, new byte[] { 1 }));
+            connection.send(newInformationFrame(settings16, new byte[] { 2 }));
+            connection.send(newInformationFrame(settings17, new byte[] { 3 }));
+
+            assertArrayEquals(new byte[] { 3 }, listener17.poll().getInformationFieldWithoutLlc());
+            assertEquals(0, slowListener.frames.size());
+        } finally {
+            releaseSlowListener.countDown();
+        }
+
+        assertArrayEquals(new byte[] { 1 }, slowListener.poll().getInformationFieldWithoutLlc());
+        assertArrayEquals(new byte[] { 2 }, slowListener.poll().getInformationFieldWithoutLlc());
+
+        connection.close(settings16);
+        connection.close(settings17);
+    }
+
+    @Test
+    public void testFramesOfSlowListenerAreBounded() throws Exception {
+        HdlcSettings settings16 = newSettings(16);
+        HdlcSettings settings17 = newSettings(17);
+        CountDownLatch releaseSlowListener = new CountDownLatch(1);
+        RecordingListener slowListener = new RecordingListener(releaseSlowListener);
+        RecordingListener listener17 = new RecordingListener(null);
+
+        HdlcConnection connection = HdlcDispatcher.instance().connect(settings16, slowListener);
+        HdlcDispatcher.instance().connect(settings17, listener17);
+
+        connection.open(settings16);
+        connection.open(settings17);
+
+        int numFrames = HdlcDispatcher.MAX_QUEUED_FRAMES + 10;
+        try {
+            for (int i = 0; i < numFrames; i++) {
+                connection.send(newInformationFrame(settings16, new byte[] { (byte) i }));
+            }
+            // the echoes are received in order, all frames for the slow listener have been received before this one
+            connection.send(newInformationFrame(settings17, new byte[] { 1 }));
+            listener17.poll();
+        } finally {
+            releaseSlowListener.countDown();
+        }
+
+        int receivedFrames = 0;
+        while (slowListener.frames.poll(500, TimeUnit.MILLISECONDS) != null) {
+            receivedFrames++;
+        }
+        assertTrue(receivedFrames >= HdlcDispatcher.MAX_QUEUED_FRAMES);
+        assertTrue(receivedFrames < numFrames);
+
+        connection.close(settings16);
+        connection.close(settings17);
+    }
+
+    @Test
+    public void testSerialLinkRejectsOtherIec21Settings() throws Exception {
+        String portName = "/dev/jdlms-test-" + System.nanoTime();
+
+        HdlcConnection connection16 = HdlcDispatcher.instance()
+                .connect(newSerialSettings(portName, 16, "1", 9600), new RecordingListener(null));
+        HdlcConnection connection17 = HdlcDispatcher.instance()
+                .connect(newSerialSettings(portName, 17, "1", 9600), new RecordingListener(null));
+        assertSame(connection16, connection17);
+
+        try {
+            HdlcDispatcher.instance().connect(newSerialSettings(portName, 18, "2", 9600), new RecordingListener(null));
+            fail("A meter with another IEC 21 address has been connected over the same handshake.");
+        } catch (FatalJDlmsException e) {
+            // expected
+        }
+
+        try {
+            HdlcDispatcher.instance().connect(newSerialSettings(portName, 18, "1", 300), new RecordingListener(null));
+            fail("A meter with another baud rate has been connected over the same serial port.");
+        } catch (FatalJDlmsException e) {
+            // expected
+        }
+    }
+
+    private static HdlcSettings newSerialSettings(String portName, int clientId, String iec21Address, int baudrate) {
+        SerialConnectionBuilder builder = new SerialConnectionBuilder(portName).setClientId(clientId)
+                .setIec21Address(iec21Address)
+                .setBaudRate(baudrate);
+        return builder.new HdlcSettingsImpl(builder);
+    }
+
+    private HdlcSettings newSettings(int clientId) {
+        TcpConnectionBuilder builder = new TcpConnectionBuilder(InetAddress.getLoopbackAddress())
+                .setTcpPort(this.concentrator.port)
+                .useHdlc()
+                .setClientId(clientId)
+                .setResponseTimeout(2000);
+        return builder.new TcpSettingsImpl(builder);
+    }
+
+    private static byte[] newInformationFrame(HdlcSettings settings, byte[] data) {
+        return HdlcFrame.newInformationFrame(settings.addressPair(), 0, 0, data, false, true).encode();
+    }
+
+    private static class RecordingListener implements HdlcConnectionListener {
+        private final BlockingQueue<HdlcFrame> frames = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+
+        public RecordingListener(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void dataReceived(RawMessageDataBuilder rawMessageBuilder, HdlcFrame frame) {
+            if (this.release != null) {
+                try {
+                    this.release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            this.frames.add(frame);
+        }
+
+        @Override
+        public void connectionInterrupted(IOException e) {
+        }
+
+        private HdlcFrame poll() throws InterruptedException {
+            HdlcFrame frame = this.frames.poll(2, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            return frame;
+        }
+    }
+
+    /**
+     * Answers the connection requests of all meters behind it and echoes the information frames over a single
+     * socket.
+     */
+    private static class FakeConcentrator extends Thread {
+        private final ServerSocket serverSocket;
+        private final int port;
+        private final AtomicInteger acceptedSockets = new AtomicInteger();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        public FakeConcentrator() throws IOException {
+            this.serverSocket = new ServerSocket(0);
+            this.port = this.serverSocket.getLocalPort();
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    try (Socket socket = this.serverSocket.accept()) {
+                        this.acceptedSockets.incrementAndGet();
+                        serve(socket);
+                    } catch (IOException e) {
+                        // the client has closed the link
+                    }
+                    this.closed.countDown();
+                    if (this.serverSocket.isClosed()) {
+                        return;
+                    }
+                }
+            } finally {
+                this.closed.countDown();
+            }
+        }
+
+        private void serve(Socket socket) throws IOException {
+            DataInputStream is = new DataInputStream(socket.getInputStream());
+            OutputStream os = socket.getOutputStream();
+
+            while (true) {
+                HdlcFrame frame;
+                try {
+                    frame = HdlcFrame.decode(readFrame(is));
+                } catch (FrameInvalidException e) {
+                    throw new IOException(e);
+                }
+                HdlcAddressPair reply = frame.getAddressPair().switchedPair();
+
+                switch (frame.getFrameType()) {
+                case SET_NORMAL_RESPONSEMODE:
+                    HdlcParameters parameters = new HdlcParameters(128, 1, 128, 1);
+                    os.write(HdlcFrame.newUnnumberedAcknowledgeFrame(reply, parameters, true).encode());
+                    break;
+                case DISCONNECT:
+                    os.write(HdlcFrame.newDisconnectModeFrame(reply, null, true).encode());
+                    break;
+                case INFORMATION:
+                    os.write(HdlcFrame
+                            .newInformationFrame(reply, 0, 1, frame.getInformationFieldWithoutLlc(), false, true)
+                            .encode());
+                    break;
+                default:
+                    break;
+                }
+                os.flush();
+            }
+        }
+
+        private static byte[] readFrame(DataInputStream is) throws IOException {
+            int b;
+            do {
+                b = is.readUnsignedByte();
+            } while (b == 0x7E);
+
+            int length = ((b & 0x07) << 8) | is.readUnsignedByte();
+            byte[] frame = new byte[length];
+            frame[0] = (byte) b;
+            frame[1] = (byte) (length & 0xFF);
+            is.readFully(frame, 2, length - 2);
+            is.readUnsignedByte();
+            return frame;
+        }
+
+        private void close() throws IOException {
+            this.serverSocket.close();
+        }
+    }
+
+}
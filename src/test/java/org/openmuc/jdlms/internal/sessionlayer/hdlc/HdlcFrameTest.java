@@ -38,6 +38,24 @@ public class HdlcFrameTest {
         assertEquals(2, frames.size());
     }
 
+    @Test
+    public void decode_frames_with_own_flags() throws Exception {
+        String bytes1 = "A01E610373B57C81801205018006013E0704000000010804000000010722";
+        String bytes2 = "A021230201737A5B81801405020074060200740704000000010804000000016A0B";
+        String message = "7E" + bytes1 + "7E" + "7E7E" + bytes2 + "7E";
+        byte[] data = HexConverter.fromShortHexString(message);
+
+        TransportLayer transportLayer = mock(TransportLayer.class);
+
+        when(transportLayer.getInputStream()).thenReturn(new DataInputStream(new ByteArrayInputStream(data)));
+        when(transportLayer.isClosed()).thenReturn(false);
+
+        List<HdlcFrame> frames = HdlcMessageDecoder.decode(null, transportLayer, 0);
+
+        assertEquals(2, frames.size());
+        assertEquals(FrameType.UNNUMBERED_ACKNOWLEDGE, frames.get(1).getFrameType());
+    }
+
     @Test
     public void decode1() throws Exception {
         /*
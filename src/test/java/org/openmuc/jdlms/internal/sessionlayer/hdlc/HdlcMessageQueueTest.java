@@ -0,0 +1,66 @@
+package org.openmuc.jdlms.internal.sessionlayer.hdlc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class HdlcMessageQueueTest {
+
+    private static final HdlcAddressPair ADDRESS_PAIR = new HdlcAddressPair(new HdlcAddress(16),
+            new HdlcAddress(1));
+
+    @Test
+    public void testPartialAcknowledgementKeepsMissingFrames() throws Exception {
+        HdlcMessageQueue queue = newQueue(5, 6, 7, 0);
+
+        queue.acknowledge(7);
+        assertFalse(queue.awaitAcknowledgement(0));
+        assertEquals(2, queue.size());
+        assertEquals(7, queue.unacknowledgedFrames().get(0).getSendSequence());
+
+        queue.acknowledge(1);
+        assertTrue(queue.awaitAcknowledgement(0));
+    }
+
+    @Test
+    public void testFailedQueueFailsWaitingSender() throws Exception {
+        final HdlcMessageQueue queue = newQueue(0, 1);
+        final IOException cause = new IOException("connection lost");
+
+        Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                queue.fail(cause);
+            }
+        };
+        interrupter.start();
+
+        try {
+            queue.awaitAcknowledgement(5000);
+            fail("The interrupted connection has been taken as acknowledgement.");
+        } catch (IOException e) {
+            assertSame(cause, e.getCause());
+        }
+    }
+
+    private static HdlcMessageQueue newQueue(int... sendSequences) {
+        HdlcMessageQueue queue = new HdlcMessageQueue();
+        for (int sendSequence : sendSequences) {
+            queue.offerMessage(
+                    HdlcFrame.newInformationFrame(ADDRESS_PAIR, sendSequence, 0, new byte[] { 1 }, true, false));
+        }
+        return queue;
+    }
+
+}
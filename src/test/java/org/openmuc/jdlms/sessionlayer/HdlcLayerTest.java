@@ -0,0 +1,305 @@
+package org.openmuc.jdlms.sessionlayer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.FatalJDlmsException;
+import org.openmuc.jdlms.RawMessageData.RawMessageDataBuilder;
+import org.openmuc.jdlms.TcpConnectionBuilder;
+import org.openmuc.jdlms.internal.sessionlayer.SessionLayerListener;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.FrameInvalidException;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcAddressPair;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcFrame;
+import org.openmuc.jdlms.internal.sessionlayer.hdlc.HdlcParameters;
+
+public class HdlcLayerTest {
+
+    private static final int INFORMATION_LENGTH = 128;
+    private static final int WINDOW_SIZE = 7;
+
+    private FakeMeter meter;
+    private HdlcLayer hdlcLayer;
+    private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        this.meter = new FakeMeter();
+        this.meter.start();
+
+        TcpConnectionBuilder builder = new TcpConnectionBuilder(InetAddress.getLoopbackAddress())
+                .setTcpPort(this.meter.serverSocket.getLocalPort())
+                .useHdlc()
+                .setResponseTimeout(500);
+        this.hdlcLayer = new HdlcLayer(builder.new TcpSettingsImpl(builder));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try {
+            this.hdlcLayer.close();
+        } catch (IOException e) {
+            // the meter has closed the connection
+        }
+        this.meter.serverSocket.close();
+    }
+
+    @Test
+    public void testSegmentsAreSentInWindows() throws Exception {
+        this.hdlcLayer.startListening(new ReceivingListener());
+
+        byte[] data = newData(2000);
+        this.hdlcLayer.send(data, 0, data.length, null);
+
+        assertArrayEquals(new byte[] { 1 }, poll());
+        assertArrayEquals(data, this.meter.request.toByteArray());
+
+        // 18 segments, polled at the end of each of the three windows
+        assertEquals(3, this.meter.polls.get());
+    }
+
+    @Test
+    public void testLostSegmentIsRetransmitted() throws Exception {
+        this.meter.dropSendSequence = 2;
+        this.hdlcLayer.startListening(new ReceivingListener());
+
+        byte[] data = newData(1000);
+        this.hdlcLayer.send(data, 0, data.length, null);
+
+        assertArrayEquals(new byte[] { 1 }, poll());
+        assertArrayEquals(data, this.meter.request.toByteArray());
+    }
+
+    @Test
+    public void testLostSegmentOfLastWindowIsRetransmitted() throws Exception {
+        // the second and last window holds the segments 7 and 0
+        this.meter.dropSendSequence = 7;
+        this.hdlcLayer.startListening(new ReceivingListener());
+
+        byte[] data = newData(1000);
+        this.hdlcLayer.send(data, 0, data.length, null);
+
+        assertArrayEquals(new byte[] { 1 }, poll());
+        assertArrayEquals(data, this.meter.request.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInterruptedConnectionFailsWaitingSender() throws Exception {
+        this.meter.closeAtSendSequence = 6;
+        this.hdlcLayer.startListening(new ReceivingListener());
+
+        byte[] data = newData(2000);
+        this.hdlcLayer.send(data, 0, data.length, null);
+    }
+
+    @Test
+    public void testMissingAcknowledgementFailsWithinResponseTimeout() throws Exception {
+        this.hdlcLayer.startListening(new ReceivingListener());
+        this.meter.silent = true;
+
+        byte[] data = newData(2000);
+        long start = System.currentTimeMillis();
+        try {
+            this.hdlcLayer.send(data, 0, data.length, null);
+            fail("The unacknowledged window has been taken as sent.");
+        } catch (FatalJDlmsException e) {
+            // expected
+        }
+
+        // the response timeout is 500 ms
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    @Test
+    public void testReceivedWindowIsAcknowledgedOnce() throws Exception {
+        this.meter.responseSegments = 5;
+        this.hdlcLayer.startListening(new ReceivingListener());
+
+        this.hdlcLayer.send(new byte[] { 1, 2, 3 }, 0, 3, null);
+
+        byte[] response = poll();
+        assertEquals(5 * 100, response.length);
+        assertEquals(0, this.meter.receiveReadies.get());
+
+        this.meter.responseSegments = 9;
+        this.hdlcLayer.send(new byte[] { 1, 2, 3 }, 0, 3, null);
+
+        response = poll();
+        assertEquals(9 * 100, response.length);
+        assertEquals(1, this.meter.receiveReadies.get());
+    }
+
+    private byte[] poll() throws InterruptedException {
+        byte[] data = this.received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(data);
+        return data;
+    }
+
+    private static byte[] newData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private class ReceivingListener implements SessionLayerListener {
+
+        @Override
+        public void dataReceived(byte[] data, RawMessageDataBuilder rawMessageBuilder) {
+            received.add(data);
+        }
+
+        @Override
+        public void connectionInterrupted(IOException e) {
+        }
+    }
+
+    /**
+     * Receives windows of up to seven frames and answers a complete request with a response of the configured number
+     * of segments, sent in windows of seven frames.
+     */
+    private static class FakeMeter extends Thread {
+        private final ServerSocket serverSocket;
+        private final AtomicInteger polls = new AtomicInteger();
+        private final AtomicInteger receiveReadies = new AtomicInteger();
+
+        private volatile int dropSendSequence = -1;
+        private volatile int closeAtSendSequence = -1;
+        private volatile int responseSegments = 1;
+        private volatile boolean silent;
+
+        private final ByteArrayOutputStream request = new ByteArrayOutputStream();
+        private int receiveSequence;
+        private int sendSequence;
+        private byte[][] response;
+        private int sentSegments;
+
+        public FakeMeter() throws IOException {
+            this.serverSocket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = this.serverSocket.accept()) {
+                DataInputStream is = new DataInputStream(socket.getInputStream());
+                OutputStream os = socket.getOutputStream();
+
+                while (true) {
+                    HdlcFrame frame = HdlcFrame.decode(readFrame(is));
+                    HdlcAddressPair reply = frame.getAddressPair().switchedPair();
+
+                    switch (frame.getFrameType()) {
+                    case SET_NORMAL_RESPONSEMODE:
+                        HdlcParameters parameters = new HdlcParameters(INFORMATION_LENGTH, WINDOW_SIZE,
+                                INFORMATION_LENGTH, WINDOW_SIZE);
+                        os.write(HdlcFrame.newUnnumberedAcknowledgeFrame(reply, parameters, true).encode());
+                        break;
+                    case DISCONNECT:
+                        os.write(HdlcFrame.newDisconnectModeFrame(reply, null, true).encode());
+                        break;
+                    case INFORMATION:
+                        if (frame.getSendSequence() == this.closeAtSendSequence) {
+                            return;
+                        }
+                        if (this.silent) {
+                            break;
+                        }
+                        informationReceived(frame, reply, os);
+                        break;
+                    case RECEIVE_READY:
+                        this.receiveReadies.incrementAndGet();
+                        sendResponseWindow(reply, os);
+                        break;
+                    default:
+                        break;
+                    }
+                    os.flush();
+                }
+            } catch (IOException | FrameInvalidException e) {
+                // the client has closed the connection
+            }
+        }
+
+        private void informationReceived(HdlcFrame frame, HdlcAddressPair reply, OutputStream os) throws IOException {
+            if (frame.getSendSequence() == this.dropSendSequence) {
+                this.dropSendSequence = -1;
+            }
+            else if (frame.getSendSequence() == this.receiveSequence) {
+                if (this.request.size() == 0) {
+                    this.request.write(frame.getInformationFieldWithoutLlc());
+                }
+                else {
+                    this.request.write(frame.getInformationField());
+                }
+                this.receiveSequence = (this.receiveSequence + 1) % 8;
+            }
+
+            if (!frame.isPollFinal()) {
+                return;
+            }
+            this.polls.incrementAndGet();
+
+            if (frame.isSegmented() || frame.getSendSequence() != (this.receiveSequence + 7) % 8) {
+                os.write(HdlcFrame.newReceiveReadyFrame(reply, this.receiveSequence, true).encode());
+                return;
+            }
+
+            if (this.request.size() > 3) {
+                // answer large requests with a short response and keep the request for the assertions
+                this.response = new byte[][] { { 1 } };
+            }
+            else {
+                this.request.reset();
+                this.response = new byte[this.responseSegments][100];
+            }
+            this.sentSegments = 0;
+            sendResponseWindow(reply, os);
+        }
+
+        private void sendResponseWindow(HdlcAddressPair reply, OutputStream os) throws IOException {
+            for (int i = 0; i < WINDOW_SIZE && this.sentSegments < this.response.length; i++) {
+                boolean segmented = this.sentSegments < this.response.length - 1;
+                boolean poll = !segmented || i == WINDOW_SIZE - 1;
+                boolean addLlc = this.sentSegments == 0;
+
+                os.write(HdlcFrame.newInformationFrame(reply, this.sendSequence, this.receiveSequence,
+                        this.response[this.sentSegments++], segmented, addLlc, poll).encode());
+                this.sendSequence = (this.sendSequence + 1) % 8;
+            }
+        }
+
+        private static byte[] readFrame(DataInputStream is) throws IOException {
+            int b;
+            do {
+                b = is.readUnsignedByte();
+            } while (b == 0x7E);
+
+            int length = ((b & 0x07) << 8) | is.readUnsignedByte();
+            byte[] frame = Arrays.copyOf(new byte[] { (byte) b, (byte) length }, length);
+            is.readFully(frame, 2, length - 2);
+            is.readUnsignedByte();
+            return frame;
+        }
+    }
+
+}